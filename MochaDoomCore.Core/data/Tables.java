@@ -242,7 +242,7 @@ public  class Tables
      * a small degree of "vanilla like" compatibility.
      */
 
-    public  static int[] finetangent = new int[2 * FINETANS];
+    public static readonly int[] finetangent = new int[2 * FINETANS];
     /**
      * This maps a value 0-2048 to a BAM unsigned int.angle, ranging from 0x0 to 0x2000000:
      * <p>
@@ -253,6 +253,8 @@ public  class Tables
 
     public static readonly int[] tantoangle = new int[SLOPERANGE + 1];
 
+    private static bool initialized;
+
 
 // MAES: original range 2049
 // This obviously 
@@ -441,10 +443,18 @@ public  class Tables
      * The "tantoangle" table is also generated procedurally, but since there
      * was no "dead code" to build upon, it was recreated through reverse
      * engineering and also found to be 100% faithful to the original data.
+     * <p>
+     * The tables are filled once per JVM, however many games it runs, and
+     * only read from then on.
      */
 
-    public static void InitTables()
+    public static synchronized void InitTables()
     {
+        if (initialized)
+        {
+            return;
+        }
+
         int i;
         float a;
         float fv;
@@ -513,6 +523,7 @@ public  class Tables
             tantoangle[i] = t;
         }
 
+        initialized = true;
     }
 
 }
@@ -15,7 +15,7 @@ using java.nio.ByteOrder;
 
 public class mapthing_t : CacheableDoomObject, IPackableDoomObject, IWritableDoomObject, Cloneable
 {
-    private static MemoryStream iobuffer = MemoryStream.allocate(10);
+    private static readonly ThreadLocal<MemoryStream> iobuffer = ThreadLocal.withInitial(() -> MemoryStream.allocate(10));
     public short x;
     public short y;
     public short angle;
@@ -66,10 +66,11 @@ public class mapthing_t : CacheableDoomObject, IPackableDoomObject, IWritableDoo
 
         // More efficient, avoids duplicating code and
         // handles little endian better.
-        iobuffer.position(0);
-        iobuffer.order(ByteOrder.LITTLE_ENDIAN);
-        pack(iobuffer);
-        f.write(iobuffer.array());
+        MemoryStream b = iobuffer.get();
+        b.position(0);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        pack(b);
+        f.write(b.array());
 
     }
 
@@ -63,4 +63,17 @@ public class mobjinfo_t
         this.flags = flags;
         this.raisestate = raisestate;
     }
+
+    public mobjinfo_t(mobjinfo_t other)
+    {
+        this(other.doomednum, other.spawnstate, other.spawnhealth,
+                other.seestate, other.seesound, other.reactiontime,
+                other.attacksound, other.painstate,
+                other.painchance, other.painsound,
+                other.meleestate, other.missilestate,
+                other.deathstate, other.xdeathstate,
+                other.deathsound, other.speed, other.radius, other.height,
+                other.mass, other.damage, other.activesound, other.flags,
+                other.raisestate);
+    }
 }
@@ -0,0 +1,450 @@
+namespace demo {  
+
+using doom.DoomMain;
+using doom.player_t;
+using doom.thinker_t;
+using p.mobj_t;
+using rr.sector_t;
+
+using java.io.BufferedInputStream;
+using java.io.BufferedOutputStream;
+using java.io.Stream;
+using java.io.EOFException;
+using java.io.File;
+using java.io.FileInputStream;
+using java.io.FileOutputStream;
+using java.io.IOException;
+using java.util.Arrays;
+using java.util.zip.DeflaterOutputStream;
+using java.util.zip.InflaterInputStream;
+
+using static data.Limits.MAXPLAYERS;
+using static p.ActiveStates.P_MobjThinker;
+
+/**
+ * Hashes the game after every tic of a demo, to find where two engines, or
+ * two builds of one, stop playing it the same (sync_hashes).
+ * <p>
+ * Each player, sector and mobj gets a hash of what makes it play out:
+ * positions, momentums, states, health and such. The tic's hash is of those
+ * and P_Random's index. They're computed in one pass over the level, into
+ * arrays kept from one tic to the next, so nothing is allocated once those
+ * are big enough.
+ * <p>
+ * That pass is made every tic, rather than hashes being kept up to date by
+ * whatever changes a thing: mobjs are moved, hurt and set to new states from
+ * hundreds of places (movement, action functions, specials, loading a game),
+ * and a hash that missed one of them would hide the very desync it's for.
+ * What it costs a tic is a few mixes per player, 7 per sector and 17 per
+ * mobj, reading fields the tic's own thinkers have just gone through: on a
+ * map of a couple of thousand sectors and mobjs, some tens of microseconds,
+ * against a tic of 28 milliseconds. Only what's written is incremental: see
+ * below.
+ * <p>
+ * Recording, or playing back a demo with no hashes next to it, writes them to
+ * a .sync file: per tic, its hash, P_Random's index, how many sectors and
+ * mobjs there are, and the hashes of only those that changed since the tic
+ * before, all deflated. Idle things cost nothing. Playing back with one there
+ * checks every tic against it, and names the first tic that differs, and the
+ * first thing in it: P_Random, a player, a sector or a mobj (in the order of
+ * the mobj list, so spawned at the same time and place in both).
+ */
+
+public class DesyncDetector
+{
+    private static readonly int MAGIC = 0x4D53594E; // MSYN
+    private static readonly int VERSION = 2;
+
+    private readonly DoomMain<?, ?> DOOM;
+    private readonly File file;
+    private readonly Stream out;
+    private readonly Stream in;
+
+    // This tic's hashes, and the last tic's: players, then sectors, then mobjs
+    private int[] hashes = new int[1024];
+    private int[] previous = new int[1024];
+    private int count, previouscount;
+    private mobj_t[] mobjs = new mobj_t[1024];
+    private int numsectors, nummobjs;
+
+    // What the file says, when checking
+    private int[] reference = new int[1024];
+    private int referencecount;
+
+    private int tic;
+    private int desynctic = -1;
+    private bool done;
+
+    private DesyncDetector(DoomMain<?, ?> DOOM, File file, Stream out, Stream in)
+    {
+        this.DOOM = DOOM;
+        this.file = file;
+        this.out = out;
+        this.in = in;
+    }
+
+    /**
+     * Write the hashes of a demo being recorded, over any there were.
+     *
+     * @return null if the file can't be written
+     */
+    public static DesyncDetector record(DoomMain<?, ?> DOOM, File file)
+    {
+        try
+        {
+            // Buffered before the deflater, which is costly per call, not after
+            Stream out = new Stream(new BufferedOutputStream(new DeflaterOutputStream(new FileOutputStream(file))));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            System.out.printf("DesyncDetector: writing tic hashes to %s\n", file);
+            return new DesyncDetector(DOOM, file, out, null);
+        } catch (IOException e)
+        {
+            System.err.printf("DesyncDetector: can't write %s: %s\n", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Check a demo played back against the hashes next to it, or write them
+     * if there are none yet.
+     *
+     * @return null if the file can be neither read nor written
+     */
+    public static DesyncDetector playback(DoomMain<?, ?> DOOM, File file)
+    {
+        if (!file.isFile())
+        {
+            return record(DOOM, file);
+        }
+
+        try
+        {
+            Stream in = new Stream(new BufferedInputStream(new InflaterInputStream(new FileInputStream(file))));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                in.close();
+                System.err.printf("DesyncDetector: %s is not a tic hash file of this version\n", file);
+                return null;
+            }
+            System.out.printf("DesyncDetector: checking tics against %s\n", file);
+            return new DesyncDetector(DOOM, file, null, in);
+        } catch (IOException e)
+        {
+            System.err.printf("DesyncDetector: can't read %s: %s\n", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * One that only hashes the game, for telling whether it's as it was
+     * (see RewindBuffer).
+     */
+    public static DesyncDetector hasher(DoomMain<?, ?> DOOM)
+    {
+        return new DesyncDetector(DOOM, null, null, null);
+    }
+
+    /**
+     * @return the game's hash as it is now, as Ticker has it after a tic
+     */
+    public int hashNow()
+    {
+        return hash();
+    }
+
+    /**
+     * @return the first tic that didn't hash as the file says, or -1
+     */
+    public int getDesyncTic()
+    {
+        return desynctic;
+    }
+
+    /**
+     * Called once a tic has run.
+     */
+    public void Ticker()
+    {
+        if (done)
+        {
+            return;
+        }
+
+        int world = hash();
+
+        try
+        {
+            if (out != null)
+            {
+                write(world);
+            } else if (desynctic < 0)
+            {
+                check(world);
+            }
+        } catch (IOException e)
+        {
+            System.err.printf("DesyncDetector: %s at tic %d: %s\n", file, tic, e.getMessage());
+            close();
+        }
+
+        int[] swap = previous;
+        previous = hashes;
+        hashes = swap;
+        previouscount = count;
+        tic++;
+    }
+
+    /**
+     * Hash every player, sector and mobj into hashes, and return the tic's.
+     */
+    private int hash()
+    {
+        var ll = DOOM.levelLoader;
+        var cap = DOOM.actions.getMobjCap();
+
+        count = 0;
+        numsectors = ll.sectors != null ? ll.numsectors : 0;
+        nummobjs = 0;
+
+        for (int i = 0; i < MAXPLAYERS; i++)
+        {
+            add(DOOM.playeringame[i] ? hash(DOOM.players[i]) : 0);
+        }
+
+        for (int i = 0; i < numsectors; i++)
+        {
+            add(hash(ll.sectors[i]));
+        }
+
+        for (thinker_t th = cap.mnext; th != cap; th = th.mnext)
+        {
+            if (th.thinkerFunction == P_MobjThinker)
+            {
+                mobj_t mo = (mobj_t) th;
+                if (nummobjs == mobjs.Length)
+                {
+                    mobjs = Arrays.copyOf(mobjs, nummobjs * 2);
+                }
+                mobjs[nummobjs++] = mo;
+                add(hash(mo));
+            }
+        }
+
+        int world = mix(0, DOOM.random.getIndex());
+        for (int i = 0; i < count; i++)
+        {
+            world = mix(world, hashes[i]);
+        }
+        return world;
+    }
+
+    private void add(int hash)
+    {
+        if (count == hashes.Length)
+        {
+            hashes = Arrays.copyOf(hashes, count * 2);
+            previous = Arrays.copyOf(previous, count * 2);
+        }
+        hashes[count++] = hash;
+    }
+
+    private static int hash(player_t p)
+    {
+        int h = mix(0, p.playerstate);
+        h = mix(h, p.health[0]);
+        h = mix(h, p.armorpoints[0]);
+        h = mix(h, p.armortype);
+        h = mix(h, p.readyweapon.ordinal());
+        h = mix(h, p.viewz);
+        h = mix(h, p.killcount);
+        h = mix(h, p.itemcount);
+        h = mix(h, p.secretcount);
+        for (int i = 0; i < p.ammo.Length; i++)
+        {
+            h = mix(h, p.ammo[i]);
+        }
+        return h;
+    }
+
+    private static int hash(sector_t sec)
+    {
+        int h = mix(0, sec.floorheight);
+        h = mix(h, sec.ceilingheight);
+        h = mix(h, sec.lightlevel);
+        h = mix(h, sec.special);
+        h = mix(h, sec.floorpic);
+        h = mix(h, sec.ceilingpic);
+        return mix(h, sec.specialdata != null ? 1 : 0);
+    }
+
+    private static int hash(mobj_t mo)
+    {
+        int h = mix(0, mo.type.ordinal());
+        h = mix(h, mo.x);
+        h = mix(h, mo.y);
+        h = mix(h, mo.z);
+        h = mix(h, mo.momx);
+        h = mix(h, mo.momy);
+        h = mix(h, mo.momz);
+        h = mix(h, (int) mo.angle);
+        h = mix(h, mo.health);
+        h = mix(h, mo.mobj_state != null ? mo.mobj_state.id : -1);
+        h = mix(h, (int) mo.mobj_tics);
+        h = mix(h, (int) mo.flags);
+        h = mix(h, (int) (mo.flags >>> 32));
+        h = mix(h, mo.movedir);
+        h = mix(h, mo.movecount);
+        h = mix(h, mo.reactiontime);
+        return mix(h, mo.threshold);
+    }
+
+    /**
+     * One round of MurmurHash3's
+     */
+    private static int mix(int h, int v)
+    {
+        v *= 0xcc9e2d51;
+        v = int.rotateLeft(v, 15);
+        v *= 0x1b873593;
+        h ^= v;
+        h = int.rotateLeft(h, 13);
+        return h * 5 + 0xe6546b64;
+    }
+
+    private void write(int world)
+    {
+        int changed = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (i >= previouscount || hashes[i] != previous[i])
+            {
+                changed++;
+            }
+        }
+
+        out.writeInt(world);
+        out.writeInt(DOOM.random.getIndex());
+        out.writeInt(numsectors);
+        out.writeInt(nummobjs);
+        out.writeInt(changed);
+
+        for (int i = 0; i < count; i++)
+        {
+            if (i >= previouscount || hashes[i] != previous[i])
+            {
+                out.writeInt(i);
+                out.writeInt(hashes[i]);
+            }
+        }
+    }
+
+    private void check(int world)
+    {
+        int refworld, refrandom, refsectors, refmobjs;
+
+        try
+        {
+            refworld = in.readInt();
+            refrandom = in.readInt();
+            refsectors = in.readInt();
+            refmobjs = in.readInt();
+        } catch (EOFException e)
+        {
+            System.out.printf("DesyncDetector: %s ends at tic %d, in sync until then\n", file, tic);
+            close();
+            return;
+        }
+
+        referencecount = MAXPLAYERS + refsectors + refmobjs;
+        if (referencecount > reference.Length)
+        {
+            reference = Arrays.copyOf(reference, Math.Max(referencecount, reference.Length * 2));
+        }
+
+        for (int n = in.readInt(); n > 0; n--)
+        {
+            int i = in.readInt();
+            reference[i] = in.readInt();
+        }
+
+        if (world == refworld)
+        {
+            return;
+        }
+
+        desynctic = tic;
+        System.err.printf("DesyncDetector: desync at tic %d (gametic %d): %s\n",
+                tic, DOOM.gametic, culprit(refrandom, refsectors, refmobjs));
+    }
+
+    /**
+     * @return the first thing that differs from the reference, by name
+     */
+    private String culprit(int refrandom, int refsectors, int refmobjs)
+    {
+        if (DOOM.random.getIndex() != refrandom)
+        {
+            return String.format("P_Random index %d, should be %d", DOOM.random.getIndex(), refrandom);
+        }
+
+        if (numsectors != refsectors)
+        {
+            return String.format("%d sectors, should be %d: not the same level", numsectors, refsectors);
+        }
+
+        for (int i = 0; i < Math.Min(count, referencecount); i++)
+        {
+            if (hashes[i] == reference[i])
+            {
+                continue;
+            }
+
+            if (i < MAXPLAYERS)
+            {
+                return String.format("player %d", i + 1);
+            }
+
+            if (i < MAXPLAYERS + numsectors)
+            {
+                return String.format("sector %d", i - MAXPLAYERS);
+            }
+
+            mobj_t mo = mobjs[i - MAXPLAYERS - numsectors];
+            return String.format("mobj %d of %d, %s at (%d, %d, %d), health %d, state %d",
+                    i - MAXPLAYERS - numsectors, nummobjs, mo.type, mo.x >> 16, mo.y >> 16, mo.z >> 16,
+                    mo.health, mo.mobj_state != null ? mo.mobj_state.id : -1);
+        }
+
+        return String.format("%d mobjs, should be %d", nummobjs, refmobjs);
+    }
+
+    /**
+     * Done with the demo: finish writing, or reading.
+     */
+    public void close()
+    {
+        if (done)
+        {
+            return;
+        }
+        done = true;
+
+        try
+        {
+            if (out != null)
+            {
+                out.close();
+                System.out.printf("DesyncDetector: %d tic hashes written to %s\n", tic, file);
+            } else if (in != null)
+            {
+                in.close();
+            }
+        } catch (IOException e)
+        {
+            System.err.printf("DesyncDetector: can't close %s: %s\n", file, e.getMessage());
+        }
+
+        Arrays.fill(mobjs, 0, nummobjs, null);
+    }
+}
@@ -1,6 +1,7 @@
 namespace demo {  
 
 using defines.skill_t;
+using doom.ticcmd_t;
 using w.IWritableDoomObject;
 
 public interface IDoomDemo : IWritableDoomObject
@@ -22,6 +23,14 @@ public interface IDoomDemo : IWritableDoomObject
      */
     IDemoTicCmd getNextTic();
 
+    /**
+     * Decode the next demo command straight into dest,
+     * without an IDemoTicCmd in between.
+     *
+     * @return false at the end of the demo
+     */
+    bool getNextTic(ticcmd_t dest);
+
     /**
      * Record a demo command in the IDoomDemo's native format.
      * Use the IDemoTicCmd's objects adaptors to convert it.
@@ -30,6 +39,21 @@ public interface IDoomDemo : IWritableDoomObject
      */
     void putTic(IDemoTicCmd tic);
 
+    /**
+     * Record a ticcmd_t in the demo's native format, with
+     * whatever precision it loses, without an IDemoTicCmd
+     * in between. Read it back with getNextTic to see what
+     * was kept.
+     *
+     * @param tic
+     */
+    void putTic(ticcmd_t tic);
+
+    /**
+     * @return commands in the demo, one per player each tic
+     */
+    int getTics();
+
     int getVersion();
 
     void setVersion(int version);
@@ -72,5 +96,15 @@ public interface IDoomDemo : IWritableDoomObject
 
     void resetDemo();
 
+    /**
+     * @return commands read so far, for getNextTic to go on from
+     */
+    int getPosition();
+
+    /**
+     * Go on reading from this many commands into the demo, when rewinding
+     */
+    void setPosition(int position);
+
 
 }
@@ -0,0 +1,117 @@
+namespace demo {  
+
+using doom.ticcmd_t;
+using utils.C2JUtils;
+
+using java.io.Stream;
+using java.io.IOException;
+using java.nio.MemoryStream;
+using java.util.Arrays;
+
+/**
+ * Demo commands, as they are in vanilla demo lumps, 4 bytes each, in one
+ * growable array. A multi-hour demo is a few megabytes of it, where one
+ * VanillaTiccmd object per command took several times that in headers.
+ * <p>
+ * The bytes and their meaning are those of VanillaTiccmd.
+ */
+
+public class PackedTics
+{
+    public static readonly int TICSIZE = 4;
+
+    private byte[] data;
+    private int size;
+
+    public PackedTics()
+    {
+        data = new byte[TICSIZE * 35 * 60];
+    }
+
+    /**
+     * @return commands in here
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Take count commands, as a demo lump has them, from b.
+     */
+    public void read(MemoryStream b, int count)
+    {
+        ensure(count);
+        b.get(data, 0, count * TICSIZE);
+        size = count;
+    }
+
+    public void write(Stream f)
+    {
+        f.write(data, 0, size * TICSIZE);
+    }
+
+    /**
+     * Append a command, with vanilla's loss of precision. See
+     * VanillaTiccmd.encode.
+     */
+    public void add(ticcmd_t source)
+    {
+        ensure(size + 1);
+        int p = size++ * TICSIZE;
+        data[p] = source.forwardmove;
+        data[p + 1] = source.sidemove;
+        data[p + 2] = (byte) (source.angleturn >>> 8);
+        data[p + 3] = (byte) (source.buttons & 0x00FF);
+    }
+
+    /**
+     * Append a command already in demo format.
+     */
+    public void add(VanillaTiccmd source)
+    {
+        ensure(size + 1);
+        int p = size++ * TICSIZE;
+        data[p] = source.forwardmove;
+        data[p + 1] = source.sidemove;
+        data[p + 2] = source.angleturn;
+        data[p + 3] = source.buttons;
+    }
+
+    /**
+     * Decode command number tic into dest. See VanillaTiccmd.decode.
+     */
+    public void get(int tic, ticcmd_t dest)
+    {
+        int p = tic * TICSIZE;
+        dest.forwardmove = data[p];
+        dest.sidemove = data[p + 1];
+        dest.angleturn = (short) (data[p + 2] << 8);
+        dest.buttons = (char) C2JUtils.toUnsignedByte(data[p + 3]);
+    }
+
+    /**
+     * Copy command number tic into dest, for getters of IDemoTicCmds.
+     */
+    public void get(int tic, VanillaTiccmd dest)
+    {
+        int p = tic * TICSIZE;
+        dest.forwardmove = data[p];
+        dest.sidemove = data[p + 1];
+        dest.angleturn = data[p + 2];
+        dest.buttons = data[p + 3];
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    private void ensure(int count)
+    {
+        if (count * TICSIZE > data.Length)
+        {
+            data = Arrays.copyOf(data, Math.Max(count * TICSIZE, data.Length * 2));
+        }
+    }
+}
@@ -1,18 +1,15 @@
 namespace demo {  
 
 using defines.skill_t;
+using doom.ticcmd_t;
 using w.CacheableDoomObject;
-using w.DoomBuffer;
 using w.DoomIO;
 
 using java.io.Stream;
 using java.io.IOException;
 using java.nio.MemoryStream;
-using java.util.ArrayList;
-using java.util.List;
 
 using static data.Limits.MAXPLAYERS;
-using static utils.GenericCopy.malloc;
 
 public class VanillaDoomDemo : IDoomDemo, CacheableDoomObject
 {
@@ -38,12 +35,14 @@ public class VanillaDoomDemo : IDoomDemo, CacheableDoomObject
     // that ticcmd_t's are serializable!
     // Also, the format used in demo lumps is NOT the same as in datagrams/network
     // (e.g. there is no consistency) and their handling is modified.
-    VanillaTiccmd[] commands;
-    List<IDemoTicCmd> demorecorder;
+    // Both played back and recorded ones are packed, 4 bytes each.
+    readonly PackedTics commands = new PackedTics();
+
+    // Handed out by getNextTic, overwritten by the next call
+    private readonly VanillaTiccmd next = new VanillaTiccmd();
 
     public VanillaDoomDemo()
     {
-        demorecorder = new ArrayList<IDemoTicCmd>();
     }
 
     
@@ -91,33 +90,56 @@ public class VanillaDoomDemo : IDoomDemo, CacheableDoomObject
             playeringame[i] = b.get() != 0;
         }
 
-        commands = malloc(VanillaTiccmd::new, VanillaTiccmd[]::new, lens);
-
-        try
-        {
-            DoomBuffer.readObjectArray(b, commands, lens);
-        }
-        catch (IOException e)
-        {
-            skill = null;
-        }
+        commands.read(b, lens);
     }
 
+    /**
+     * The command is only good until the next call.
+     */
     
     public IDemoTicCmd getNextTic()
     {
-        if (commands != null && p_demo < commands.Length)
+        if (p_demo < commands.size())
         {
-
-            return commands[p_demo++];
+            commands.get(p_demo++, next);
+            return next;
         } else return null;
     }
 
     
+    public bool getNextTic(ticcmd_t dest)
+    {
+        if (p_demo < commands.size())
+        {
+            commands.get(p_demo++, dest);
+            return true;
+        } else return false;
+    }
+
+    
     public void putTic(IDemoTicCmd tic)
     {
-        demorecorder.add(tic);
+        if (tic instanceof VanillaTiccmd)
+        {
+            commands.add((VanillaTiccmd) tic);
+        } else
+        {
+            ticcmd_t cmd = new ticcmd_t();
+            tic.decode(cmd);
+            commands.add(cmd);
+        }
+    }
+
+    
+    public void putTic(ticcmd_t tic)
+    {
+        commands.add(tic);
+    }
 
+    
+    public int getTics()
+    {
+        return commands.size();
     }
 
     
@@ -255,10 +277,7 @@ public class VanillaDoomDemo : IDoomDemo, CacheableDoomObject
         f.writebool(nomonsters);
         f.writeByte(consoleplayer);
         DoomIO.writebool(f, playeringame, MAXPLAYERS);
-        for (IDemoTicCmd i : demorecorder)
-        {
-            i.write(f);
-        }
+        commands.write(f);
         f.writeByte(DEMOMARKER);
 
         // TODO Auto-generated method stub
@@ -272,6 +291,18 @@ public class VanillaDoomDemo : IDoomDemo, CacheableDoomObject
 
     }
 
+    
+    public int getPosition()
+    {
+        return p_demo;
+    }
+
+    
+    public void setPosition(int position)
+    {
+        p_demo = position;
+    }
+
     /////////////////////// VARIOUS BORING GETTERS /////////////////////
 
 
@@ -239,6 +239,18 @@ namespace doom
         public static CommandVariable PLAYDEMO => new CommandVariable(typeof(string));
         public static CommandVariable FASTDEMO => new CommandVariable(typeof(string));
         public static CommandVariable TIMEDEMO => new CommandVariable(typeof(string));
+        public static CommandVariable BENCHMARK => new CommandVariable(typeof(string[]));
+        public static CommandVariable BENCHOUT => new CommandVariable(typeof(string));
+        public static CommandVariable VISPLANEBENCH => new CommandVariable(typeof(int));
+        public static CommandVariable TRACEBENCH => new CommandVariable(typeof(int));
+        public static CommandVariable ZNODEBENCH => new CommandVariable(typeof(int));
+        public static CommandVariable VERIFY => new CommandVariable(typeof(string[]));
+        public static CommandVariable VERIFYOUT => new CommandVariable(typeof(string));
+        public static CommandVariable VERIFYBASELINE => new CommandVariable(typeof(string));
+        public static CommandVariable VERIFYTHREADS => new CommandVariable(typeof(int));
+        public static CommandVariable RELAY => new CommandVariable(typeof(int));
+        public static CommandVariable RELAYGAMES => new CommandVariable(typeof(int));
+        public static CommandVariable RELAYTEST => new CommandVariable(typeof(int));
         public static CommandVariable RECORD => new CommandVariable(typeof(string));
         public static CommandVariable STATCOPY => new CommandVariable(typeof(string));
         public static CommandVariable TURBO => new CommandVariable(typeof(int));
@@ -263,6 +275,7 @@ namespace doom
         public static CommandVariable MAP => new CommandVariable('+', typeof(CommandVariable.MapFormat));
         public static CommandVariable FILE => new CommandVariable(typeof(string[]));
         public static CommandVariable IWAD => new CommandVariable(typeof(string));
+        public static CommandVariable ZONESIZE => new CommandVariable(typeof(int));
         public static CommandVariable NOVERT => new CommandVariable(typeof(CommandVariable.ForbidFormat));
         public static CommandVariable NOVOLATILEIMAGE => new CommandVariable(typeof(CommandVariable.ForbidFormat));
                 
@@ -290,6 +303,8 @@ namespace doom
         public static CommandVariable NOCOLORMAP => new CommandVariable();
         public static CommandVariable SERIALRENDERER => new CommandVariable();
         public static CommandVariable EXTRATIC => new CommandVariable();
+        public static CommandVariable NETSTATS => new CommandVariable();
+        public static CommandVariable RELAYCHECK => new CommandVariable();
         public static CommandVariable NOMUSIC => new CommandVariable();
         public static CommandVariable NOSOUND => new CommandVariable();
         public static CommandVariable NOSFX => new CommandVariable();
@@ -302,7 +317,10 @@ namespace doom
         public static CommandVariable TRUECOLOR => new CommandVariable();
         public static CommandVariable ALPHATRUECOLOR => new CommandVariable();
         public static CommandVariable BLOCKMAP => new CommandVariable();
+        public static CommandVariable BUILDNODES => new CommandVariable();
         public static CommandVariable SHOWFPS => new CommandVariable();
+        public static CommandVariable RENDERSTATS => new CommandVariable();
+        public static CommandVariable PIPELINE => new CommandVariable();
         public static CommandVariable JAVARANDOM => new CommandVariable();
         public static CommandVariable GREYPAL => new CommandVariable();
 
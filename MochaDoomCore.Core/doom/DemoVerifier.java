@@ -0,0 +1,320 @@
+namespace doom {  
+
+using savegame.ExtendedDSG;
+using savegame.IDoomSaveGame;
+using savegame.VanillaDSGHeader;
+
+using java.io.BufferedReader;
+using java.io.ByteArrayOutputStream;
+using java.io.Stream;
+using java.io.FileInputStream;
+using java.io.FileOutputStream;
+using java.io.IOException;
+using java.io.InputStreamReader;
+using java.io.OutputStreamWriter;
+using java.io.PrintWriter;
+using java.nio.charset.StandardCharsets;
+using java.util.ArrayList;
+using java.util.HashMap;
+using java.util.List;
+using java.util.Locale;
+using java.util.Map;
+using java.util.concurrent.ExecutionException;
+using java.util.concurrent.ExecutorService;
+using java.util.concurrent.Executors;
+using java.util.concurrent.Future;
+using java.util.concurrent.atomic.AtomicInteger;
+using java.util.zip.CRC32;
+
+/**
+ * Plays many demos back at once, each thread with a game of its own, all in
+ * one JVM, to check engine changes against a baseline: -verify lists them,
+ * the same way -benchmark does.
+ * <p>
+ * Each demo is played to its end, without drawing, sound or timing (see
+ * DoomMain.VerifyDemo). What's reported is the tics it took, how many per
+ * second were run, and a checksum of the game as it ended: an extended
+ * savegame of it, which has every thing, target and fraction in it, and
+ * P_Random's index. A demo's status is "ok" if that is still what the
+ * -verifybaseline file (an earlier run's CSV) says, "differs" if not, "new"
+ * if it's not in there, and "error" if the game died playing it.
+ * <p>
+ * The games share the JVM's read-only data: trigonometric tables, info's
+ * tables, the configuration and the mapped WAD files. Each has its own
+ * lump cache and textures, made as they are read. They're made one at a
+ * time, then run side by side. A game that had an error is thrown away, and
+ * the next demo gets a new one.
+ * <p>
+ * Results go to stdout as JSON, or to the -verifyout file, as CSV if its name
+ * ends with ".csv" and JSON otherwise, as TimeDemoBenchmark's do.
+ */
+public class DemoVerifier
+{
+    private readonly int threads;
+    private readonly String output;
+    private readonly Map<String, Run> baseline;
+
+    /**
+     * @param threads  games to run side by side
+     * @param output   file to write the results to, or null for stdout
+     * @param baseline CSV of an earlier run to compare with, or null
+     */
+    public DemoVerifier(int threads, String output, String baseline)
+    {
+        this.threads = Math.Max(1, threads);
+        this.output = output;
+        this.baseline = baseline != null ? readBaseline(baseline) : new HashMap<>();
+    }
+
+    /**
+     * Play all -verify demos and report. The Engine must have read the
+     * command line already (Engine.startBatch).
+     *
+     * @return whether none differed from the baseline or had errors
+     */
+    public bool verify()
+    {
+        // The first game tells which demos there are
+        DoomMain<?, ?> first = newGame();
+        List<String> demos = first.verifydemos;
+        Run[] runs = new Run[demos.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger counter = new AtomicInteger();
+        int games = Math.Min(threads, Math.Max(1, runs.Length));
+
+        ExecutorService pool = Executors.newFixedThreadPool(games, r -> {
+            Thread t = new Thread(r, "DemoVerifier-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < games; i++)
+        {
+            DoomMain<?, ?> game = i == 0 ? first : null;
+            workers.add(pool.submit(() -> work(game, demos, runs, next)));
+        }
+
+        try
+        {
+            for (Future<?> worker : workers)
+            {
+                worker.get();
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e)
+        {
+            throw new IllegalStateException(e.getCause());
+        } finally
+        {
+            pool.shutdown();
+        }
+
+        long nanos = System.nanoTime() - start;
+        int tics = 0;
+        bool good = true;
+        for (Run r : runs)
+        {
+            tics += r.tics;
+            good &= r.status.equals("ok") || r.status.equals("new");
+        }
+
+        System.out.printf("DemoVerifier: %d demos, %d tics in %.3f s on %d threads = %.2f tics/s\n",
+                runs.Length, tics, nanos / 1e9, games, nanos > 0 ? tics * 1e9 / nanos : 0);
+        report(runs);
+        return good;
+    }
+
+    /**
+     * Games aren't all safe to make side by side, so one at a time
+     */
+    private static DoomMain<?, ?> newGame()
+    {
+        synchronized (DemoVerifier.class)
+        {
+            return new DoomMain<>();
+        }
+    }
+
+    private void work(DoomMain<?, ?> DOOM, List<String> demos, Run[] runs, AtomicInteger next)
+    {
+        for (int i = next.getAndIncrement(); i < runs.Length; i = next.getAndIncrement())
+        {
+            if (DOOM == null)
+            {
+                DOOM = newGame();
+            }
+
+            Run run = runs[i] = new Run(demos.get(i));
+            long start = System.nanoTime();
+
+            try
+            {
+                run.tics = DOOM.VerifyDemo(run.demo);
+                run.nanos = System.nanoTime() - start;
+                run.checksum = checksum(DOOM);
+
+                Run base = baseline.get(run.demo);
+                run.status = base == null ? "new"
+                        : base.checksum == run.checksum && base.tics == run.tics ? "ok" : "differs";
+            } catch (RuntimeException e)
+            {
+                run.nanos = System.nanoTime() - start;
+                run.status = "error";
+                run.error = String.valueOf(e.getMessage());
+                // Whatever it was left as, it's no good for the next one
+                DOOM = null;
+            }
+
+            System.out.printf("verified %s: %s, %d tics, checksum %08x, %.2f tics/s\n",
+                    run.demo, run.status, run.tics, run.checksum, run.ticrate());
+        }
+    }
+
+    /**
+     * CRC-32 of the game as the demo left it: an extended savegame of it, and
+     * P_Random's index, which a savegame doesn't have
+     */
+    static long checksum(DoomMain<?, ?> DOOM)
+    {
+        VanillaDSGHeader header = new VanillaDSGHeader();
+        header.setName("verify");
+        header.setVersion(ExtendedDSG.VERSION);
+        header.setGameskill(DOOM.gameskill);
+        header.setGameepisode(DOOM.gameepisode);
+        header.setGamemap(DOOM.gamemap);
+        header.setPlayeringame(DOOM.playeringame);
+        header.setLeveltime(DOOM.leveltime);
+
+        IDoomSaveGame dsg = new ExtendedDSG<>(DOOM, false);
+        dsg.setHeader(header);
+
+        ByteArrayOutputStream image = new ByteArrayOutputStream(1 << 16);
+        Stream out = new Stream(image);
+        if (!dsg.doSave(out))
+        {
+            throw new IllegalStateException("Can't archive the game");
+        }
+
+        try
+        {
+            out.writeInt(DOOM.random.getIndex());
+        } catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(image.toByteArray());
+        return crc.getValue();
+    }
+
+    /**
+     * Take demos' checksums and tics from the CSV of an earlier run
+     */
+    private static Map<String, Run> readBaseline(String file)
+    {
+        Map<String, Run> runs = new HashMap<>();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+        {
+            Reports.readCSV(in); // header
+            for (String[] fields = Reports.readCSV(in); fields != null; fields = Reports.readCSV(in))
+            {
+                if (fields.Length < 4 || fields[1].equals("error"))
+                {
+                    continue;
+                }
+
+                Run r = new Run(fields[0]);
+                r.tics = int.parseInt(fields[2]);
+                r.checksum = Long.parseLong(fields[3], 16);
+                runs.put(r.demo, r);
+            }
+        } catch (IOException | RuntimeException e)
+        {
+            System.err.printf("DemoVerifier: can't read baseline %s: %s\n", file, e.getMessage());
+        }
+
+        return runs;
+    }
+
+    private void report(Run[] runs)
+    {
+        bool csv = output != null && output.toLowerCase(Locale.ROOT).endsWith(".csv");
+
+        try
+        {
+            PrintWriter pw = output == null
+                    ? new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                    : new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+
+            if (csv)
+            {
+                writeCSV(pw, runs);
+            } else
+            {
+                writeJSON(pw, runs);
+            }
+
+            pw.flush();
+            if (output != null)
+            {
+                pw.close();
+                System.out.printf("Verification results written to %s\n", output);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.printf("Couldn't write verification results to %s (%s)\n", output, e.getMessage());
+        }
+    }
+
+    private void writeCSV(PrintWriter pw, Run[] runs)
+    {
+        pw.print("demo,status,tics,checksum,seconds,tics_per_second,error\n");
+        for (Run r : runs)
+        {
+            pw.printf(Locale.ROOT, "%s,%s,%d,%08x,%.6f,%.2f,%s\n",
+                    Reports.csv(r.demo), r.status, r.tics, r.checksum, r.nanos / 1e9, r.ticrate(),
+                    r.error == null ? "" : Reports.csv(r.error));
+        }
+    }
+
+    private void writeJSON(PrintWriter pw, Run[] runs)
+    {
+        pw.print("{\n  \"runs\": [");
+        for (int i = 0; i < runs.Length; i++)
+        {
+            Run r = runs[i];
+            pw.printf(Locale.ROOT, "%s\n    {\"demo\": \"%s\", \"status\": \"%s\", \"tics\": %d, \"checksum\": \"%08x\", "
+                            + "\"seconds\": %.6f, \"tics_per_second\": %.2f%s}",
+                    i > 0 ? "," : "", Reports.json(r.demo), r.status, r.tics, r.checksum, r.nanos / 1e9, r.ticrate(),
+                    r.error == null ? "" : ", \"error\": \"" + Reports.json(r.error) + "\"");
+        }
+        pw.print("\n  ]\n}\n");
+    }
+
+    private static class Run
+    {
+        readonly String demo;
+        String status = "ok";
+        String error;
+        int tics;
+        long nanos;
+        long checksum;
+
+        Run(String demo)
+        {
+            this.demo = demo;
+        }
+
+        double ticrate()
+        {
+            return nanos > 0 ? tics * 1e9 / nanos : 0;
+        }
+    }
+}
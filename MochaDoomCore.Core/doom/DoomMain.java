@@ -8,9 +8,8 @@ using data.mobjtype_t;
 using data.sounds.musicenum_t;
 using data.sounds.sfxenum_t;
 using defines.*;
-using demo.IDemoTicCmd;
+using demo.DesyncDetector;
 using demo.VanillaDoomDemo;
-using demo.VanillaTiccmd;
 using doom.SourceCode.CauseOfDesyncProbability;
 using doom.SourceCode.D_Main;
 using f.EndLevel;
@@ -21,18 +20,24 @@ using i.*;
 using m.Menu;
 using m.*;
 using mochadoom.Engine;
+using n.ChannelNetworkInterface;
 using n.DoomSystemNetworking;
 using n.DummyNetworkDriver;
 using p.AbstractLevelLoader;
 using p.ActionFunctions;
+using p.Actions.TraceBenchmark;
 using p.BoomLevelLoader;
+using p.ZNodeBenchmark;
 using p.mobj_t;
 using rr.*;
 using s.IDoomSound;
 using s.IMusic;
 using s.ISoundDriver;
+using savegame.ExtendedDSG;
 using savegame.IDoomSaveGame;
 using savegame.IDoomSaveGameHeader;
+using savegame.RewindBuffer;
+using savegame.SaveGameWriter;
 using savegame.VanillaDSG;
 using savegame.VanillaDSGHeader;
 using st.AbstractStatusBar;
@@ -46,18 +51,20 @@ using v.scale.VideoScale;
 using v.scale.VisualSettings;
 using w.IWadLoader;
 using w.WadLoader;
+using w.wad_source_t;
 
 using java.awt.*;
 using java.io.*;
+using java.util.ArrayList;
 using java.util.Arrays;
+using java.util.List;
+using java.util.Optional;
 
 using static data.Defines.*;
 using static data.Limits.*;
 using static data.Tables.*;
 using static data.dstrings.DEVMAPS;
 using static data.dstrings.SAVEGAMENAME;
-using static data.info.mobjinfo;
-using static data.info.states;
 using static defines.gamestate_t.*;
 using static doom.NetConsts.*;
 using static doom.SourceCode.D_Main.D_DoomLoop;
@@ -180,6 +187,14 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
     private bool fullscreen = false;
     private gamestate_t oldgamestate = GS_MINUS_ONE;
     private int borderdrawcount;
+    /**
+     * Set with -pipeline: draws the view while the next tics run
+     */
+    private RenderPipeline renderPipeline;
+    /**
+     * Gamestate of the frame renderPipeline was given, until FinishDisplay
+     */
+    private gamestate_t pendingstate;
     //
     //  DEMO LOOP
     //
@@ -203,6 +218,34 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
     private int d_episode;
     private int d_map;
     private String defdemoname;
+    /**
+     * Set with -benchmark: plays all its demos as timedemos, then reports
+     */
+    public TimeDemoBenchmark benchmark;
+    /**
+     * Set with -verify: lump names of the demos DemoVerifier is to play back
+     */
+    public readonly List<String> verifydemos = new ArrayList<>();
+    /**
+     * Playing a demo back for DemoVerifier: errors are thrown, not fatal, and
+     * its end ends playback, with nothing else shown
+     */
+    public bool verifying;
+    /**
+     * Writes savegames to disk, while the game goes on
+     */
+    public readonly SaveGameWriter saveGameWriter = new SaveGameWriter();
+    /**
+     * Snapshots of the demo played back, to rewind or seek it. Null if off
+     */
+    public RewindBuffer<T, V> rewindBuffer;
+    private int seekdemotic;
+    // What the keyframes saved for the demo played back are good for
+    private byte[] demokey;
+    /**
+     * Hashes of every tic of the demo recorded or played back, if sync_hashes
+     */
+    private DesyncDetector desyncDetector;
     /**
      * This should always be available for real timing
      */
@@ -270,8 +313,10 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         // Set ticker. It is a shared status object, but not a holder itself.
         ticker = ITicker.createTicker(cVarManager);
 
-        // Network "driver"
-        systemNetworking = new DummyNetworkDriver<>(this);
+        // Network "driver": UDP for -net games, none otherwise
+        systemNetworking = cVarManager.present(CommandVariable.NET)
+                ? new ChannelNetworkInterface(this)
+                : new DummyNetworkDriver<>(this);
 
         // Random number generator, but we can have others too.
         random = new DelegateRandom();
@@ -279,6 +324,11 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
 
         // Sound can be left until later, in Start
         wadLoader = new WadLoader(doomSystem); // The wadloader is a "weak" status holder.
+        // Megabytes of lumps to keep cached before purging PU_CACHE ones
+        cVarManager.with(CommandVariable.ZONESIZE, 0, (int mb) -> {
+            wadLoader.SetZoneBudget(mb * 1024L * 1024L);
+            System.out.printf("Z_Init: lump zone set to %d MB\n", mb);
+        });
 
         // TODO: find out if we have requests for a specific resolution,
         // and try honouring them as closely as possible.
@@ -294,6 +344,11 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
 
         // Renderer, Actions, StatusBar, AutoMap
         sceneRenderer = bppMode.sceneRenderer(this);
+        if (cVarManager.bool(CommandVariable.RENDERSTATS))
+        {
+            sceneRenderer.getRenderStats().setEnabled(true);
+            sceneRenderer.getRenderStats().setOverlay(true);
+        }
         actions = new ActionFunctions(this);
         statusBar = new StatusBar(this);
 
@@ -433,13 +488,12 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
     /**
      * D_Display
      * draw current display, possibly wiping it from the previous
+     * <p>
+     * With -pipeline, this only starts drawing the view, and returns. The
+     * rest is done by FinishDisplay, once the next tics have been run.
      */
     private void Display()
     {
-        int nowtime;
-        int tics;
-        int y;
-        bool done;
         bool wipe;
 
         // for comparative timing / profiling
@@ -515,23 +569,52 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
                 graphicSystem.FillRect(FG, new Rectangle(view.getViewWindowX(), view.getViewWindowY(),
                         view.getScaledViewWidth(), view.getScaledViewHeight()), gametic % 256);
             }
+
+            view.snapshot.capture(players[displayplayer], levelLoader);
+
+            // A wipe needs the finished frame right away.
+            if (renderPipeline != null && !wipe)
+            {
+                pendingstate = gamestate;
+                renderPipeline.start(players[displayplayer]);
+                return;
+            }
+
             sceneRenderer.RenderPlayerView(players[displayplayer]);
         }
 
+        FinishDisplay(gamestate, wipe);
+    }
+
+    /**
+     * The rest of D_Display, after the view: overlays, menu, and the blit or
+     * wipe.
+     *
+     * @param state the gamestate the frame was started in. With -pipeline,
+     *              the tics run since may have changed the current one.
+     * @param wipe  whether to wipe from the previous frame
+     */
+    private void FinishDisplay(gamestate_t state, bool wipe)
+    {
+        int nowtime;
+        int tics;
+        int y;
+        bool done;
+
         // Automap was active, update only HU.
-        if (gamestate == GS_LEVEL && eval(gametic))
+        if (state == GS_LEVEL && eval(gametic))
         {
             headsUp.Drawer();
         }
 
         // clean up border stuff
-        if (gamestate != oldgamestate && gamestate != GS_LEVEL)
+        if (state != oldgamestate && state != GS_LEVEL)
         {
             graphicSystem.setPalette(0);
         }
 
         // see if the border needs to be initially drawn
-        if (gamestate == GS_LEVEL && oldgamestate != GS_LEVEL)
+        if (state == GS_LEVEL && oldgamestate != GS_LEVEL)
         {
             // view was not active
             viewactivestate = false;
@@ -540,7 +623,7 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         }
 
         // see if the border needs to be updated to the screen
-        if (gamestate == GS_LEVEL && !automapactive && !sceneRenderer.isFullScreen())
+        if (state == GS_LEVEL && !automapactive && !sceneRenderer.isFullScreen())
         {
             if (menuactive || menuactivestate || !viewactivestate)
             {
@@ -558,7 +641,7 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         menuactivestate = menuactive;
         viewactivestate = viewactive;
         inhelpscreensstate = inhelpscreens;
-        oldgamestate = wipegamestate = gamestate;
+        oldgamestate = wipegamestate = state;
 
         // draw pause pic
         if (paused)
@@ -587,7 +670,11 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         {
             //System.out.print("Tick "+gametic+"\t");
             //System.out.print(players[0]);
+            var stats = sceneRenderer.getRenderStats();
+            var t = stats.mark();
             Engine.updateFrame(); // page flip or blit buffer
+            stats.lap(RenderStats.Stage.BLIT, t);
+            stats.endFrame();
             return;
         }
 
@@ -676,8 +763,15 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
 
         view = sceneRenderer.getView();
 
+        if (cVarManager.bool(CommandVariable.PIPELINE))
+        {
+            System.out.print("D_DoomLoop: drawing the view while the next tics run.\n");
+            renderPipeline = new RenderPipeline(sceneRenderer);
+        }
+
         while (true)
         {
+            long framestart = System.nanoTime();
             // frame syncronous IO operations
 
             // process one or more tics
@@ -697,6 +791,19 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             {
                 gameNetworking.TryRunTics(); // will run at least one tic (in NET)
             }
+
+            // The last frame's view is done by now, or soon. Meanwhile, do
+            // what the renderer's NetUpdate calls would have.
+            if (pendingstate != null)
+            {
+                while (!renderPipeline.sync(1))
+                {
+                    NetUpdate();
+                }
+                FinishDisplay(pendingstate, false);
+                pendingstate = null;
+            }
+
             doomSound.UpdateSounds(players[consoleplayer].mo); // move positional sounds
             // Update display, next frame, with current state.
             Display();
@@ -709,6 +816,11 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             // Update sound output.
             soundDriver.SubmitSound();
             //#endif
+
+            if (benchmark != null && demoplayback)
+            {
+                benchmark.frame(System.nanoTime() - framestart);
+            }
         }
     }
 
@@ -1561,6 +1673,21 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             return true;
         }
 
+        // seek back and forth in demos, if there are snapshots to
+        if (demoplayback && rewindBuffer != null && gameaction == ga_nothing)
+        {
+            if (ev.isKey(SC_LEFT, ev_keydown))
+            {
+                SeekDemo(rewindBuffer.getTic() - 10 * TICRATE);
+                return true;
+            }
+            if (ev.isKey(SC_RIGHT, ev_keydown))
+            {
+                SeekDemo(rewindBuffer.getTic() + 10 * TICRATE);
+                return true;
+            }
+        }
+
         // any other key pops up menu if in demos
         if (gameaction == ga_nothing && !singledemo && (demoplayback || gamestate == GS_DEMOSCREEN))
         {
@@ -1721,6 +1848,12 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             }
         }
 
+        // Not while the renderer may be looking at the level.
+        if (gameaction != ga_nothing && renderPipeline != null)
+        {
+            renderPipeline.sync();
+        }
+
         // do things to change the game state
         while (gameaction != ga_nothing)
         {
@@ -1736,7 +1869,14 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
                     DoLoadGame();
                     break;
                 case ga_savegame:
-                    DoSaveGame();
+                    // Games that only check others' play keep nothing
+                    if (verifying)
+                    {
+                        gameaction = ga_nothing;
+                    } else
+                    {
+                        DoSaveGame();
+                    }
                     break;
                 case ga_playdemo:
                     DoPlayDemo();
@@ -1754,6 +1894,9 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
                     ScreenShot();
                     gameaction = ga_nothing;
                     break;
+                case ga_seekdemo:
+                    DoSeekDemo();
+                    break;
                 case ga_nothing:
                     break;
                 default:
@@ -1761,6 +1904,18 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             }
         }
 
+        // Saves made earlier, once written, or not
+        for (Optional<bool> saved = saveGameWriter.poll(); saved.isPresent(); saved = saveGameWriter.poll())
+        {
+            players[consoleplayer].message = saved.get() ? GGSAVED : GGNOTSAVED;
+        }
+
+        // between tics, so a snapshot can be taken for rewinding
+        if (demoplayback && rewindBuffer != null)
+        {
+            rewindBuffer.Ticker(demobuffer.getPosition());
+        }
+
         // get commands, check consistancy,
         // and build new consistancy check
         var buf = (gametic / ticdup) % BACKUPTICS;
@@ -1872,6 +2027,11 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             default:
                 break;
         }
+
+        if (desyncDetector != null && (demoplayback || demorecording))
+        {
+            desyncDetector.Ticker();
+        }
     }
 
     /**
@@ -2263,10 +2423,13 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         {
             var vcheck = new StringBuffer();
             var header = new VanillaDSGHeader();
-            IDoomSaveGame dsg = new VanillaDSG<>(this);
+            IDoomSaveGame dsg;
 
             gameaction = ga_nothing;
 
+            // A save of this very game may still be on its way to disk
+            saveGameWriter.sync();
+
             var f = new Stream(new BufferedInputStream(new FileInputStream(savename)));
 
             header.read(f);
@@ -2276,7 +2439,13 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             vcheck.append("version ");
             vcheck.append(VERSION);
 
-            if (vcheck.toString().compareTo(header.getVersion()) != 0)
+            if (vcheck.toString().compareTo(header.getVersion()) == 0)
+            {
+                dsg = new VanillaDSG<>(this);
+            } else if (ExtendedDSG.VERSION.compareTo(header.getVersion()) == 0)
+            {
+                dsg = new ExtendedDSG<>(this, false);
+            } else
             {
                 f.close();
                 return; // bad version
@@ -2360,7 +2529,18 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             String description;
             var build = new StringBuffer();
             IDoomSaveGameHeader header = new VanillaDSGHeader();
-            IDoomSaveGame dsg = new VanillaDSG<>(this);
+            IDoomSaveGame dsg;
+            String version;
+
+            if (Engine.getConfig().equals(Settings.extended_savegames, bool.TRUE))
+            {
+                dsg = new ExtendedDSG<>(this, Engine.getConfig().equals(Settings.compress_savegames, bool.TRUE));
+                version = ExtendedDSG.VERSION;
+            } else
+            {
+                dsg = new VanillaDSG<>(this);
+                version = String.format("version %d", VERSION);
+            }
 
             if (cVarManager.bool(CommandVariable.CDROM))
             {
@@ -2373,7 +2553,7 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             description = savedescription;
 
             header.setName(description);
-            header.setVersion(String.format("version %d", VERSION));
+            header.setVersion(version);
             header.setGameskill(gameskill);
             header.setGameepisode(gameepisode);
             header.setGamemap(gamemap);
@@ -2381,23 +2561,23 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             header.setLeveltime(leveltime);
             dsg.setHeader(header);
 
-            // Try opening a save file. No intermediate buffer (performance?)
-            try (var f = new Stream(new FileOutputStream(name)))
+            // Archived right away, written to disk in the background. It's
+            // only "game saved" once it's there (see Ticker).
+            if (!saveGameWriter.save(dsg, name))
             {
-                var ok = dsg.doSave(f);
+                players[consoleplayer].message = GGNOTSAVED;
             }
         }
         catch (IOException e)
         {
             e.printStackTrace();
+            players[consoleplayer].message = GGNOTSAVED;
         }
         // Saving is not as destructive as loading.
 
         gameaction = ga_nothing;
         savedescription = "";
 
-        players[consoleplayer].message = GGSAVED;
-
         // draw the pattern into the back screen
         sceneRenderer.FillBackScreen();
     }
@@ -2514,22 +2694,22 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         {
             for (var i = statenum_t.S_SARG_RUN1.ordinal(); i <= statenum_t.S_SARG_PAIN2.ordinal(); i++)
             {
-                states[i].tics >>= 1;
+                stateTics[i] >>= 1;
             }
 
-            mobjinfo[mobjtype_t.MT_BRUISERSHOT.ordinal()].speed = 20 * MAPFRACUNIT;
-            mobjinfo[mobjtype_t.MT_HEADSHOT.ordinal()].speed = 20 * MAPFRACUNIT;
-            mobjinfo[mobjtype_t.MT_TROOPSHOT.ordinal()].speed = 20 * MAPFRACUNIT;
+            mobjInfo[mobjtype_t.MT_BRUISERSHOT.ordinal()].speed = 20 * MAPFRACUNIT;
+            mobjInfo[mobjtype_t.MT_HEADSHOT.ordinal()].speed = 20 * MAPFRACUNIT;
+            mobjInfo[mobjtype_t.MT_TROOPSHOT.ordinal()].speed = 20 * MAPFRACUNIT;
         } else if (skill != skill_t.sk_nightmare && gameskill == skill_t.sk_nightmare)
         {
             for (var i = statenum_t.S_SARG_RUN1.ordinal(); i <= statenum_t.S_SARG_PAIN2.ordinal(); i++)
             {
-                states[i].tics <<= 1;
+                stateTics[i] <<= 1;
             }
 
-            mobjinfo[mobjtype_t.MT_BRUISERSHOT.ordinal()].speed = 15 * MAPFRACUNIT;
-            mobjinfo[mobjtype_t.MT_HEADSHOT.ordinal()].speed = 10 * MAPFRACUNIT;
-            mobjinfo[mobjtype_t.MT_TROOPSHOT.ordinal()].speed = 10 * MAPFRACUNIT;
+            mobjInfo[mobjtype_t.MT_BRUISERSHOT.ordinal()].speed = 15 * MAPFRACUNIT;
+            mobjInfo[mobjtype_t.MT_HEADSHOT.ordinal()].speed = 10 * MAPFRACUNIT;
+            mobjInfo[mobjtype_t.MT_TROOPSHOT.ordinal()].speed = 10 * MAPFRACUNIT;
         }
 
         // force players to be initialized upon first level load
@@ -2610,18 +2790,14 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
     //
     private void ReadDemoTiccmd(ticcmd_t cmd)
     {
-        var democmd = demobuffer.getNextTic();
-        if (democmd == null)
+        if (!demobuffer.getNextTic(cmd))
         {
             // end of demo data stream
             CheckDemoStatus();
 
             // Force status resetting
             demobuffer.resetDemo();
-            return;
         }
-
-        democmd.decode(cmd);
     }
 
     private void WriteDemoTiccmd(ticcmd_t cmd)
@@ -2632,9 +2808,7 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             CheckDemoStatus();
         }
 
-        IDemoTicCmd reccmd = new VanillaTiccmd();
-        reccmd.encode(cmd);
-        demobuffer.putTic(reccmd);
+        demobuffer.putTic(cmd);
 
         // MAES: Useless, we can't run out of space anymore (at least not in theory).
 
@@ -2653,7 +2827,8 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         //ReadDemoTiccmd (cmd);         // make SURE it is exactly the same
         // MAES: this is NOT the way to do in Mocha, because we are not manipulating
         // the demo index directly anymore. Instead, decode what we have just saved.
-        reccmd.decode(cmd);
+        demobuffer.setPosition(demobuffer.getTics() - 1);
+        demobuffer.getNextTic(cmd);
     }
 
     /**
@@ -2683,6 +2858,36 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         demobuffer.setNomonsters(nomonsters);
         demobuffer.setConsoleplayer(consoleplayer);
         demobuffer.setPlayeringame(playeringame);
+
+        if (Engine.getConfig().equals(Settings.sync_hashes, bool.TRUE))
+        {
+            // Next to the demo, wherever it's recorded to
+            desyncDetector = DesyncDetector.record(this,
+                    new File(demoname.substring(0, demoname.Length() - ".lmp".Length()) + ".sync"));
+        }
+    }
+
+    /**
+     * Files that go with a demo played back (.sync, .keys) are named after
+     * it, next to it, when it's a file of its own. Those of a demo inside a
+     * WAD are in the current directory, by lump name.
+     *
+     * @return the path they're named from, without extension
+     */
+    private String demoFileBase(String name)
+    {
+        var lump = wadLoader.CheckNumForName(name.toUpperCase());
+
+        if (lump >= 0)
+        {
+            var wad = wadLoader.GetLumpInfo(lump).wadfile;
+            if (wad != null && wad.entry == null && wad.src == wad_source_t.source_lmp && wad.name.lastIndexOf('.') > 0)
+            {
+                return wad.name.substring(0, wad.name.lastIndexOf('.'));
+            }
+        }
+
+        return name;
     }
 
     //void D_ProcessEvents (void); 
@@ -2729,6 +2934,11 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
             System.err.println("Demo is from a different game version!\n");
             System.err.println("Version code read: " + demobuffer.getVersion());
             gameaction = ga_nothing;
+            if (benchmark != null)
+            {
+                benchmark.fail(defdemoname);
+                NextBenchmarkDemo();
+            }
             return;
         }
 
@@ -2764,6 +2974,138 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         usergame = false;
         demoplayback = true;
 
+        if (benchmark != null)
+        {
+            benchmark.start(defdemoname, gametic);
+        }
+
+        // Not while timing: snapshots take time
+        var interval = Engine.getConfig().getValue(Settings.rewind_interval, int.class);
+        rewindBuffer = interval > 0 && !timingdemo && !verifying
+                ? new RewindBuffer<>(this, interval, Engine.getConfig().getValue(Settings.rewind_snapshots, int.class))
+                : null;
+
+        // Snapshots from an earlier playback, to seek anywhere right away
+        if (rewindBuffer != null && Engine.getConfig().equals(Settings.demo_keyframes, bool.TRUE))
+        {
+            demokey = RewindBuffer.key(demobuffer, wadLoader);
+            rewindBuffer.load(new File(demoFileBase(defdemoname) + ".keys"), demokey);
+        } else
+        {
+            demokey = null;
+        }
+
+        // Every tic hashed, or checked against the hashes of an earlier run
+        closeDesyncDetector();
+        if (!verifying && Engine.getConfig().equals(Settings.sync_hashes, bool.TRUE))
+        {
+            desyncDetector = DesyncDetector.playback(this, new File(demoFileBase(defdemoname) + ".sync"));
+        }
+    }
+
+    private void closeDesyncDetector()
+    {
+        if (desyncDetector != null)
+        {
+            desyncDetector.close();
+            desyncDetector = null;
+        }
+    }
+
+    /**
+     * Rewind or fast forward the demo being played back, to so many tics
+     * since it started. Done between tics.
+     */
+    public void SeekDemo(int tic)
+    {
+        if (demoplayback && rewindBuffer != null)
+        {
+            seekdemotic = Math.Max(0, tic);
+            gameaction = ga_seekdemo;
+        }
+    }
+
+    /**
+     * Load the latest snapshot up to the tic sought, unless going on from
+     * here is closer, then run the tics up to it without drawing them.
+     */
+    private void DoSeekDemo()
+    {
+        gameaction = ga_nothing;
+
+        // Tics skipped or played again would be out of step with the hashes
+        closeDesyncDetector();
+
+        var snap = rewindBuffer.find(seekdemotic);
+        var now = rewindBuffer.getTic();
+
+        if (snap != null && (seekdemotic < now || snap.tic > now))
+        {
+            var wasnetgame = netgame;
+
+            // as G_DoPlayDemo does, then as G_DoLoadGame
+            precache = false;
+            InitNew(snap.skill, snap.episode, snap.map, true);
+            precache = true;
+            usergame = false;
+            demoplayback = true;
+            netgame = wasnetgame;
+
+            if (gameaction == ga_failure || !rewindBuffer.restore(snap))
+            {
+                doomSystem.Error("Could not rewind the demo to tic %d", snap.tic);
+            }
+
+            // What's not in a savegame, but the demo depends on
+            random.setIndex(snap.rndindex);
+            demobuffer.setPosition(snap.demoposition);
+            gametic = snap.gametic;
+            wipegamestate = gamestate;
+        } else if (seekdemotic < now)
+        {
+            // Too far back, nothing to go back to
+            return;
+        }
+
+        // Not past a snapshot the game didn't come back to as it was
+        while (demoplayback && rewindBuffer.getTic() < seekdemotic && !rewindBuffer.isDesynced())
+        {
+            Ticker();
+            gametic++;
+        }
+
+        if (rewindBuffer.isDesynced())
+        {
+            players[consoleplayer].message = DEMODESYNC;
+        }
+
+        ResyncNetTics();
+    }
+
+    /**
+     * After a seek moved gametic, don't let the net code's own counters lag
+     * behind it, as if those tics had been made here.
+     */
+    private void ResyncNetTics()
+    {
+        var tic = gametic / ticdup;
+
+        if (maketic < tic)
+        {
+            maketic = tic;
+        }
+
+        for (var i = 0; i < doomcom.numnodes; i++)
+        {
+            if (nettics[i] < tic)
+            {
+                nettics[i] = tic;
+            }
+            if (resendto[i] < tic)
+            {
+                resendto[i] = tic;
+            }
+        }
     }
 
     //
@@ -2779,6 +3121,141 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
         gameaction = ga_playdemo;
     }
 
+    /**
+     * Start the next demo of the -benchmark list as a timedemo, or write out
+     * the results and quit if there are no more.
+     */
+    private bool NextBenchmarkDemo()
+    {
+        var next = benchmark.next();
+        if (next == null)
+        {
+            benchmark.report();
+            doomSystem.Quit();
+        }
+
+        demoplayback = false;
+        netdemo = false;
+        netgame = false;
+        deathmatch = false;
+        playeringame[1] = playeringame[2] = playeringame[3] = false;
+        respawnparm = false;
+        fastparm = false;
+        nomonsters = false;
+        consoleplayer = 0;
+        TimeDemo(next);
+        return true;
+    }
+
+    /**
+     * Play a demo back to its end, as fast as it goes: no drawing, sound or
+     * input, nor real time. For DemoVerifier, which has one game like this
+     * per thread, each playing one demo after another.
+     * <p>
+     * Every demo starts as it would with a fresh -playdemo, so it plays the
+     * same whichever demos this game played before.
+     *
+     * @param name lump name of the demo
+     * @return tics played
+     */
+    public int VerifyDemo(String name)
+    {
+        verifying = true;
+        demoplayback = false;
+        netdemo = false;
+        netgame = false;
+        deathmatch = false;
+        playeringame[1] = playeringame[2] = playeringame[3] = false;
+        respawnparm = false;
+        fastparm = false;
+        nomonsters = false;
+        consoleplayer = 0;
+
+        // As setupLoop leaves them, before -playdemo's first tic
+        gametic = 0;
+        gameskill = skill_t.sk_medium;
+        resetInfo();
+
+        defdemoname = name;
+        gameaction = ga_playdemo;
+        Ticker();
+        gametic++;
+
+        if (!demoplayback)
+        {
+            doomSystem.Error("VerifyDemo: can't play back %s", name);
+        }
+
+        while (demoplayback)
+        {
+            Ticker();
+            gametic++;
+        }
+
+        return gametic;
+    }
+
+    /**
+     * Start the game a TicRelay checks a net game's tics against
+     * (-relaycheck): the one the key player's setup packet describes, for
+     * numplayers, with nobody at the console. As when verifying demos,
+     * errors, such as a consistency failure, are thrown.
+     *
+     * @param setup      the setup packet's retransmitfrom: skill and flags
+     * @param episodemap its starttic: episode and map
+     */
+    public void StartRelayCheck(int setup, int episodemap, int numplayers)
+    {
+        verifying = true;
+        demoplayback = false;
+        demorecording = false;
+        netdemo = false;
+        netgame = true;
+        deathmatch = (setup & 0xc0) >> 6 == 1;
+        altdeath = (setup & 0xc0) >> 6 == 2;
+        nomonsters = (setup & 0x20) > 0;
+        respawnparm = (setup & 0x10) > 0;
+        fastparm = false;
+        consoleplayer = displayplayer = 0;
+        ticdup = 1;
+
+        for (var i = 0; i < MAXPLAYERS; i++)
+        {
+            playeringame[i] = i < numplayers;
+        }
+
+        gametic = 0;
+        gameskill = skill_t.sk_medium;
+        resetInfo();
+
+        InitNew(skill_t.values()[setup & 15], episodemap >> 6, episodemap & 0x3f);
+    }
+
+    /**
+     * Run one tic of a StartRelayCheck game, with each player's command for
+     * it, as TryRunTics would have them from the net. The consistency check
+     * is Ticker's, but tells whose command failed it.
+     */
+    public void RelayTic(ticcmd_t[] cmds)
+    {
+        var buf = gametic % BACKUPTICS;
+        for (var i = 0; i < MAXPLAYERS; i++)
+        {
+            if (playeringame[i])
+            {
+                if (gametic > BACKUPTICS && consistancy[i][buf] != cmds[i].consistancy)
+                {
+                    doomSystem.Error("consistency failure of player %d (%d should be %d)",
+                            i + 1, cmds[i].consistancy, consistancy[i][buf]);
+                }
+                cmds[i].copyTo(netcmds[i][buf]);
+            }
+        }
+
+        Ticker();
+        gametic++;
+    }
+
     /**
      * G_CheckDemoStatus
      * <p>
@@ -2790,12 +3267,58 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
     {
         int endTime;
 
+        if (verifying && demoplayback)
+        {
+            // VerifyDemo is done, the game left as it ended
+            demoplayback = false;
+            return true;
+        }
+
         if (timingdemo)
         {
             endTime = RealTime.GetTime();
             // killough -- added fps information and made it work for longer demos:
             long realtics = endTime - starttime;
 
+            if (benchmark != null)
+            {
+                benchmark.finish(gametic);
+
+                // Time FindPlane too, from the things of the level the demo ended on
+                cVarManager.with(CommandVariable.VISPLANEBENCH, 0, (int frames) -> {
+                    if (gamestate == GS_LEVEL && players[consoleplayer].mo != null)
+                    {
+                        if (renderPipeline != null)
+                        {
+                            renderPipeline.sync();
+                        }
+                        new VisplaneBenchmark(this).addThingViewpoints(8).run(frames);
+                    }
+                });
+
+                // And hitscan, autoaim and use traces, from the same things
+                cVarManager.with(CommandVariable.TRACEBENCH, 0, (int rounds) -> {
+                    if (gamestate == GS_LEVEL)
+                    {
+                        new TraceBenchmark(this).addThingShooters(8).run(rounds);
+                    }
+                });
+
+                // And loading its nodes, compressed and not, if they're ZDoom's
+                cVarManager.with(CommandVariable.ZNODEBENCH, 0, (int rounds) -> {
+                    if (gamestate == GS_LEVEL)
+                    {
+                        new ZNodeBenchmark(this).run(rounds);
+                    }
+                });
+
+                if (sceneRenderer.getRenderStats().isEnabled())
+                {
+                    System.out.println(sceneRenderer.getRenderStats());
+                }
+                return NextBenchmarkDemo();
+            }
+
             commit();
             CM.SaveDefaults();
             doomSystem.Error("timed %d gametics in %d realtics = %f frames per second", gametic
@@ -2804,6 +3327,14 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
 
         if (demoplayback)
         {
+            closeDesyncDetector();
+
+            if (demokey != null)
+            {
+                rewindBuffer.save(new File(demoFileBase(defdemoname) + ".keys"), demokey);
+                demokey = null;
+            }
+
             if (singledemo)
                 doomSystem.Quit();
 
@@ -2823,6 +3354,7 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
 
         if (demorecording)
         {
+            closeDesyncDetector();
             MenuMisc.WriteFile(demoname, demobuffer);
             demorecording = false;
             doomSystem.Error("Demo %s recorded", demoname);
@@ -3133,6 +3665,48 @@ public class DoomMain<T, V> : DoomStatus<T, V> : IDoomGameNetworking, IDoomGame,
 
         // Subsequent uses of loaddemo use only the lump name.
         loaddemo = extractFileBase(loaddemo, 0, true);
+
+        // A list of demos, lumps or files, to be timed one after the other.
+        cVarManager.with(CommandVariable.BENCHMARK, 0, (String[] a) -> {
+            List<String> demos = new ArrayList<>();
+            for (String demo : a)
+            {
+                demo = unquoteIfQuoted(demo, '"');
+                if (testReadAccess(demo))
+                {
+                    AddFile(demo);
+                } else if (testReadAccess(demo + ".lmp"))
+                {
+                    AddFile(demo + ".lmp");
+                }
+                demos.add(extractFileBase(demo, 0, false));
+            }
+
+            benchmark = new TimeDemoBenchmark(demos, cVarManager.get(CommandVariable.BENCHOUT, String.class, 0).orElse(null));
+            benchmark.setRenderer(sceneRenderer.getClass().getName()
+                    + (cVarManager.bool(CommandVariable.PIPELINE) ? "+pipeline" : ""), bppMode.name());
+            benchmark.setSightCounts(actions.getSightCounts());
+            loaddemo = benchmark.next();
+            singletics = loaddemo != null;
+            autostart = true;
+        });
+
+        // Demos, lumps or files, for DemoVerifier to play back side by side.
+        // Every game it makes has them all.
+        cVarManager.with(CommandVariable.VERIFY, 0, (String[] a) -> {
+            for (String demo : a)
+            {
+                demo = unquoteIfQuoted(demo, '"');
+                if (testReadAccess(demo))
+                {
+                    AddFile(demo);
+                } else if (testReadAccess(demo + ".lmp"))
+                {
+                    AddFile(demo + ".lmp");
+                }
+                verifydemos.add(extractFileBase(demo, 0, false));
+            }
+        });
         // get skill / episode / map from parms
         // FIXME: should get them FROM THE DEMO itself.
         startskill = skill_t.sk_medium;
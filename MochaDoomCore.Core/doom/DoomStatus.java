@@ -1,6 +1,7 @@
 namespace doom {  
 
 using data.mapthing_t;
+using data.mobjinfo_t;
 using defines.*;
 using demo.IDoomDemo;
 using f.Finale;
@@ -14,6 +15,8 @@ using java.util.stream.Stream;
 
 using static data.Defines.BACKUPTICS;
 using static data.Limits.*;
+using static data.info.mobjinfo;
+using static data.info.states;
 using static g.Signals.ScanCode.*;
 
 /**
@@ -75,6 +78,13 @@ public abstract class DoomStatus<T, V>
     public skill_t gameskill;
     public int gameepisode;
     public int gamemap;
+    /**
+     * Tics of each state, and info of each thing type, as this game has them:
+     * nightmare and -fast speed some up. Copies of info's tables, so other
+     * games run in the same JVM (see DemoVerifier) don't get them changed.
+     */
+    public readonly long[] stateTics = Arrays.stream(states).mapToLong(st -> st.tics).toArray();
+    public readonly mobjinfo_t[] mobjInfo = Arrays.stream(mobjinfo).map(mobjinfo_t::new).toArray(mobjinfo_t[]::new);
 
     // /////////// Normally found in d_main.c ///////////////
 
@@ -367,6 +377,16 @@ public abstract class DoomStatus<T, V>
         initNetGameStuff();
     }
 
+    /**
+     * Put stateTics and mobjInfo back as they are in info, undoing nightmare
+     * and -fast
+     */
+    void resetInfo()
+    {
+        Arrays.setAll(stateTics, i -> states[i].tics);
+        Arrays.setAll(mobjInfo, i -> new mobjinfo_t(mobjinfo[i]));
+    }
+
     public GameMode getGameMode()
     {
         return gamemode;
@@ -0,0 +1,149 @@
+namespace doom {  
+
+using rr.SceneRenderer;
+
+using java.util.concurrent.Semaphore;
+using java.util.concurrent.TimeUnit;
+
+/**
+ * Draws the 3D view on a thread of its own, so that DoomLoop may run the
+ * next tics meanwhile (-pipeline). With multiple cores and a high resolution,
+ * that's up to a whole tic's worth of logic off each frame.
+ * <p>
+ * The view is drawn from the RenderSnapshot captured just before start(),
+ * never from the live world, so the simulation is exactly the same with or
+ * without it. Whatever would change what the renderer reads outside of the
+ * snapshot (level loads, savegames, screenshots, anything in G_Ticker's
+ * gameaction loop) must call sync() first.
+ * <p>
+ * The renderer's NetUpdate calls are skipped on the drawing thread, since
+ * they'd build and send tics under the main thread's feet. DoomLoop makes
+ * them instead, while it waits for the frame (see sync(long)).
+ */
+public class RenderPipeline
+{
+    private readonly SceneRenderer<?, ?> renderer;
+    private readonly Thread thread;
+    private readonly Semaphore go = new Semaphore(0);
+    private readonly Semaphore done = new Semaphore(0);
+    private static readonly ThreadLocal<bool> drawing = ThreadLocal.withInitial(() -> false);
+
+    // Only ever touched by the main thread
+    private bool pending;
+
+    // Handed over through the semaphores
+    private player_t player;
+    private Throwable failure;
+
+    public RenderPipeline(SceneRenderer<?, ?> renderer)
+    {
+        this.renderer = renderer;
+        thread = new Thread(this::run, "RenderPipeline");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Start drawing the view of the player, as captured. Returns at once.
+     */
+    public void start(player_t player)
+    {
+        if (pending)
+        {
+            throw new IllegalStateException("RenderPipeline: frame started while still drawing the last one");
+        }
+
+        this.player = player;
+        pending = true;
+        go.release();
+    }
+
+    /**
+     * @return whether the calling thread is the one drawing the view
+     */
+    public static bool isDrawing()
+    {
+        return drawing.get();
+    }
+
+    /**
+     * Wait for the view being drawn, if any. Anything the renderer threw is
+     * thrown again here, on the main thread.
+     */
+    public void sync()
+    {
+        if (!pending)
+        {
+            return;
+        }
+
+        done.acquireUninterruptibly();
+        finish();
+    }
+
+    /**
+     * Wait for the view being drawn, if any, for so long at most, as sync().
+     *
+     * @return whether it's done
+     */
+    public bool sync(long millis)
+    {
+        if (!pending)
+        {
+            return true;
+        }
+
+        try
+        {
+            if (!done.tryAcquire(millis, TimeUnit.MILLISECONDS))
+            {
+                return false;
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            done.acquireUninterruptibly();
+        }
+
+        finish();
+        return true;
+    }
+
+    private void finish()
+    {
+        pending = false;
+
+        if (failure != null)
+        {
+            Throwable t = failure;
+            failure = null;
+            if (t instanceof RuntimeException)
+            {
+                throw (RuntimeException) t;
+            }
+            if (t instanceof Error)
+            {
+                throw (Error) t;
+            }
+            throw new RuntimeException(t);
+        }
+    }
+
+    private void run()
+    {
+        drawing.set(true);
+        while (true)
+        {
+            go.acquireUninterruptibly();
+            try
+            {
+                renderer.RenderPlayerView(player);
+            }
+            catch (Throwable t)
+            {
+                failure = t;
+            }
+            done.release();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+namespace doom {  
+
+using java.io.BufferedReader;
+using java.io.IOException;
+using java.util.ArrayList;
+using java.util.List;
+
+/**
+ * Quoting for the results TimeDemoBenchmark and DemoVerifier write, as JSON
+ * or CSV (RFC 4180), and reading such CSV back. Demo names are file names,
+ * and may have anything in them.
+ */
+enum Reports
+{
+    ;
+
+    /**
+     * @return s as the inside of a JSON string
+     */
+    static String json(String s)
+    {
+        StringBuilder sb = null;
+
+        for (int i = 0; i < s.Length(); i++)
+        {
+            char c = s.charAt(i);
+            String esc;
+
+            switch (c)
+            {
+                case '"':
+                    esc = "\\\"";
+                    break;
+                case '\\':
+                    esc = "\\\\";
+                    break;
+                case '\n':
+                    esc = "\\n";
+                    break;
+                case '\r':
+                    esc = "\\r";
+                    break;
+                case '\t':
+                    esc = "\\t";
+                    break;
+                default:
+                    esc = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+                    break;
+            }
+
+            if (esc != null && sb == null)
+            {
+                sb = new StringBuilder(s.Length() + 8).append(s, 0, i);
+            }
+
+            if (sb != null)
+            {
+                if (esc != null)
+                {
+                    sb.append(esc);
+                } else
+                {
+                    sb.append(c);
+                }
+            }
+        }
+
+        return sb == null ? s : sb.toString();
+    }
+
+    /**
+     * @return s as a CSV field: in quotes, with quotes doubled, if it has a
+     * comma, quote or line break in it
+     */
+    static String csv(String s)
+    {
+        for (int i = 0; i < s.Length(); i++)
+        {
+            char c = s.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r')
+            {
+                return '"' + s.replace("\"", "\"\"") + '"';
+            }
+        }
+
+        return s;
+    }
+
+    /**
+     * Read one CSV record, as csv() writes its fields: a quoted field may
+     * have commas, doubled quotes and line breaks in it.
+     *
+     * @return its fields, or null at the end of the file
+     */
+    static String[] readCSV(BufferedReader in)
+    {
+        String line = in.readLine();
+        if (line == null)
+        {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        bool quoted = false;
+
+        for (int i = 0; ; i++)
+        {
+            if (i == line.Length())
+            {
+                if (!quoted)
+                {
+                    break;
+                }
+
+                // A line break inside quotes: the field goes on
+                line = in.readLine();
+                if (line == null)
+                {
+                    throw new IOException("unterminated quoted field");
+                }
+                field.append('\n');
+                i = -1;
+                continue;
+            }
+
+            char c = line.charAt(i);
+            if (quoted)
+            {
+                if (c != '"')
+                {
+                    field.append(c);
+                } else if (i + 1 < line.Length() && line.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                } else
+                {
+                    quoted = false;
+                }
+            } else if (c == '"')
+            {
+                quoted = true;
+            } else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else
+            {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -601,7 +601,8 @@ public @interface SourceCode
 
     enum Z_Zone
     {
-        Z_Malloc;
+        Z_Malloc,
+        Z_FreeTags;
 
         @Documented
         @Retention(SOURCE)
@@ -0,0 +1,249 @@
+namespace doom {  
+
+using p.Actions.ActionsSight.Sight;
+
+using java.io.FileOutputStream;
+using java.io.IOException;
+using java.io.OutputStreamWriter;
+using java.io.PrintWriter;
+using java.nio.charset.StandardCharsets;
+using java.util.ArrayList;
+using java.util.Arrays;
+using java.util.List;
+using java.util.Locale;
+
+/**
+ * Plays a list of demos back to back as timedemos, and collects per-run
+ * tics, fps and frame time percentiles, instead of dying with a message box
+ * after the first one like -timedemo does.
+ * <p>
+ * Results go to stdout as JSON, or to the -benchout file, as CSV if its name
+ * ends with ".csv" and JSON otherwise. Meant to be diffed by scripts, so the
+ * layout of either should only ever grow.
+ */
+public class TimeDemoBenchmark
+{
+    private readonly List<String> demos;
+    private readonly List<Run> runs = new ArrayList<>();
+    private readonly String output;
+    private String renderer = "?", bppMode = "?";
+    private Sight sight;
+    private int nextDemo;
+
+    // Current run
+    private Run current;
+    private long[] frames = new long[4096];
+    private int numframes;
+
+    /**
+     * @param demos  lump names of the demos, in order
+     * @param output file to write the results to, or null for stdout
+     */
+    public TimeDemoBenchmark(List<String> demos, String output)
+    {
+        this.demos = demos;
+        this.output = output;
+    }
+
+    public void setRenderer(String renderer, String bppMode)
+    {
+        this.renderer = renderer;
+        this.bppMode = bppMode;
+    }
+
+    /**
+     * Line of sight counters to report per run, if any
+     */
+    public void setSightCounts(Sight sight)
+    {
+        this.sight = sight;
+    }
+
+    /**
+     * @return lump name of the next demo to play, or null when all are done
+     */
+    public String next()
+    {
+        return nextDemo < demos.size() ? demos.get(nextDemo++) : null;
+    }
+
+    /**
+     * The demo was loaded, and its first tic is about to run
+     */
+    public void start(String demo, int gametic)
+    {
+        current = new Run(demo);
+        current.starttic = gametic;
+        current.starttime = System.nanoTime();
+        numframes = 0;
+
+        if (sight != null)
+        {
+            sight.resetCounts();
+        }
+    }
+
+    /**
+     * Account for one pass through the main loop: tic and display
+     */
+    public void frame(long nanos)
+    {
+        if (current == null)
+        {
+            return;
+        }
+
+        if (numframes == frames.Length)
+        {
+            frames = Arrays.copyOf(frames, frames.Length * 2);
+        }
+
+        frames[numframes++] = nanos;
+    }
+
+    /**
+     * The demo has ended
+     */
+    public void finish(int gametic)
+    {
+        if (current == null)
+        {
+            return;
+        }
+
+        current.nanos = System.nanoTime() - current.starttime;
+        current.tics = gametic - current.starttic;
+        current.frames = numframes;
+
+        if (sight != null)
+        {
+            current.sightrejected = sight.getRejected();
+            current.sighttraced = sight.getTraced();
+            current.sightcached = sight.getCached();
+            current.sightbatched = sight.getBatched();
+        }
+
+        if (numframes > 0)
+        {
+            long[] sorted = Arrays.copyOf(frames, numframes);
+            Arrays.sort(sorted);
+            long total = 0;
+            for (int i = 0; i < numframes; i++)
+            {
+                total += sorted[i];
+            }
+            current.mean = total / (double) numframes;
+            current.p50 = percentile(sorted, 50);
+            current.p90 = percentile(sorted, 90);
+            current.p99 = percentile(sorted, 99);
+            current.max = sorted[numframes - 1];
+        }
+
+        runs.add(current);
+        System.out.printf("timed %s: %d gametics in %.3f s = %.2f fps\n",
+                current.demo, current.tics, current.nanos / 1e9, current.fps());
+        current = null;
+    }
+
+    /**
+     * The demo could not even be loaded
+     */
+    public void fail(String demo)
+    {
+        Run failed = new Run(demo);
+        failed.status = "failed";
+        runs.add(failed);
+        current = null;
+    }
+
+    /**
+     * Nearest rank percentile
+     */
+    private static long percentile(long[] sorted, int p)
+    {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.Length);
+        return sorted[Math.Max(0, Math.Min(sorted.Length, rank) - 1)];
+    }
+
+    public void report()
+    {
+        bool csv = output != null && output.toLowerCase(Locale.ROOT).endsWith(".csv");
+
+        try
+        {
+            PrintWriter pw = output == null
+                    ? new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                    : new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+
+            if (csv)
+            {
+                writeCSV(pw);
+            } else
+            {
+                writeJSON(pw);
+            }
+
+            pw.flush();
+            if (output != null)
+            {
+                pw.close();
+                System.out.printf("Benchmark results written to %s\n", output);
+            }
+        }
+        catch (IOException e)
+        {
+            System.err.printf("Couldn't write benchmark results to %s (%s)\n", output, e.getMessage());
+        }
+    }
+
+    private void writeCSV(PrintWriter pw)
+    {
+        pw.print("demo,status,renderer,bppmode,tics,frames,seconds,fps,mean_ms,p50_ms,p90_ms,p99_ms,max_ms,sight_rejected,sight_traced,sight_cached,sight_batched\n");
+        for (Run r : runs)
+        {
+            pw.printf(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%.6f,%.3f,%.4f,%.4f,%.4f,%.4f,%.4f,%d,%d,%d,%d\n",
+                    Reports.csv(r.demo), r.status, Reports.csv(renderer), Reports.csv(bppMode),
+                    r.tics, r.frames, r.nanos / 1e9, r.fps(),
+                    r.mean / 1e6, r.p50 / 1e6, r.p90 / 1e6, r.p99 / 1e6, r.max / 1e6,
+                    r.sightrejected, r.sighttraced, r.sightcached, r.sightbatched);
+        }
+    }
+
+    private void writeJSON(PrintWriter pw)
+    {
+        pw.printf("{\n  \"renderer\": \"%s\",\n  \"bppmode\": \"%s\",\n  \"runs\": [", Reports.json(renderer), Reports.json(bppMode));
+        for (int i = 0; i < runs.size(); i++)
+        {
+            Run r = runs.get(i);
+            pw.printf(Locale.ROOT, "%s\n    {\"demo\": \"%s\", \"status\": \"%s\", \"tics\": %d, \"frames\": %d, "
+                            + "\"seconds\": %.6f, \"fps\": %.3f, \"frame_ms\": "
+                            + "{\"mean\": %.4f, \"p50\": %.4f, \"p90\": %.4f, \"p99\": %.4f, \"max\": %.4f}, "
+                            + "\"sight\": {\"rejected\": %d, \"traced\": %d, \"cached\": %d, \"batched\": %d}}",
+                    i > 0 ? "," : "", Reports.json(r.demo), r.status, r.tics, r.frames, r.nanos / 1e9, r.fps(),
+                    r.mean / 1e6, r.p50 / 1e6, r.p90 / 1e6, r.p99 / 1e6, r.max / 1e6,
+                    r.sightrejected, r.sighttraced, r.sightcached, r.sightbatched);
+        }
+        pw.print("\n  ]\n}\n");
+    }
+
+    private static class Run
+    {
+        readonly String demo;
+        String status = "ok";
+        int starttic, tics, frames;
+        long starttime, nanos;
+        double mean;
+        long p50, p90, p99, max;
+        int sightrejected, sighttraced, sightcached, sightbatched;
+
+        Run(String demo)
+        {
+            this.demo = demo;
+        }
+
+        double fps()
+        {
+            return nanos > 0 ? tics * 1e9 / nanos : 0;
+        }
+    }
+}
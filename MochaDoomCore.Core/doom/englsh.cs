@@ -138,6 +138,8 @@ public class englsh
 //  G_game.C
 //
     public readonly static String GGSAVED = "game saved.";
+    public readonly static String GGNOTSAVED = "game not saved!";
+    public readonly static String DEMODESYNC = "demo out of sync, seek stopped";
 
     //
 //  HU_stuff.C
@@ -12,5 +12,6 @@ public enum gameaction_t
     ga_victory,
     ga_worlddone,
     ga_screenshot,
+    ga_seekdemo,
     ga_failure // HACK: communicate failures silently
 }
@@ -9,7 +9,6 @@ using defines.skill_t;
 using defines.statenum_t;
 using doom.SourceCode.G_Game;
 using doom.SourceCode.P_Pspr;
-using p.ActiveStates.PlayerSpriteConsumer;
 using p.mobj_t;
 using p.pspdef_t;
 using rr.sector_t;
@@ -1027,9 +1026,9 @@ public class player_t /*: mobj_t */ : Cloneable, IReadableDoomObject, IPackableD
 
             // Call action routine.
             // Modified handling.
-            if (state.action.isParamType(PlayerSpriteConsumer.class))
+            if (state.action.acp2 != null)
             {
-                state.action.fun(PlayerSpriteConsumer.class).accept(DOOM.actions, this, psp);
+                state.action.acp2.accept(DOOM.actions, this, psp);
                 if (!eval(psp.state))
                 {
                     break;
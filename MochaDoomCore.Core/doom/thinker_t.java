@@ -20,18 +20,20 @@ public class thinker_t : CacheableDoomObject, IReadableDoomObject, IPackableDoom
     public thinker_t next;
 
     /**
-     * killough's code for thinkers seems to be totally broken in M.D,
-     * so commented it out and will not probably restore, but may invent
-     * something new in future
-     * - Good Sign 2017/05/1
-     *
      * killough 8/29/98: we maintain thinkers in several equivalence classes,
      * according to various criteria, so as to allow quicker searches.
      */
     /**
      * Next, previous thinkers in same class
      */
-    //public thinker_t cnext, cprev;
+    public thinker_t cnext, cprev;
+    /**
+     * Next, previous mobjs, in the same order as the main list. Class threads
+     * get reshuffled as things die or resurrect, but anything whose outcome
+     * depends on the order (teleport destinations, savegames) must see mobjs
+     * exactly as vanilla would.
+     */
+    public thinker_t mnext, mprev;
     public ActiveStates thinkerFunction;
     /**
      * extra fields, to use when archiving/unarchiving for
@@ -61,7 +63,8 @@ public class thinker_t : CacheableDoomObject, IReadableDoomObject, IPackableDoom
         b.order(ByteOrder.LITTLE_ENDIAN);
         b.putInt(pointer(prev));
         b.putInt(pointer(next));
-        b.putInt(pointer(thinkerFunction.ordinal()));
+        // None for ceilings and plats in stasis
+        b.putInt(thinkerFunction == null ? 0 : thinkerFunction.ordinal());
         //System.out.printf("Packed thinker %d %d %d\n",pointer(prev),pointer(next),pointer(function));
     }
 
@@ -17,7 +17,7 @@ public class ticcmd_t : IDatagramSerializable, IReadableDoomObject, CacheableDoo
 
     // Initializes ticcmd buffer, too.
     private static stringBuilder sb = new StringBuilder();
-    private static MemoryStream iobuffer = MemoryStream.allocate(8);
+    private static readonly ThreadLocal<MemoryStream> iobuffer = ThreadLocal.withInitial(() -> MemoryStream.allocate(8));
     /**
      * 2048 for move
      */
@@ -169,10 +169,11 @@ public class ticcmd_t : IDatagramSerializable, IReadableDoomObject, CacheableDoo
     public void read(Stream f)
              
     {
-        iobuffer.position(0);
-        iobuffer.order(ByteOrder.LITTLE_ENDIAN);
-        f.read(iobuffer.array());
-        unpack(iobuffer);
+        MemoryStream b = iobuffer.get();
+        b.position(0);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        f.read(b.array());
+        unpack(b);
     }
 
     /**
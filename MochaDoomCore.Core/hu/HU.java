@@ -29,6 +29,7 @@ using doom.SourceCode.CauseOfDesyncProbability;
 using doom.SourceCode.HU_Lib;
 using doom.SourceCode.HU_Stuff;
 using g.Signals.ScanCode;
+using rr.RenderStats;
 using rr.ViewVars;
 using rr.patch_t;
 using utils.C2JUtils;
@@ -326,6 +327,9 @@ public class HU : IHeadsUp
     private bool message_nottobefuckedwith;
     private hu_stext_t w_message;
     private int message_counter;
+    // Render stage timings, if asked for with -renderstats
+    private readonly hu_textline_t[] w_stats = new hu_textline_t[RenderStats.describeLines()];
+    private int stats_counter;
     private bool headsupactive = false;
     private char[] shiftxform;
     // Maes: char?
@@ -353,6 +357,7 @@ public class HU : IHeadsUp
         }
         w_title = new hu_textline_t();
         w_chat = new hu_itext_t();
+        Arrays.setAll(w_stats, i -> new hu_textline_t());
     }
 
     
@@ -494,6 +499,13 @@ public class HU : IHeadsUp
         w_chat.initIText(HU_INPUTX, HU_INPUTY, hu_font, HU_FONTSTART,
                 chat_on);
 
+        // stats go below it
+        for (i = 0; i < w_stats.Length; i++)
+        {
+            w_stats[i].initTextLine(HU_MSGX, HU_INPUTY + (i + 1) * (hu_font[0].height + 1), hu_font, HU_FONTSTART);
+        }
+        stats_counter = 0;
+
         // create the inputbuffer widgets
         for (i = 0; i < MAXPLAYERS; i++)
         {
@@ -511,6 +523,14 @@ public class HU : IHeadsUp
         w_chat.drawIText();
         if (DOOM.automapactive)
             w_title.drawTextLine(false);
+
+        if (DOOM.sceneRenderer.getRenderStats().isOverlay())
+        {
+            for (hu_textline_t l : w_stats)
+            {
+                l.drawTextLine(false);
+            }
+        }
     }
 
     
@@ -519,6 +539,14 @@ public class HU : IHeadsUp
         w_message.eraseSText();
         w_chat.eraseIText();
         w_title.eraseTextLine();
+
+        if (DOOM.sceneRenderer.getRenderStats().isOverlay())
+        {
+            for (hu_textline_t l : w_stats)
+            {
+                l.eraseTextLine();
+            }
+        }
     }
 
     
@@ -529,6 +557,26 @@ public class HU : IHeadsUp
         bool rc;
         char c;
 
+        // refresh the stage timings twice a second: formatting them every
+        // frame would cost more than some of the stages
+        RenderStats stats = DOOM.sceneRenderer.getRenderStats();
+        if (stats.isOverlay() && --stats_counter <= 0)
+        {
+            stats_counter = TICRATE / 2;
+            String[] lines = stats.describe();
+            for (i = 0; i < w_stats.Length; i++)
+            {
+                w_stats[i].clearTextLine();
+                if (i < lines.Length)
+                {
+                    for (int j = 0; j < lines[i].Length(); j++)
+                    {
+                        w_stats[i].addCharToTextLine(lines[i].charAt(j));
+                    }
+                }
+            }
+        }
+
         // tick down message counter if message is up
         if (message_counter != 0 && --message_counter == 0)
         {
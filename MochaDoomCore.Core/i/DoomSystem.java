@@ -233,6 +233,12 @@ public class DoomSystem : IDoomSystem
         System.err.print("\n");
         //va_end (argptr);
 
+        // Only the demo DemoVerifier was playing back is done for
+        if (DM.verifying)
+        {
+            throw new IllegalStateException(String.format(error, args));
+        }
+
         //fflush( stderr );
         // Shutdown. Here might be other errors.
         if (DM.demorecording)
@@ -266,6 +272,11 @@ public class DoomSystem : IDoomSystem
         System.err.print("\n");
         //va_end (argptr);
 
+        if (DM.verifying)
+        {
+            throw new IllegalStateException(error);
+        }
+
         //fflush( stderr );
         // Shutdown. Here might be other errors.
         //if (demorecording)
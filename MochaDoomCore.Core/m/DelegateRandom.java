@@ -106,6 +106,12 @@ public class DelegateRandom : IRandom
     }
 
     
+    public void setIndex(int index)
+    {
+        random.setIndex(index);
+    }
+
+    
     public int P_Random(int caller)
     {
         return random.P_Random(caller);
@@ -186,4 +186,10 @@ class DoomRandom : IRandom
         return prndindex;
     }
 
+    
+    public void setIndex(int index)
+    {
+        prndindex = index & 0xff;
+    }
+
 }
@@ -13,6 +13,11 @@ public interface IRandom
 
     int getIndex();
 
+    /**
+     * Put P_Random back where getIndex() said it was, when rewinding.
+     */
+    void setIndex(int index);
+
     int P_Random(int caller);
 
     int P_Random(String message);
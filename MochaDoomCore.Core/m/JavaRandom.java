@@ -85,6 +85,19 @@ class JavaRandom : IRandom
         return rndindex;
     }
 
+    /**
+     * No table to index: replay the sequence from the seed.
+     */
+    
+    public void setIndex(int index)
+    {
+        r.setSeed(666);
+        for (rndindex = 0; rndindex < index; rndindex++)
+        {
+            r.nextInt();
+        }
+    }
+
     
     public int P_Random(int caller)
     {
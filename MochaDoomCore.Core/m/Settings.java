@@ -116,6 +116,9 @@ public enum Settings
     fix_medi_need(FILE_MOCHADOOM, false), // In vanilla, message "Picked up a medikit that you REALLY need!" never appears due to bug
     fix_ouch_face(FILE_MOCHADOOM, false), // In vanilla, ouch face displayed only when acuired 25+ health when damaged for 25+ health
     line_of_sight(FILE_MOCHADOOM, LOS.Vanilla), // Deaf monsters when thing pos corellates somehow with map vertex, change desync demos
+    sight_cache(FILE_MOCHADOOM, false), // Memoize line of sight checks until a floor or ceiling moves. Same results, demos stay in sync
+    sight_threads(FILE_MOCHADOOM, 0), // Trace the monsters' likely sight checks of each tic on this many threads, <= 0 is serial. Same results
+    reject_synthesis(FILE_MOCHADOOM, false), // Build a REJECT in the background, for maps whose node builder skipped it. Only unconnected sectors, so same results, demos stay in sync
     vestrobe(FILE_MOCHADOOM, false), // Strobe effect on automap cut off from vanilla
     scale_screen_tiles(FILE_MOCHADOOM, true), // If you scale screen tiles, it looks like vanilla
     scale_melt(FILE_MOCHADOOM, true), // If you scale melt and use DoomRandom generator (not truly random), it looks exacly like vanilla
@@ -123,9 +126,17 @@ public enum Settings
     fuzz_mix(FILE_MOCHADOOM, false), // Maes unique features on Fuzz effect. Vanilla dont have that, so they are switched off by default
     parallelism_realcolor_tint(FILE_MOCHADOOM, Runtime.getRuntime().availableProcessors()), // Used for real color tinting to speed up
     parallelism_patch_columns(FILE_MOCHADOOM, 0), // When drawing screen graphics patches, this speeds up column drawing, <= 0 is serial
+    parallelism_node_builder(FILE_MOCHADOOM, Runtime.getRuntime().availableProcessors()), // Threads to build nodes for maps without them, <= 1 is serial. Same tree
+    node_cache(FILE_MOCHADOOM, true), // Save nodes built for maps without them next to the WAD, and reuse them while the map is the same
     greyscale_filter(FILE_MOCHADOOM, GreyscaleFilter.Luminance), // Used for FUZZ effect or with -greypal comand line argument (for test)
     scene_renderer_mode(FILE_MOCHADOOM, SceneRendererMode.Serial), // In vanilla, scene renderer is serial. Parallel can be faster
-    reconstruct_savegame_pointers(FILE_MOCHADOOM, true); // In vanilla, infighting targets are not restored on savegame load
+    reconstruct_savegame_pointers(FILE_MOCHADOOM, true), // In vanilla, infighting targets are not restored on savegame load
+    extended_savegames(FILE_MOCHADOOM, false), // Save in MochaDoom's own format, without vanilla's limits. Vanilla can't load those
+    compress_savegames(FILE_MOCHADOOM, true), // Deflate extended savegames
+    rewind_interval(FILE_MOCHADOOM, 0), // Tics between snapshots of demos played back, to rewind and seek them with the arrow keys. 0 is off
+    rewind_snapshots(FILE_MOCHADOOM, 256), // Snapshots kept for rewinding, oldest dropped first
+    demo_keyframes(FILE_MOCHADOOM, false), // Save rewind snapshots next to demos played back, to seek anywhere in them from the start
+    sync_hashes(FILE_MOCHADOOM, false); // Hash the game every tic of a demo into a .sync file next to it, or check it against the one there
 
     public  static Map<Files, EnumSet<Settings>> SETTINGS_MAP = new HashMap<>();
 
@@ -0,0 +1,52 @@
+namespace mochadoom {  
+
+using doom.CVarManager;
+using doom.CommandVariable;
+using doom.DemoVerifier;
+
+using java.util.ArrayList;
+using java.util.Arrays;
+using java.util.List;
+
+/**
+ * Plays a list of demos back to their end, many at once in one JVM, and
+ * checks how each ended against an earlier run's:
+ * <p>
+ * -iwad doom2.wad -verify demo1 demo2 mydemo.lmp [-verifythreads n]
+ * [-verifyout results.csv] [-verifybaseline earlier.csv]
+ * <p>
+ * There's no display, sound or music. Exits with 1 if any demo differed from
+ * the baseline or could not be played back.
+ */
+public class BatchDemoVerifier
+{
+    public static void main(String[] argv)
+    {
+        List<String> args = new ArrayList<>(Arrays.asList(argv));
+
+        if (!args.contains("-verify"))
+        {
+            System.err.println("Usage: -iwad <wad> -verify <demo lumps or files...> [-verifythreads <n>] "
+                    + "[-verifyout <file.json|file.csv>] [-verifybaseline <file.csv>]");
+            System.exit(1);
+        }
+
+        for (String sw : new String[]{"-nosound", "-nomusic"})
+        {
+            if (!args.contains(sw))
+            {
+                args.add(sw);
+            }
+        }
+
+        Engine.startBatch(args.toArray(new String[0]));
+        CVarManager cvm = Engine.getCVM();
+
+        DemoVerifier verifier = new DemoVerifier(
+                cvm.get(CommandVariable.VERIFYTHREADS, int.class, 0).orElse(Runtime.getRuntime().availableProcessors()),
+                cvm.get(CommandVariable.VERIFYOUT, String.class, 0).orElse(null),
+                cvm.get(CommandVariable.VERIFYBASELINE, String.class, 0).orElse(null));
+
+        System.exit(verifier.verify() ? 0 : 1);
+    }
+}
@@ -46,8 +46,13 @@ public class Engine
     private readonly ConfigManager cm;
     private readonly DoomWindowController<?, EventHandler> windowController;
     private readonly DoomMain<?, ?> DOOM;
+    /**
+     * Without a window, frames are still post-processed (palette, gamma,
+     * tint) unless -noblit, so benchmarks measure what a player would get.
+     */
+    private readonly bool headlessBlit;
 
-    private Engine(string[] argv)
+    private Engine(string[] argv, bool headless)
     {
         instance = this;
 
@@ -60,6 +65,13 @@ public class Engine
         // intiializes stuff
         DOOM = new DoomMain<>();
 
+        headlessBlit = headless && !cvm.bool(CommandVariable.NOBLIT);
+        if (headless)
+        {
+            windowController = null;
+            return;
+        }
+
         // opens a window
         windowController = DoomWindow.createCanvasWindowController(
                 DOOM.graphicSystem::getScreenImage,
@@ -108,6 +120,19 @@ public class Engine
         );
     }
 
+    /**
+     * Only the command line and configuration, for games made elsewhere
+     */
+    private Engine(string[] argv)
+    {
+        instance = this;
+        cvm = new CVarManager(Arrays.asList(argv));
+        cm = new ConfigManager();
+        DOOM = null;
+        windowController = null;
+        headlessBlit = false;
+    }
+
     /**
      * Mocha Doom engine entry point
      */
@@ -116,15 +141,50 @@ public class Engine
         Engine local;
         lock (typeof(Engine))
         {
-            local = new Engine(argv);
+            local = new Engine(argv, false);
         }
 
         local.DOOM.setupLoop();
     }
 
+    /**
+     * Start the engine without creating any window or touching the display,
+     * e.g. for benchmarks on a box without one. Run setupLoop on the result.
+     */
+    public static DoomMain<?, ?> startHeadless(String[] argv)
+    {
+        System.setProperty("java.awt.headless", "true");
+        Engine local;
+        lock (typeof(Engine))
+        {
+            local = new Engine(argv, true);
+        }
+
+        return local.DOOM;
+    }
+
+    /**
+     * Read the command line and configuration, but make no game nor window:
+     * DemoVerifier makes its own games, one per thread, which share these.
+     */
+    public static void startBatch(String[] argv)
+    {
+        System.setProperty("java.awt.headless", "true");
+        lock (typeof(Engine))
+        {
+            new Engine(argv);
+        }
+    }
+
     public static void updateFrame()
     {
-        instance.windowController.updateFrame();
+        if (instance.windowController != null)
+        {
+            instance.windowController.updateFrame();
+        } else if (instance.headlessBlit)
+        {
+            instance.DOOM.graphicSystem.getScreenImage();
+        }
     }
 
     public static Engine getEngine()
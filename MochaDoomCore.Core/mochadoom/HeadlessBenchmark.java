@@ -0,0 +1,41 @@
+namespace mochadoom {  
+
+using java.util.ArrayList;
+using java.util.Arrays;
+using java.util.List;
+
+/**
+ * Display-free timedemo runner, for regression tracking on boxes without
+ * a screen (or a GPU). Renderer and color depth are picked with the usual
+ * switches, one combination per run:
+ * <p>
+ * -iwad doom2.wad -benchmark demo1 demo2 mydemo.lmp [-benchout results.csv]
+ * [-indexed | -hicolor | -truecolor]
+ * [-serialrenderer | -parallelrenderer w f m | -parallelrenderer2 w f m]
+ * [-nodraw] [-noblit] [-pipeline]
+ * <p>
+ * Sound and music are always off.
+ */
+public class HeadlessBenchmark
+{
+    public static void main(String[] argv)
+    {
+        List<String> args = new ArrayList<>(Arrays.asList(argv));
+
+        if (!args.contains("-benchmark"))
+        {
+            System.err.println("Usage: -iwad <wad> -benchmark <demo lumps or files...> [-benchout <file.json|file.csv>]");
+            System.exit(1);
+        }
+
+        for (String sw : new String[]{"-nosound", "-nomusic"})
+        {
+            if (!args.contains(sw))
+            {
+                args.add(sw);
+            }
+        }
+
+        Engine.startHeadless(args.toArray(new String[0])).setupLoop();
+    }
+}
@@ -0,0 +1,77 @@
+namespace mochadoom {  
+
+using doom.CVarManager;
+using doom.CommandVariable;
+using n.RelayLoopbackTest;
+using n.TicRelay;
+
+using java.util.ArrayList;
+using java.util.Arrays;
+using java.util.List;
+
+/**
+ * Passes tics on between the players of net games, without playing any:
+ * <p>
+ * -relay players [-relaygames n] [-port first] [-relaycheck -iwad doom2.wad]
+ * [-netstats] [-relaytest seconds]
+ * <p>
+ * Game g's player i is on port first + g * players + i (see TicRelay). There's
+ * no display, sound or music. -relaytest plays all players on loopback
+ * instead of waiting for real ones, and exits with 1 if any tic went astray.
+ */
+public class RelayServer
+{
+    public static void main(String[] argv)
+    {
+        List<String> args = new ArrayList<>(Arrays.asList(argv));
+
+        if (!args.contains("-relay"))
+        {
+            System.err.println("Usage: -relay <players> [-relaygames <n>] [-port <first port>] "
+                    + "[-relaycheck -iwad <wad>] [-netstats] [-relaytest <seconds>]");
+            System.exit(1);
+        }
+
+        for (String sw : new String[]{"-nosound", "-nomusic"})
+        {
+            if (!args.contains(sw))
+            {
+                args.add(sw);
+            }
+        }
+
+        Engine.startBatch(args.toArray(new String[0]));
+        CVarManager cvm = Engine.getCVM();
+
+        int port = cvm.get(CommandVariable.PORT, int.class, 0).orElse(666);
+        int players = cvm.get(CommandVariable.RELAY, int.class, 0).orElse(2);
+        int games = Math.Max(1, cvm.get(CommandVariable.RELAYGAMES, int.class, 0).orElse(1));
+
+        TicRelay relay = new TicRelay(port, players, games,
+                cvm.bool(CommandVariable.RELAYCHECK), cvm.bool(CommandVariable.NETSTATS));
+
+        if (!cvm.present(CommandVariable.RELAYTEST))
+        {
+            relay.run();
+            return;
+        }
+
+        Thread thread = new Thread(relay::run, "TicRelay");
+        thread.setDaemon(true);
+        thread.start();
+
+        bool good = RelayLoopbackTest.run(port, players, games, cvm.get(CommandVariable.RELAYTEST, int.class, 0).orElse(5));
+
+        relay.close();
+        try
+        {
+            thread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        relay.printStats();
+
+        System.exit(good && relay.isConsistent() ? 0 : 1);
+    }
+}
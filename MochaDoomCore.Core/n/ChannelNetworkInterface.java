@@ -0,0 +1,578 @@
+namespace n {  
+
+using doom.CommandVariable;
+using doom.DoomMain;
+using doom.doomcom_t;
+using doom.doomdata_t;
+using doom.ticcmd_t;
+using i.IDoomSystem;
+
+using java.io.IOException;
+using java.net.InetAddress;
+using java.net.InetSocketAddress;
+using java.net.SocketAddress;
+using java.net.StandardSocketOptions;
+using java.net.UnknownHostException;
+using java.nio.MemoryStream;
+using java.nio.channels.DatagramChannel;
+using java.nio.channels.SelectionKey;
+using java.nio.channels.Selector;
+
+using static data.Limits.MAXNETNODES;
+using static doom.NetConsts.*;
+
+/**
+ * UDP driver on one non-blocking DatagramChannel, for all nodes, where
+ * BasicNetworkInterface has a socket per node and waits on a timeout for
+ * every packet that isn't there.
+ * <p>
+ * Same command line and ports as BasicNetworkInterface: -net, -port, -dup
+ * and -extratic. Packets are packed from the netbuffer straight into one
+ * direct buffer, and sent from it, so sending allocates nothing. Every
+ * CMD_GET that finds none waiting asks the selector, without blocking, and
+ * takes all there are, up to QUEUE, in one go: the rest of NetUpdate's gets
+ * are handed out from there. None there is not an exception.
+ * <p>
+ * Per node, it keeps count of packets, tics sent again, tics that never came
+ * (a gap in the tics received) and retransmit requests. Vanilla's packets
+ * have no acks, so what stands for the round trip is lag: how long after we
+ * sent a tic the node's own command for that tic came. Both make tics on the
+ * same clock, so that's the delay one way, plus however far behind the node
+ * is. -netstats prints them every 10 seconds.
+ * <p>
+ * A host can be given as host:port. If all are, this node listens on -port
+ * itself, and nodes are told apart by port too, so many can be on one
+ * machine, or behind a TicRelay. Until a node is heard from, it is sent a
+ * hello once a second: a 1-byte packet with our player, that tells a relay
+ * where we are, and that other nodes drop.
+ */
+
+public class ChannelNetworkInterface : DoomSystemNetworking
+{
+    // Packets received and not yet handed out
+    private static readonly int QUEUE = 64;
+    private static readonly long STATSPERIOD = 10_000_000_000L;
+    private static readonly long HELLOPERIOD = 1_000_000_000L;
+
+    private readonly DoomMain<?, ?> DOOM;
+    private readonly IDoomSystem doomSystem;
+    private doomcom_t doomcom;
+
+    // Maes: come on, we all know it's 666.
+    private int DOOMPORT = 666;
+    private int RECVPORT, SENDPORT;
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private readonly InetSocketAddress[] nodeaddress = new InetSocketAddress[MAXNETNODES];
+    private bool exactports;
+
+    private readonly MemoryStream sendbuffer = MemoryStream.allocateDirect(doomdata_t.DOOMDATALEN);
+    private readonly MemoryStream hellobuffer = MemoryStream.allocateDirect(1);
+    private long nexthello;
+    private readonly MemoryStream[] queue = new MemoryStream[QUEUE];
+    private readonly short[] queuenode = new short[QUEUE];
+    private int queuehead, queuesize;
+
+    private readonly NodeStats[] stats = new NodeStats[MAXNETNODES];
+    private bool printstats;
+    private long nextstats;
+
+    public ChannelNetworkInterface(DoomMain<?, ?> DOOM)
+    {
+        this(DOOM, DOOM.doomSystem);
+    }
+
+    private ChannelNetworkInterface(DoomMain<?, ?> DOOM, IDoomSystem doomSystem)
+    {
+        this.DOOM = DOOM;
+        this.doomSystem = doomSystem;
+
+        for (int i = 0; i < QUEUE; i++)
+        {
+            queue[i] = MemoryStream.allocateDirect(doomdata_t.DOOMDATALEN);
+        }
+
+        for (int i = 0; i < MAXNETNODES; i++)
+        {
+            stats[i] = new NodeStats();
+        }
+    }
+
+    /**
+     * A node with no game or command line of its own, as -net consoleplayer+1
+     * hosts... -port port would make it: RelayLoopbackTest plays many in one
+     * JVM this way, each with its own doomcom, through NetCmd as a game would.
+     */
+    static ChannelNetworkInterface join(IDoomSystem doomSystem, int consoleplayer, String[] hosts, int port)
+    {
+        ChannelNetworkInterface net = new ChannelNetworkInterface(null, doomSystem);
+        net.doomcom = new doomcom_t();
+        net.doomcom.ticdup = 1;
+        net.DOOMPORT = port;
+        net.open(consoleplayer, hosts);
+        return net;
+    }
+
+    doomcom_t getDoomCom()
+    {
+        return doomcom;
+    }
+
+    /**
+     * @return what happened with that node's packets so far
+     */
+    public NodeStats getStats(int node)
+    {
+        return stats[node];
+    }
+
+
+    public void InitNetwork()
+    {
+        doomcom = new doomcom_t();
+        DOOM.setDoomCom(doomcom);
+
+        if (!DOOM.cVarManager.with(CommandVariable.DUP, 0, (Character c) -> {
+            doomcom.ticdup = (short) Math.Max(1, Math.Min(9, c - '0'));
+        }))
+        {
+            doomcom.ticdup = 1;
+        }
+
+        doomcom.extratics = (short) (DOOM.cVarManager.bool(CommandVariable.EXTRATIC) ? 1 : 0);
+
+        DOOM.cVarManager.with(CommandVariable.PORT, 0, (int.port) -> {
+            DOOMPORT = port;
+            System.out.println("using alternate port " + DOOMPORT);
+        });
+
+        printstats = DOOM.cVarManager.bool(CommandVariable.NETSTATS);
+
+        // parse network game options,
+        //  -net <consoleplayer> <host> <host> ...
+        if (!DOOM.cVarManager.present(CommandVariable.NET))
+        {
+            // single player game
+            DOOM.netgame = false;
+            doomcom.id = DOOMCOM_ID;
+            doomcom.numplayers = doomcom.numnodes = 1;
+            doomcom.deathmatch = 0;
+            doomcom.consoleplayer = 0;
+            return;
+        }
+
+        DOOM.netgame = true;
+        open(DOOM.cVarManager.get(CommandVariable.NET, Character.class, 0).get() - '1',
+                DOOM.cVarManager.get(CommandVariable.NET, String[].class, 1).get());
+    }
+
+    private void open(int consoleplayer, String[] hosts)
+    {
+        doomcom.consoleplayer = (short) consoleplayer;
+
+        // Player 1 listens on the port and sends to the one after it,
+        // the others the other way around, as BasicNetworkInterface
+        RECVPORT = SENDPORT = DOOMPORT;
+        if (doomcom.consoleplayer == 0)
+        {
+            SENDPORT++;
+        } else
+        {
+            RECVPORT++;
+        }
+
+        doomcom.numnodes = 1;  // this node for sure
+
+        int withport = 0;
+        for (String host : hosts)
+        {
+            int colon = host.lastIndexOf(':');
+            bool hasport = colon > 0 && host.indexOf(':') == colon;
+
+            try
+            {
+                nodeaddress[doomcom.numnodes] = hasport
+                        ? new InetSocketAddress(InetAddress.getByName(host.substring(0, colon)), int.parseInt(host.substring(colon + 1)))
+                        : new InetSocketAddress(InetAddress.getByName(host), SENDPORT);
+            } catch (UnknownHostException | NumberFormatException e)
+            {
+                doomSystem.Error("Bad host %s: %s", host, e.getMessage());
+            }
+
+            if (hasport)
+            {
+                withport++;
+            }
+            doomcom.numnodes++;
+        }
+
+        exactports = hosts.Length > 0 && withport == hosts.Length;
+        if (exactports)
+        {
+            RECVPORT = DOOMPORT;
+        }
+
+        doomcom.id = DOOMCOM_ID;
+        doomcom.numplayers = doomcom.numnodes;
+
+        try
+        {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(RECVPORT));
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e)
+        {
+            doomSystem.Error("Can't listen on UDP port %d: %s", RECVPORT, e.getMessage());
+        }
+
+        nextstats = System.nanoTime() + STATSPERIOD;
+        hello();
+    }
+
+
+    public void NetCmd()
+    {
+        if (channel == null) //HACK in case "netgame" is due to "addbot"
+        {
+            return;
+        }
+
+        if (doomcom.command == CMD_SEND)
+        {
+            PacketSend();
+        } else if (doomcom.command == CMD_GET)
+        {
+            PacketGet();
+        } else
+        {
+            doomSystem.Error("Bad net cmd: %d\n", doomcom.command);
+        }
+    }
+
+    private void PacketSend()
+    {
+        doomdata_t netbuffer = doomcom.data;
+        int node = doomcom.remotenode;
+        int numtics = netbuffer.numtics & 0xFF;
+
+        // Network byte order, as ticcmd_t.pack(byte[], int)
+        sendbuffer.clear();
+        sendbuffer.putInt(netbuffer.checksum);
+        sendbuffer.put(netbuffer.retransmitfrom);
+        sendbuffer.put(netbuffer.starttic);
+        sendbuffer.put(netbuffer.player);
+        sendbuffer.put(netbuffer.numtics);
+
+        for (int i = 0; i < numtics; i++)
+        {
+            pack(sendbuffer, netbuffer.cmds[i]);
+        }
+
+        sendbuffer.flip();
+
+        try
+        {
+            // Zero if the socket's buffer is full: then it's as good as lost
+            if (channel.send(sendbuffer, nodeaddress[node]) > 0)
+            {
+                stats[node].sent(netbuffer, System.nanoTime());
+            } else
+            {
+                stats[node].dropped++;
+            }
+        } catch (IOException e)
+        {
+            doomSystem.Error("SendPacket error: %s", e.getMessage());
+        }
+    }
+
+    private void PacketGet()
+    {
+        if (queuesize == 0)
+        {
+            drain();
+        }
+
+        if (queuesize == 0)
+        {
+            if (System.nanoTime() - nexthello >= 0)
+            {
+                hello();
+            }
+
+            doomcom.remotenode = -1;       // no packet
+            return;
+        }
+
+        MemoryStream b = queue[queuehead];
+        short node = queuenode[queuehead];
+        queuehead = (queuehead + 1) % QUEUE;
+        queuesize--;
+
+        doomdata_t netbuffer = doomcom.data;
+        netbuffer.checksum = b.getInt();
+        netbuffer.retransmitfrom = b.get();
+        netbuffer.starttic = b.get();
+        netbuffer.player = b.get();
+        netbuffer.numtics = b.get();
+
+        // A short or bad one is still read as far as it goes: HGetPacket
+        // will throw it away, as its length won't match its tics
+        int numtics = Math.Min(netbuffer.numtics & 0xFF, Math.Min(b.remaining() / ticcmd_t.TICCMDLEN, netbuffer.cmds.Length));
+        for (int i = 0; i < numtics; i++)
+        {
+            unpack(b, netbuffer.cmds[i]);
+        }
+
+        doomcom.remotenode = node;
+        doomcom.datalength = (short) b.limit();
+
+        if (printstats && System.nanoTime() - nextstats >= 0)
+        {
+            printStats();
+            nextstats += STATSPERIOD;
+        }
+    }
+
+    /**
+     * Take all packets waiting, or as many as fit in the queue
+     */
+    private void drain()
+    {
+        try
+        {
+            if (selector.selectNow() == 0)
+            {
+                return;
+            }
+            selector.selectedKeys().clear();
+
+            long now = System.nanoTime();
+            while (queuesize < QUEUE)
+            {
+                int slot = (queuehead + queuesize) % QUEUE;
+                MemoryStream b = queue[slot];
+                b.clear();
+
+                SocketAddress from = channel.receive(b);
+                if (from == null)
+                {
+                    break;
+                }
+                b.flip();
+
+                int node = node(from);
+                if (node < 0 || b.remaining() < 8)
+                {
+                    // packet is not from one of the players (new game broadcast)
+                    continue;
+                }
+
+                stats[node].received(b, now);
+                queuenode[slot] = (short) node;
+                queuesize++;
+            }
+        } catch (IOException e)
+        {
+            doomSystem.Error("GetPacket: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Tell nodes not heard from yet which player we are
+     */
+    private void hello()
+    {
+        nexthello = System.nanoTime() + HELLOPERIOD;
+
+        try
+        {
+            for (int i = 1; i < doomcom.numnodes; i++)
+            {
+                if (stats[i].packetsreceived == 0 && nodeaddress[i] != null)
+                {
+                    hellobuffer.clear();
+                    hellobuffer.put((byte) doomcom.consoleplayer);
+                    hellobuffer.flip();
+                    channel.send(hellobuffer, nodeaddress[i]);
+                }
+            }
+        } catch (IOException e)
+        {
+            doomSystem.Error("SendPacket error: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the node it's from, by host, or by host and port, or -1
+     */
+    private int node(SocketAddress from)
+    {
+        InetAddress address = ((InetSocketAddress) from).getAddress();
+
+        for (int i = 1; i < doomcom.numnodes; i++)
+        {
+            if (nodeaddress[i] == null)
+            {
+                continue;
+            }
+
+            if (exactports ? from.equals(nodeaddress[i]) : address.equals(nodeaddress[i].getAddress()))
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * A command as it is in packets: in network byte order, 8 bytes, as
+     * ticcmd_t.pack(byte[], int)
+     */
+    static void pack(MemoryStream b, ticcmd_t cmd)
+    {
+        b.put(cmd.forwardmove);
+        b.put(cmd.sidemove);
+        b.putShort(cmd.angleturn);
+        b.putShort(cmd.consistancy);
+        b.put((byte) cmd.chatchar);
+        b.put((byte) cmd.buttons);
+    }
+
+    static void unpack(MemoryStream b, ticcmd_t cmd)
+    {
+        cmd.forwardmove = b.get();
+        cmd.sidemove = b.get();
+        cmd.angleturn = b.getShort();
+        cmd.consistancy = b.getShort();
+        cmd.chatchar = (char) (b.get() & 0xFF);
+        cmd.buttons = (char) (b.get() & 0xFF);
+    }
+
+    /**
+     * The tic nearest to near with those low 8 bits, as packets have them
+     */
+    static int expand(int low, int near)
+    {
+        return near + (byte) (low - near);
+    }
+
+    public void printStats()
+    {
+        for (int i = 1; i < doomcom.numnodes; i++)
+        {
+            NodeStats s = stats[i];
+            System.out.printf("node %d: %d packets sent, %d received, %d dropped, %d tics sent, %d resent, "
+                            + "%d lost, %d retransmit requests, lag %.1f ms\n",
+                    i, s.packetssent, s.packetsreceived, s.dropped, s.ticssent, s.ticsresent,
+                    s.ticslost, s.retransmitrequests, s.getLag());
+        }
+    }
+
+    /**
+     * Let go of the port. A game's just exits instead.
+     */
+    void close()
+    {
+        try
+        {
+            if (channel != null)
+            {
+                channel.close();
+                selector.close();
+            }
+        } catch (IOException e)
+        {
+            // going anyway
+        }
+    }
+
+    /**
+     * What happened with one node's packets. Tics in packets have their low
+     * 8 bits only: they're counted on from the last one seen.
+     */
+    public static class NodeStats
+    {
+        public long packetssent, packetsreceived, dropped;
+        public long ticssent, ticsresent, ticslost;
+        public long retransmitrequests;
+
+        // When each of the last 256 tics was first sent
+        private readonly long[] sendtime = new long[256];
+        private int sentupto, receivedupto;
+        private long lag;
+        private bool haslag;
+
+        /**
+         * @return lag, averaged, in milliseconds
+         */
+        public double getLag()
+        {
+            return lag / 1e6;
+        }
+
+        void sent(doomdata_t netbuffer, long now)
+        {
+            packetssent++;
+            if ((netbuffer.checksum & (NCMD_SETUP | NCMD_EXIT | NCMD_KILL)) != 0)
+            {
+                return;
+            }
+
+            int numtics = netbuffer.numtics & 0xFF;
+            int start = expand(netbuffer.starttic & 0xFF, sentupto);
+            for (int tic = start; tic < start + numtics; tic++)
+            {
+                if (tic < sentupto)
+                {
+                    ticsresent++;
+                } else
+                {
+                    sendtime[tic & 0xFF] = now;
+                }
+            }
+
+            ticssent += numtics;
+            sentupto = Math.Max(sentupto, start + numtics);
+        }
+
+        void received(MemoryStream b, long now)
+        {
+            packetsreceived++;
+            int flags = b.getInt(0);
+            if ((flags & (NCMD_SETUP | NCMD_EXIT | NCMD_KILL)) != 0)
+            {
+                return;
+            }
+
+            if ((flags & NCMD_RETRANSMIT) != 0)
+            {
+                retransmitrequests++;
+            }
+
+            int numtics = b.get(7) & 0xFF;
+            int start = expand(b.get(5) & 0xFF, receivedupto);
+            if (start > receivedupto)
+            {
+                ticslost += start - receivedupto;
+            }
+
+            for (int tic = Math.Max(start, receivedupto); tic < start + numtics; tic++)
+            {
+                if (tic < sentupto && sentupto - tic < sendtime.Length)
+                {
+                    long sample = now - sendtime[tic & 0xFF];
+                    lag = haslag ? lag + (sample - lag) / 8 : sample;
+                    haslag = true;
+                }
+            }
+
+            receivedupto = Math.Max(receivedupto, start + numtics);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+namespace n {  
+
+using doom.DoomMain;
+using doom.ticcmd_t;
+
+using java.nio.MemoryStream;
+using java.util.Arrays;
+using java.util.concurrent.ArrayBlockingQueue;
+using java.util.concurrent.BlockingQueue;
+
+using static data.Defines.BACKUPTICS;
+using static data.Limits.MAXPLAYERS;
+using static doom.NetConsts.*;
+
+/**
+ * Plays a net game at the relay, from the tics its players send each other,
+ * as each of them does. If a player's game goes another way, the consistency
+ * values in its commands stop matching this one's, and the check says whose.
+ * <p>
+ * It starts when the key player's setup packet goes by, with a game of its
+ * own (a DoomMain with nobody at it, as DemoVerifier's, so -iwad is needed),
+ * and runs a tic once every player's command for it has come. It stops at the
+ * first failure, or when someone leaves, until the next setup. Games played
+ * with -dup can't be checked.
+ * <p>
+ * The relay only hands it copies of the packets, on a queue, and it plays on
+ * a thread of its own, so a slow tic or a level loading never holds up what's
+ * passed on. If it falls so far behind that the queue fills, it stops checking
+ * that game until the next setup.
+ */
+
+public class RelayCheck
+{
+    // Packets it can be behind the relay by, over 2 seconds of a 4 player game
+    private static readonly int QUEUED = 1024;
+
+    private readonly int number;
+    private readonly int players;
+    private DoomMain<?, ?> DOOM;
+
+    // Each player's commands, by tic, as many as the game can be ahead
+    private readonly ticcmd_t[][] cmds = new ticcmd_t[MAXPLAYERS][BACKUPTICS];
+    private readonly ticcmd_t[] tic = new ticcmd_t[MAXPLAYERS];
+    private readonly int[] received = new int[MAXPLAYERS];
+    private readonly BlockingQueue<Packet> queue = new ArrayBlockingQueue<>(QUEUED);
+    private Thread thread;
+    private volatile bool behind;
+    private volatile int gametic;
+    private volatile bool running;
+    private volatile String failure;
+
+    RelayCheck(int number, int players)
+    {
+        this.number = number;
+        this.players = players;
+
+        for (int i = 0; i < MAXPLAYERS; i++)
+        {
+            Arrays.setAll(cmds[i], j -> new ticcmd_t());
+        }
+    }
+
+    /**
+     * @return the first failure, with its tic, or null
+     */
+    public String getFailure()
+    {
+        return failure;
+    }
+
+    /**
+     * Called by the relay with every packet a player sends, before it's passed
+     * on. Never waits: the packet is copied, and checked later.
+     */
+    void offer(int player, MemoryStream b)
+    {
+        byte[] data = new byte[b.remaining()];
+        b.duplicate().get(data);
+
+        if (thread == null)
+        {
+            thread = new Thread(this::work, "RelayCheck " + number);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        if (!queue.offer(new Packet(player, data)))
+        {
+            behind = true;
+        }
+    }
+
+    private void work()
+    {
+        for (; ; )
+        {
+            Packet p;
+            try
+            {
+                p = queue.take();
+            } catch (InterruptedException e)
+            {
+                return;
+            }
+
+            if (behind)
+            {
+                // Some are lost, so some tics will never be complete
+                behind = false;
+                if (running)
+                {
+                    System.out.printf("RelayCheck: game %d: fell behind the relay, checked to tic %d\n", number, gametic);
+                    running = false;
+                }
+            }
+
+            packet(p.player, MemoryStream.wrap(p.data));
+        }
+    }
+
+    private void packet(int player, MemoryStream b)
+    {
+        int flags = b.getInt(0);
+
+        if ((flags & NCMD_SETUP) != 0)
+        {
+            if (player == 0 && !running)
+            {
+                start(b.get(4) & 0xFF, b.get(5) & 0xFF);
+            }
+            return;
+        }
+
+        if (!running)
+        {
+            return;
+        }
+
+        if ((flags & (NCMD_EXIT | NCMD_KILL)) != 0)
+        {
+            System.out.printf("RelayCheck: game %d: player %d left, checked to tic %d\n", number, player + 1, gametic);
+            running = false;
+            return;
+        }
+
+        int numtics = Math.Min(b.get(7) & 0xFF, (b.limit() - 8) / ticcmd_t.TICCMDLEN);
+        int start = ChannelNetworkInterface.expand(b.get(5) & 0xFF, received[player]);
+        int position = b.position();
+
+        for (int i = 0; i < numtics; i++)
+        {
+            // Only the next one: after a gap, those after it come again
+            int t = start + i;
+            if (t == received[player] && t < gametic + BACKUPTICS)
+            {
+                b.position(8 + i * ticcmd_t.TICCMDLEN);
+                ChannelNetworkInterface.unpack(b, cmds[player][t % BACKUPTICS]);
+                received[player]++;
+            }
+        }
+
+        b.position(position);
+        run();
+    }
+
+    private void start(int setup, int episodemap)
+    {
+        failure = null;
+        gametic = 0;
+        Arrays.fill(received, 0);
+
+        try
+        {
+            if (DOOM == null)
+            {
+                DOOM = new DoomMain<>();
+            }
+            DOOM.StartRelayCheck(setup, episodemap, players);
+        } catch (RuntimeException e)
+        {
+            fail(e);
+            return;
+        }
+
+        running = true;
+        System.out.printf("RelayCheck: game %d: checking episode %d map %d\n", number, episodemap >> 6, episodemap & 0x3f);
+    }
+
+    /**
+     * Run all tics everyone's commands have come for
+     */
+    private void run()
+    {
+        while (running)
+        {
+            for (int i = 0; i < players; i++)
+            {
+                if (received[i] <= gametic)
+                {
+                    return;
+                }
+                tic[i] = cmds[i][gametic % BACKUPTICS];
+            }
+
+            try
+            {
+                DOOM.RelayTic(tic);
+                gametic++;
+            } catch (RuntimeException e)
+            {
+                fail(e);
+            }
+        }
+    }
+
+    private void fail(RuntimeException e)
+    {
+        failure = String.format("tic %d: %s", gametic, e.getMessage());
+        System.err.printf("RelayCheck: game %d: %s\n", number, failure);
+        running = false;
+        // Half through a tic that threw, the next setup gets a fresh one
+        DOOM = null;
+    }
+
+    public String toString()
+    {
+        return failure != null ? "failed at " + failure
+                : running ? "checked to tic " + gametic
+                : "not checking";
+    }
+
+    private static class Packet
+    {
+        readonly int player;
+        readonly byte[] data;
+
+        Packet(int player, byte[] data)
+        {
+            this.player = player;
+            this.data = data;
+        }
+    }
+}
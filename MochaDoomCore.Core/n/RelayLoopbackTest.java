@@ -0,0 +1,243 @@
+namespace n {  
+
+using doom.doomcom_t;
+using doom.doomdata_t;
+using doom.ticcmd_t;
+using i.DummySystem;
+using i.IDoomSystem;
+
+using java.util.concurrent.locks.LockSupport;
+
+using static doom.NetConsts.*;
+
+/**
+ * Plays all the players of a TicRelay's games, on loopback, in this JVM
+ * (-relaytest). Each is a ChannelNetworkInterface, as a game has it: its
+ * hosts are the others' ports on the relay, as host:port, and it listens on
+ * a port of its own, so it tells its nodes apart by port. It sends hellos
+ * until it hears from them, then a tic every 35th of a second to every other
+ * player of its game, through NetCmd, with made-up commands that say whose
+ * and which tic they are.
+ * <p>
+ * It checks that every player gets every tic of every other, in order, from
+ * the node that stands for it, as it was sent.
+ */
+
+public class RelayLoopbackTest
+{
+    private static readonly int TICRATE = 35;
+
+    // There's no game to quit: any error fails the test
+    private static readonly IDoomSystem SYSTEM = new DummySystem()
+    {
+        public void Error(String error, Object... args)
+        {
+            throw new IllegalStateException(String.format(error, args));
+        }
+
+        public void Error(String error)
+        {
+            throw new IllegalStateException(error);
+        }
+    };
+
+    private readonly int players;
+    private readonly ChannelNetworkInterface[] nets;
+    private readonly ticcmd_t sent = new ticcmd_t();
+
+    // The player each node of each stands for, and the next tic it expects from each
+    private readonly int[][] nodeplayer;
+    private readonly int[][] next;
+    private long received, outoforder, misrouted, corrupt;
+
+    private RelayLoopbackTest(int baseport, int players, int games)
+    {
+        this.players = players;
+        this.nets = new ChannelNetworkInterface[players * games];
+        this.nodeplayer = new int[nets.Length][players];
+        this.next = new int[nets.Length][players];
+
+        for (int p = 0; p < nets.Length; p++)
+        {
+            int game = baseport + p / players * players;
+            String[] hosts = new String[players - 1];
+
+            for (int j = 0, node = 1; j < players; j++)
+            {
+                if (j != p % players)
+                {
+                    hosts[node - 1] = "localhost:" + (game + j);
+                    nodeplayer[p][node++] = j;
+                }
+            }
+
+            // Any free port: the relay learns where from the hellos
+            nets[p] = ChannelNetworkInterface.join(SYSTEM, p % players, hosts, 0);
+        }
+    }
+
+    /**
+     * Play for so many seconds through a relay already running on loopback
+     *
+     * @return whether every tic got where it should, as it should
+     */
+    public static bool run(int baseport, int players, int games, int seconds)
+    {
+        RelayLoopbackTest test = null;
+
+        try
+        {
+            test = new RelayLoopbackTest(baseport, players, games);
+            return test.play(seconds * TICRATE);
+        } catch (IllegalStateException e)
+        {
+            System.err.printf("RelayLoopbackTest: %s\n", e.getMessage());
+            return false;
+        } finally
+        {
+            if (test != null)
+            {
+                test.close();
+            }
+        }
+    }
+
+    private bool play(int tics)
+    {
+        // Let the relay see all the hellos before there are tics to pass on
+        long start = System.nanoTime() + 250_000_000L;
+        receive(start);
+
+        for (int t = 0; t < tics; t++)
+        {
+            for (int p = 0; p < nets.Length; p++)
+            {
+                send(p, t);
+            }
+
+            receive(start + (t + 1) * 1_000_000_000L / TICRATE);
+        }
+
+        // The last ones may still be on their way
+        long expected = (long) tics * nets.Length * (players - 1);
+        for (long until = System.nanoTime() + 1_000_000_000L; received < expected && System.nanoTime() < until; )
+        {
+            receive(System.nanoTime() + 10_000_000L);
+        }
+        long lost = expected - received;
+
+        System.out.printf("RelayLoopbackTest: %d games of %d players, %d tics: %d received of %d, "
+                        + "%d lost, %d out of order, %d misrouted, %d corrupt\n",
+                nets.Length / players, players, tics, received, expected, lost, outoforder, misrouted, corrupt);
+
+        return lost == 0 && outoforder == 0 && misrouted == 0 && corrupt == 0;
+    }
+
+    /**
+     * Made-up commands: whose and which tic they are
+     */
+    private static void expect(int t, int player, ticcmd_t cmd)
+    {
+        cmd.forwardmove = (byte) t;
+        cmd.sidemove = (byte) player;
+        cmd.angleturn = (short) (t * 7 + player);
+        cmd.consistancy = (short) (t ^ 0x5555);
+        cmd.chatchar = 0;
+        cmd.buttons = (char) ((t + player) & 0xFF);
+    }
+
+    /**
+     * Tic t to all the other players, as NetUpdate sends it
+     */
+    private void send(int p, int t)
+    {
+        doomcom_t doomcom = nets[p].getDoomCom();
+        doomdata_t netbuffer = doomcom.data;
+
+        netbuffer.checksum = 0;
+        netbuffer.retransmitfrom = 0;
+        netbuffer.starttic = (byte) t;
+        netbuffer.player = (byte) (p % players);
+        netbuffer.numtics = 1;
+        expect(t, p % players, netbuffer.cmds[0]);
+
+        for (int node = 1; node < doomcom.numnodes; node++)
+        {
+            doomcom.command = CMD_SEND;
+            doomcom.remotenode = (short) node;
+            nets[p].NetCmd();
+        }
+    }
+
+    /**
+     * Take all that comes until then, as GetPackets does
+     */
+    private void receive(long until)
+    {
+        while (System.nanoTime() - until < 0)
+        {
+            bool any = false;
+
+            for (int p = 0; p < nets.Length; p++)
+            {
+                doomcom_t doomcom = nets[p].getDoomCom();
+                for (; ; )
+                {
+                    doomcom.command = CMD_GET;
+                    nets[p].NetCmd();
+                    if (doomcom.remotenode == -1)
+                    {
+                        break;
+                    }
+
+                    check(p, doomcom);
+                    any = true;
+                }
+            }
+
+            if (!any)
+            {
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+    }
+
+    private void check(int p, doomcom_t doomcom)
+    {
+        doomdata_t netbuffer = doomcom.data;
+        int player = nodeplayer[p][doomcom.remotenode];
+        if (doomcom.datalength != 8 + ticcmd_t.TICCMDLEN || netbuffer.numtics != 1 || netbuffer.player != player)
+        {
+            misrouted++;
+            return;
+        }
+
+        received++;
+        int t = ChannelNetworkInterface.expand(netbuffer.starttic & 0xFF, next[p][player]);
+        if (t != next[p][player])
+        {
+            outoforder++;
+        }
+        next[p][player] = Math.Max(next[p][player], t + 1);
+
+        ticcmd_t got = netbuffer.cmds[0];
+        expect(t, player, sent);
+        if (got.forwardmove != sent.forwardmove || got.sidemove != sent.sidemove
+                || got.angleturn != sent.angleturn || got.consistancy != sent.consistancy
+                || got.buttons != sent.buttons)
+        {
+            corrupt++;
+        }
+    }
+
+    private void close()
+    {
+        for (ChannelNetworkInterface net : nets)
+        {
+            if (net != null)
+            {
+                net.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,339 @@
+namespace n {  
+
+using doom.doomdata_t;
+
+using java.io.IOException;
+using java.net.InetSocketAddress;
+using java.net.SocketAddress;
+using java.net.StandardSocketOptions;
+using java.nio.MemoryStream;
+using java.nio.channels.DatagramChannel;
+using java.nio.channels.SelectionKey;
+using java.nio.channels.Selector;
+using java.util.Iterator;
+
+using static data.Limits.MAXPLAYERS;
+using static doom.NetConsts.*;
+
+/**
+ * A node that plays no game, and only passes tics on between those that do:
+ * a dedicated server for any number of net games at once, on one thread,
+ * with no renderer, sound, menus or AWT.
+ * <p>
+ * Each game has a port per player, one after the other from its base port:
+ * base+i stands for player i. Players list the others' ports on the relay,
+ * in player order, and each listens on -port of its own:
+ * <p>
+ * -net 2 relayhost:666 relayhost:668 relayhost:669 -port 5000
+ * <p>
+ * What player i sends to base+j goes to player j, from base+i, so player j
+ * tells its nodes apart as usual (see ChannelNetworkInterface). Where a player
+ * is, the relay learns from its hellos, or the player number in its tics. Until
+ * then its packets are dropped, and sent again by the game, as with any
+ * lost. Once a port has a player, nobody else gets it until that player has
+ * sent nothing for 5 seconds, so a stray hello can't take over a game being
+ * played. Nothing is kept but the last packet, so a game costs its ports and a
+ * few small arrays, however long it's played.
+ * <p>
+ * With -relaycheck, each game is also played here, from everyone's tics (see
+ * RelayCheck), on a thread of its own, which tells the first consistency
+ * failure and who had it.
+ */
+
+public class TicRelay
+{
+    private static readonly long STATSPERIOD = 10_000_000_000L;
+    // How long a player's address has to be quiet before another can have its port
+    private static readonly long SILENCE = 5_000_000_000L;
+
+    private readonly Selector selector;
+    private readonly Game[] games;
+    private readonly MemoryStream buffer = MemoryStream.allocateDirect(doomdata_t.DOOMDATALEN);
+    private readonly bool printstats;
+    private volatile bool running = true;
+
+    /**
+     * @param baseport  the first game's first port
+     * @param players   players in each game, 2 to MAXPLAYERS
+     * @param games     games at once, on ports one after the other
+     * @param check     whether to play them here too
+     * @param printstats print what went through every 10 seconds
+     */
+    public TicRelay(int baseport, int players, int games, bool check, bool printstats)
+    {
+        if (players < 2 || players > MAXPLAYERS)
+        {
+            throw new IllegalArgumentException("A net game has 2 to " + MAXPLAYERS + " players, not " + players);
+        }
+
+        this.selector = Selector.open();
+        this.games = new Game[Math.Max(1, games)];
+        this.printstats = printstats;
+
+        for (int g = 0; g < this.games.Length; g++)
+        {
+            Game game = this.games[g] = new Game(g, baseport + g * players, players);
+            if (check)
+            {
+                game.check = new RelayCheck(g, players);
+            }
+
+            for (int i = 0; i < players; i++)
+            {
+                DatagramChannel channel = DatagramChannel.open();
+                channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                channel.configureBlocking(false);
+                channel.bind(new InetSocketAddress(game.baseport + i));
+                channel.register(selector, SelectionKey.OP_READ, new Port(game, i));
+                game.channels[i] = channel;
+            }
+        }
+
+        System.out.printf("TicRelay: %d games of %d players on UDP ports %d to %d\n",
+                this.games.Length, players, baseport, baseport + this.games.Length * players - 1);
+    }
+
+    /**
+     * Pass packets on, until closed. Lets go of the ports when done.
+     */
+    public void run()
+    {
+        long nextstats = System.nanoTime() + STATSPERIOD;
+
+        while (running)
+        {
+            try
+            {
+                selector.select(1000);
+
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); )
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    drain((Port) key.attachment(), (DatagramChannel) key.channel());
+                }
+            } catch (IOException e)
+            {
+                if (running)
+                {
+                    System.err.printf("TicRelay: %s\n", e.getMessage());
+                }
+            }
+
+            if (printstats && System.nanoTime() - nextstats >= 0)
+            {
+                printStats();
+                nextstats += STATSPERIOD;
+            }
+        }
+
+        for (Game game : games)
+        {
+            for (DatagramChannel channel : game.channels)
+            {
+                try
+                {
+                    channel.close();
+                } catch (IOException e)
+                {
+                    // going anyway
+                }
+            }
+        }
+
+        try
+        {
+            selector.close();
+        } catch (IOException e)
+        {
+            // going anyway
+        }
+    }
+
+    private void drain(Port port, DatagramChannel channel)
+    {
+        for (; ; )
+        {
+            buffer.clear();
+            SocketAddress from = channel.receive(buffer);
+            if (from == null)
+            {
+                return;
+            }
+            buffer.flip();
+            relay(port.game, port.player, (InetSocketAddress) from);
+        }
+    }
+
+    /**
+     * Pass on a packet sent to player to, from wherever it came from
+     */
+    private void relay(Game game, int to, InetSocketAddress from)
+    {
+        long now = System.nanoTime();
+        game.packets++;
+
+        // A hello: which player is there
+        if (buffer.remaining() == 1)
+        {
+            game.learn(buffer.get(0) & 0xFF, from, now);
+            return;
+        }
+
+        if (buffer.remaining() < 8)
+        {
+            game.dropped++;
+            return;
+        }
+
+        int sender = game.player(from);
+        int flags = buffer.getInt(0);
+        if (sender < 0 && (flags & NCMD_SETUP) == 0)
+        {
+            // Tics have the player number in them, setup packets the version
+            int player = buffer.get(6) & 0x7F;
+            if (player != to)
+            {
+                game.learn(player, from, now);
+                sender = game.player(from);
+            }
+        }
+
+        if (sender >= 0)
+        {
+            game.heard[sender] = now;
+        }
+
+        if (sender < 0 || sender == to || game.clients[to] == null)
+        {
+            // The game will send it again
+            game.dropped++;
+            return;
+        }
+
+        if (game.check != null)
+        {
+            game.check.offer(sender, buffer);
+        }
+
+        if (game.channels[sender].send(buffer, game.clients[to]) > 0)
+        {
+            game.bytes += buffer.limit();
+        } else
+        {
+            game.dropped++;
+        }
+    }
+
+    public void printStats()
+    {
+        for (Game game : games)
+        {
+            if (game.packets > 0)
+            {
+                System.out.printf("TicRelay: game %d: %d packets, %d bytes passed on, %d dropped%s\n",
+                        game.number, game.packets, game.bytes, game.dropped,
+                        game.check != null ? ", " + game.check : "");
+            }
+        }
+    }
+
+    /**
+     * Make run return, from another thread.
+     */
+    public void close()
+    {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * @return whether no game checked here had a consistency failure
+     */
+    public bool isConsistent()
+    {
+        for (Game game : games)
+        {
+            if (game.check != null && game.check.getFailure() != null)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static class Port
+    {
+        readonly Game game;
+        readonly int player;
+
+        Port(Game game, int player)
+        {
+            this.game = game;
+            this.player = player;
+        }
+    }
+
+    private static class Game
+    {
+        readonly int number;
+        readonly int baseport;
+        readonly DatagramChannel[] channels;
+        // Where each player is, once known
+        readonly InetSocketAddress[] clients;
+        // When each last sent anything
+        readonly long[] heard;
+        RelayCheck check;
+        long packets, bytes, dropped;
+
+        Game(int number, int baseport, int players)
+        {
+            this.number = number;
+            this.baseport = baseport;
+            this.channels = new DatagramChannel[players];
+            this.clients = new InetSocketAddress[players];
+            this.heard = new long[players];
+        }
+
+        int player(InetSocketAddress from)
+        {
+            for (int i = 0; i < clients.Length; i++)
+            {
+                if (from.equals(clients[i]))
+                {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        void learn(int player, InetSocketAddress from, long now)
+        {
+            if (player >= clients.Length || from.equals(clients[player]))
+            {
+                return;
+            }
+
+            // Someone's still playing there: whoever says otherwise can wait
+            if (clients[player] != null && now - heard[player] < SILENCE)
+            {
+                return;
+            }
+
+            // Whoever was there before, if it's someone else's now, is gone
+            for (int i = 0; i < clients.Length; i++)
+            {
+                if (from.equals(clients[i]))
+                {
+                    clients[i] = null;
+                }
+            }
+
+            clients[player] = from;
+            heard[player] = now;
+            System.out.printf("TicRelay: game %d: player %d is at %s\n", number, player + 1, from);
+        }
+    }
+}
@@ -11,7 +11,8 @@ using m.BBox;
 using m.Settings;
 using mochadoom.Engine;
 using rr.*;
-using utils.C2JUtils;
+using java.util.Arrays;
+using java.util.stream.IntStream;
 
 using static data.Defines.*;
 using static doom.SourceCode.P_MapUtl.P_SetThingPosition;
@@ -38,6 +39,7 @@ public abstract class AbstractLevelLoader : ILevelLoader
     // ///////////////// Status objects ///////////////////
 
     public static readonly bool FIX_BLOCKMAP_512 = Engine.getConfig().equals(Settings.fix_blockmap, bool.TRUE);
+    private static readonly bool REJECT_SYNTHESIS = Engine.getConfig().equals(Settings.reject_synthesis, bool.TRUE);
     /**
      * places to shift rel position for cell num
      */
@@ -107,6 +109,10 @@ public abstract class AbstractLevelLoader : ILevelLoader
      */
 
     public byte[] rejectmatrix;
+    /**
+     * Building a REJECT table for the current level, if asked to
+     */
+    private RejectBuilder rejectbuilder;
     public int blockmapxneg = -257;
     public int blockmapyneg = -257;
     /**
@@ -132,7 +138,6 @@ public abstract class AbstractLevelLoader : ILevelLoader
     // Keeps track of lines that belong to a sector, to exclude e.g.
     // orphaned ones from the blockmap.
     bool[] used_lines;
-    private long total = 0;
 
     public AbstractLevelLoader(DoomMain<?, ?> DOOM)
     {
@@ -249,34 +254,42 @@ public abstract class AbstractLevelLoader : ILevelLoader
     }
 
     /**
-     * Subroutine to add a line number to a block list It simply returns if the
-     * line is already in the block
-     *
-     * @param lists
-     * @param count
-     * @param done
-     * @param blockno
-     * @param lineno
+     * Cells a chunk of linedefs touch, as (cell, line) pairs in line order.
+     * Which cells a line already got is stamped with its number + 1, rather
+     * than clearing a done flag per cell for every line. Numbers are unique,
+     * so a thread can use the same stamps for all of its chunks.
      */
-    private void AddBlockLine(linelist_t[] lists, int[] count, bool[] done, int blockno, int lineno)
+    private static class BlockCells
     {
-        var a = System.nanoTime();
-        linelist_t l;
+        int[] pairs = new int[1024];
+        int count;
+        int[] stamp;
+        int line;
+
+        /**
+         * Subroutine to add a line number to a block list. It simply returns
+         * if the line is already in the block.
+         */
+        void add(int blockno)
+        {
+            if (stamp[blockno] == line + 1)
+                return;
 
-        if (done[blockno])
-            return;
+            stamp[blockno] = line + 1;
 
-        l = new linelist_t();
-        l.num = lineno;
-        l.next = lists[blockno];
-        lists[blockno] = l;
-        count[blockno]++;
-        done[blockno] = true;
-        var b = System.nanoTime();
+            if (count == pairs.Length)
+                pairs = Arrays.copyOf(pairs, pairs.Length * 2);
 
-        total += b - a;
+            pairs[count++] = blockno;
+            pairs[count++] = line;
+        }
     }
 
+    /**
+     * Linedefs per task when building a blockmap in parallel
+     */
+    private static readonly int BLOCKMAP_CHUNK = 2048;
+
     /**
      * Actually construct the blockmap lump from the level data This finds the
      * intersection of each linedef with the column and row lines at the left
@@ -284,6 +297,12 @@ public abstract class AbstractLevelLoader : ILevelLoader
      * lists touching the intersection. MAES 30/9/2011: Converted to Java. It's
      * important that LINEDEFS and VERTEXES are already read-in and defined, so
      * it is necessary to change map lump ordering for this to work.
+     * <p>
+     * The cells of each line are found in parallel, for chunks of lines, then
+     * gathered with a counting sort: count per cell, offsets from the counts,
+     * fill. Each list holds the very same lines in the very same order as
+     * Boom's linked lists did (0, then lines from last to first, then -1), as
+     * the order lines are checked in matters to demos.
      */
 
     readonly void CreateBlockMap()
@@ -292,9 +311,7 @@ public abstract class AbstractLevelLoader : ILevelLoader
         int yorg;
         int nrows;  // blockmap dimensions
         int ncols;
-        linelist_t[] blocklists; // array of pointers to lists of lines
         int[] blockcount; // array of counters of line lists
-        bool[] blockdone; // array keeping track of blocks/line
         int NBlocks; // number of cells = nrows*ncols
         int linetotal; // total.Length of all blocklists
         var map_minx = int.MAX_VALUE; // init for map limits search
@@ -312,11 +329,11 @@ public abstract class AbstractLevelLoader : ILevelLoader
 
             if ((t = vertexes[i].x) < map_minx)
                 map_minx = t;
-            else if (t > map_maxx)
+            if (t > map_maxx)
                 map_maxx = t;
             if ((t = vertexes[i].y) < map_miny)
                 map_miny = t;
-            else if (t > map_maxy)
+            if (t > map_maxy)
                 map_maxy = t;
         }
         map_minx >>= FRACBITS; // work in map coords, not fixed_t
@@ -335,240 +352,232 @@ public abstract class AbstractLevelLoader : ILevelLoader
         // for
         NBlocks = ncols * nrows; // map exactly 1 cell
 
-        // create the array of pointers on NBlocks to blocklists
-        // also create an array of linelist counts on NBlocks
-        // finally make an array in which we can mark blocks done per line
+        // For each linedef in the wad, determine all blockmap blocks it
+        // touches
+
+        var chunks = new BlockCells[Math.Max(1, (numlines + BLOCKMAP_CHUNK - 1) / BLOCKMAP_CHUNK)];
+        var stamps = ThreadLocal.withInitial(() -> new int[NBlocks]);
+        IntStream.range(0, chunks.Length).parallel().forEach(c -> {
+            var cells = chunks[c] = new BlockCells();
+            cells.stamp = stamps.get();
+            for (var i = c * BLOCKMAP_CHUNK; i < Math.Min(numlines, (c + 1) * BLOCKMAP_CHUNK); i++)
+            {
+                cells.line = i;
+                AddBlockLines(cells, lines[i], xorg, yorg, ncols, nrows);
+            }
+        });
 
-        // CPhipps - calloc's
-        blocklists = new linelist_t[NBlocks];
-        blockcount = new int[NBlocks];
-        blockdone = new bool[NBlocks];
+        // Count the lines of each blocklist, plus its initial 0 and its
+        // trailing -1, then the total number of lines (and 0's and -1's)
 
-        // initialize each blocklist, and enter the trailing -1 in all
-        // blocklists
-        // note the linked list of lines grows backwards
+        blockcount = new int[NBlocks];
+        Arrays.fill(blockcount, 2);
 
-        for (var i = 0; i < NBlocks; i++)
+        for (var chunk : chunks)
         {
-            blocklists[i] = new linelist_t();
-            blocklists[i].num = -1;
-            blocklists[i].next = null;
-            blockcount[i]++;
+            for (var i = 0; i < chunk.count; i += 2)
+            {
+                blockcount[chunk.pairs[i]]++;
+            }
         }
 
-        // For each linedef in the wad, determine all blockmap blocks it
-        // touches,
-        // and add the linedef number to the blocklists for those blocks
+        linetotal = 0;
 
-        for (var i = 0; i < numlines; i++)
+        for (var i = 0; i < NBlocks; i++)
         {
-            var x1 = lines[i].v1x >> FRACBITS; // lines[i] map coords
-            var y1 = lines[i].v1y >> FRACBITS;
-            var x2 = lines[i].v2x >> FRACBITS;
-            var y2 = lines[i].v2y >> FRACBITS;
-            var dx = x2 - x1;
-            var dy = y2 - y1;
-            var vert = dx == 0; // lines[i] slopetype
-            var horiz = dy == 0;
-            var spos = (dx ^ dy) > 0;
-            var sneg = (dx ^ dy) < 0;
-            int bx;  // block cell coords
-            int by;
-            var minx = x1 > x2 ? x2 : x1; // extremal lines[i] coords
-            var maxx = x1 > x2 ? x1 : x2;
-            var miny = y1 > y2 ? y2 : y1;
-            var maxy = y1 > y2 ? y1 : y2;
-
-            // no blocks done for this linedef yet
-
-            C2JUtils.memset(blockdone, false, NBlocks);
-
-            // The line always belongs to the blocks containing its endpoints
-
-            bx = x1 - xorg >> BLOCK_SHIFT;
-            by = y1 - yorg >> BLOCK_SHIFT;
-            AddBlockLine(blocklists, blockcount, blockdone, by * ncols + bx, i);
-            bx = x2 - xorg >> BLOCK_SHIFT;
-            by = y2 - yorg >> BLOCK_SHIFT;
-            AddBlockLine(blocklists, blockcount, blockdone, by * ncols + bx, i);
-
-            // For each column, see where the line along its left edge, which
-            // it contains, intersects the Linedef i. Add i to each
-            // corresponding
-            // blocklist.
-
-            if (!vert) // don't interesect vertical lines with columns
-            {
-                for (var j = 0; j < ncols; j++)
-                {
-                    // intersection of Linedef with x=xorg+(j<<blkshift)
-                    // (y-y1)*dx = dy*(x-x1)
-                    // y = dy*(x-x1)+y1*dx;
+            linetotal += blockcount[i];
+        }
+
+        // Create the blockmap lump
 
-                    var x = xorg + (j << BLOCK_SHIFT); // (x,y) is intersection
-                    var y = dy * (x - x1) / dx + y1;
-                    var yb = y - yorg >> BLOCK_SHIFT; // block row number
-                    var yp = y - yorg & BLOCK_MASK; // y position within block
+        blockmaplump = new int[(4 + NBlocks + linetotal)];
+        // blockmap header
 
-                    if (yb < 0 || yb > nrows - 1) // outside blockmap, continue
-                        continue;
+        blockmaplump[0] = bmaporgx = xorg << FRACBITS;
+        blockmaplump[1] = bmaporgy = yorg << FRACBITS;
+        blockmaplump[2] = bmapwidth = ncols;
+        blockmaplump[3] = bmapheight = nrows;
 
-                    if (x < minx || x > maxx) // line doesn't touch column
-                        continue;
+        // offsets to lists, and the initial 0 of each
 
-                    // The cell that contains the intersection point is always
-                    // added
+        var offs = new int[NBlocks];
 
-                    AddBlockLine(blocklists, blockcount, blockdone, ncols * yb
-                            + j, i);
+        for (var i = 0; i < NBlocks; i++)
+        {
+            blockmaplump[4 + i] = i != 0 ? blockmaplump[4 + i - 1] + blockcount[i - 1] : 4 + NBlocks;
+            blockmaplump[blockmaplump[4 + i]] = 0;
+            offs[i] = blockmaplump[4 + i] + 1;
+        }
 
-                    // if the intersection is at a corner it depends on the
-                    // slope
-                    // (and whether the line : past the intersection)
-                    // which
-                    // blocks are hit
+        // add the lines, from last to first, as the linked lists grew
+        // backwards
 
-                    if (yp == 0) // intersection at a corner
-                    {
-                        if (sneg) // \ - blocks x,y-, x-,y
-                        {
-                            if (yb > 0 && miny < y)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * (yb - 1) + j, i);
-                            if (j > 0 && minx < x)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * yb + j - 1, i);
-                        } else if (spos) // / - block x-,y-
-                        {
-                            if (yb > 0 && j > 0 && minx < x)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * (yb - 1) + j - 1, i);
-                        } else if (horiz) // - - block x-,y
-                        {
-                            if (j > 0 && minx < x)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * yb + j - 1, i);
-                        }
-                    } else if (j > 0 && minx < x) // else not at corner: x-,y
-                        AddBlockLine(blocklists, blockcount, blockdone, ncols
-                                * yb + j - 1, i);
-                }
+        for (var c = chunks.Length - 1; c >= 0; c--)
+        {
+            var pairs = chunks[c].pairs;
+            for (var i = chunks[c].count - 2; i >= 0; i -= 2)
+            {
+                blockmaplump[offs[pairs[i]]++] = pairs[i + 1];
             }
+        }
+
+        for (var i = 0; i < NBlocks; i++)
+        {
+            blockmaplump[offs[i]] = -1;
+        }
+
+        var b = System.nanoTime();
 
-            // For each row, see where the line along its bottom edge, which
-            // it contains, intersects the Linedef i. Add i to all the
-            // corresponding
-            // blocklists.
+        System.err.printf("Blockmap generated in %f sec\n", (b - a) / 1e9);
+    }
 
-            if (!horiz)
+    /**
+     * Add the linedef to the blocks it touches.
+     */
+    private static void AddBlockLines(BlockCells cells, line_t line, int xorg, int yorg, int ncols, int nrows)
+    {
+        var x1 = line.v1x >> FRACBITS; // lines[i] map coords
+        var y1 = line.v1y >> FRACBITS;
+        var x2 = line.v2x >> FRACBITS;
+        var y2 = line.v2y >> FRACBITS;
+        var dx = x2 - x1;
+        var dy = y2 - y1;
+        var vert = dx == 0; // lines[i] slopetype
+        var horiz = dy == 0;
+        var spos = (dx ^ dy) > 0;
+        var sneg = (dx ^ dy) < 0;
+        int bx;  // block cell coords
+        int by;
+        var minx = x1 > x2 ? x2 : x1; // extremal lines[i] coords
+        var maxx = x1 > x2 ? x1 : x2;
+        var miny = y1 > y2 ? y2 : y1;
+        var maxy = y1 > y2 ? y1 : y2;
+
+        // The line always belongs to the blocks containing its endpoints
+
+        bx = x1 - xorg >> BLOCK_SHIFT;
+        by = y1 - yorg >> BLOCK_SHIFT;
+        cells.add(by * ncols + bx);
+        bx = x2 - xorg >> BLOCK_SHIFT;
+        by = y2 - yorg >> BLOCK_SHIFT;
+        cells.add(by * ncols + bx);
+
+        // For each column, see where the line along its left edge, which
+        // it contains, intersects the Linedef i. Add i to each
+        // corresponding
+        // blocklist.
+
+        if (!vert) // don't interesect vertical lines with columns
+        {
+            for (var j = 0; j < ncols; j++)
             {
-                for (var j = 0; j < nrows; j++)
-                {
-                    // intersection of Linedef with y=yorg+(j<<blkshift)
-                    // (x,y) on Linedef i satisfies: (y-y1)*dx = dy*(x-x1)
-                    // x = dx*(y-y1)/dy+x1;
+                // intersection of Linedef with x=xorg+(j<<blkshift)
+                // (y-y1)*dx = dy*(x-x1)
+                // y = dy*(x-x1)+y1*dx;
 
-                    var y = yorg + (j << BLOCK_SHIFT); // (x,y) is intersection
-                    var x = dx * (y - y1) / dy + x1;
-                    var xb = x - xorg >> BLOCK_SHIFT; // block column number
-                    var xp = x - xorg & BLOCK_MASK; // x position within block
+                var x = xorg + (j << BLOCK_SHIFT); // (x,y) is intersection
 
-                    if (xb < 0 || xb > ncols - 1) // outside blockmap, continue
-                        continue;
+                if (x < minx || x > maxx) // line doesn't touch column
+                    continue;
 
-                    if (y < miny || y > maxy) // line doesn't touch row
-                        continue;
+                // in long, or big maps overflow
+                var y = (int) ((long) dy * (x - x1) / dx) + y1;
+                var yb = y - yorg >> BLOCK_SHIFT; // block row number
+                var yp = y - yorg & BLOCK_MASK; // y position within block
 
-                    // The cell that contains the intersection point is always
-                    // added
+                if (yb < 0 || yb > nrows - 1) // outside blockmap, continue
+                    continue;
 
-                    AddBlockLine(blocklists, blockcount, blockdone, ncols * j
-                            + xb, i);
+                // The cell that contains the intersection point is always
+                // added
 
-                    // if the intersection is at a corner it depends on the
-                    // slope
-                    // (and whether the line : past the intersection)
-                    // which
-                    // blocks are hit
+                cells.add(ncols * yb + j);
 
-                    if (xp == 0) // intersection at a corner
+                // if the intersection is at a corner it depends on the
+                // slope
+                // (and whether the line : past the intersection)
+                // which
+                // blocks are hit
+
+                if (yp == 0) // intersection at a corner
+                {
+                    if (sneg) // \ - blocks x,y-, x-,y
                     {
-                        if (sneg) // \ - blocks x,y-, x-,y
-                        {
-                            if (j > 0 && miny < y)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * (j - 1) + xb, i);
-                            if (xb > 0 && minx < x)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * j + xb - 1, i);
-                        } else if (vert) // | - block x,y-
-                        {
-                            if (j > 0 && miny < y)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * (j - 1) + xb, i);
-                        } else if (spos) // / - block x-,y-
-                        {
-                            if (xb > 0 && j > 0 && miny < y)
-                                AddBlockLine(blocklists, blockcount, blockdone,
-                                        ncols * (j - 1) + xb - 1, i);
-                        }
-                    } else if (j > 0 && miny < y) // else not on a corner: x,y-
-                        AddBlockLine(blocklists, blockcount, blockdone, ncols
-                                * (j - 1) + xb, i);
-                }
+                        if (yb > 0 && miny < y)
+                            cells.add(ncols * (yb - 1) + j);
+                        if (j > 0 && minx < x)
+                            cells.add(ncols * yb + j - 1);
+                    } else if (spos) // / - block x-,y-
+                    {
+                        if (yb > 0 && j > 0 && minx < x)
+                            cells.add(ncols * (yb - 1) + j - 1);
+                    } else if (horiz) // - - block x-,y
+                    {
+                        if (j > 0 && minx < x)
+                            cells.add(ncols * yb + j - 1);
+                    }
+                } else if (j > 0 && minx < x) // else not at corner: x-,y
+                    cells.add(ncols * yb + j - 1);
             }
         }
 
-        // Add initial 0 to all blocklists
-        // count the total number of lines (and 0's and -1's)
+        // For each row, see where the line along its bottom edge, which
+        // it contains, intersects the Linedef i. Add i to all the
+        // corresponding
+        // blocklists.
 
-        C2JUtils.memset(blockdone, false, NBlocks);
-
-        linetotal = 0;
-
-        for (var i = 0; i < NBlocks; i++)
+        if (!horiz)
         {
-            AddBlockLine(blocklists, blockcount, blockdone, i, 0);
-            linetotal += blockcount[i];
-        }
+            for (var j = 0; j < nrows; j++)
+            {
+                // intersection of Linedef with y=yorg+(j<<blkshift)
+                // (x,y) on Linedef i satisfies: (y-y1)*dx = dy*(x-x1)
+                // x = dx*(y-y1)/dy+x1;
 
-        // Create the blockmap lump
+                var y = yorg + (j << BLOCK_SHIFT); // (x,y) is intersection
 
-        // blockmaplump = malloc_IfSameLevel(blockmaplump, 4 + NBlocks +
-        // linetotal);
-        blockmaplump = new int[(4 + NBlocks + linetotal)];
-        // blockmap header
+                if (y < miny || y > maxy) // line doesn't touch row
+                    continue;
 
-        blockmaplump[0] = bmaporgx = xorg << FRACBITS;
-        blockmaplump[1] = bmaporgy = yorg << FRACBITS;
-        blockmaplump[2] = bmapwidth = ncols;
-        blockmaplump[3] = bmapheight = nrows;
+                var x = (int) ((long) dx * (y - y1) / dy) + x1;
+                var xb = x - xorg >> BLOCK_SHIFT; // block column number
+                var xp = x - xorg & BLOCK_MASK; // x position within block
 
-        // offsets to lists and block lists
+                if (xb < 0 || xb > ncols - 1) // outside blockmap, continue
+                    continue;
 
-        for (var i = 0; i < NBlocks; i++)
-        {
-            var bl = blocklists[i];
-            var offs =
-                    blockmaplump[4 + i] = // set offset to block's list
-                            (i != 0 ? blockmaplump[4 + i - 1] : 4 + NBlocks)
-                                    + (i != 0 ? blockcount[i - 1] : 0);
+                // The cell that contains the intersection point is always
+                // added
 
-            // add the lines in each block's list to the blockmaplump
-            // delete each list node as we go
+                cells.add(ncols * j + xb);
 
-            while (bl != null)
-            {
-                var tmp = bl.next;
-                blockmaplump[offs++] = bl.num;
-                bl = tmp;
+                // if the intersection is at a corner it depends on the
+                // slope
+                // (and whether the line : past the intersection)
+                // which
+                // blocks are hit
+
+                if (xp == 0) // intersection at a corner
+                {
+                    if (sneg) // \ - blocks x,y-, x-,y
+                    {
+                        if (j > 0 && miny < y)
+                            cells.add(ncols * (j - 1) + xb);
+                        if (xb > 0 && minx < x)
+                            cells.add(ncols * j + xb - 1);
+                    } else if (vert) // | - block x,y-
+                    {
+                        if (j > 0 && miny < y)
+                            cells.add(ncols * (j - 1) + xb);
+                    } else if (spos) // / - block x-,y-
+                    {
+                        if (xb > 0 && j > 0 && miny < y)
+                            cells.add(ncols * (j - 1) + xb - 1);
+                    }
+                } else if (j > 0 && miny < y) // else not on a corner: x,y-
+                    cells.add(ncols * (j - 1) + xb);
             }
         }
-
-        var b = System.nanoTime();
-
-        System.err.printf("Blockmap generated in %f sec\n", (b - a) / 1e9);
-        System.err.printf("Time spend in AddBlockLine : %f sec\n", total / 1e9);
     }
 
     //
@@ -655,7 +664,7 @@ public abstract class AbstractLevelLoader : ILevelLoader
      * @return
      */
 
-    private float rejectDensity()
+    public float rejectDensity()
     {
         // float[] rowdensity=new float[numsectors];
         float tabledensity;
@@ -879,6 +888,72 @@ public abstract class AbstractLevelLoader : ILevelLoader
 
         // Maes: purely academic. Most maps are well above 0.68
         // System.out.printf("Reject table density: %f",rejectDensity());
+
+        if (rejectbuilder != null)
+        {
+            rejectbuilder.cancel();
+            rejectbuilder = null;
+        }
+
+        if (REJECT_SYNTHESIS && (long) numsectors * numsectors / 8 <= RejectBuilder.MAX_BYTES)
+        {
+            rejectbuilder = new RejectBuilder(this);
+            rejectbuilder.start();
+        }
+    }
+
+    /**
+     * Merge the REJECT table built in the background, waiting for it if it's
+     * not ready yet. Called before every tic, it only does so before the
+     * level's first. The builder's work is bounded by the map's size (see
+     * RejectBuilder), so the wait is short, and the table only rejects what
+     * CheckSight would fail anyway; merging it at the same tic every time
+     * still keeps the sight checks made, and so their counters, the same.
+     */
+    public void PollReject()
+    {
+        byte[] built;
+
+        if (rejectbuilder == null)
+        {
+            return;
+        }
+
+        built = rejectbuilder.join();
+        rejectbuilder = null;
+
+        if (built == null)
+        {
+            return;
+        }
+
+        if (built.Length != rejectmatrix.Length)
+        {
+            return;
+        }
+
+        var before = rejectDensity();
+        var merged = rejectmatrix.clone();
+
+        for (var i = 0; i < merged.Length; i++)
+        {
+            merged[i] |= built[i];
+        }
+
+        rejectmatrix = merged;
+        System.out.printf("REJECT density %f, %f with the built one\n", before, rejectDensity());
+    }
+
+    /**
+     * MAES: set blockmapxneg and blockmapyneg for the blockmap just loaded or
+     * built. E.g. for a full 512x512 map, they should be both -1. For a
+     * 257*257, they should be both -255 etc. Anything up to 255 wide gets the
+     * defaults back, rather than what the last level left.
+     */
+    protected void SetBlockMapNeg()
+    {
+        blockmapxneg = bmapwidth > 255 ? bmapwidth - 512 : -257;
+        blockmapyneg = bmapheight > 255 ? bmapheight - 512 : -257;
     }
 
     /**
@@ -963,11 +1038,4 @@ public abstract class AbstractLevelLoader : ILevelLoader
 
     /// Sector tag stuff, lifted off Boom
 
-    protected class linelist_t // type used to list lines in each block
-    {
-        public int num;
-
-        public linelist_t next;
-    }
-
 }
@@ -552,6 +552,7 @@ public interface ActionTrait : Trait, ThinkerList
         // Allows the player to slide along any angled walls.
         //
         mobj_t slidemo;
+        Predicate<intercept_t> slideTraverse;
 
         @fixed_t
         int bestslidefrac;
@@ -576,6 +577,7 @@ public interface ActionTrait : Trait, ThinkerList
         // USE LINES
         //
         mobj_t usething;
+        Predicate<intercept_t> useTraverse;
     }
 
     ///////////////// MOVEMENT'S ACTIONS ////////////////////////
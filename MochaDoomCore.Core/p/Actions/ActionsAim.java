@@ -60,7 +60,12 @@ public interface ActionsAim : ActionsMissiles
         targ.attackrange = distance;
         targ.linetarget = null;
 
-        PathTraverse(t1.x, t1.y, x2, y2, PT_ADDLINES | PT_ADDTHINGS, this::AimTraverse);
+        if (targ.aimTraverse == null)
+        {
+            targ.aimTraverse = this::AimTraverse;
+        }
+
+        PathTraverse(t1.x, t1.y, x2, y2, PT_ADDLINES | PT_ADDTHINGS, targ.aimTraverse);
 
         if (targ.linetarget != null)
         {
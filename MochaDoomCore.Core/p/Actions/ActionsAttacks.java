@@ -90,7 +90,12 @@ public interface ActionsAttacks : ActionsAim, ActionsMobj, ActionsSight, Actions
         targ.attackrange = distance;
         targ.aimslope = slope;
 
-        PathTraverse(t1.x, t1.y, x2, y2, PT_ADDLINES | PT_ADDTHINGS, this::ShootTraverse);
+        if (targ.shootTraverse == null)
+        {
+            targ.shootTraverse = this::ShootTraverse;
+        }
+
+        PathTraverse(t1.x, t1.y, x2, y2, PT_ADDLINES | PT_ADDTHINGS, targ.shootTraverse);
     }
 
     /**
@@ -328,6 +328,26 @@ public interface ActionsLights : ActionsMoveEvents, ActionsUseEvents
         public int count;
         public int maxlight;
         public int minlight;
+
+        
+        public void read(Stream f)  
+        {
+            super.read(f); // Call thinker reader first
+            sectorid = DoomIO.readLEInt(f); // Sector index
+            count = DoomIO.readLEInt(f);
+            maxlight = DoomIO.readLEInt(f);
+            minlight = DoomIO.readLEInt(f);
+        }
+
+        
+        public void pack(MemoryStream b)  
+        {
+            super.pack(b); //12
+            b.putInt(sectorid); // 16
+            b.putInt(count); //20
+            b.putInt(maxlight);//24
+            b.putInt(minlight);//28
+        }
     }
 
     //
@@ -240,6 +240,9 @@ public interface ActionsMobj : ActionsThings, ActionsMovement, ActionsTeleportat
         target.flags |= MF_CORPSE | MF_DROPOFF;
         target.height >>= 2;
 
+        // killough 8/29/98: remove from threaded list
+        UpdateThinker(target);
+
         if (source != null && source.player != null)
         {
             // count for intermission
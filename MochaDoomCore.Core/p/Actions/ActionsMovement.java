@@ -507,9 +507,14 @@ public interface ActionsMovement : ActionsPathTraverse
 
             slideMove.bestslidefrac = FRACUNIT + 1;
 
-            PathTraverse(leadx, leady, leadx + mo.momx, leady + mo.momy, PT_ADDLINES, this::SlideTraverse);
-            PathTraverse(trailx, leady, trailx + mo.momx, leady + mo.momy, PT_ADDLINES, this::SlideTraverse);
-            PathTraverse(leadx, traily, leadx + mo.momx, traily + mo.momy, PT_ADDLINES, this::SlideTraverse);
+            if (slideMove.slideTraverse == null)
+            {
+                slideMove.slideTraverse = this::SlideTraverse;
+            }
+
+            PathTraverse(leadx, leady, leadx + mo.momx, leady + mo.momy, PT_ADDLINES, slideMove.slideTraverse);
+            PathTraverse(trailx, leady, trailx + mo.momx, leady + mo.momy, PT_ADDLINES, slideMove.slideTraverse);
+            PathTraverse(leadx, traily, leadx + mo.momx, traily + mo.momy, PT_ADDLINES, slideMove.slideTraverse);
 
             // move up to the wall
             if (slideMove.bestslidefrac == FRACUNIT + 1)
@@ -85,6 +85,13 @@ public interface ActionsPathTraverse : ActionsSectors
 
         tr.earlyout = eval(flags & PT_EARLYOUT);
 
+        if (tr.addLineIntercepts == null)
+        {
+            // Bound once, not once per block
+            tr.addLineIntercepts = this::AddLineIntercepts;
+            tr.addThingIntercepts = this::AddThingIntercepts;
+        }
+
         sceneRenderer().increaseValidCount(1);
         tr.intercept_p = 0;
 
@@ -168,7 +175,7 @@ public interface ActionsPathTraverse : ActionsSectors
         {
             if (eval(flags & PT_ADDLINES))
             {
-                if (!BlockLinesIterator(mapx, mapy, this::AddLineIntercepts))
+                if (!BlockLinesIterator(mapx, mapy, tr.addLineIntercepts))
                 {
                     return false;   // early out
                 }
@@ -176,7 +183,7 @@ public interface ActionsPathTraverse : ActionsSectors
 
             if (eval(flags & PT_ADDTHINGS))
             {
-                if (!BlockThingsIterator(mapx, mapy, this::AddThingIntercepts))
+                if (!BlockThingsIterator(mapx, mapy, tr.addThingIntercepts))
                 {
                     return false;   // early out
                 }
@@ -251,16 +258,9 @@ public interface ActionsPathTraverse : ActionsSectors
             return false; // stop checking
         }
 
-        // "create" a new intercept in the static intercept pool.
-        if (tr.intercept_p >= tr.intercepts.Length)
-        {
-            tr.ResizeIntercepts();
-        }
-
-        tr.intercepts[tr.intercept_p].frac = frac;
-        tr.intercepts[tr.intercept_p].isaline = true;
-        tr.intercepts[tr.intercept_p].line = ld;
-        tr.intercept_p++;
+        intercept_t in = tr.AddIntercept(frac);
+        in.isaline = true;
+        in.line = ld;
 
         return true; // continue
     }
@@ -320,16 +320,9 @@ public interface ActionsPathTraverse : ActionsSectors
             return true; // behind source
         }
 
-        // "create" a new intercept in the static intercept pool.
-        if (tr.intercept_p >= tr.intercepts.Length)
-        {
-            tr.ResizeIntercepts();
-        }
-
-        tr.intercepts[tr.intercept_p].frac = frac;
-        tr.intercepts[tr.intercept_p].isaline = false;
-        tr.intercepts[tr.intercept_p].thing = thing;
-        tr.intercept_p++;
+        intercept_t in = tr.AddIntercept(frac);
+        in.isaline = false;
+        in.thing = thing;
 
         return true; // keep going
     }
@@ -348,6 +341,27 @@ public interface ActionsPathTraverse : ActionsSectors
         int dist;
         intercept_t in = null;  // shut up compiler warning
 
+        if (!tr.linearIntercepts)
+        {
+            // Already in the order the scan below would pick them in.
+            for (int i = 0; i < tr.intercept_p; i++)
+            {
+                in = tr.intercepts[i];
+
+                if (in.frac > maxfrac)
+                {
+                    return true;    // checked everything in range
+                }
+
+                if (!func.test(in))
+                {
+                    return false;   // don't bother going farther
+                }
+            }
+
+            return true;        // everything was traversed
+        }
+
         count = tr.intercept_p;
 
         while (count-- > 0)
@@ -414,6 +428,15 @@ public interface ActionsPathTraverse : ActionsSectors
 
         int intercept_p;
 
+        Predicate<line_t> addLineIntercepts;
+        Predicate<mobj_t> addThingIntercepts;
+
+        /**
+         * Vanilla's unsorted intercepts and selection scan, rather than the
+         * sorted buffer. Only there for TraceBenchmark to compare with.
+         */
+        bool linearIntercepts;
+
         //
         // INTERCEPT ROUTINES
         //
@@ -423,5 +446,37 @@ public interface ActionsPathTraverse : ActionsSectors
         {
             intercepts = C2JUtils.resize(intercepts[0], intercepts, intercepts.Length * 2);
         }
+
+        /**
+         * "Create" a new intercept in the static intercept pool, and keep
+         * the pool sorted by frac. It goes after every intercept that is not
+         * farther, so that ties stay in the order they were found in: that's
+         * the one vanilla's scan for the closest intercept takes them in.
+         * <p>
+         * Lines and things are found block by block along the trace, so they
+         * come mostly in order already, and this seldom moves one far.
+         */
+        intercept_t AddIntercept(@fixed_t int frac)
+        {
+            if (intercept_p >= intercepts.Length)
+            {
+                ResizeIntercepts();
+            }
+
+            int i = intercept_p++;
+            intercept_t in = intercepts[i];
+
+            if (!linearIntercepts)
+            {
+                for (; i > 0 && intercepts[i - 1].frac > frac; i--)
+                {
+                    intercepts[i] = intercepts[i - 1];
+                }
+                intercepts[i] = in;
+            }
+
+            in.frac = frac;
+            return in;
+        }
     }
 }
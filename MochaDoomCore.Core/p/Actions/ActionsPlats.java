@@ -265,6 +265,11 @@ public interface ActionsPlats : ActionsMoveEvents, ActionsUseEvents
         }
     }
 
+    default plat_t[] getActivePlats()
+    {
+        return contextRequire(KEY_PLATS).activeplats;
+    }
+
     readonly class Plats
     {
 
@@ -29,6 +29,7 @@ using rr.sector_t;
 using rr.side_t;
 using utils.TraitFactory.ContextKey;
 
+using java.util.function.Predicate;
 using java.util.logging.Logger;
 
 using static data.Defines.ITEMQUESIZE;
@@ -166,6 +167,11 @@ public interface ActionsSectors : ActionsLights, ActionsFloors, ActionsDoors, Ac
         @fixed_t
         int lastpos;
 
+        if (ActionsSight.Sight.TRACK_MOVES)
+        {
+            contextRequire(ActionsSight.KEY_SIGHT).sectorMoved(sector);
+        }
+
         switch (floorOrCeiling)
         {
             case 0:
@@ -503,6 +509,10 @@ public interface ActionsSectors : ActionsLights, ActionsFloors, ActionsDoors, Ac
         //
         public int bulletslope;
 
+        // Traversers for PathTraverse, bound once
+        Predicate<intercept_t> aimTraverse;
+        Predicate<intercept_t> shootTraverse;
+
         bool isMeleeRange()
         {
             return attackrange == MELEERANGE;
@@ -18,16 +18,24 @@
 package p.Actions;
 
 using doom.SourceCode.fixed_t;
+using m.Settings;
+using mochadoom.Engine;
+using doom.thinker_t;
 using p.AbstractLevelLoader;
 using p.MapUtils;
+using p.SightService;
 using p.divline_t;
 using p.mobj_t;
 using rr.*;
 using utils.TraitFactory.ContextKey;
 
+using java.util.Arrays;
+
 using static data.Defines.NF_SUBSECTOR;
 using static data.Defines.RANGECHECK;
+using static data.Limits.MAXPLAYERS;
 using static m.fixed_t.FixedDiv;
+using static p.mobj_t.MF_SHOOTABLE;
 using static rr.line_t.ML_TWOSIDED;
 using static utils.C2JUtils.eval;
 using static utils.C2JUtils.flags;
@@ -72,8 +80,6 @@ public interface ActionsSight : ActionsSectors
 
         // An unobstructed LOS is possible.
         // Now look from eyes of t1 to any part of t2.
-        sight.sightcounts[1]++;
-
         sceneRenderer().increaseValidCount(1);
 
         sight.sightzstart = t1.z + t1.height - (t1.height >> 2);
@@ -87,8 +93,118 @@ public interface ActionsSight : ActionsSectors
         sight.strace.dx = t2.x - t1.x;
         sight.strace.dy = t2.y - t1.y;
 
+        if (sight.service != null)
+        {
+            int q = sight.service.find(t1, t2);
+            if (q >= 0)
+            {
+                sight.sightcounts[3]++;
+                spawn.topslope = sight.service.getTopSlope(q);
+                spawn.bottomslope = sight.service.getBottomSlope(q);
+                return sight.service.getResult(q);
+            }
+        }
+
+        int slot = -1;
+        if (Sight.CACHE)
+        {
+            slot = sight.probe(spawn.topslope, spawn.bottomslope);
+            if (sight.isCached(slot))
+            {
+                sight.sightcounts[2]++;
+                spawn.topslope = sight.topslopes[slot];
+                spawn.bottomslope = sight.bottomslopes[slot];
+                return sight.results[slot];
+            }
+        }
+
+        sight.sightcounts[1]++;
+
         // the head node is the last node output
-        return CrossBSPNode(ll.numnodes - 1);
+        bool result = CrossBSPNode(ll.numnodes - 1);
+
+        if (slot >= 0)
+        {
+            sight.store(slot, result, spawn.topslope, spawn.bottomslope);
+        }
+
+        return result;
+    }
+
+    /**
+     * Forget all memoized CheckSight results. Call whenever sector heights
+     * change other than through MovePlane: level setup, savegame loading.
+     */
+    default void ClearSightCache()
+    {
+        Sight sight = contextRequire(KEY_SIGHT);
+        sight.invalidate();
+
+        if (sight.service != null)
+        {
+            sight.service.clear();
+        }
+    }
+
+    /**
+     * With sight_threads, queue the sight checks the monsters about to
+     * change state are likely to make this tic, against their target and
+     * the players, and trace them all in parallel. Call it right before
+     * running the thinkers: CheckSight then takes whichever results are
+     * still exact by the time each monster gets to look.
+     * <p>
+     * Guessing wrong costs nothing but the wasted trace: a check that was
+     * not batched is simply traced when it comes.
+     */
+    default void PrefetchSight()
+    {
+        Sight sight = contextRequire(KEY_SIGHT);
+        if (sight.service == null)
+        {
+            return;
+        }
+
+        SightService service = sight.service;
+        service.begin(levelLoader());
+
+        for (thinker_t th = getMobjCap().mnext; th != getMobjCap(); th = th.mnext)
+        {
+            if (!(th instanceof mobj_t))
+            {
+                continue;
+            }
+
+            mobj_t mo = (mobj_t) th;
+
+            // Its next state, and so its next action, is due this tic
+            if (mo.mobj_tics != 1 || mo.player != null || !eval(mo.flags & MF_SHOOTABLE))
+            {
+                continue;
+            }
+
+            if (mo.target != null)
+            {
+                service.add(mo, mo.target);
+            }
+
+            for (int i = 0; i < MAXPLAYERS; i++)
+            {
+                if (PlayerInGame(i) && getPlayer(i).mo != null && getPlayer(i).mo != mo.target)
+                {
+                    service.add(mo, getPlayer(i).mo);
+                }
+            }
+        }
+
+        service.run();
+    }
+
+    /**
+     * @return line of sight check counters, e.g. for benchmarks
+     */
+    default Sight getSightCounts()
+    {
+        return contextRequire(KEY_SIGHT);
     }
 
     /**
@@ -113,13 +229,14 @@ public interface ActionsSight : ActionsSectors
         @fixed_t
         int opentop;
         int openbottom;
-        divline_t divl = new divline_t();
         //vertex_t v1;
         //vertex_t v2;
         @fixed_t
         int frac;
         int slope;
 
+        divline_t divl = sight.divl;
+
         if (RANGECHECK)
         {
             if (num >= ll.numsubsectors)
@@ -291,14 +408,163 @@ public interface ActionsSight : ActionsSectors
         return CrossBSPNode(bsp.children[side ^ 1]);
     }
 
+    /**
+     * With sight_cache on, CheckSight results are memoized, until any floor
+     * or ceiling moves. The key is everything the BSP trace depends on, save
+     * for sector heights: trace ends, eye height and starting slopes. Even
+     * in a single tic, many monsters standing still look at the same player
+     * standing still, and they keep doing it while waiting for the player
+     * to show up. Since the key is exact, a hit returns the very same result and
+     * final slopes the trace would have, so demos don't notice.
+     * <p>
+     * The table is direct mapped: a colliding store just takes the slot.
+     * Invalidating it is bumping the epoch, entries of any other epoch don't
+     * count.
+     */
     class Sight
     {
 
+        static readonly bool CACHE = Engine.getConfig().equals(Settings.sight_cache, bool.TRUE);
+        static readonly int THREADS = Engine.getConfig().getValue(Settings.sight_threads, int.class);
+        static readonly bool TRACK_MOVES = CACHE || THREADS > 0;
+        static readonly int CACHE_SIZE = 1 << 12;
+        static readonly int KEY = 7;
+
         int sightzstart; // eye z of looker
         divline_t strace = new divline_t();
         // from t1 to t2
         int t2x;
         int t2y;
-        int[] sightcounts = new int[2];
+        // line being crossed, in CrossSubsector
+        divline_t divl = new divline_t();
+        // rejected by REJECT, traced through the BSP, answered by the cache, by the batch
+        int[] sightcounts = new int[4];
+
+        readonly SightService service = THREADS > 0 ? new SightService(THREADS) : null;
+
+        readonly int[] probe = new int[KEY];
+        readonly int[] keys = CACHE ? new int[CACHE_SIZE * KEY] : null;
+        readonly int[] epochs = CACHE ? new int[CACHE_SIZE] : null;
+        readonly bool[] results = CACHE ? new bool[CACHE_SIZE] : null;
+        readonly int[] topslopes = CACHE ? new int[CACHE_SIZE] : null;
+        readonly int[] bottomslopes = CACHE ? new int[CACHE_SIZE] : null;
+        int epoch = 1;
+
+        /**
+         * Key the trace just set up, and hash it
+         *
+         * @return its slot
+         */
+        int probe(int topslope, int bottomslope)
+        {
+            probe[0] = strace.x;
+            probe[1] = strace.y;
+            probe[2] = t2x;
+            probe[3] = t2y;
+            probe[4] = sightzstart;
+            probe[5] = topslope;
+            probe[6] = bottomslope;
+
+            int h = 0;
+            for (int k : probe)
+            {
+                h = (h ^ k) * 0x9E3779B1;
+            }
+            return (h ^ h >>> 16) & CACHE_SIZE - 1;
+        }
+
+        bool isCached(int slot)
+        {
+            if (epochs[slot] != epoch)
+            {
+                return false;
+            }
+
+            int base = slot * KEY;
+            for (int i = 0; i < KEY; i++)
+            {
+                if (keys[base + i] != probe[i])
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void store(int slot, bool result, int topslope, int bottomslope)
+        {
+            System.arraycopy(probe, 0, keys, slot * KEY, KEY);
+            epochs[slot] = epoch;
+            results[slot] = result;
+            topslopes[slot] = topslope;
+            bottomslopes[slot] = bottomslope;
+        }
+
+        /**
+         * A floor or ceiling moved
+         */
+        void sectorMoved(sector_t sector)
+        {
+            invalidate();
+
+            if (service != null)
+            {
+                service.sectorMoved(sector);
+            }
+        }
+
+        void invalidate()
+        {
+            if (CACHE && ++epoch == 0)
+            {
+                // Wrapped around: make sure no entry is mistaken for a new one.
+                Arrays.fill(epochs, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * @return checks that REJECT ruled out
+         */
+        public int getRejected()
+        {
+            return sightcounts[0];
+        }
+
+        /**
+         * @return checks that walked the BSP
+         */
+        public int getTraced()
+        {
+            return sightcounts[1];
+        }
+
+        /**
+         * @return checks answered by the cache
+         */
+        public int getCached()
+        {
+            return sightcounts[2];
+        }
+
+        /**
+         * @return checks answered by the batch traced in parallel
+         */
+        public int getBatched()
+        {
+            return sightcounts[3];
+        }
+
+        public void resetCounts()
+        {
+            Arrays.fill(sightcounts, 0);
+        }
+
+        public String toString()
+        {
+            return String.format("%d sight checks: %d rejected, %d traced, %d cached, %d batched",
+                    sightcounts[0] + sightcounts[1] + sightcounts[2] + sightcounts[3],
+                    sightcounts[0], sightcounts[1], sightcounts[2], sightcounts[3]);
+        }
     }
 }
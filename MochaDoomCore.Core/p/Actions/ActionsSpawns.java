@@ -132,7 +132,7 @@ public interface ActionsSpawns : ActionsSectors
         {
             mobj = createMobj();
         }
-        info = mobjinfo[type.ordinal()];
+        info = DOOM().mobjInfo[type.ordinal()];
 
         mobj.type = type;
         mobj.info = info;
@@ -157,7 +157,7 @@ public interface ActionsSpawns : ActionsSectors
         st = states[info.spawnstate.ordinal()];
 
         mobj.mobj_state = st;
-        mobj.mobj_tics = st.tics;
+        mobj.mobj_tics = DOOM().stateTics[info.spawnstate.ordinal()];
         mobj.mobj_sprite = st.sprite;
         mobj.mobj_frame = st.frame;
 
@@ -77,7 +77,8 @@ public interface ActionsTeleportation : ActionsSectors
             if (levelLoader().sectors[i].tag == tag)
             {
                 //thinker = thinkercap.next;
-                for (thinker = getThinkerCap().next; thinker != getThinkerCap(); thinker = thinker.next)
+                // Teleport destinations are mobjs: walk only those, in order.
+                for (thinker = getMobjCap().mnext; thinker != getMobjCap(); thinker = thinker.mnext)
                 {
                     // not a mobj
                     if (thinker.thinkerFunction != ActiveStates.P_MobjThinker)
@@ -27,8 +27,6 @@ using doom.SourceCode.CauseOfDesyncProbability;
 using doom.SourceCode.P_Spec;
 using doom.thinker_t;
 using p.*;
-using p.ActiveStates.MobjConsumer;
-using p.ActiveStates.ThinkerConsumer;
 using rr.sector_t;
 using rr.subsector_t;
 
@@ -66,6 +64,8 @@ public interface ActionsThinkers : ActionsSectors, ThinkerList
     default void RemoveThinker(thinker_t thinker)
     {
         thinker.thinkerFunction = NOP;
+        // killough 8/29/98: move it to th_delete thread
+        UpdateThinker(thinker);
     }
 
     /**
@@ -316,6 +316,10 @@ public interface ActionsThinkers : ActionsSectors, ThinkerList
     //
     default void RunThinkers()
     {
+        ActionFunctions actions = DOOM().actions;
+        levelLoader().PollReject();
+        actions.PrefetchSight();
+
         thinker_t thinker = getThinkerCap().next;
         while (thinker != getThinkerCap())
         {
@@ -324,16 +328,12 @@ public interface ActionsThinkers : ActionsSectors, ThinkerList
                 // time to remove it
                 thinker.next.prev = thinker.prev;
                 thinker.prev.next = thinker.next;
+                UnthreadThinker(thinker);
                 // Z_Free (currentthinker);
             } else
             {
-                if (thinker.thinkerFunction.isParamType(MobjConsumer.class))
-                {
-                    thinker.thinkerFunction.fun(MobjConsumer.class).accept(DOOM().actions, (mobj_t) thinker);
-                } else if (thinker.thinkerFunction.isParamType(ThinkerConsumer.class))
-                {
-                    thinker.thinkerFunction.fun(ThinkerConsumer.class).accept(DOOM().actions, thinker);
-                }
+                // Handler already resolved by type: no class checks per tic.
+                thinker.thinkerFunction.think.accept(actions, thinker);
             }
             thinker = thinker.next;
         }
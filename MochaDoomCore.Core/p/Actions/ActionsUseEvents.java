@@ -550,7 +550,12 @@ public interface ActionsUseEvents : ActionTrait
         x2 = x1 + (USERANGE >> FRACBITS) * finecosine[angle];
         y2 = y1 + (USERANGE >> FRACBITS) * finesine[angle];
 
-        PathTraverse(x1, y1, x2, y2, PT_ADDLINES, this::UseTraverse);
+        if (sp.useTraverse == null)
+        {
+            sp.useTraverse = this::UseTraverse;
+        }
+
+        PathTraverse(x1, y1, x2, y2, PT_ADDLINES, sp.useTraverse);
     }
 
     //
@@ -149,7 +149,7 @@ public interface Bosses : ActionTrait
         }
         // scan the remaining thinkers to see
         // if all bosses are dead
-        for (th = getThinkerCap().next; th != getThinkerCap(); th = th.next)
+        for (th = getMobjCap().mnext; th != getMobjCap(); th = th.mnext)
         {
             if (th.thinkerFunction != ActiveStates.P_MobjThinker)
             {
@@ -223,7 +223,7 @@ public interface Bosses : ActionTrait
 
         // scan the remaining thinkers
         // to see if all Keens are dead
-        for (th = getThinkerCap().next; th != getThinkerCap(); th = th.next)
+        for (th = getMobjCap().mnext; th != getMobjCap(); th = th.mnext)
         {
             if (th.thinkerFunction != ActiveStates.P_MobjThinker)
             {
@@ -45,7 +45,7 @@ public interface HorrendousVisages : Sounds
         brain.braintargeton = 0;
 
         //thinker = obs.thinkercap.next;
-        for (thinker = getThinkerCap().next; thinker != getThinkerCap(); thinker = thinker.next)
+        for (thinker = getMobjCap().mnext; thinker != getMobjCap(); thinker = thinker.mnext)
         {
             if (thinker.thinkerFunction != ActiveStates.P_MobjThinker)
             {
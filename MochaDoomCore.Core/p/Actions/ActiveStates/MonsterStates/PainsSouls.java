@@ -95,15 +95,16 @@ public interface PainsSouls : ActionTrait
         // count total number of skull currently on the level
         count = 0;
 
-        currentthinker = getThinkerCap().next;
-        while (currentthinker != getThinkerCap())
+        // Dead and dying ones count too, so not just enemies.
+        currentthinker = getMobjCap().mnext;
+        while (currentthinker != getMobjCap())
         {
             if (currentthinker.thinkerFunction == ActiveStates.P_MobjThinker
                     && ((mobj_t) currentthinker).type == mobjtype_t.MT_SKULL)
             {
                 count++;
             }
-            currentthinker = currentthinker.next;
+            currentthinker = currentthinker.mnext;
         }
 
         // if there are allready 20 skulls on the level,
@@ -98,6 +98,9 @@ public interface Viles : ActionTrait
                         att.vileCorpseHit.health = info.spawnhealth;
                         att.vileCorpseHit.target = null;
 
+                        // killough 8/29/98: add to appropriate thread
+                        UpdateThinker(att.vileCorpseHit);
+
                         return;
                     }
                 }
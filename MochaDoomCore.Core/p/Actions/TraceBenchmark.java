@@ -0,0 +1,233 @@
+namespace p.Actions {  
+
+using doom.DoomMain;
+using p.Actions.ActionsPathTraverse.Traverse;
+using p.Actions.ActionsSectors.Spawn;
+using p.intercept_t;
+using p.mobj_t;
+
+using java.lang.management.ManagementFactory;
+using java.util.ArrayList;
+using java.util.List;
+using java.util.function.Predicate;
+
+using static data.Defines.*;
+using static data.Tables.ANG45;
+using static data.Tables.finecosine;
+using static data.Tables.finesine;
+using static p.mobj_t.MF_SHOOTABLE;
+using static rr.line_t.ML_TWOSIDED;
+
+/**
+ * Fires traces from things of the currently loaded level, the way hitscan
+ * attacks, autoaim and use do, first through the sorted intercept buffer
+ * and then through vanilla's selection scan, and prints what each took and
+ * how much it allocated. While at it, it checks that both visit the very
+ * same intercepts in the very same order, ties included, or the two would
+ * hit different things and desync demos.
+ * <p>
+ * Aim traces are the real AimLineAttack. Shots and uses go through
+ * PathTraverse with traversers that stop where ShootTraverse and
+ * UseTraverse would, but without spawning puffs, hurting anything or
+ * triggering specials, so the level is left as it was, random numbers
+ * included. Best run on large open maps with lots of monsters.
+ * <p>
+ * Run with -benchmark and -tracebench rounds: after each demo, on the
+ * level it ended on.
+ */
+
+public class TraceBenchmark
+{
+    private static readonly int ANGLES = 8;
+
+    private readonly DoomMain<?, ?> DOOM;
+    private readonly List<mobj_t> shooters = new ArrayList<>();
+
+    // Order of the intercepts visited, hashed
+    private long signature;
+    private int visits;
+    private Spawn targ;
+
+    private readonly Predicate<intercept_t> shoot = this::shoot;
+    private readonly Predicate<intercept_t> use = this::use;
+
+    public TraceBenchmark(DoomMain<?, ?> DOOM)
+    {
+        this.DOOM = DOOM;
+    }
+
+    /**
+     * Fire from every "stride"th mobj of the level.
+     */
+
+    public TraceBenchmark addThingShooters(int stride)
+    {
+        var cap = DOOM.actions.getMobjCap();
+        var count = 0;
+
+        for (var th = cap.mnext; th != cap; th = th.mnext)
+        {
+            if (th instanceof mobj_t && count++ % stride == 0)
+            {
+                shooters.add((mobj_t) th);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @param rounds how many times each shooter fires all around, per mode
+     * @return false if the two modes disagreed on any trace
+     */
+
+    public bool run(int rounds)
+    {
+        Traverse tr = DOOM.actions.contextRequire(ActionsPathTraverse.KEY_TRAVERSE);
+        var oldmode = tr.linearIntercepts;
+        var same = true;
+
+        long[] sorted, linear;
+        long sortedsig, linearsig;
+
+        try
+        {
+            // Once each, so that neither pays for warming up, nor for growing the pool
+            tr.linearIntercepts = false;
+            fire(1);
+            tr.linearIntercepts = true;
+            fire(1);
+
+            tr.linearIntercepts = false;
+            sorted = fire(rounds);
+            sortedsig = signature;
+
+            tr.linearIntercepts = true;
+            linear = fire(rounds);
+            linearsig = signature;
+        }
+        finally
+        {
+            tr.linearIntercepts = oldmode;
+        }
+
+        if (sortedsig != linearsig)
+        {
+            System.err.printf("TraceBenchmark: intercepts visited in a different order\n");
+            same = false;
+        }
+
+        // aim, shoot and use
+        var n = Math.Max(1, shooters.size() * rounds * ANGLES * 3);
+        System.out.printf("TraceBenchmark: %d shooters x %d rounds x %d angles, %.1f intercepts/shot or use\n",
+                shooters.size(), rounds, ANGLES, visits * 1.5 / n);
+        System.out.printf("\tsorted intercepts: %.3f us/trace, %d bytes allocated\n", sorted[0] / 1e3 / n, sorted[1]);
+        System.out.printf("\tlinear intercepts: %.3f us/trace, %d bytes allocated\n", linear[0] / 1e3 / n, linear[1]);
+        System.out.printf("\ttraversal order identical: %s\n", same);
+
+        return same;
+    }
+
+    /**
+     * @return nanoseconds taken, bytes allocated (or -1 if unknown)
+     */
+    private long[] fire(int rounds)
+    {
+        targ = DOOM.actions.contextRequire(ActionsSectors.KEY_SPAWN);
+        var alloc = allocated();
+        var start = System.nanoTime();
+
+        signature = 0;
+        visits = 0;
+
+        for (var r = 0; r < rounds; r++)
+        {
+            for (var mo : shooters)
+            {
+                for (var a = 0; a < ANGLES; a++)
+                {
+                    var angle = mo.angle + (long) a * ANG45 & 0xFFFFFFFFL;
+
+                    // autoaim
+                    var slope = DOOM.actions.AimLineAttack(mo, angle, MISSILERANGE);
+                    mix(slope);
+                    mix(targ.linetarget != null ? System.identityHashCode(targ.linetarget) : 0);
+
+                    // hitscan
+                    targ.shootthing = mo;
+                    DOOM.actions.PathTraverse(mo.x, mo.y, endx(mo, angle, MISSILERANGE), endy(mo, angle, MISSILERANGE),
+                            PT_ADDLINES | PT_ADDTHINGS, shoot);
+
+                    // use
+                    DOOM.actions.PathTraverse(mo.x, mo.y, endx(mo, angle, USERANGE), endy(mo, angle, USERANGE),
+                            PT_ADDLINES, use);
+                }
+            }
+        }
+
+        var time = System.nanoTime() - start;
+        var now = allocated();
+        return new long[]{time, alloc < 0 || now < 0 ? -1 : now - alloc};
+    }
+
+    private static int endx(mobj_t mo, long angle, int range)
+    {
+        return mo.x + (range >> FRACBITS) * finecosine(angle);
+    }
+
+    private static int endy(mobj_t mo, long angle, int range)
+    {
+        return mo.y + (range >> FRACBITS) * finesine(angle);
+    }
+
+    /**
+     * Stops at one-sided lines and at the first shootable thing other than
+     * the shooter, like ShootTraverse, minus the heights.
+     */
+    private bool shoot(intercept_t in)
+    {
+        visit(in);
+
+        if (in.isaline)
+        {
+            return (in.line.flags & ML_TWOSIDED) != 0;
+        }
+
+        return in.thing == targ.shootthing
+                || (in.thing.flags & MF_SHOOTABLE) == 0;
+    }
+
+    /**
+     * Stops at the first special or one-sided line, like UseTraverse.
+     */
+    private bool use(intercept_t in)
+    {
+        visit(in);
+        return in.line.special == 0 && (in.line.flags & ML_TWOSIDED) != 0;
+    }
+
+    private void visit(intercept_t in)
+    {
+        visits++;
+        mix(in.frac);
+        mix(in.isaline ? in.line.id : System.identityHashCode(in.thing));
+    }
+
+    private void mix(int value)
+    {
+        signature = (signature ^ value) * 0x100000001B3L;
+    }
+
+    /**
+     * @return bytes allocated by this thread so far, if the JVM tells
+     */
+    private static long allocated()
+    {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
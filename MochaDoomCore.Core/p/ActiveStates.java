@@ -179,10 +179,48 @@ public enum ActiveStates
     private readonly ParamClass<?> actionFunction;
     private readonly Class<? : ParamClass<?>> paramType;
 
+    /**
+     * Typed handlers, resolved once per constant instead of checking the
+     * paramType on every call. Just like the C union: only the field
+     * matching the function's real type is set, the others are null.
+     */
+    public readonly MobjConsumer acp1;
+    public readonly ThinkerConsumer acv;
+    public readonly PlayerSpriteConsumer acp2;
+
+    /**
+     * What P_RunThinkers calls, whatever the type: mobj thinkers get their
+     * mobj, the others the bare thinker, and psprite actions (which never
+     * are thinkers) do nothing, as before.
+     */
+    public readonly ThinkerConsumer think;
+
     <T : ParamClass<?>> ActiveStates(T actionFunction, Class<T> paramType)
     {
         this.actionFunction = actionFunction;
         this.paramType = paramType;
+
+        if (paramType == MobjConsumer.class)
+        {
+            var f = (MobjConsumer) actionFunction;
+            this.acp1 = f;
+            this.acv = null;
+            this.acp2 = null;
+            this.think = (a, t) -> f.accept(a, (mobj_t) t);
+        } else if (paramType == ThinkerConsumer.class)
+        {
+            this.acp1 = null;
+            this.acv = (ThinkerConsumer) actionFunction;
+            this.acp2 = null;
+            this.think = acv;
+        } else
+        {
+            this.acp1 = null;
+            this.acv = null;
+            this.acp2 = (PlayerSpriteConsumer) actionFunction;
+            this.think = (a, t) -> {
+            };
+        }
     }
 
     private static void nop(Object... o)
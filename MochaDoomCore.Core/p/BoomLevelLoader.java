@@ -11,8 +11,10 @@ using doom.SourceCode;
 using doom.SourceCode.CauseOfDesyncProbability;
 using doom.SourceCode.P_Setup;
 using m.BBox;
+using m.Settings;
 using m.fixed_t;
 using rr.*;
+using mochadoom.Engine;
 using s.degenmobj_t;
 using utils.C2JUtils;
 using utils.GenericCopy.ArraySupplier;
@@ -20,11 +22,17 @@ using w.CacheableDoomObjectContainer;
 using w.DoomBuffer;
 using w.wadfile_info_t;
 
+using java.io.File;
 using java.io.IOException;
 using java.nio.MemoryStream;
 using java.nio.ByteOrder;
 using java.util.Arrays;
+using java.util.IdentityHashMap;
+using java.util.Map;
+using java.util.concurrent.ForkJoinPool;
 using java.util.function.IntFunction;
+using java.util.zip.DataFormatException;
+using java.util.zip.Inflater;
 
 using static boom.Compatibility.prboom_2_compatibility;
 using static boom.E6Y.NO_INDEX;
@@ -120,6 +128,8 @@ public class BoomLevelLoader : AbstractLevelLoader
     private int current_episode = -1;
     private int current_map = -1;
     private int current_nodesVersion = -1;
+    // The current level's marker lump, for ZNodeBenchmark
+    private int current_lumpnum = -1;
     private bool samelevel = false;
     private bool no_overlapped_sprites;
 
@@ -210,16 +220,22 @@ public class BoomLevelLoader : AbstractLevelLoader
     {
         byte[] data;
         int check;
+        bool result = false;
 
+        // ZNOD and ZGLN are as read on little endian machines
         data = DOOM.wadLoader.CacheLumpNumAsRawBytes(lumpnum + ML_NODES, 0);
-        check = MemoryStream.wrap(data).getInt();
+        check = data.Length < 4 ? 0 : MemoryStream.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt();
 
         if (check == ZNOD)
-            DOOM.doomSystem.Error("P_CheckForZDoomNodes: ZDoom nodes not supported yet");
+        {
+            System.out.println("P_CheckForZDoomNodes: ZDoom compressed normal nodes are detected\n");
+            result = true;
+        }
 
         data = DOOM.wadLoader.CacheLumpNumAsRawBytes(lumpnum + ML_SSECTORS, 0);
-        check = MemoryStream.wrap(data).getInt();
+        check = data.Length < 4 ? 0 : MemoryStream.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt();
 
+        // GL nodes would need minisegs, which the renderer can't draw
         if (check == ZGLN)
         {
             DOOM.doomSystem.Error("P_CheckForZDoomNodes: ZDoom GL nodes not supported yet");
@@ -229,7 +245,7 @@ public class BoomLevelLoader : AbstractLevelLoader
         DOOM.wadLoader.UnlockLumpNum(lumpnum + ML_NODES);
         DOOM.wadLoader.UnlockLumpNum(lumpnum + ML_SSECTORS);
 
-        return false;
+        return result;
     }
 
     private bool P_CheckForDeePBSPv4Nodes(int lumpnum, int gl_lumpnum)
@@ -258,7 +274,7 @@ public class BoomLevelLoader : AbstractLevelLoader
         bool result = false;
 
         data = DOOM.wadLoader.CacheLumpNumAsRawBytes(lumpnum + ML_NODES, 0);
-        wrapper = MemoryStream.wrap(data).getInt();
+        wrapper = data.Length < 4 ? 0 : MemoryStream.wrap(data).getInt();
 
         if (wrapper == XNOD)
         {
@@ -271,6 +287,101 @@ public class BoomLevelLoader : AbstractLevelLoader
         return result;
     }
 
+    //
+    // P_CheckForMissingNodes
+    //
+    // Editors and some tools write maps with empty NODES, SEGS or SSECTORS,
+    // expecting a node builder to be run afterwards. Only for classic nodes:
+    // ZDoom and DeePBSP ones are checked for first.
+    //
+    private bool P_CheckForMissingNodes(int lumpnum)
+    {
+        int nodes = DOOM.wadLoader.Lum.Length(lumpnum + ML_NODES);
+        int segs = DOOM.wadLoader.Lum.Length(lumpnum + ML_SEGS);
+        int subsectors = DOOM.wadLoader.Lum.Length(lumpnum + ML_SSECTORS);
+        bool missing;
+
+        missing = segs < mapseg_t.sizeOf() || subsectors < mapsubsector_t.sizeOf()
+                || nodes % mapnode_t.sizeOf() != 0
+                // allow trivial maps (no nodes, one subsector)
+                || nodes == 0 && subsectors != mapsubsector_t.sizeOf();
+
+        if (missing)
+        {
+            System.out.println("P_CheckForMissingNodes: missing or broken nodes, building them\n");
+        }
+
+        return missing;
+    }
+
+    //
+    // P_BuildNodes
+    //
+    // Build nodes for the level, or reuse the ones built last time, if the
+    // lumps they're built from are the same. They're cached next to the WAD
+    // the level is in, and loaded as any compressed ZDoom nodes.
+    //
+    private void P_BuildNodes(int lumpnum)
+    {
+        byte[] key = NodeBuilder.key(
+                P_ReadLump(lumpnum + ML_VERTEXES),
+                P_ReadLump(lumpnum + ML_LINEDEFS),
+                P_ReadLump(lumpnum + ML_SIDEDEFS));
+        wadfile_info_t wad = DOOM.wadLoader.GetLumpInfo(lumpnum).wadfile;
+        File cache = null;
+        byte[] cached;
+
+        if (Engine.getConfig().equals(Settings.node_cache, bool.TRUE) && wad != null && wad.entry == null)
+        {
+            cache = new File(wad.name + "." + DOOM.wadLoader.GetNameForLump(lumpnum) + ".nodes");
+        }
+
+        if (cache != null && (cached = NodeBuilder.loadCache(cache, key)) != null)
+        {
+            System.out.printf("P_BuildNodes: using nodes cached in %s\n", cache);
+            P_LoadZNodes(cached, 0, true);
+            return;
+        }
+
+        long a = System.nanoTime();
+        int threads = Engine.getConfig().getValue(Settings.parallelism_node_builder, int.class);
+        NodeBuilder builder = new NodeBuilder(DOOM.doomSystem, vertexes, numvertexes, lines, numlines);
+        byte[] built;
+
+        if (threads > 1)
+        {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try
+            {
+                built = builder.build(pool);
+            } finally
+            {
+                pool.shutdown();
+            }
+        } else
+        {
+            built = builder.build(null);
+        }
+
+        System.out.printf("P_BuildNodes: %d nodes, %d subsectors, %d segs built in %f sec\n",
+                builder.getNumNodes(), builder.getNumSubsectors(), builder.getNumSegs(),
+                (System.nanoTime() - a) / 1e9);
+
+        if (cache != null)
+        {
+            NodeBuilder.saveCache(cache, key, built);
+        }
+
+        P_LoadZNodes(built, 0, false);
+    }
+
+    private byte[] P_ReadLump(int lump)
+    {
+        byte[] data = new byte[DOOM.wadLoader.Lum.Length(lump)];
+        DOOM.wadLoader.ReadLump(lump, data);
+        return data;
+    }
+
     public void P_GetNodesVersion(int lumpnum, int gl_lumpnum)
     {
         int ver = -1;
@@ -314,10 +425,6 @@ public class BoomLevelLoader : AbstractLevelLoader
         {
             nodesVersion = 0;
             System.out.println("P_GetNodesVersion: using normal BSP nodes\n");
-            if (P_CheckForZDoomNodes(lumpnum, gl_lumpnum))
-            {
-                DOOM.doomSystem.Error("P_GetNodesVersion: ZDoom nodes not supported yet");
-            }
         }
     }
 
@@ -1021,10 +1128,9 @@ public class BoomLevelLoader : AbstractLevelLoader
         DOOM.wadLoader.UnlockLumpNum(lump); // cph - release the data
     }
 
-    private void P_LoadZSegs(MemoryStream data)  
+    private void P_LoadZSegs(ZNodeStream data)  
     {
-        mapseg_znod_t[] nodes = malloc(mapseg_znod_t::new, mapseg_znod_t[]::new, numsegs);
-        CacheableDoomObjectContainer.unpack(data, nodes);
+        mapseg_znod_t ml = new mapseg_znod_t();
 
         for (int i = 0; i < numsegs; i++)
         {
@@ -1034,7 +1140,8 @@ public class BoomLevelLoader : AbstractLevelLoader
             int linedef;
             char side;
             seg_t li = segs[i];
-            mapseg_znod_t ml = nodes[i];
+
+            ml.unpack(data.need(mapseg_znod_t.sizeOf()));
 
             v1 = ml.v1;
             v2 = ml.v2;
@@ -1108,24 +1215,109 @@ public class BoomLevelLoader : AbstractLevelLoader
         }
     }
 
-    private int CheckZNodesOverflow(int size, int count)
+    /**
+     * ZDoom extended nodes, as read by P_LoadZNodes. Uncompressed (XNOD)
+     * nodes are read straight from the lump. Compressed (ZNOD) ones are
+     * inflated a window at a time, as they're parsed, so the whole inflated
+     * nodes never need to be held at once. Either way, reading past the end
+     * of the nodes is an error, like CheckZNodesOverflow was.
+     */
+    private class ZNodeStream
     {
-        size -= count;
+        private static readonly int WINDOW = 1 << 16;
+
+        private readonly MemoryStream buf;
+        private readonly Inflater inflater;
+
+        ZNodeStream(byte[] data, bool compressed)
+        {
+            if (compressed)
+            {
+                inflater = new Inflater();
+                inflater.setInput(data, 4, data.Length - 4);
+                buf = MemoryStream.allocate(WINDOW);
+                buf.limit(0);
+            } else
+            {
+                inflater = null;
+                buf = MemoryStream.wrap(data, 4, data.Length - 4);
+            }
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        /**
+         * @return the nodes, with at least count bytes left to read
+         */
+        MemoryStream need(int count)
+        {
+            if (buf.remaining() < count && inflater != null)
+            {
+                buf.compact();
+                try
+                {
+                    while (buf.position() < count && !inflater.finished() && !inflater.needsInput())
+                    {
+                        int got = inflater.inflate(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+                        buf.position(buf.position() + got);
 
-        if (size < 0)
+                        if (got == 0 && inflater.needsDictionary())
+                        {
+                            break;
+                        }
+                    }
+                } catch (DataFormatException e)
+                {
+                    DOOM.doomSystem.Error("P_LoadZNodes: compressed nodes are corrupt: %s", e.getMessage());
+                }
+                buf.flip();
+            }
+
+            if (buf.remaining() < count)
+            {
+                DOOM.doomSystem.Error("P_LoadZNodes: incorrect nodes");
+            }
+
+            return buf;
+        }
+
+        int getInt()
+        {
+            return need(4).getInt();
+        }
+
+        /**
+         * Sanity check for a count just read, before allocating for it. Only
+         * possible with uncompressed nodes, which are all there already.
+         */
+        void expect(long bytes)
         {
-            DOOM.doomSystem.Error("P_LoadZNodes: incorrect nodes");
+            if (inflater == null && bytes > buf.remaining())
+            {
+                DOOM.doomSystem.Error("P_LoadZNodes: incorrect nodes");
+            }
         }
 
-        return size;
+        void close()
+        {
+            if (inflater != null)
+            {
+                inflater.end();
+            }
+        }
     }
 
-    private void P_LoadZNodes(int lump, int glnodes)  
+    private void P_LoadZNodes(int lump, int glnodes, bool compressed)  
     {
-        MemoryStream data;
-        int len;
-        int header; // for debugging
+        P_LoadZNodes(DOOM.wadLoader.CacheLumpNumAsRawBytes(lump, PU_LEVEL), glnodes, compressed);
+        DOOM.wadLoader.UnlockLumpNum(lump); // cph - release the data
+    }
 
+    /**
+     * @param lump nodes, as in a ZNOD or XNOD lump, header included
+     */
+    private void P_LoadZNodes(byte[] lump, int glnodes, bool compressed)  
+    {
+        ZNodeStream data;
         int orgVerts;
         int newVerts;
         int numSubs;
@@ -1134,71 +1326,72 @@ public class BoomLevelLoader : AbstractLevelLoader
         int numNodes;
         vertex_t[] newvertarray = null;
 
-        data = DOOM.wadLoader.CacheLumpNumAsDoomBuffer(lump).getBuffer();
-        data.order(ByteOrder.LITTLE_ENDIAN);
-        len = DOOM.wadLoader.Lum.Length(lump);
-
-        // skip header
-        len = CheckZNodesOverflow(len, 4);
-        header = data.getInt();
+        // header already checked: ZNOD if compressed, XNOD if not
+        data = new ZNodeStream(lump, compressed);
 
         // Read extra vertices added during node building
-        len = CheckZNodesOverflow(len, 4);
         orgVerts = data.getInt();
-
-        len = CheckZNodesOverflow(len, 4);
         newVerts = data.getInt();
 
-        if (!samelevel)
+        // Always read, even for the same level: P_LoadVertexes reset them
+        data.expect((long) newVerts * z_vertex_t.sizeOf());
+
+        if (orgVerts + newVerts == numvertexes || vertexes.Length == orgVerts + newVerts)
         {
-            if (orgVerts + newVerts == numvertexes)
-            {
-                newvertarray = vertexes;
-            } else
-            {
-                newvertarray = new vertex_t[orgVerts + newVerts];
-                // TODO: avoid creating new objects that will be rewritten instantly - Good Sign 2017/05/07
-                Arrays.setAll(newvertarray, ii -> new vertex_t());
-                System.arraycopy(vertexes, 0, newvertarray, 0, orgVerts);
-            }
+            newvertarray = vertexes;
+        } else
+        {
+            newvertarray = new vertex_t[orgVerts + newVerts];
+            // TODO: avoid creating new objects that will be rewritten instantly - Good Sign 2017/05/07
+            Arrays.setAll(newvertarray, ii -> new vertex_t());
+            System.arraycopy(vertexes, 0, newvertarray, 0, orgVerts);
+        }
 
-            //(sizeof(newvertarray[0].x) + sizeof(newvertarray[0].y))
-            len = CheckZNodesOverflow(len, newVerts * vertex_t.sizeOf());
-            z_vertex_t tmp = new z_vertex_t();
+        z_vertex_t tmp = new z_vertex_t();
 
-            for (int i = 0; i < newVerts; i++)
-            {
-                tmp.unpack(data);
-                newvertarray[i + orgVerts].x = tmp.x;
-                newvertarray[i + orgVerts].y = tmp.y;
-            }
+        for (int i = 0; i < newVerts; i++)
+        {
+            tmp.unpack(data.need(z_vertex_t.sizeOf()));
+            newvertarray[i + orgVerts].x = tmp.x;
+            newvertarray[i + orgVerts].y = tmp.y;
+        }
 
-            // Extra vertexes read in
-            if (vertexes != newvertarray)
+        // Extra vertexes read in
+        if (vertexes != newvertarray)
+        {
+            //lines[i].v1 = lines[i].v1 - vertexes + newvertarray;
+            //lines[i].v2 = lines[i].v2 - vertexes + newvertarray;
+            // The first orgVerts were copied over as they were, so lines
+            // ending on those already point inside newvertarray. Only those
+            // past them are looked up, by identity, in a map made once.
+            if (vertexes.Length > orgVerts)
             {
+                Map<vertex_t, Integer> index = new IdentityHashMap<>(2 * (vertexes.Length - orgVerts));
+                for (int i = orgVerts; i < vertexes.Length; i++)
+                {
+                    index.put(vertexes[i], i);
+                }
+
                 for (int i = 0; i < numlines; i++)
                 {
-                    //lines[i].v1 = lines[i].v1 - vertexes + newvertarray;
-                    //lines[i].v2 = lines[i].v2 - vertexes + newvertarray;
-                    // Find indexes of v1 & v2 inside old vertexes array
-                    // (.v1-vertexes) and use that index to re-point inside newvertarray
-                    lines[i].v1 = newvertarray[C2JUtils.indexOf(vertexes, lines[i].v1)];
-                    lines[i].v2 = newvertarray[C2JUtils.indexOf(vertexes, lines[i].v2)];
+                    Integer v1 = index.get(lines[i].v1);
+                    Integer v2 = index.get(lines[i].v2);
+                    if (v1 != null)
+                    {
+                        lines[i].v1 = newvertarray[v1];
+                    }
+                    if (v2 != null)
+                    {
+                        lines[i].v2 = newvertarray[v2];
+                    }
                 }
-                // free(vertexes);
-                vertexes = newvertarray;
-                numvertexes = orgVerts + newVerts;
             }
-        } else
-        {
-            // Skip the reading of all these new vertices and the expensive indexOf searches.
-            int size = newVerts * z_vertex_t.sizeOf();
-            len = CheckZNodesOverflow(len, size);
-            data.position(data.position() + size);
+            // free(vertexes);
+            vertexes = newvertarray;
         }
+        numvertexes = orgVerts + newVerts;
 
         // Read the subsectors
-        len = CheckZNodesOverflow(len, 4);
         numSubs = data.getInt();
 
         numsubsectors = numSubs;
@@ -1206,13 +1399,13 @@ public class BoomLevelLoader : AbstractLevelLoader
         {
             DOOM.doomSystem.Error("P_LoadZNodes: no subsectors in level");
         }
+        data.expect((long) numSubs * mapsubsector_znod_t.sizeOf());
         subsectors = calloc_IfSameLevel(subsectors, numsubsectors, subsector_t::new, subsector_t[]::new);
 
-        len = CheckZNodesOverflow(len, numSubs * mapsubsector_znod_t.sizeOf());
         mapsubsector_znod_t mseg = new mapsubsector_znod_t();
         for (int i = currSeg = 0; i < numSubs; i++)
         {
-            mseg.unpack(data);
+            mseg.unpack(data.need(mapsubsector_znod_t.sizeOf()));
 
             subsectors[i].firstline = currSeg;
             subsectors[i].numlines = (int) mseg.numsegs;
@@ -1220,7 +1413,6 @@ public class BoomLevelLoader : AbstractLevelLoader
         }
 
         // Read the segs
-        len = CheckZNodesOverflow(len, 4);
         numSegs = data.getInt();
 
         // The number of segs stored should match the number of
@@ -1231,11 +1423,11 @@ public class BoomLevelLoader : AbstractLevelLoader
         }
 
         numsegs = numSegs;
+        data.expect((long) numsegs * mapseg_znod_t.sizeOf());
         segs = calloc_IfSameLevel(segs, numsegs, seg_t::new, seg_t[]::new);
 
         if (glnodes == 0)
         {
-            len = CheckZNodesOverflow(len, numsegs * mapseg_znod_t.sizeOf());
             P_LoadZSegs(data);
         } else
         {
@@ -1244,23 +1436,21 @@ public class BoomLevelLoader : AbstractLevelLoader
         }
 
         // Read nodes
-        len = CheckZNodesOverflow(len, 4);
         numNodes = data.getInt();
 
         numnodes = numNodes;
+        data.expect((long) numNodes * mapnode_znod_t.sizeOf());
         nodes = calloc_IfSameLevel(nodes, numNodes, node_t::new, node_t[]::new);
 
-        len = CheckZNodesOverflow(len, numNodes * mapnode_znod_t.sizeOf());
-
-        mapnode_znod_t[] znodes = malloc(mapnode_znod_t::new, mapnode_znod_t[]::new, numNodes);
-        CacheableDoomObjectContainer.unpack(data, znodes);
+        mapnode_znod_t mn = new mapnode_znod_t();
 
         for (int i = 0; i < numNodes; i++)
         {
             int j;
             int k;
             node_t no = nodes[i];
-            mapnode_znod_t mn = znodes[i];
+
+            mn.unpack(data.need(mapnode_znod_t.sizeOf()));
 
             no.x = mn.x << FRACBITS;
             no.y = mn.y << FRACBITS;
@@ -1278,7 +1468,76 @@ public class BoomLevelLoader : AbstractLevelLoader
             }
         }
 
-        DOOM.wadLoader.UnlockLumpNum(lump); // cph - release the data
+        data.close();
+    }
+
+    /**
+     * The current level's nodes, as in their lump, if they're ZDoom's, XNOD
+     * or ZNOD. For ZNodeBenchmark.
+     */
+    byte[] CurrentZNodes()
+    {
+        if (current_lumpnum < 0)
+        {
+            return null;
+        }
+
+        byte[] data = DOOM.wadLoader.CacheLumpNumAsRawBytes(current_lumpnum + ML_NODES, 0);
+        DOOM.wadLoader.UnlockLumpNum(current_lumpnum + ML_NODES);
+
+        return data.Length >= 4 && (MemoryStream.wrap(data).getInt() == XNOD || isCompressedZNodes(data)) ? data : null;
+    }
+
+    /**
+     * ZNOD, as read on little endian machines
+     */
+    static bool isCompressedZNodes(byte[] data)
+    {
+        return data.Length >= 4 && MemoryStream.wrap(data).order(ByteOrder.LITTLE_ENDIAN).getInt() == ZNOD;
+    }
+
+    /**
+     * Read ZDoom nodes through, record by record as P_LoadZNodes does, into
+     * nothing. It's all that differs between loading XNOD and ZNOD nodes:
+     * what's made of what was read is the same. For ZNodeBenchmark.
+     *
+     * @return a sum of what was read, the same for the same nodes either way
+     */
+    long SkimZNodes(byte[] lump, bool compressed)
+    {
+        ZNodeStream data = new ZNodeStream(lump, compressed);
+        long sum = data.getInt();
+
+        z_vertex_t vertex = new z_vertex_t();
+        for (int i = data.getInt(); i > 0; i--)
+        {
+            vertex.unpack(data.need(z_vertex_t.sizeOf()));
+            sum = sum * 31 + vertex.x * 7 + vertex.y;
+        }
+
+        mapsubsector_znod_t subsector = new mapsubsector_znod_t();
+        for (int i = data.getInt(); i > 0; i--)
+        {
+            subsector.unpack(data.need(mapsubsector_znod_t.sizeOf()));
+            sum = sum * 31 + subsector.numsegs;
+        }
+
+        mapseg_znod_t seg = new mapseg_znod_t();
+        for (int i = data.getInt(); i > 0; i--)
+        {
+            seg.unpack(data.need(mapseg_znod_t.sizeOf()));
+            sum = sum * 31 + seg.v1 * 7 + seg.v2 * 5 + seg.linedef * 3 + seg.side;
+        }
+
+        mapnode_znod_t node = new mapnode_znod_t();
+        for (int i = data.getInt(); i > 0; i--)
+        {
+            node.unpack(data.need(mapnode_znod_t.sizeOf()));
+            sum = sum * 31 + node.x * 7 + node.y * 5 + node.dx * 3 + node.dy + node.children[0] + node.children[1];
+        }
+
+        data.close();
+        return sum;
     }
 
     private int GETXY(mobj_t mobj)
@@ -1738,17 +1997,11 @@ public class BoomLevelLoader : AbstractLevelLoader
             // http://www.doomworld.com/idgames/index.php?id=12935
             if (!VerifyBlockMap(count))
             {
-                System.err.printf("P_LoadBlockMap: erroneous BLOCKMAP lump may cause crashes.\n");
-                System.err.printf("P_LoadBlockMap: use \"-blockmap\" command line switch for rebuilding\n");
+                System.err.printf("P_LoadBlockMap: erroneous BLOCKMAP lump, rebuilding\n");
+                CreateBlockMap();
             }
         }
 
-        // MAES: blockmap was generated, rather than loaded.
-        if (count == 0)
-        {
-            count = blockmaplump.Length - 4;
-        }
-
         // clear out mobj chains - CPhipps - use calloc
         // blocklinks = calloc_IfSameLevel(blocklinks, bmapwidth *
         // bmapheight.mobj_t.);
@@ -1796,17 +2049,7 @@ public class BoomLevelLoader : AbstractLevelLoader
         }
 
 
-        // MAES: set blockmapxneg and blockmapyneg
-        // E.g. for a full 512x512 map, they should be both
-        // -1. For a 257*257, they should be both -255 etc.
-        if (bmapwidth > 255)
-        {
-            blockmapxneg = bmapwidth - 512;
-        }
-        if (bmapheight > 255)
-        {
-            blockmapyneg = bmapheight - 512;
-        }
+        SetBlockMapNeg();
 
         blockmap = blockmaplump;
 
@@ -2170,7 +2413,9 @@ public class BoomLevelLoader : AbstractLevelLoader
         }
 
         Z_FreeTags:
-        ; // Z_FreeTags(PU_LEVEL, PU_PURGELEVEL-1);
+        {
+            DOOM.wadLoader.FreeTags(PU_LEVEL, PU_PURGELEVEL - 1);
+        }
 
         if (rejectlump != -1)
         { // cph - unlock the reject table
@@ -2236,6 +2481,7 @@ public class BoomLevelLoader : AbstractLevelLoader
         current_episode = episode;
         current_map = map;
         current_nodesVersion = nodesVersion;
+        current_lumpnum = lumpnum;
 
         if (!samelevel)
         {
@@ -2304,14 +2550,23 @@ public class BoomLevelLoader : AbstractLevelLoader
             // TODO: P_LoadGLSegs(gl_lumpnum + ML_GL_SEGS);
         } else
         {
-            if (P_CheckForZDoomUncompressedNodes(lumpnum, gl_lumpnum))
+            if (DOOM.cVarManager.bool(CommandVariable.BUILDNODES))
+            {
+                P_BuildNodes(lumpnum);
+            } else if (P_CheckForZDoomNodes(lumpnum, gl_lumpnum))
             {
-                P_LoadZNodes(lumpnum + ML_NODES, 0);
+                P_LoadZNodes(lumpnum + ML_NODES, 0, true);
+            } else if (P_CheckForZDoomUncompressedNodes(lumpnum, gl_lumpnum))
+            {
+                P_LoadZNodes(lumpnum + ML_NODES, 0, false);
             } else if (P_CheckForDeePBSPv4Nodes(lumpnum, gl_lumpnum))
             {
                 P_LoadSubsectors_V4(lumpnum + ML_SSECTORS);
                 P_LoadNodes_V4(lumpnum + ML_NODES);
                 P_LoadSegs_V4(lumpnum + ML_SEGS);
+            } else if (P_CheckForMissingNodes(lumpnum))
+            {
+                P_BuildNodes(lumpnum);
             } else
             {
                 P_LoadSubsectors(lumpnum + ML_SSECTORS);
@@ -2406,6 +2661,7 @@ public class BoomLevelLoader : AbstractLevelLoader
 
         // clear special respawning que
         DOOM.actions.ClearRespawnQueue();
+        DOOM.actions.ClearSightCache();
 
         // set up world state
         P_SpawnSpecials:
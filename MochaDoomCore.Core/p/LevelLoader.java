@@ -359,6 +359,7 @@ public class LevelLoader : AbstractLevelLoader
             mld = data[i];
             ld = lines[i];
 
+            ld.id = i;
             ld.flags = mld.flags;
             ld.special = mld.special;
             ld.tag = mld.tag;
@@ -492,9 +493,10 @@ public class LevelLoader : AbstractLevelLoader
 
     /**
      * P_LoadBlockMap
-     *
-     * @  TODO: generate BLOCKMAP dynamically to
-     *                     handle missing cases and increase accuracy.
+     * <p>
+     * The blockmap is built from the level data instead when asked to
+     * (-blockmap), or when the lump is missing, truncated, too large for
+     * 16-bit offsets or fails verification.
      */
     public void LoadBlockMap(int lump)  
     {
@@ -532,10 +534,8 @@ public class LevelLoader : AbstractLevelLoader
             // http://www.doomworld.com/idgames/index.php?id=12935
             if (!VerifyBlockMap(count))
             {
-                System.err
-                        .printf("P_LoadBlockMap: erroneous BLOCKMAP lump may cause crashes.\n");
-                System.err
-                        .printf("P_LoadBlockMap: use \"-blockmap\" command line switch for rebuilding\n");
+                System.err.printf("P_LoadBlockMap: erroneous BLOCKMAP lump, rebuilding\n");
+                CreateBlockMap();
             }
 
         }
@@ -558,12 +558,14 @@ public class LevelLoader : AbstractLevelLoader
                 blockmaplump[i] = blockmaplump[i + 4] - 4;
             } else
             {
-                // Make terminators definitively -1, different that 0xffff
-                short t = (short) blockmaplump[i + 4];          // killough 3/1/98
-                blockmaplump[i] = (int) (t == -1 ? -1l : t & 0xffff);
+                // Terminators were made -1 already, and a built blockmap
+                // may well list lines past 0xffff
+                blockmaplump[i] = blockmaplump[i + 4];
             }
         }
 
+        SetBlockMapNeg();
+
         // clear out mobj chains
         // ATTENTION! BUG!!!
         // If blocklinks are "cleared" to void -but instantiated- objects,
@@ -742,7 +744,7 @@ public class LevelLoader : AbstractLevelLoader
       else
   #endif
              */
-            //  Z_FreeTags (PU_LEVEL, PU_PURGELEVEL-1);
+            DOOM.wadLoader.FreeTags(PU_LEVEL, PU_PURGELEVEL - 1);
             // UNUSED W_Profile ();
             DOOM.actions.InitThinkers();
 
@@ -815,6 +817,7 @@ public class LevelLoader : AbstractLevelLoader
 
             // clear special respawning que
             DOOM.actions.ClearRespawnQueue();
+            DOOM.actions.ClearSightCache();
 
             // set up world state
             DOOM.actions.SpawnSpecials();
@@ -0,0 +1,762 @@
+namespace p {  
+
+using i.IDoomSystem;
+using rr.line_t;
+using rr.vertex_t;
+
+using java.io.*;
+using java.nio.MemoryStream;
+using java.nio.ByteOrder;
+using java.nio.file.Files;
+using java.nio.file.Path;
+using java.nio.file.StandardCopyOption;
+using java.util.ArrayList;
+using java.util.Arrays;
+using java.util.IdentityHashMap;
+using java.util.List;
+using java.util.Map;
+using java.util.concurrent.ForkJoinPool;
+using java.util.concurrent.RecursiveTask;
+using java.util.zip.DataFormatException;
+using java.util.zip.DeflaterOutputStream;
+using java.util.zip.Inflater;
+
+using static data.Defines.NF_SUBSECTOR;
+using static m.BBox.*;
+using static m.fixed_t.FRACBITS;
+using static m.fixed_t.FRACUNIT;
+using static rr.line_t.NO_INDEX;
+
+/**
+ * A BSP builder for maps that come without usable nodes, or when asked to
+ * (-buildnodes). It's tuned for build speed rather than for the tightest
+ * tree: each node only tries a few dozen partition lines, evenly spread over
+ * its segs, and all of them are linedefs, so that node partitions are whole
+ * map units, as R_PointOnSide wants them. Splits are where the seg crosses
+ * the partition, in fixed point.
+ * <p>
+ * Subtrees are built on a fork/join pool, if given one. The tree only depends
+ * on the map, not on which thread built what, and it's numbered afterwards,
+ * depth first, so the result is the same either way.
+ * <p>
+ * The output is an uncompressed ZDoom nodes (XNOD) lump, which the level
+ * loader reads as any other. Saved compressed (ZNOD) next to the WAD, keyed
+ * by a hash of the map lumps the tree is built from, it's reused the next
+ * time the same map is loaded.
+ */
+
+public class NodeBuilder
+{
+    /**
+     * Bump when the output changes, so old cached trees are not reused
+     */
+    private static readonly int VERSION = 1;
+    private static readonly int XNOD = 0x584e4f44;
+    private static readonly int ZNOD = 0x444F4E5A;
+
+    /**
+     * Partition lines tried per node, before trying them all
+     */
+    private static readonly int CANDIDATES = 32;
+    /**
+     * What a split costs, in segs of imbalance
+     */
+    private static readonly int SPLIT_COST = 8;
+    /**
+     * Subtrees of fewer segs are built by the thread that split them
+     */
+    private static readonly int FORK_SEGS = 512;
+    /**
+     * Points this close to a partition (in fixed_t units) are on it
+     */
+    private static readonly double ON_LINE = 16;
+
+    private readonly IDoomSystem doomSystem;
+    private readonly vertex_t[] vertexes;
+    private readonly int numvertexes;
+    private readonly line_t[] lines;
+    private readonly int numlines;
+
+    // Numbered tree, as it goes in the lump
+    private readonly List<BVertex> newverts = new ArrayList<>();
+    private readonly List<BSeg> segs = new ArrayList<>();
+    private readonly List<Leaf> subsectors = new ArrayList<>();
+    private readonly List<Node> nodes = new ArrayList<>();
+
+    public NodeBuilder(IDoomSystem doomSystem, vertex_t[] vertexes, int numvertexes, line_t[] lines, int numlines)
+    {
+        this.doomSystem = doomSystem;
+        this.vertexes = vertexes;
+        this.numvertexes = numvertexes;
+        this.lines = lines;
+        this.numlines = numlines;
+    }
+
+    /**
+     * Build the tree.
+     *
+     * @param pool to build subtrees on, or null for serial
+     * @return an XNOD lump
+     */
+    public byte[] build(ForkJoinPool pool)
+    {
+        Map<vertex_t, BVertex> mapverts = new IdentityHashMap<>();
+
+        for (int i = 0; i < numvertexes; i++)
+        {
+            mapverts.put(vertexes[i], new BVertex(vertexes[i].x, vertexes[i].y, i));
+        }
+
+        List<BSeg> initial = new ArrayList<>();
+
+        for (int i = 0; i < numlines; i++)
+        {
+            line_t ld = lines[i];
+            BVertex v1 = mapverts.get(ld.v1);
+            BVertex v2 = mapverts.get(ld.v2);
+
+            // Zero length and unsided lines are never drawn
+            if (v1 == null || v2 == null || (ld.dx == 0 && ld.dy == 0))
+            {
+                continue;
+            }
+
+            if (ld.sidenum[0] != NO_INDEX)
+            {
+                initial.add(new BSeg(v1, v2, i, 0));
+            }
+
+            if (ld.sidenum[1] != NO_INDEX)
+            {
+                initial.add(new BSeg(v2, v1, i, 1));
+            }
+        }
+
+        if (initial.isEmpty())
+        {
+            doomSystem.Error("NodeBuilder: no segs in level");
+        }
+
+        // Seg linedefs are 16 bit in XNOD
+        if (numlines > 0xFFFF)
+        {
+            doomSystem.Error("NodeBuilder: too many linedefs");
+        }
+
+        Build root = new Build(initial);
+        BTree tree = pool != null ? pool.invoke(root) : root.compute();
+
+        number(tree);
+        return write();
+    }
+
+    public int getNumNodes()
+    {
+        return nodes.size();
+    }
+
+    public int getNumSubsectors()
+    {
+        return subsectors.size();
+    }
+
+    public int getNumSegs()
+    {
+        return segs.size();
+    }
+
+    /**
+     * Lumps the tree is built from, hashed, with the builder version.
+     */
+    public static byte[] key(byte[]... lumps)
+    {
+        try
+        {
+            java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-1");
+            md.update(MemoryStream.allocate(4).putInt(VERSION).array());
+
+            for (byte[] lump : lumps)
+            {
+                md.update(MemoryStream.allocate(4).putInt(lump.Length).array());
+                md.update(lump);
+            }
+
+            return md.digest();
+        } catch (java.security.NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the cached nodes (a ZNOD lump), or null if none, stale,
+     * unreadable or corrupt. A corrupt one is deleted, to be built again.
+     */
+    public static byte[] loadCache(File file, byte[] key)
+    {
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            byte[] filekey = new byte[key.Length];
+            in.readFully(filekey);
+
+            if (!Arrays.equals(filekey, key))
+            {
+                return null;
+            }
+
+            byte[] lump = new byte[(int) file.Length() - key.Length];
+            in.readFully(lump);
+
+            if (!inflates(lump))
+            {
+                System.err.printf("NodeBuilder: %s is corrupt, building the nodes again\n", file);
+                file.delete();
+                return null;
+            }
+
+            return lump;
+        } catch (IOException e)
+        {
+            System.err.printf("NodeBuilder: can't read %s: %s\n", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Whether a ZNOD lump inflates to the end, as a cut short or damaged one
+     * won't: P_LoadZNodes would have to give up on it halfway.
+     */
+    private static bool inflates(byte[] lump)
+    {
+        if (lump.Length < 4 || MemoryStream.wrap(lump).order(ByteOrder.LITTLE_ENDIAN).getInt() != ZNOD)
+        {
+            return false;
+        }
+
+        Inflater inflater = new Inflater();
+        byte[] sink = new byte[1 << 16];
+        try
+        {
+            inflater.setInput(lump, 4, lump.Length - 4);
+            while (!inflater.finished())
+            {
+                if (inflater.inflate(sink) == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    return false;
+                }
+            }
+            return true;
+        } catch (DataFormatException e)
+        {
+            return false;
+        } finally
+        {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Save the nodes, compressed, under their key. Failing to is not fatal.
+     * They're written to a temporary file first, then moved in place, so that
+     * an interrupted write, or another instance loading the same map, never
+     * leaves half a cache under the right key.
+     */
+    public static void saveCache(File file, byte[] key, byte[] xnod)
+    {
+        Path target = file.toPath();
+        Path temp = null;
+        try
+        {
+            temp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp)))
+            {
+                out.write(key);
+                out.write(MemoryStream.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(ZNOD).array());
+
+                DeflaterOutputStream zip = new DeflaterOutputStream(out);
+                zip.write(xnod, 4, xnod.Length - 4);
+                zip.finish();
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e)
+        {
+            System.err.printf("NodeBuilder: can't cache nodes in %s: %s\n", file, e.getMessage());
+            if (temp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * Number the tree depth first: children, then their node, so that the
+     * root is last, where R_RenderBSPNode starts.
+     *
+     * @return node number, or subsector number | NF_SUBSECTOR
+     */
+    private int number(BTree tree)
+    {
+        if (tree instanceof Leaf)
+        {
+            Leaf leaf = (Leaf) tree;
+
+            for (BSeg seg : leaf.segs)
+            {
+                number(seg.v1);
+                number(seg.v2);
+                segs.add(seg);
+            }
+
+            subsectors.add(leaf);
+            return subsectors.size() - 1 | NF_SUBSECTOR;
+        }
+
+        Node node = (Node) tree;
+        node.children[0] = number(node.front);
+        node.children[1] = number(node.back);
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+
+    private void number(BVertex v)
+    {
+        if (v.index < 0)
+        {
+            v.index = numvertexes + newverts.size();
+            newverts.add(v);
+        }
+    }
+
+    private byte[] write()
+    {
+        int size = 4 + 8 + newverts.size() * 8
+                + 4 + subsectors.size() * 4
+                + 4 + segs.size() * 11
+                + 4 + nodes.size() * 32;
+
+        MemoryStream buf = MemoryStream.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buf.order(ByteOrder.BIG_ENDIAN).putInt(XNOD).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(numvertexes);
+        buf.putInt(newverts.size());
+
+        for (BVertex v : newverts)
+        {
+            buf.putInt(v.x);
+            buf.putInt(v.y);
+        }
+
+        buf.putInt(subsectors.size());
+
+        for (Leaf leaf : subsectors)
+        {
+            buf.putInt(leaf.segs.size());
+        }
+
+        buf.putInt(segs.size());
+
+        for (BSeg seg : segs)
+        {
+            buf.putInt(seg.v1.index);
+            buf.putInt(seg.v2.index);
+            buf.putChar((char) seg.linedef);
+            buf.put((byte) seg.side);
+        }
+
+        buf.putInt(nodes.size());
+
+        for (Node node : nodes)
+        {
+            buf.putShort((short) node.x);
+            buf.putShort((short) node.y);
+            buf.putShort((short) node.dx);
+            buf.putShort((short) node.dy);
+
+            for (int j = 0; j < 2; j++)
+            {
+                int[] bbox = node.bbox[j];
+                // Whole map units, rounded outwards
+                buf.putShort((short) (bbox[BOXTOP] + FRACUNIT - 1 >> FRACBITS));
+                buf.putShort((short) (bbox[BOXBOTTOM] >> FRACBITS));
+                buf.putShort((short) (bbox[BOXLEFT] >> FRACBITS));
+                buf.putShort((short) (bbox[BOXRIGHT] + FRACUNIT - 1 >> FRACBITS));
+            }
+
+            buf.putInt(node.children[0]);
+            buf.putInt(node.children[1]);
+        }
+
+        return buf.array();
+    }
+
+    /**
+     * A vertex, of the map or made by a split. The latter are numbered when
+     * the tree is, in the order segs use them.
+     */
+    private static class BVertex
+    {
+        readonly int x, y;
+        int index;
+
+        BVertex(int x, int y, int index)
+        {
+            this.x = x;
+            this.y = y;
+            this.index = index;
+        }
+    }
+
+    private static class BSeg
+    {
+        readonly BVertex v1, v2;
+        readonly int linedef;
+        readonly int side;
+
+        BSeg(BVertex v1, BVertex v2, int linedef, int side)
+        {
+            this.v1 = v1;
+            this.v2 = v2;
+            this.linedef = linedef;
+            this.side = side;
+        }
+    }
+
+    private static abstract class BTree
+    {
+    }
+
+    private static class Leaf : BTree
+    {
+        readonly List<BSeg> segs;
+
+        Leaf(List<BSeg> segs)
+        {
+            this.segs = segs;
+        }
+    }
+
+    private static class Node : BTree
+    {
+        // Partition, in map units
+        int x, y, dx, dy;
+        readonly int[][] bbox = new int[2][];
+        readonly int[] children = new int[2];
+        BTree front, back;
+    }
+
+    /**
+     * A partition line, from a linedef, as seen from one of its sides
+     */
+    private class Partition
+    {
+        int x, y, dx, dy; // map units
+        double len;
+
+        void set(BSeg seg)
+        {
+            line_t ld = lines[seg.linedef];
+
+            if (seg.side == 0)
+            {
+                x = ld.v1x >> FRACBITS;
+                y = ld.v1y >> FRACBITS;
+                dx = ld.dx >> FRACBITS;
+                dy = ld.dy >> FRACBITS;
+            } else
+            {
+                x = ld.v2x >> FRACBITS;
+                y = ld.v2y >> FRACBITS;
+                dx = -(ld.dx >> FRACBITS);
+                dy = -(ld.dy >> FRACBITS);
+            }
+
+            len = Math.sqrt((double) dx * dx + (double) dy * dy);
+        }
+
+        /**
+         * Can it be stored in a node at all?
+         */
+        bool fits()
+        {
+            return dx == (short) dx && dy == (short) dy && len > 0;
+        }
+
+        /**
+         * @return distance of the point from the partition, in fixed_t
+         * units, negative in front (to the right, like R_PointOnSide's 0)
+         */
+        double distance(BVertex v)
+        {
+            long cross = (long) (v.y - (y << FRACBITS)) * dx - (long) (v.x - (x << FRACBITS)) * dy;
+            return cross / len;
+        }
+
+        /**
+         * @return -1 front, 1 back, 0 on the line
+         */
+        int side(double distance)
+        {
+            return distance < -ON_LINE ? -1 : distance > ON_LINE ? 1 : 0;
+        }
+
+        /**
+         * @return -1 front, 1 back, 0 split
+         */
+        int classify(BSeg seg)
+        {
+            int a = side(distance(seg.v1));
+            int b = side(distance(seg.v2));
+
+            if (a == 0 && b == 0)
+            {
+                // Along the partition: in front if facing the same way
+                long dot = (long) (seg.v2.x - seg.v1.x) * dx + (long) (seg.v2.y - seg.v1.y) * dy;
+                return dot >= 0 ? -1 : 1;
+            }
+
+            if (a <= 0 && b <= 0)
+            {
+                return -1;
+            }
+
+            if (a >= 0 && b >= 0)
+            {
+                return 1;
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * Build a (sub)tree for a set of segs
+     */
+    private class Build : RecursiveTask<BTree>
+    {
+        private static readonly long serialVersionUID = 1L;
+
+        private readonly List<BSeg> segs;
+
+        Build(List<BSeg> segs)
+        {
+            this.segs = segs;
+        }
+
+        @Override
+        protected BTree compute()
+        {
+            Partition best = choose(segs);
+
+            if (best == null)
+            {
+                // convex
+                return new Leaf(segs);
+            }
+
+            List<BSeg> front = new ArrayList<>();
+            List<BSeg> back = new ArrayList<>();
+
+            for (BSeg seg : segs)
+            {
+                switch (best.classify(seg))
+                {
+                    case -1:
+                        front.add(seg);
+                        break;
+                    case 1:
+                        back.add(seg);
+                        break;
+                    default:
+                        split(best, seg, front, back);
+                        break;
+                }
+            }
+
+            // Splits too short to cut may still leave a side empty
+            if (front.isEmpty() || back.isEmpty())
+            {
+                return new Leaf(segs);
+            }
+
+            Node node = new Node();
+            node.x = best.x;
+            node.y = best.y;
+            node.dx = best.dx;
+            node.dy = best.dy;
+            node.bbox[0] = bounds(front);
+            node.bbox[1] = bounds(back);
+
+            Build f = new Build(front);
+            Build b = new Build(back);
+
+            if (getPool() != null && front.size() >= FORK_SEGS && back.size() >= FORK_SEGS)
+            {
+                b.fork();
+                node.front = f.compute();
+                node.back = b.join();
+            } else
+            {
+                node.front = f.compute();
+                node.back = b.compute();
+            }
+
+            return node;
+        }
+    }
+
+    /**
+     * Pick the partition that splits the fewest segs into the most even
+     * halves, among a sample of the segs' lines. If none of those splits the
+     * segs at all, try all of them before calling them convex.
+     *
+     * @return null if convex
+     */
+    private Partition choose(List<BSeg> segs)
+    {
+        int n = segs.size();
+        int step = Math.Max(1, n / CANDIDATES);
+        Partition best = null;
+        Partition p = new Partition();
+        long bestcost = long.MAX_VALUE;
+
+        for (int pass = 0; pass < 2 && best == null; pass++)
+        {
+            for (int i = pass == 0 ? 0 : 1; i < n; i += pass == 0 ? step : 1)
+            {
+                if (pass == 1 && i % step == 0)
+                {
+                    continue; // tried already
+                }
+
+                p.set(segs.get(i));
+
+                if (!p.fits())
+                {
+                    continue;
+                }
+
+                long cost = cost(p, segs, bestcost);
+
+                if (cost < bestcost)
+                {
+                    bestcost = cost;
+                    best = p;
+                    p = new Partition();
+                }
+            }
+
+            if (step == 1)
+            {
+                break;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @return the cost of the partition, or long.MAX_VALUE if it leaves a
+     * side empty or costs more than the best so far
+     */
+    private static long cost(Partition p, List<BSeg> segs, long bestcost)
+    {
+        int front = 0;
+        int back = 0;
+        int splits = 0;
+
+        for (BSeg seg : segs)
+        {
+            switch (p.classify(seg))
+            {
+                case -1:
+                    front++;
+                    break;
+                case 1:
+                    back++;
+                    break;
+                default:
+                    splits++;
+                    break;
+            }
+
+            if ((long) splits * SPLIT_COST >= bestcost)
+            {
+                return long.MAX_VALUE;
+            }
+        }
+
+        if (splits == 0 && (front == 0 || back == 0))
+        {
+            return long.MAX_VALUE;
+        }
+
+        return (long) splits * SPLIT_COST + Math.abs(front - back);
+    }
+
+    /**
+     * Cut the seg where it crosses the partition, unless the cut would be
+     * right at one of its ends, in fixed point.
+     */
+    private static void split(Partition p, BSeg seg, List<BSeg> front, List<BSeg> back)
+    {
+        double a = p.distance(seg.v1);
+        double b = p.distance(seg.v2);
+        double t = a / (a - b);
+        int x = (int) Math.round(seg.v1.x + (seg.v2.x - (double) seg.v1.x) * t);
+        int y = (int) Math.round(seg.v1.y + (seg.v2.y - (double) seg.v1.y) * t);
+
+        if ((x == seg.v1.x && y == seg.v1.y) || (x == seg.v2.x && y == seg.v2.y))
+        {
+            // Too short to cut: goes wherever its longer part is
+            ((Math.abs(a) > Math.abs(b) ? a : b) < 0 ? front : back).add(seg);
+            return;
+        }
+
+        BVertex mid = new BVertex(x, y, -1);
+        BSeg first = new BSeg(seg.v1, mid, seg.linedef, seg.side);
+        BSeg second = new BSeg(mid, seg.v2, seg.linedef, seg.side);
+
+        if (a < 0)
+        {
+            front.add(first);
+            back.add(second);
+        } else
+        {
+            back.add(first);
+            front.add(second);
+        }
+    }
+
+    /**
+     * @return bounding box of the segs, in fixed_t
+     */
+    private static int[] bounds(List<BSeg> segs)
+    {
+        int[] bbox = {int.MIN_VALUE, int.MAX_VALUE, int.MAX_VALUE, int.MIN_VALUE};
+
+        for (BSeg seg : segs)
+        {
+            for (BVertex v : new BVertex[]{seg.v1, seg.v2})
+            {
+                bbox[BOXTOP] = Math.Max(bbox[BOXTOP], v.y);
+                bbox[BOXBOTTOM] = Math.Min(bbox[BOXBOTTOM], v.y);
+                bbox[BOXLEFT] = Math.Min(bbox[BOXLEFT], v.x);
+                bbox[BOXRIGHT] = Math.Max(bbox[BOXRIGHT], v.x);
+            }
+        }
+
+        return bbox;
+    }
+}
@@ -0,0 +1,249 @@
+namespace p {  
+
+using rr.line_t;
+using rr.sector_t;
+
+/**
+ * Builds a REJECT table from the map itself, on a thread of its own, for
+ * maps whose node builder left it empty or zero-filled (reject_synthesis).
+ * <p>
+ * It's conservative: only pairs of sectors that no chain of two-sided lines
+ * joins are rejected. On a map with sound nodes, a sight line only goes
+ * from one sector into another through such a line, so CheckSight fails for
+ * them anyway, and rejecting them changes no result, only how soon it's
+ * known: demos and net games stay in sync whether it's on or not. It misses
+ * most of what a real REJECT builder would reject, as connected sectors are
+ * all kept, but maps with areas only reached by teleporters still gain.
+ * <p>
+ * Sectors are joined with a union-find over the lines, then the table is
+ * filled a row at a time, so the work is bounded by the lines and the size
+ * of the table (MAX_BYTES): on the biggest maps, well under a second. The
+ * geometry is copied when the builder is made, so the level may go on
+ * loading, or be replaced, while it runs. The level loader waits for it and
+ * merges the result into its table before the level's first tic (see
+ * AbstractLevelLoader.PollReject).
+ */
+
+public class RejectBuilder : Runnable
+{
+    /**
+     * Bigger tables (over about 16000 sectors) are not worth the memory
+     */
+    public static readonly int MAX_BYTES = 1 << 25;
+
+    private readonly int numsectors;
+
+    // The two sectors of each line a sight line could pass
+    private readonly int numlinks;
+    private readonly int[] front, back;
+
+    private Thread thread;
+    private volatile bool cancelled;
+    private volatile byte[] result;
+
+    public RejectBuilder(AbstractLevelLoader ll)
+    {
+        numsectors = ll.numsectors;
+
+        var count = 0;
+        for (var i = 0; i < ll.numlines; i++)
+        {
+            if (isLink(ll, ll.lines[i]))
+            {
+                count++;
+            }
+        }
+
+        numlinks = count;
+        front = new int[count];
+        back = new int[count];
+        count = 0;
+
+        for (var i = 0; i < ll.numlines; i++)
+        {
+            var ld = ll.lines[i];
+
+            if (isLink(ll, ld))
+            {
+                front[count] = ld.frontsector.id;
+                back[count++] = ld.backsector.id;
+            }
+        }
+    }
+
+    /**
+     * Could a sight line ever pass this line into another sector? Whether
+     * it's flagged two-sided doesn't matter: if not, it only stops more.
+     */
+    private static bool isLink(AbstractLevelLoader ll, line_t ld)
+    {
+        return isSector(ll, ld.frontsector) && isSector(ll, ld.backsector) && ld.frontsector != ld.backsector;
+    }
+
+    /**
+     * Not null, nor a stand-in for a missing one
+     */
+    private static bool isSector(AbstractLevelLoader ll, sector_t sec)
+    {
+        return sec != null && sec.id >= 0 && sec.id < ll.numsectors && ll.sectors[sec.id] == sec;
+    }
+
+    public void start()
+    {
+        thread = new Thread(this, "RejectBuilder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Wait for the table to be built.
+     *
+     * @return the table, in REJECT's layout, or null if it couldn't be
+     */
+    public byte[] join()
+    {
+        var interrupted = false;
+
+        while (thread != null && thread.isAlive())
+        {
+            try
+            {
+                thread.join();
+            } catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        return result;
+    }
+
+    public void run()
+    {
+        var start = System.nanoTime();
+        var parent = new int[numsectors];
+
+        for (var s = 0; s < numsectors; s++)
+        {
+            parent[s] = s;
+        }
+
+        for (var i = 0; i < numlinks; i++)
+        {
+            var a = find(parent, front[i]);
+            var b = find(parent, back[i]);
+            if (a != b)
+            {
+                parent[a] = b;
+            }
+        }
+
+        // The sectors of each group, one group after the other
+        var root = new int[numsectors];
+        var first = new int[numsectors + 1];
+        var members = new int[numsectors];
+        var groups = 0;
+
+        for (var s = 0; s < numsectors; s++)
+        {
+            root[s] = find(parent, s);
+            first[root[s] + 1]++;
+        }
+
+        for (var s = 0; s < numsectors; s++)
+        {
+            groups += first[s + 1] > 0 ? 1 : 0;
+            first[s + 1] += first[s];
+        }
+
+        var next = first.clone();
+        for (var s = 0; s < numsectors; s++)
+        {
+            members[next[root[s]]++] = s;
+        }
+
+        // Every other sector, less those of its own group. Symmetric, as is
+        // REJECT's.
+        var table = new byte[(int) Math.ceil(((long) numsectors * numsectors) / 8.0)];
+
+        for (var s1 = 0; s1 < numsectors; s1++)
+        {
+            if (cancelled)
+            {
+                return;
+            }
+
+            var group = root[s1];
+            if (first[group + 1] - first[group] == numsectors)
+            {
+                // All in one: nothing to reject
+                break;
+            }
+
+            var row = s1 * numsectors;
+            setRange(table, row, row + numsectors);
+
+            for (var i = first[group]; i < first[group + 1]; i++)
+            {
+                var pnum = row + members[i];
+                table[pnum >> 3] &= ~(1 << (pnum & 7));
+            }
+        }
+
+        System.out.printf("RejectBuilder: %d sectors in %d unconnected groups, built in %f sec\n",
+                numsectors, groups, (System.nanoTime() - start) / 1e9);
+
+        if (!cancelled)
+        {
+            result = table;
+        }
+    }
+
+    /**
+     * The group a sector is in, as its root, halving paths on the way
+     */
+    private static int find(int[] parent, int s)
+    {
+        while (parent[s] != s)
+        {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+
+        return s;
+    }
+
+    /**
+     * Set bits from to to, whole bytes at a time where they can be
+     */
+    private static void setRange(byte[] table, int from, int to)
+    {
+        while (from < to && (from & 7) != 0)
+        {
+            table[from >> 3] |= 1 << (from & 7);
+            from++;
+        }
+
+        while (from + 8 <= to)
+        {
+            table[from >> 3] = (byte) 0xFF;
+            from += 8;
+        }
+
+        while (from < to)
+        {
+            table[from >> 3] |= 1 << (from & 7);
+            from++;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+namespace p {  
+
+using rr.line_t;
+using rr.node_t;
+using rr.parallel.RenderScheduler;
+using rr.sector_t;
+using rr.subsector_t;
+
+using java.util.Arrays;
+
+using static data.Defines.NF_SUBSECTOR;
+using static m.fixed_t.FixedDiv;
+using static rr.line_t.ML_TWOSIDED;
+
+/**
+ * P_CheckSight for many pairs of things at once, on several threads.
+ * <p>
+ * The sight check itself, check(), only reads the level: whatever the
+ * serial one keeps in the Sight context and in line_t.validcount lives in
+ * a Scratch instead, one per thread, with a bitset of the lines already
+ * checked by the query at hand. Its result is the very same.
+ * <p>
+ * Before the thinkers run, the monsters likely to look around this tic are
+ * batched with their targets and the players (see PrefetchSight), and the
+ * batch is traced in parallel while the game waits. The thinkers then run
+ * as usual, in order, and CheckSight takes a batched result only if it is
+ * still the answer: same positions and eye heights as when it was traced,
+ * and none of the sectors it looked at has moved since. Otherwise it traces
+ * again, serially. Either way, game state and demos come out the same as
+ * without the batch.
+ */
+
+public class SightService
+{
+    /**
+     * Thread-private state of a sight check
+     */
+    public static class Scratch
+    {
+        readonly divline_t strace = new divline_t();
+        readonly divline_t divl = new divline_t();
+        int sightzstart;
+        int t2x, t2y;
+        public int topslope, bottomslope;
+
+        // Lines checked by this query, and the words of that set to clear
+        long[] checked = new long[0];
+        int[] touched = new int[64];
+        int numtouched;
+
+        // Sectors whose heights were looked at, by id
+        int[] sectors = new int[256];
+        int numsectors;
+
+        void start(AbstractLevelLoader ll)
+        {
+            int words = ll.numlines + 63 >> 6;
+            if (checked.Length < words)
+            {
+                checked = new long[words];
+                numtouched = 0;
+            }
+
+            for (int i = 0; i < numtouched; i++)
+            {
+                checked[touched[i]] = 0;
+            }
+            numtouched = 0;
+        }
+
+        /**
+         * @return whether the line was already checked, marking it if not
+         */
+        bool check(int line)
+        {
+            int word = line >> 6;
+            long bit = 1L << line;
+
+            if ((checked[word] & bit) != 0)
+            {
+                return true;
+            }
+
+            if (checked[word] == 0)
+            {
+                if (numtouched == touched.Length)
+                {
+                    touched = Arrays.copyOf(touched, touched.Length * 2);
+                }
+                touched[numtouched++] = word;
+            }
+
+            checked[word] |= bit;
+            return false;
+        }
+
+        void looked(sector_t sec)
+        {
+            if (numsectors == sectors.Length)
+            {
+                sectors = Arrays.copyOf(sectors, sectors.Length * 2);
+            }
+            sectors[numsectors++] = sec.id;
+        }
+    }
+
+    /**
+     * Trace ends and slopes: everything a query depends on, save for sector
+     * heights.
+     */
+    private static readonly int KEY = 7;
+
+    private readonly RenderScheduler scheduler;
+    private readonly RenderScheduler.Job job;
+    private readonly Scratch[] scratch;
+
+    private AbstractLevelLoader ll;
+
+    // Current batch
+    private int batch = 1;
+    private int count;
+    private mobj_t[] t1s = new mobj_t[256];
+    private mobj_t[] t2s = new mobj_t[256];
+    private int[] keys = new int[256 * KEY];
+    private bool[] done = new bool[256];
+    private bool[] results = new bool[256];
+    private int[] topslopes = new int[256];
+    private int[] bottomslopes = new int[256];
+    private int[] ranges = new int[256 * 3];
+
+    // Sectors each worker looked at, for this batch
+    private readonly int[][] looked;
+    private readonly int[] numlooked;
+
+    // Batch in which each sector last moved, by id
+    private int[] moved = new int[0];
+
+    private readonly int[] probe = new int[KEY];
+
+    public SightService(int threads)
+    {
+        scheduler = new RenderScheduler("SightService", threads);
+        job = scheduler.newJob("sight", this::trace);
+        scratch = new Scratch[scheduler.getThreads()];
+        looked = new int[scratch.Length][];
+        numlooked = new int[scratch.Length];
+
+        for (int i = 0; i < scratch.Length; i++)
+        {
+            scratch[i] = new Scratch();
+            looked[i] = new int[1024];
+        }
+    }
+
+    public int getThreads()
+    {
+        return scheduler.getThreads();
+    }
+
+    /**
+     * P_CheckSight, thread-safe as long as the level doesn't change meanwhile.
+     * Leaves the final slopes in the scratch, where the serial one leaves them
+     * in the Spawn context.
+     */
+    public static bool check(AbstractLevelLoader ll, mobj_t t1, mobj_t t2, Scratch s)
+    {
+        // First check for trivial rejection.
+        int pnum = t1.subsector.sector.id * ll.numsectors + t2.subsector.sector.id;
+
+        if ((ll.rejectmatrix[pnum >> 3] & 1 << (pnum & 7)) != 0)
+        {
+            // can't possibly be connected
+            return false;
+        }
+
+        s.start(ll);
+
+        // Now look from eyes of t1 to any part of t2.
+        s.sightzstart = t1.z + t1.height - (t1.height >> 2);
+        s.topslope = t2.z + t2.height - s.sightzstart;
+        s.bottomslope = t2.z - s.sightzstart;
+
+        s.strace.x = t1.x;
+        s.strace.y = t1.y;
+        s.t2x = t2.x;
+        s.t2y = t2.y;
+        s.strace.dx = t2.x - t1.x;
+        s.strace.dy = t2.y - t1.y;
+
+        // the head node is the last node output
+        return CrossBSPNode(ll, s, ll.numnodes - 1);
+    }
+
+    private static bool CrossBSPNode(AbstractLevelLoader ll, Scratch s, int bspnum)
+    {
+        if ((bspnum & NF_SUBSECTOR) != 0)
+        {
+            return CrossSubsector(ll, s, bspnum == -1 ? 0 : bspnum & ~NF_SUBSECTOR);
+        }
+
+        node_t bsp = ll.nodes[bspnum];
+
+        // decide which side the start point is on
+        int side = bsp.DivlineSide(s.strace.x, s.strace.y);
+        if (side == 2)
+        {
+            side = 0; // an "on" should cross both sides
+        }
+
+        // cross the starting side
+        if (!CrossBSPNode(ll, s, bsp.children[side]))
+        {
+            return false;
+        }
+
+        // the partition plane is crossed here
+        if (side == bsp.DivlineSide(s.t2x, s.t2y))
+        {
+            // the line doesn't touch the other side
+            return true;
+        }
+
+        // cross the ending side
+        return CrossBSPNode(ll, s, bsp.children[side ^ 1]);
+    }
+
+    /**
+     * Same as ActionsSight.CrossSubsector, on the scratch
+     */
+    private static bool CrossSubsector(AbstractLevelLoader ll, Scratch s, int num)
+    {
+        subsector_t sub = ll.subsectors[num];
+        divline_t divl = s.divl;
+        int seg = sub.firstline;
+
+        for (int count = sub.numlines; count > 0; seg++, count--)
+        {
+            line_t line = ll.segs[seg].linedef;
+
+            // allready checked other side?
+            if (s.check(line.id))
+            {
+                continue;
+            }
+
+            // line isn't crossed?
+            if (s.strace.DivlineSide(line.v1x, line.v1y) == s.strace.DivlineSide(line.v2x, line.v2y))
+            {
+                continue;
+            }
+
+            divl.x = line.v1x;
+            divl.y = line.v1y;
+            divl.dx = line.v2x - line.v1x;
+            divl.dy = line.v2y - line.v1y;
+
+            // line isn't crossed?
+            if (divl.DivlineSide(s.strace.x, s.strace.y) == divl.DivlineSide(s.t2x, s.t2y))
+            {
+                continue;
+            }
+
+            // stop because it is not two sided anyway
+            if ((line.flags & ML_TWOSIDED) == 0)
+            {
+                return false;
+            }
+
+            // crosses a two sided line
+            sector_t front = ll.segs[seg].frontsector;
+            sector_t back = ll.segs[seg].backsector;
+            s.looked(front);
+            s.looked(back);
+
+            // no wall to block sight with?
+            if (front.floorheight == back.floorheight
+                    && front.ceilingheight == back.ceilingheight)
+            {
+                continue;
+            }
+
+            // possible occluder
+            int opentop = Math.Min(front.ceilingheight, back.ceilingheight);
+            int openbottom = Math.Max(front.floorheight, back.floorheight);
+
+            // quick test for totally closed doors
+            if (openbottom >= opentop)
+            {
+                return false; // stop
+            }
+
+            int frac = MapUtils.P_InterceptVector(s.strace, divl);
+
+            if (front.floorheight != back.floorheight)
+            {
+                int slope = FixedDiv(openbottom - s.sightzstart, frac);
+                if (slope > s.bottomslope)
+                {
+                    s.bottomslope = slope;
+                }
+            }
+
+            if (front.ceilingheight != back.ceilingheight)
+            {
+                int slope = FixedDiv(opentop - s.sightzstart, frac);
+                if (slope < s.topslope)
+                {
+                    s.topslope = slope;
+                }
+            }
+
+            if (s.topslope <= s.bottomslope)
+            {
+                return false; // stop
+            }
+        }
+        // passed the subsector ok
+        return true;
+    }
+
+    /**
+     * Start a new batch. Results of the last one are no longer given out.
+     */
+    public void begin(AbstractLevelLoader ll)
+    {
+        this.ll = ll;
+        batch++;
+        count = 0;
+
+        if (moved.Length < ll.numsectors)
+        {
+            moved = new int[ll.numsectors];
+        }
+    }
+
+    /**
+     * Queue a sight check. All of those for the same t1 must be queued in
+     * a row.
+     */
+    public void add(mobj_t t1, mobj_t t2)
+    {
+        if (count == t1s.Length)
+        {
+            int n = count * 2;
+            t1s = Arrays.copyOf(t1s, n);
+            t2s = Arrays.copyOf(t2s, n);
+            keys = Arrays.copyOf(keys, n * KEY);
+            done = Arrays.copyOf(done, n);
+            results = Arrays.copyOf(results, n);
+            topslopes = Arrays.copyOf(topslopes, n);
+            bottomslopes = Arrays.copyOf(bottomslopes, n);
+            ranges = Arrays.copyOf(ranges, n * 3);
+        }
+
+        if (t1.sightbatch != batch)
+        {
+            t1.sightbatch = batch;
+            t1.sightquery = count;
+        }
+
+        t1s[count] = t1;
+        t2s[count] = t2;
+        key(t1, t2, keys, count * KEY);
+        done[count] = false;
+        count++;
+    }
+
+    /**
+     * Trace the batch, and wait for it.
+     */
+    public void run()
+    {
+        Arrays.fill(numlooked, 0);
+        job.submit(count, 4);
+        job.await();
+        scheduler.endFrame();
+    }
+
+    private void trace(int worker, int start, int end)
+    {
+        Scratch s = scratch[worker];
+
+        for (int q = start; q < end; q++)
+        {
+            s.numsectors = 0;
+            results[q] = check(ll, t1s[q], t2s[q], s);
+            topslopes[q] = s.topslope;
+            bottomslopes[q] = s.bottomslope;
+
+            // Keep the sectors it looked at, for isValid
+            int from = numlooked[worker];
+            if (from + s.numsectors > looked[worker].Length)
+            {
+                looked[worker] = Arrays.copyOf(looked[worker], Math.Max(looked[worker].Length * 2, from + s.numsectors));
+            }
+            System.arraycopy(s.sectors, 0, looked[worker], from, s.numsectors);
+            numlooked[worker] = from + s.numsectors;
+
+            ranges[q * 3] = worker;
+            ranges[q * 3 + 1] = from;
+            ranges[q * 3 + 2] = from + s.numsectors;
+            done[q] = true;
+        }
+    }
+
+    /**
+     * A floor or ceiling moved: batched results that depend on it are void
+     */
+    public void sectorMoved(sector_t sector)
+    {
+        if (sector.id < moved.Length)
+        {
+            moved[sector.id] = batch;
+        }
+    }
+
+    /**
+     * Forget the batch, e.g. the level is about to change
+     */
+    public void clear()
+    {
+        batch++;
+        count = 0;
+        Arrays.fill(t1s, null);
+        Arrays.fill(t2s, null);
+    }
+
+    /**
+     * @return the batched query for t1 and t2 if its result is still exact,
+     * or -1
+     */
+    public int find(mobj_t t1, mobj_t t2)
+    {
+        if (t1.sightbatch != batch)
+        {
+            return -1;
+        }
+
+        for (int q = t1.sightquery; q < count && t1s[q] == t1; q++)
+        {
+            if (t2s[q] == t2)
+            {
+                return isValid(q) ? q : -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private bool isValid(int q)
+    {
+        if (!done[q])
+        {
+            return false;
+        }
+
+        key(t1s[q], t2s[q], probe, 0);
+        for (int i = 0; i < KEY; i++)
+        {
+            if (keys[q * KEY + i] != probe[i])
+            {
+                return false;
+            }
+        }
+
+        int[] sectors = looked[ranges[q * 3]];
+        for (int i = ranges[q * 3 + 1]; i < ranges[q * 3 + 2]; i++)
+        {
+            if (moved[sectors[i]] == batch)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public bool getResult(int q)
+    {
+        return results[q];
+    }
+
+    public int getTopSlope(int q)
+    {
+        return topslopes[q];
+    }
+
+    public int getBottomSlope(int q)
+    {
+        return bottomslopes[q];
+    }
+
+    private static void key(mobj_t t1, mobj_t t2, int[] key, int at)
+    {
+        int sightzstart = t1.z + t1.height - (t1.height >> 2);
+        key[at] = t1.x;
+        key[at + 1] = t1.y;
+        key[at + 2] = t2.x;
+        key[at + 3] = t2.y;
+        key[at + 4] = sightzstart;
+        key[at + 5] = t2.z + t2.height - sightzstart;
+        key[at + 6] = t2.z - sightzstart;
+    }
+}
@@ -1,6 +1,7 @@
 namespace p {  
 
 using doom.SourceCode.P_Tick;
+using doom.th_class;
 using doom.thinker_t;
 
 using static doom.SourceCode.P_Tick.*;
@@ -17,7 +18,19 @@ public interface ThinkerList
     @C(P_InitThinkers)
     void InitThinkers();
 
+    void UpdateThinker(thinker_t thinker);
+
+    void UnthreadThinker(thinker_t thinker);
+
+    thinker_t NextThinker(thinker_t th, th_class cl);
+
+    thinker_t NextMobj(thinker_t th);
+
     thinker_t getRandomThinker();
 
     thinker_t getThinkerCap();
+
+    thinker_t getThinkerClassCap(th_class cl);
+
+    thinker_t getMobjCap();
 }
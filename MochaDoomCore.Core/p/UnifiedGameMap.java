@@ -1,11 +1,13 @@
 namespace p {  
 
 using data.Limits;
+using data.mobjtype_t;
 using data.sounds.sfxenum_t;
 using doom.DoomMain;
 using doom.SourceCode;
 using doom.SourceCode.CauseOfDesyncProbability;
 using doom.SourceCode.P_Tick;
+using doom.th_class;
 using doom.thinker_t;
 using m.Settings;
 using mochadoom.Engine;
@@ -22,6 +24,10 @@ using static data.Limits.*;
 using static doom.SourceCode.P_Tick.P_AddThinker;
 using static doom.SourceCode.P_Tick.P_InitThinkers;
 using static m.fixed_t.MAPFRACUNIT;
+using static p.ActiveStates.NOP;
+using static p.ActiveStates.P_MobjThinker;
+using static p.MobjFlags.MF_FRIEND;
+using static p.mobj_t.MF_COUNTKILL;
 using static utils.C2JUtils.eval;
 using static utils.GenericCopy.malloc;
 
@@ -71,31 +77,33 @@ public abstract class UnifiedGameMap : ThinkerList
     // //////////// Internal singletons //////////////
     public ActionFunctions A;
     /**
-     * killough's code for thinkers seems to be totally broken in M.D,
-     * this method is unused
+     * killough 8/29/98: thread a thinker into the class it currently belongs
+     * to. Must be called again whenever that may change: removal, death,
+     * resurrection.
      */
-    /*protected void UpdateThinker(thinker_t thinker) {
+    
+    public void UpdateThinker(thinker_t thinker)
+    {
         thinker_t th;
         // find the class the thinker belongs to
 
         th_class cls = thinker.thinkerFunction == NOP
-            ? th_class.th_delete
-            : (thinker.thinkerFunction == P_MobjThinker
+                ? th_class.th_delete
+                : (thinker.thinkerFunction == P_MobjThinker
                 && ((mobj_t) thinker).health > 0
                 && (eval((((mobj_t) thinker).flags) & MF_COUNTKILL)
                 || ((mobj_t) thinker).type == mobjtype_t.MT_SKULL)
-                    ? (
-                        eval((((mobj_t) thinker).flags) & MF_FRIEND)
-                            ? th_class.th_friends
-                            : th_class.th_enemies
-                    ) : th_class.th_misc
-            );
-
+                ? (
+                eval((((mobj_t) thinker).flags) & MF_FRIEND)
+                        ? th_class.th_friends
+                        : th_class.th_enemies
+        ) : th_class.th_misc
+        );
+
+        // Remove from current thread, if in one
+        if ((th = thinker.cnext) != null)
         {
-            /* Remove from current thread, if in one */
-            /*if ((th = thinker.cnext) != null) {
-                (th.cprev = thinker.cprev).cnext = th;
-            }
+            (th.cprev = thinker.cprev).cnext = th;
         }
 
         // Add to appropriate thread
@@ -106,7 +114,35 @@ public abstract class UnifiedGameMap : ThinkerList
         th.cprev = thinker;
     }
 
-    protected readonly thinker_t[] thinkerclasscap=new thinker_t[th_class.NUMTHCLASS];*/
+    /**
+     * Unlink a thinker from its class thread and, if it's a mobj, from the
+     * mobj thread. Only for when it's finally removed from the main list.
+     */
+    
+    public void UnthreadThinker(thinker_t thinker)
+    {
+        thinker_t th;
+
+        if ((th = thinker.cnext) != null)
+        {
+            (th.cprev = thinker.cprev).cnext = th;
+            thinker.cnext = thinker.cprev = null;
+        }
+
+        if ((th = thinker.mnext) != null)
+        {
+            (th.mprev = thinker.mprev).mnext = th;
+            thinker.mnext = thinker.mprev = null;
+        }
+    }
+
+    protected readonly thinker_t[] thinkerclasscap = new thinker_t[th_class.NUMTHCLASS];
+
+    /**
+     * Head and tail of the mobj thread, which keeps mobjs in the same
+     * order as the main list.
+     */
+    protected readonly thinker_t mobjcap = new thinker_t();
 
     public bool sight_debug;
     /**
@@ -150,20 +186,15 @@ public abstract class UnifiedGameMap : ThinkerList
     // new animdef_t(false, "", "", 0) };
     int ptflags;
 
-    /**
-     * killough's code for thinkers seems to be totally broken in M.D,
-     * so commented it out and will not probably restore, but may invent
-     * something new in future
-     * - Good Sign 2017/05/1
-     */
     public UnifiedGameMap(DoomMain<?, ?> DOOM)
     {
         SW = new Switches();
         SPECS = new Specials();
         thinkercap = new thinker_t();
-        /*for (int i=0; i<th_class.NUMTHCLASS; i++) { // killough 8/29/98: initialize threaded lists
-            thinkerclasscap[i]=new thinker_t();
-        }*/
+        for (int i = 0; i < th_class.NUMTHCLASS; i++)
+        { // killough 8/29/98: initialize threaded lists
+            thinkerclasscap[i] = new thinker_t();
+        }
 
         // Normally unused. It clashes with line attribute 124, and looks like ass
         // anyway. However it's fully implemented.
@@ -198,11 +229,6 @@ public abstract class UnifiedGameMap : ThinkerList
     //
 
     /**
-     * killough's code for thinkers seems to be totally broken in M.D,
-     * so commented it out and will not probably restore, but may invent
-     * something new in future
-     * - Good Sign 2017/05/1
-     * <p>
      * P_InitThinkers
      */
     
@@ -211,8 +237,11 @@ public abstract class UnifiedGameMap : ThinkerList
     public void InitThinkers()
     {
 
-        /*for (int i=0; i<th_class.NUMTHCLASS; i++)  // killough 8/29/98: initialize threaded lists
-            thinkerclasscap[i].cprev = thinkerclasscap[i].cnext = thinkerclasscap[i];*/
+        for (int i = 0; i < th_class.NUMTHCLASS; i++)  // killough 8/29/98: initialize threaded lists
+        {
+            thinkerclasscap[i].cprev = thinkerclasscap[i].cnext = thinkerclasscap[i];
+        }
+        mobjcap.mprev = mobjcap.mnext = mobjcap;
 
         thinker_t next = thinkercap.next;
         thinker_t prev = thinkercap.prev;
@@ -237,11 +266,6 @@ public abstract class UnifiedGameMap : ThinkerList
     }
 
     /**
-     * killough's code for thinkers seems to be totally broken in M.D,
-     * so commented it out and will not probably restore, but may invent
-     * something new in future
-     * - Good Sign 2017/05/1
-     * <p>
      * P_AddThinker
      * Adds a new thinker at the end of the list.
      */
@@ -256,30 +280,52 @@ public abstract class UnifiedGameMap : ThinkerList
         thinkercap.prev = thinker;
 
         // killough 8/29/98: set sentinel pointers, and then add to appropriate list
-        /*thinker.cnext = thinker.cprev = null;
-        UpdateThinker(thinker);*/
+        thinker.cnext = thinker.cprev = null;
+        UpdateThinker(thinker);
+
+        if (thinker instanceof mobj_t)
+        {
+            mobjcap.mprev.mnext = thinker;
+            thinker.mnext = mobjcap;
+            thinker.mprev = mobjcap.mprev;
+            mobjcap.mprev = thinker;
+        } else
+        {
+            thinker.mnext = thinker.mprev = null;
+        }
 
         // [Maes] seems only used for interpolations
         //newthinkerpresent = true;
     }
 
     /**
-     * killough's code for thinkers seems to be totally broken in M.D,
-     * so commented it out and will not probably restore, but may invent
-     * something new in future
-     * - Good Sign 2017/05/1
-     *
      * cph 2002/01/13 - iterator for thinker list
      * WARNING: Do not modify thinkers between calls to this functin
+     * <p>
+     * Pass null to get the first one. Returns null past the last one.
+     * th_all walks the main list.
      */
-    /*thinker_t NextThinker(thinker_t th, th_class cl) {
-        thinker_t top = thinkerclasscap[cl.ordinal()];
-        if (th == null) {
+    
+    public thinker_t NextThinker(thinker_t th, th_class cl)
+    {
+        thinker_t top = cl == th_class.th_all ? thinkercap : thinkerclasscap[cl.ordinal()];
+        if (th == null)
+        {
             th = top;
         }
         th = cl == th_class.th_all ? th.next : th.cnext;
         return th == top ? null : th;
-    }*/
+    }
+
+    /**
+     * Same as above, for the mobj thread.
+     */
+    
+    public thinker_t NextMobj(thinker_t th)
+    {
+        th = (th == null ? mobjcap : th).mnext;
+        return th == mobjcap ? null : th;
+    }
 
     //
     // P_AllocateThinker
@@ -288,16 +334,17 @@ public abstract class UnifiedGameMap : ThinkerList
     
     public thinker_t getRandomThinker()
     {
-
+        // Only mobjs are of any use to whoever asks for this: don't
+        // wander through specials.
         int pick = (int) (Math.random() * 128);
-        thinker_t th = getThinkerCap();
+        thinker_t th = mobjcap;
 
         for (int i = 0; i < pick; i++)
         {
-            th = th.next;
+            th = th.mnext;
         }
 
-        return th;
+        return th == mobjcap ? mobjcap.mnext : th;
     }
 
     //
@@ -316,6 +363,18 @@ public abstract class UnifiedGameMap : ThinkerList
         return thinkercap;
     }
 
+    
+    public thinker_t getThinkerClassCap(th_class cl)
+    {
+        return cl == th_class.th_all ? thinkercap : thinkerclasscap[cl.ordinal()];
+    }
+
+    
+    public thinker_t getMobjCap()
+    {
+        return mobjcap;
+    }
+
     //
     // SPECIAL SPAWNING
     //
@@ -0,0 +1,174 @@
+namespace p {  
+
+using doom.DoomMain;
+
+using java.io.ByteArrayOutputStream;
+using java.lang.management.ManagementFactory;
+using java.nio.charset.StandardCharsets;
+using java.util.zip.DataFormatException;
+using java.util.zip.Deflater;
+using java.util.zip.Inflater;
+
+/**
+ * Reads the current level's ZDoom nodes over and over, uncompressed (XNOD)
+ * and compressed (ZNOD), and prints what each took and allocated: the same
+ * nodes, as the map has them, and made into the other kind. Only reading
+ * them differs between the two, what the level is built from them is the
+ * same, so that's all it does, and the level is left as it was.
+ * <p>
+ * Run with -benchmark and -znodebench rounds: after each demo, on the
+ * level it ended on, if its nodes are ZDoom's.
+ */
+
+public class ZNodeBenchmark
+{
+    private readonly DoomMain<?, ?> DOOM;
+
+    public ZNodeBenchmark(DoomMain<?, ?> DOOM)
+    {
+        this.DOOM = DOOM;
+    }
+
+    /**
+     * @param rounds how many times the nodes are read, each way
+     * @return false if the two read differently
+     */
+    public bool run(int rounds)
+    {
+        rounds = Math.Max(1, rounds);
+
+        if (!(DOOM.levelLoader instanceof BoomLevelLoader))
+        {
+            return true;
+        }
+
+        var ll = (BoomLevelLoader) DOOM.levelLoader;
+        var lump = ll.CurrentZNodes();
+        if (lump == null)
+        {
+            System.out.printf("ZNodeBenchmark: the level's nodes aren't ZDoom's\n");
+            return true;
+        }
+
+        byte[] xnod, znod;
+        if (BoomLevelLoader.isCompressedZNodes(lump))
+        {
+            znod = lump;
+            xnod = inflate(lump);
+        } else
+        {
+            xnod = lump;
+            znod = deflate(lump);
+        }
+
+        if (xnod == null)
+        {
+            System.err.printf("ZNodeBenchmark: the level's ZNOD nodes don't inflate\n");
+            return false;
+        }
+
+        // Once each, so that neither pays for warming up
+        var same = ll.SkimZNodes(xnod, false) == ll.SkimZNodes(znod, true);
+        if (!same)
+        {
+            System.err.printf("ZNodeBenchmark: XNOD and ZNOD nodes read differently\n");
+        }
+
+        var x = read(ll, xnod, false, rounds);
+        var z = read(ll, znod, true, rounds);
+
+        System.out.printf("ZNodeBenchmark: %d rounds, %s nodes in the map\n", rounds, lump == znod ? "ZNOD" : "XNOD");
+        System.out.printf("\tXNOD: %d bytes, %.3f ms/load, %d bytes allocated/load\n", xnod.Length, x[0] / 1e6 / rounds, x[1] < 0 ? -1 : x[1] / rounds);
+        System.out.printf("\tZNOD: %d bytes, %.3f ms/load, %d bytes allocated/load\n", znod.Length, z[0] / 1e6 / rounds, z[1] < 0 ? -1 : z[1] / rounds);
+        System.out.printf("\tread the same: %s\n", same);
+
+        return same;
+    }
+
+    /**
+     * @return nanoseconds taken, bytes allocated (or -1 if unknown)
+     */
+    private static long[] read(BoomLevelLoader ll, byte[] lump, bool compressed, int rounds)
+    {
+        var alloc = allocated();
+        var start = System.nanoTime();
+
+        for (var r = 0; r < rounds; r++)
+        {
+            ll.SkimZNodes(lump, compressed);
+        }
+
+        var time = System.nanoTime() - start;
+        var now = allocated();
+        return new long[]{time, alloc < 0 || now < 0 ? -1 : now - alloc};
+    }
+
+    /**
+     * The same nodes as XNOD, or null if they don't inflate
+     */
+    private static byte[] inflate(byte[] znod)
+    {
+        var out = new ByteArrayOutputStream(znod.Length * 4);
+        var chunk = new byte[1 << 16];
+        var inflater = new Inflater();
+
+        out.write("XNOD".getBytes(StandardCharsets.US_ASCII), 0, 4);
+        inflater.setInput(znod, 4, znod.Length - 4);
+
+        try
+        {
+            while (!inflater.finished())
+            {
+                var got = inflater.inflate(chunk);
+                if (got == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    return null;
+                }
+                out.write(chunk, 0, got);
+            }
+        } catch (DataFormatException e)
+        {
+            return null;
+        } finally
+        {
+            inflater.end();
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * The same nodes as ZNOD, deflated as ZDBSP does
+     */
+    private static byte[] deflate(byte[] xnod)
+    {
+        var out = new ByteArrayOutputStream(xnod.Length / 2);
+        var chunk = new byte[1 << 16];
+        var deflater = new Deflater();
+
+        out.write("ZNOD".getBytes(StandardCharsets.US_ASCII), 0, 4);
+        deflater.setInput(xnod, 4, xnod.Length - 4);
+        deflater.finish();
+
+        while (!deflater.finished())
+        {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+
+        return out.toByteArray();
+    }
+
+    /**
+     * @return bytes allocated by this thread so far, if the JVM tells
+     */
+    private static long allocated()
+    {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -16,7 +16,7 @@ public class ceiling_t : SectorAction : CacheableDoomObject, IReadableDoomObject
 
     // HACK for speed.
     public static readonly ceiling_e[] values = ceiling_e.values();
-    private static readonly MemoryStream readbuffer = MemoryStream.allocate(48);
+    private static readonly ThreadLocal<MemoryStream> readbuffer = ThreadLocal.withInitial(() -> MemoryStream.allocate(48));
     public ceiling_e type;
     @fixed_t
     public int bottomheight;
@@ -41,10 +41,11 @@ public class ceiling_t : SectorAction : CacheableDoomObject, IReadableDoomObject
     public void read(Stream f)  
     {
         // Read 48 bytes.
-        readbuffer.position(0);
-        readbuffer.order(ByteOrder.LITTLE_ENDIAN);
-        f.read(readbuffer.array(), 0, 48);
-        unpack(readbuffer);
+        MemoryStream b = readbuffer.get();
+        b.position(0);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        f.read(b.array(), 0, 48);
+        unpack(b);
     }
 
     
@@ -7,7 +7,6 @@ using doom.DoomMain;
 using doom.SourceCode.fixed_t;
 using doom.player_t;
 using doom.thinker_t;
-using p.ActiveStates.MobjConsumer;
 using rr.subsector_t;
 using s.ISoundOrigin;
 using w.IPackableDoomObject;
@@ -170,8 +169,10 @@ public class mobj_t : thinker_t : ISoundOrigin, Interceptable,
      * this.type.name(),this.hashCode(),Runtime.getRuntime().freeMemory()); }
      */
     protected static int count = 0;
-    private static MemoryStream buffer = MemoryStream.allocate(154);
-    private static MemoryStream fastclear = MemoryStream.allocate(154);
+    // One per thread, for games running side by side (DemoVerifier)
+    private static readonly ThreadLocal<MemoryStream> buffer = ThreadLocal.withInitial(() -> MemoryStream.allocate(154));
+    // All zeroes, only ever read through duplicates
+    private static readonly MemoryStream fastclear = MemoryStream.allocate(154);
 
     // // MF_ flags for mobjs.
     public  ActionFunctions A;
@@ -184,6 +185,21 @@ public class mobj_t : thinker_t : ISoundOrigin, Interceptable,
     public int y;
     @fixed_t
     public int z;
+    /**
+     * Render copies of what R_ProjectSprite needs, and of the sector links,
+     * taken by RenderSnapshot between tics. Never archived.
+     */
+    public int r_x, r_y, r_z;
+    public long r_angle;
+    public spritenum_t r_sprite;
+    public int r_frame;
+    public long r_flags;
+    public mobj_t r_snext;
+    /**
+     * Where SightService batched this one's sight checks, if it did. Never
+     * archived.
+     */
+    public int sightbatch, sightquery;
     /**
      * More list: links in sector (if needed)
      */
@@ -345,16 +361,16 @@ public class mobj_t : thinker_t : ISoundOrigin, Interceptable,
 
             st = states[state.ordinal()];
             mobj_state = st;
-            mobj_tics = st.tics;
+            mobj_tics = A.DOOM.stateTics[state.ordinal()];
             mobj_sprite = st.sprite;
             mobj_frame = st.frame;
 
             // Modified handling.
             // Call action functions when the state is set
             // TODO: try find a bug
-            if (st.action.isParamType(MobjConsumer.class))
+            if (st.action.acp1 != null)
             {
-                st.action.fun(MobjConsumer.class).accept(A, this);
+                st.action.acp1.accept(A, this);
             }
 
             state = st.nextstate;
@@ -465,10 +481,9 @@ public class mobj_t : thinker_t : ISoundOrigin, Interceptable,
 
     public void clear()
     {
-        fastclear.rewind();
         try
         {
-            unpack(fastclear);
+            unpack(fastclear.duplicate());
         }
         catch (IOException e)
         {
@@ -483,10 +498,11 @@ public class mobj_t : thinker_t : ISoundOrigin, Interceptable,
     {
         // More efficient, avoids duplicating code and
         // handles little endian better.
-        buffer.position(0);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        f.read(buffer.array());
-        unpack(buffer);
+        MemoryStream b = buffer.get();
+        b.position(0);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        f.read(b.array());
+        unpack(b);
     }
 
     
@@ -495,10 +511,11 @@ public class mobj_t : thinker_t : ISoundOrigin, Interceptable,
 
         // More efficient, avoids duplicating code and
         // handles little endian better.
-        buffer.position(0);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        pack(buffer);
-        f.write(buffer.array());
+        MemoryStream b = buffer.get();
+        b.position(0);
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        pack(b);
+        f.write(b.array());
 
     }
 
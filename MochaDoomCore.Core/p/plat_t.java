@@ -13,7 +13,6 @@ using java.nio.MemoryStream;
 public class plat_t : SectorAction : IReadableDoomObject
 {
 
-    public sector_t sector;
     public @fixed_t
     int speed, low, high;
     public int wait;
@@ -45,8 +44,6 @@ public class plat_t : SectorAction : IReadableDoomObject
         count = DoomIO.readLEInt(f);
         status = plat_e.values()[DoomIO.readLEInt(f)];
         oldstatus = plat_e.values()[DoomIO.readLEInt(f)];
-        System.out.println(status);
-        System.out.println(oldstatus);
         crush = DoomIO.readIntbool(f);
         tag = DoomIO.readLEInt(f);
         type = plattype_e.values()[DoomIO.readLEInt(f)];
@@ -64,8 +61,6 @@ public class plat_t : SectorAction : IReadableDoomObject
         b.putInt(count); //36
         b.putInt(status.ordinal()); //40
         b.putInt(oldstatus.ordinal()); //44
-        System.out.println(status);
-        System.out.println(oldstatus);
         b.putInt(crush ? 1 : 0); // 48
         b.putInt(tag); // 52
         b.putInt(type.ordinal()); // 56
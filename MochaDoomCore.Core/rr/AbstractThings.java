@@ -197,7 +197,7 @@ public abstract class AbstractThings<T, V> : IMaskedDrawer<T, V>
         texnum = TexMan.getTextureTranslation(MyBSP.curline.sidedef.midtexture);
         // System.out.print(" for texture "+textures[texnum].name+"\n:");
         lightnum =
-                (frontsector.lightlevel >> colormaps.lightSegShift()) + colormaps.extralight;
+                (frontsector.r_lightlevel >> colormaps.lightSegShift()) + colormaps.extralight;
 
         if (MyBSP.curline.v1y == MyBSP.curline.v2y)
             lightnum--;
@@ -227,19 +227,19 @@ public abstract class AbstractThings<T, V> : IMaskedDrawer<T, V>
         if ((MyBSP.curline.linedef.flags & ML_DONTPEGBOTTOM) != 0)
         {
             maskedcvars.dc_texturemid =
-                    frontsector.floorheight > backsector.floorheight ? frontsector.floorheight
-                            : backsector.floorheight;
+                    frontsector.r_floorheight > backsector.r_floorheight ? frontsector.r_floorheight
+                            : backsector.r_floorheight;
             maskedcvars.dc_texturemid =
                     maskedcvars.dc_texturemid + TexMan.getTextureheight(texnum)
                             - view.z;
         } else
         {
             maskedcvars.dc_texturemid =
-                    frontsector.ceilingheight < backsector.ceilingheight ? frontsector.ceilingheight
-                            : backsector.ceilingheight;
+                    frontsector.r_ceilingheight < backsector.r_ceilingheight ? frontsector.r_ceilingheight
+                            : backsector.r_ceilingheight;
             maskedcvars.dc_texturemid = maskedcvars.dc_texturemid - view.z;
         }
-        maskedcvars.dc_texturemid += MyBSP.curline.sidedef.rowoffset;
+        maskedcvars.dc_texturemid += MyBSP.curline.sidedef.r_rowoffset;
 
         if (colormaps.fixedcolormap != null)
             maskedcvars.dc_colormap = colormaps.fixedcolormap;
@@ -372,8 +372,8 @@ public abstract class AbstractThings<T, V> : IMaskedDrawer<T, V>
 
         vis.patch = lump;
 
-        if (view.player.powers[pw_invisibility] > 4 * 32
-                || (view.player.powers[pw_invisibility] & 8) != 0)
+        if (view.snapshot.invisibility > 4 * 32
+                || (view.snapshot.invisibility & 8) != 0)
         {
             // shadow draw
             vis.colormap = null;
@@ -410,7 +410,7 @@ public abstract class AbstractThings<T, V> : IMaskedDrawer<T, V>
 
         // get light level
         lightnum =
-                (view.player.mo.subsector.sector.lightlevel >> colormaps.lightSegShift())
+                (view.snapshot.lightlevel >> colormaps.lightSegShift())
                         + colormaps.extralight;
 
         if (lightnum < 0)
@@ -433,7 +433,7 @@ public abstract class AbstractThings<T, V> : IMaskedDrawer<T, V>
         // flash states were set. It should be OK now.
         for (i = 0; i < NUMPSPRITES; i++)
         {
-            psp = view.player.psprites[i];
+            psp = view.snapshot.psprites[i];
             if (psp.state != null && psp.state.id != 0)
             {
                 DrawPSprite(psp);
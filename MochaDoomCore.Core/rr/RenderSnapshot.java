@@ -0,0 +1,108 @@
+namespace rr {  
+
+using doom.player_t;
+using p.AbstractLevelLoader;
+using p.mobj_t;
+using p.pspdef_t;
+
+using static data.Defines.pw_invisibility;
+using static doom.player_t.NUMPSPRITES;
+using static utils.GenericCopy.malloc;
+
+/**
+ * What the renderer draws a frame from: mobj positions and frames, sector
+ * heights, flats and light levels, sidedef offsets, and the view player's
+ * point of view and weapon sprites.
+ * <p>
+ * The world keeps two copies of those. The game logic only ever writes the
+ * usual fields, the renderer only ever reads the r_ ones, and capture()
+ * copies the former over the latter while neither is running. That way the
+ * next tics may be run while the last captured frame is being drawn (see
+ * DoomMain's -pipeline), and the simulation itself is exactly the same
+ * either way, so are demos.
+ * <p>
+ * The sector thing lists are copied as well, through r_thinglist and
+ * r_snext, since things move between sectors, and removed ones are unlinked.
+ * Texture numbers (switches, animations) are not: they're single writes,
+ * and at worst show up one frame early.
+ */
+public class RenderSnapshot
+{
+    public player_t player;
+    public int viewx, viewy, viewz;
+    public long viewangle;
+    public int lookdir;
+    public int extralight;
+    public int fixedcolormap;
+    public int invisibility;
+    /**
+     * Of the sector the view player is in, for the weapon sprites
+     */
+    public short lightlevel;
+    public readonly pspdef_t[] psprites = malloc(pspdef_t::new, pspdef_t[]::new, NUMPSPRITES);
+
+    /**
+     * How many things were copied, for the curious
+     */
+    public int numthings;
+
+    /**
+     * R_Snapshot. Call between tics, never while a frame is being drawn.
+     *
+     * @param player whose view is to be drawn
+     * @param level  the level being played
+     */
+    public void capture(player_t player, AbstractLevelLoader level)
+    {
+        this.player = player;
+        viewx = player.mo.x;
+        viewy = player.mo.y;
+        viewangle = player.mo.angle;
+        viewz = player.viewz;
+        lookdir = player.lookdir;
+        extralight = player.extralight;
+        fixedcolormap = player.fixedcolormap;
+        invisibility = player.powers[pw_invisibility];
+        lightlevel = player.mo.subsector.sector.lightlevel;
+
+        for (int i = 0; i < NUMPSPRITES; i++)
+        {
+            psprites[i].state = player.psprites[i].state;
+            psprites[i].sx = player.psprites[i].sx;
+            psprites[i].sy = player.psprites[i].sy;
+        }
+
+        numthings = 0;
+
+        for (int i = 0; i < level.numsectors; i++)
+        {
+            sector_t sec = level.sectors[i];
+            sec.r_floorheight = sec.floorheight;
+            sec.r_ceilingheight = sec.ceilingheight;
+            sec.r_floorpic = sec.floorpic;
+            sec.r_ceilingpic = sec.ceilingpic;
+            sec.r_lightlevel = sec.lightlevel;
+            sec.r_thinglist = sec.thinglist;
+
+            for (mobj_t thing = sec.thinglist; thing != null; thing = (mobj_t) thing.snext)
+            {
+                thing.r_x = thing.x;
+                thing.r_y = thing.y;
+                thing.r_z = thing.z;
+                thing.r_angle = thing.angle;
+                thing.r_sprite = thing.mobj_sprite;
+                thing.r_frame = thing.mobj_frame;
+                thing.r_flags = thing.flags;
+                thing.r_snext = (mobj_t) thing.snext;
+                numthings++;
+            }
+        }
+
+        for (int i = 0; i < level.numsides; i++)
+        {
+            side_t side = level.sides[i];
+            side.r_textureoffset = side.textureoffset;
+            side.r_rowoffset = side.rowoffset;
+        }
+    }
+}
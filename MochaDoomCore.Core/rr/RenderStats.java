@@ -0,0 +1,320 @@
+namespace rr {  
+
+using java.util.Arrays;
+using java.util.function.Consumer;
+
+/**
+ * Per-frame timing of the stages of RenderPlayerView and of the blit, plus
+ * how many visplanes, drawsegs and vissprites each frame used.
+ * <p>
+ * Each stage keeps a rolling window of its last WINDOW frames, from which
+ * averages, percentiles and peaks are taken. While disabled, which is the
+ * default, mark() and lap() only test a field: no clock is read and nothing
+ * is stored. Renderers do:
+ * <pre>
+ * long t = stats.mark();
+ * MyBSP.RenderBSPNode(...);
+ * t = stats.lap(Stage.BSP, t);
+ * MyPlanes.DrawPlanes();
+ * t = stats.lap(Stage.PLANES, t);
+ * </pre>
+ * A stage may be lapped several times per frame: it adds up. The frame is
+ * closed by endFrame, after the blit.
+ */
+public class RenderStats
+{
+    public enum Stage
+    {
+        /**
+         * BSP walk. For the serial renderer, walls are drawn during it
+         */
+        BSP("BSP"),
+        WALLS("WALLS"),
+        WALLS_WAIT("WALL WAIT"),
+        PLANES("PLANES"),
+        PLANES_WAIT("PLANE WAIT"),
+        MASKED("MASKED"),
+        MASKED_WAIT("MASK WAIT"),
+        /**
+         * Palette/gamma post-processing and display of the finished frame
+         */
+        BLIT("BLIT");
+
+        public readonly String label;
+
+        Stage(String label)
+        {
+            this.label = label;
+        }
+    }
+
+    public static readonly int WINDOW = 128;
+    private static readonly Stage[] STAGES = Stage.values();
+
+    private bool enabled;
+    private bool overlay;
+    private Consumer<RenderStats> listener;
+
+    private readonly long[] current = new long[STAGES.Length];
+    private readonly long[][] samples = new long[STAGES.Length][WINDOW];
+    private readonly long[] scratch = new long[WINDOW];
+    private int visplanes, drawsegs, vissprites;
+    private int maxvisplanes, maxdrawsegs, maxvissprites;
+    private double imbalance, maximbalance;
+    private int steals;
+    private bool balanced;
+    private int frames;
+
+    public bool isEnabled()
+    {
+        return enabled;
+    }
+
+    public void setEnabled(bool enabled)
+    {
+        if (enabled && !this.enabled)
+        {
+            reset();
+        }
+        this.enabled = enabled;
+    }
+
+    public bool isOverlay()
+    {
+        return enabled && overlay;
+    }
+
+    public void setOverlay(bool overlay)
+    {
+        this.overlay = overlay;
+    }
+
+    /**
+     * Called with this at the end of every timed frame, e.g. to log it
+     */
+    public void setListener(Consumer<RenderStats> listener)
+    {
+        this.listener = listener;
+    }
+
+    public void reset()
+    {
+        Arrays.fill(current, 0);
+        for (long[] s : samples)
+        {
+            Arrays.fill(s, 0);
+        }
+        frames = 0;
+        maxvisplanes = maxdrawsegs = maxvissprites = 0;
+        maximbalance = 0;
+    }
+
+    /**
+     * @return a timestamp to lap from, or 0 if disabled
+     */
+    public long mark()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Charge the time since "since" to a stage
+     *
+     * @return a timestamp to lap the next stage from
+     */
+    public long lap(Stage stage, long since)
+    {
+        if (!enabled)
+        {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        current[stage.ordinal()] += now - since;
+        return now;
+    }
+
+    /**
+     * How much of the limit-expanding buffers the last rendered view used
+     */
+    public void count(int visplanes, int drawsegs, int vissprites)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        this.visplanes = visplanes;
+        this.drawsegs = drawsegs;
+        this.vissprites = vissprites;
+        maxvisplanes = Math.Max(maxvisplanes, visplanes);
+        maxdrawsegs = Math.Max(maxdrawsegs, drawsegs);
+        maxvissprites = Math.Max(maxvissprites, vissprites);
+    }
+
+    /**
+     * How evenly the parallel renderers' threads were loaded in the last
+     * frame: busiest thread's time over the average one, 1.0 being ideal,
+     * and how many chunks of work were stolen by idle threads.
+     */
+    public void balance(double imbalance, int steals)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        this.balanced = true;
+        this.imbalance = imbalance;
+        this.steals = steals;
+        maximbalance = Math.Max(maximbalance, imbalance);
+    }
+
+    public void endFrame()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        int slot = frames % WINDOW;
+        for (int i = 0; i < STAGES.Length; i++)
+        {
+            samples[i][slot] = current[i];
+            current[i] = 0;
+        }
+        frames++;
+
+        if (listener != null)
+        {
+            listener.accept(this);
+        }
+    }
+
+    /**
+     * @return how many frames the window currently holds
+     */
+    public int getWindow()
+    {
+        return Math.Min(frames, WINDOW);
+    }
+
+    public int getFrames()
+    {
+        return frames;
+    }
+
+    /**
+     * @return nanoseconds the stage took in the last completed frame
+     */
+    public long last(Stage stage)
+    {
+        return frames > 0 ? samples[stage.ordinal()][(frames - 1) % WINDOW] : 0;
+    }
+
+    public double average(Stage stage)
+    {
+        int n = getWindow();
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        long total = 0;
+        long[] s = samples[stage.ordinal()];
+        for (int i = 0; i < n; i++)
+        {
+            total += s[i];
+        }
+        return total / (double) n;
+    }
+
+    /**
+     * Nearest rank percentile over the window, in nanoseconds
+     */
+    public long percentile(Stage stage, int p)
+    {
+        int n = getWindow();
+        if (n == 0)
+        {
+            return 0;
+        }
+
+        System.arraycopy(samples[stage.ordinal()], 0, scratch, 0, n);
+        Arrays.sort(scratch, 0, n);
+        int rank = (int) Math.ceil(p / 100.0 * n);
+        return scratch[Math.Max(0, Math.Min(n, rank) - 1)];
+    }
+
+    public long peak(Stage stage)
+    {
+        return percentile(stage, 100);
+    }
+
+    /**
+     * @return whether the stage was ever timed in the window, e.g. barrier
+     * waits never are with the serial renderer
+     */
+    public bool used(Stage stage)
+    {
+        return peak(stage) > 0;
+    }
+
+    public int getVisplanes()
+    {
+        return visplanes;
+    }
+
+    public int getDrawsegs()
+    {
+        return drawsegs;
+    }
+
+    public int getVissprites()
+    {
+        return vissprites;
+    }
+
+    /**
+     * A header, one line per stage in use, then the counters (last/peak).
+     * Upper case and short, so the HU font can draw them in 320 pixels.
+     */
+    public String[] describe()
+    {
+        String[] lines = new String[describeLines()];
+        int n = 0;
+
+        lines[n++] = "MS          AVG   P95   MAX";
+        for (Stage s : STAGES)
+        {
+            if (used(s))
+            {
+                lines[n++] = String.format("%-10s %5.2f %5.2f %5.2f",
+                        s.label, average(s) / 1e6, percentile(s, 95) / 1e6, peak(s) / 1e6);
+            }
+        }
+
+        lines[n++] = String.format("VP %d/%d DS %d/%d SPR %d/%d",
+                visplanes, maxvisplanes, drawsegs, maxdrawsegs, vissprites, maxvissprites);
+
+        if (balanced)
+        {
+            lines[n++] = String.format("LOAD %.2f/%.2f STOLEN %d", imbalance, maximbalance, steals);
+        }
+
+        return Arrays.copyOf(lines, n);
+    }
+
+    /**
+     * @return how many lines describe() may return, at most
+     */
+    public static int describeLines()
+    {
+        return STAGES.Length + 3;
+    }
+
+    public String toString()
+    {
+        return String.join("\n", describe());
+    }
+}
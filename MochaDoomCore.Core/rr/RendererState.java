@@ -4,6 +4,7 @@ using data.Defines;
 using data.Tables;
 using doom.CommandVariable;
 using doom.DoomMain;
+using doom.RenderPipeline;
 using doom.SourceCode.R_Draw;
 using doom.player_t;
 using doom.thinker_t;
@@ -23,8 +24,14 @@ using w.IWadLoader;
 
 using java.awt.*;
 using java.io.IOException;
+using java.nio.file.Files;
+using java.nio.file.Path;
+using java.nio.file.Paths;
+using java.nio.file.StandardCopyOption;
 using java.util.ArrayList;
 using java.util.List;
+using java.util.stream.IntStream;
+using java.util.zip.CRC32;
 
 using static data.Defines.*;
 using static data.Limits.*;
@@ -71,6 +78,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
     private readonly Rectangle backScreenRect = new Rectangle();
     private readonly Rectangle tilePatchRect = new Rectangle();
     public IVisSpriteManagement<V> VIS;
+    protected readonly RenderStats stats = new RenderStats();
     public ViewVars view;
     public LightsAndColors<V> colormaps;
     public SegVars seg_vars;
@@ -385,10 +393,6 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         setsizeneeded = true;
         setblocks = blocks;
         setdetail = detail;
-
-        detailaware.forEach(d -> {
-            d.setDetail(setdetail);
-        });
     }
 
     /**
@@ -396,11 +400,13 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
      */
     public void SetupFrame(player_t player)
     {
+        // Everything about the player comes from the snapshot, see RenderSnapshot
+        RenderSnapshot snap = view.snapshot;
         view.player = player;
-        view.x = player.mo.x;
-        view.y = player.mo.y;
+        view.x = snap.viewx;
+        view.y = snap.viewy;
         // viewangle = addAngles(player.mo.angle , viewangleoffset);
-        view.angle = player.mo.angle & BITS32;
+        view.angle = snap.viewangle & BITS32;
         // With 32 colormaps, a bump of 1 or 2 is normal.
         // With more than 32, it should be obviously higher.
 
@@ -409,10 +415,10 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         // as evident with truecolor maps.
         bumplight += bumplight > 0 ? 1 : 0;
 
-        colormaps.extralight = player.extralight << bumplight;
+        colormaps.extralight = snap.extralight << bumplight;
 
-        view.z = player.viewz;
-        view.lookdir = player.lookdir;
+        view.z = snap.viewz;
+        view.lookdir = snap.lookdir;
         int tempCentery;
 
         // MAES: hacks based on Heretic. Weapon movement needs to be compensated
@@ -445,9 +451,9 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
 
         sscount = 0;
 
-        if (player.fixedcolormap != Palettes.COLORMAP_FIXED)
+        if (snap.fixedcolormap != Palettes.COLORMAP_FIXED)
         {
-            colormaps.fixedcolormap = colormaps.getFixedColormap(player);
+            colormaps.fixedcolormap = colormaps.getFixedColormap(snap.fixedcolormap);
             // Offset by fixedcolomap
             // pfixedcolormap =player.fixedcolormap*256;
 
@@ -462,8 +468,9 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             colormaps.fixedcolormap = null;
         }
 
+        // validcount belongs to the game logic now, which may be running
+        // meanwhile. R_AddSprites goes by framecount instead.
         framecount++;
-        validcount++;
     }
 
     /**
@@ -487,21 +494,16 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         sscount = 0;
 
         framecount++;
-        validcount++;
     }
 
     /**
-     * Assigns a point of view before calling PointToAngle CAREFUL: this isn't a
-     * pure function, as it alters the renderer's state!
+     * R_PointToAngle2. Unlike vanilla, this one doesn't set the view point:
+     * the game logic calls it, and may do so while a frame is being drawn.
      */
     
     public  long PointToAngle2(int x1, int y1, int x2, int y2)
     {
-        // Careful with assignments...
-        view.x = x1;
-        view.y = y1;
-
-        return view.PointToAngle(x2, y2);
+        return PointToAngle(x1, y1, x2, y2);
     }
 
     //
@@ -625,6 +627,12 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         return maskedcvars;
     }
 
+    
+    public RenderStats getRenderStats()
+    {
+        return stats;
+    }
+
     /**
      * R_DrawViewBorder Draws the border around the view for different size windows
      * Made use of CopyRect there
@@ -691,6 +699,11 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         view.detailshift = setdetail;
         view.width = view.scaledwidth >> view.detailshift;
 
+        // Not in SetViewSize: the menu calls that one, maybe mid-frame.
+        detailaware.forEach(d -> {
+            d.setDetail(setdetail);
+        });
+
         view.centery = view.height / 2;
         view.centerx = view.width / 2;
         view.centerxfrac = view.centerx << FRACBITS;
@@ -1103,7 +1116,9 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
 
     /**
      * A faster implementation of the tranmap calculations. Almost 10x faster
-     * than the old one!
+     * than the old one! And now spread across all cores, and remembered in a
+     * tranmap_XXXXXXXX.dat file named after the PLAYPAL checksum, so only the
+     * very first start with a given palette has to pay for it.
      *
      * @param progress
      */
@@ -1112,6 +1127,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         int lump = DOOM.wadLoader.CheckNumForName("TRANMAP");
 
         long ta = System.nanoTime();
+        main_tranmap = null;
 
         // PRIORITY: a map file has been specified from commandline. Try to read
         // it. If OK, this trumps even those specified in lumps.
@@ -1125,10 +1141,16 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                 {
                     return;
                 }
+                main_tranmap = null;
                 System.out.print("...failure.\n");
             }
         });
 
+        if (main_tranmap != null)
+        {
+            return;
+        }
+
         // Next, if a tranlucency filter map lump is present, use it
         if (lump != -1)
         { // Set a pointer to the translucency filter maps.
@@ -1156,63 +1178,31 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             }
         }
 
-        // Nothing to do, so we must synthesize it from scratch. And, boy, is it
-        // slooow.
-        // Compose a default transparent filter map based on PLAYPAL.
-        System.out.print("Computing translucency map from scratch...that's gonna be SLOW...");
+        // One we computed ourselves earlier, for this very palette?
         byte[] playpal = DOOM.wadLoader.CacheLumpNameAsRawBytes("PLAYPAL", PU_STATIC);
-        main_tranmap = new byte[256 * 256]; // killough 4/11/98
-        int[] basepal = new int[3 * 256];
-        int[] mixedpal = new int[3 * 256 * 256];
-
-        main_tranmap = new byte[256 * 256];
+        String cachename = tranMapCacheName(playpal);
 
-        // Init array of base colors.
-        for (int i = 0; i < 256; i++)
-        {
-            basepal[3 * i] = 0Xff & playpal[i * 3];
-            basepal[1 + 3 * i] = 0Xff & playpal[1 + i * 3];
-            basepal[2 + 3 * i] = 0Xff & playpal[2 + i * 3];
-        }
-
-        // Init array of mixed colors. These are true RGB.
-        // The diagonal of this array will be the original colors.
-        for (int i = 0; i < 256 * 3; i += 3)
+        if (C2JUtils.testReadAccess(cachename))
         {
-            for (int j = 0; j < 256 * 3; j += 3)
+            main_tranmap = new byte[256 * 256];
+            if (MenuMisc.ReadFile(cachename, main_tranmap) == main_tranmap.Length)
             {
-                mixColors(basepal, basepal, mixedpal, i, j, j * 256 + i);
+                System.out.printf("Translucency map loaded from %s in %d ms\n", cachename, (System.nanoTime() - ta) / 1000000);
+                return;
             }
+            System.out.printf("Translucency map cache %s is damaged, ignoring it.\n", cachename);
         }
 
-        // Init distance map. Every original palette colour has a
-        // certain distance from all the others. The diagonal is zero.
-        // The interpretation is that e.g. the mixture of color 2 and 8 will
-        // have a RGB value, which is closest to euclidean distance to
-        // e.g. original color 9. Therefore we should put "9" in the (2,8)
-        // and (8,2) cells of the tranmap.
-        float[] tmpdist = new float[256];
-
-        for (int a = 0; a < 256; a++)
-        {
-            for (int b = a; b < 256; b++)
-            {
-                // We evaluate the mixture of a and b
-                // Construct distance table vs all of the ORIGINAL colors.
-                for (int k = 0; k < 256; k++)
-                {
-                    tmpdist[k] = colorDistance(mixedpal, basepal, 3 * (a + b * 256), k * 3);
-                }
-
-                main_tranmap[a << 8 | b] = (byte) findMin(tmpdist);
-                main_tranmap[b << 8 | a] = main_tranmap[a << 8 | b];
-            }
-        }
+        // Nothing to do, so we must synthesize it from scratch. And, boy, is it
+        // slooow.
+        // Compose a default transparent filter map based on PLAYPAL.
+        System.out.print("Computing translucency map from scratch...");
+        main_tranmap = synthesizeTranMap(playpal);
         System.out.print("...done\n");
-        if (MenuMisc.WriteFile("tranmap.dat", main_tranmap,
-                main_tranmap.Length))
+
+        if (writeTranMapCache(cachename, main_tranmap))
         {
-            System.out.print("TRANMAP.DAT saved to disk for your convenience! Next time will be faster.\n");
+            System.out.printf("%s saved to disk for your convenience! Next time will be faster.\n", cachename);
         }
 
         long b = System.nanoTime();
@@ -1220,52 +1210,104 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
     }
 
     /**
-     * Mixes two RGB colors. Nuff said
+     * Cache files are keyed by the CRC32 of the base palette, the only thing
+     * that goes into the computation: a PWAD with its own PLAYPAL gets its own
+     * file, instead of silently reusing a wrong one.
      */
-    protected void mixColors(int[] a, int[] b, int[] c, int pa, int pb,
-                             int pc)
+    protected static String tranMapCacheName(byte[] playpal)
     {
-        c[pc] = (a[pa] + b[pb]) / 2;
-        c[pc + 1] = (a[pa + 1] + b[pb + 1]) / 2;
-        c[pc + 2] = (a[pa + 2] + b[pb + 2]) / 2;
-
+        CRC32 crc = new CRC32();
+        crc.update(playpal, 0, Math.Min(playpal.Length, 3 * 256));
+        return String.format("tranmap_%08x.dat", crc.getValue());
     }
 
     /**
-     * Returns the euclidean distance of two RGB colors. Nuff said
+     * Write to a temporary file first, then move it in place: when several
+     * instances start at once, none of them may read a half-written map.
      */
-    protected float colorDistance(int[] a, int[] b, int pa, int pb)
+    protected static bool writeTranMapCache(String name, byte[] tranmap)
     {
-        return (float) Math.sqrt((a[pa] - b[pb]) * (a[pa] - b[pb])
-                + (a[pa + 1] - b[pb + 1]) * (a[pa + 1] - b[pb + 1])
-                + (a[pa + 2] - b[pb + 2]) * (a[pa + 2] - b[pb + 2]));
+        Path target = Paths.get(name);
+        Path temp = null;
+        try
+        {
+            temp = Files.createTempFile(target.toAbsolutePath().getParent(), "tranmap", ".tmp");
+            Files.write(temp, tranmap);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        }
+        catch (IOException | UnsupportedOperationException e)
+        {
+            System.err.printf("Couldn't write translucency map cache %s (%s)\n", name, e.getMessage());
+            if (temp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temp);
+                }
+                catch (IOException ignored)
+                {
+                }
+            }
+            return false;
+        }
     }
 
     /**
-     * Stuff that is trivially initializable, even with generics,
-     * but is only safe to do after all constructors have completed.
+     * Every cell (a, b) gets the palette colour closest to the average of
+     * colours a and b. The map is symmetric, so each row "a" only does b >= a
+     * and mirrors it, which makes rows independent: they are spread over the
+     * common fork/join pool. Squared integer distances pick the same colours
+     * as the old float sqrt ones, so existing tranmap files stay valid.
      */
-    protected void completeInit()
+    protected static byte[] synthesizeTranMap(byte[] playpal)
     {
-        detailaware.add(MyThings);
-    }
-
-    protected int findMin(float[] a)
-    {
-        int minindex = 0;
-        float min = Float.POSITIVE_INFINITY;
+        byte[] tranmap = new byte[256 * 256];
+        int[] basepal = new int[3 * 256];
 
-        for (int i = 0; i < a.Length; i++)
+        // Init array of base colors.
+        for (int i = 0; i < 256 * 3; i++)
         {
-            if (a[i] < min)
+            basepal[i] = 0xFF & playpal[i];
+        }
+
+        IntStream.range(0, 256).parallel().forEach(a -> {
+            int ra = basepal[3 * a], ga = basepal[3 * a + 1], ba = basepal[3 * a + 2];
+            for (int b = a; b < 256; b++)
             {
-                min = a[i];
-                minindex = i;
+                // We evaluate the mixture of a and b vs all of the ORIGINAL colors.
+                int r = (ra + basepal[3 * b]) / 2;
+                int g = (ga + basepal[3 * b + 1]) / 2;
+                int bl = (ba + basepal[3 * b + 2]) / 2;
+                int best = 0;
+                int min = int.MAX_VALUE;
+
+                for (int k = 0; k < 256 * 3; k += 3)
+                {
+                    int dr = r - basepal[k], dg = g - basepal[k + 1], db = bl - basepal[k + 2];
+                    int dist = dr * dr + dg * dg + db * db;
+                    if (dist < min)
+                    {
+                        min = dist;
+                        best = k / 3;
+                    }
+                }
+
+                tranmap[a << 8 | b] = (byte) best;
+                tranmap[b << 8 | a] = (byte) best;
             }
-        }
+        });
 
-        return minindex;
+        return tranmap;
+    }
 
+    /**
+     * Stuff that is trivially initializable, even with generics,
+     * but is only safe to do after all constructors have completed.
+     */
+    protected void completeInit()
+    {
+        detailaware.add(MyThings);
     }
 
     /**
@@ -1350,7 +1392,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
 
         spritepresent = new bool[numsprites];
 
-        for (th = DOOM.actions.getThinkerCap().next; th != DOOM.actions.getThinkerCap(); th = th.next)
+        for (th = DOOM.actions.getMobjCap().mnext; th != DOOM.actions.getMobjCap(); th = th.mnext)
         {
             if (th.thinkerFunction == P_MobjThinker)
             {
@@ -1590,27 +1632,46 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
         VIS.ClearSprites();
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
         // The head node is the last node output.
+        long t = stats.mark();
         MyBSP.RenderBSPNode(DOOM.levelLoader.numnodes - 1);
+        t = stats.lap(RenderStats.Stage.BSP, t);
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
         // FIXME: "Warped floor" fixed, now to fix same-height visplane
         // bleeding.
+        t = stats.mark();
         MyPlanes.DrawPlanes();
+        t = stats.lap(RenderStats.Stage.PLANES, t);
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
+        t = stats.mark();
         MyThings.DrawMasked();
+        stats.lap(RenderStats.Stage.MASKED, t);
+        stats.count(vp_vars.lastvisplane, seg_vars.ds_p, VIS.getNumVisSprites());
 
         colfunc.main = colfunc.base;
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
+    }
+
+    /**
+     * Check for new console commands, unless on the RenderPipeline's thread,
+     * where DoomLoop does it instead.
+     */
+    protected void NetUpdate()
+    {
+        if (!RenderPipeline.isDrawing())
+        {
+            DOOM.gameNetworking.NetUpdate();
+        }
     }
 
     protected interface IPlaneDrawer
@@ -2032,8 +2093,8 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             }
 
             // Closed door.
-            if (backsector.ceilingheight <= frontsector.floorheight
-                    || backsector.floorheight >= frontsector.ceilingheight)
+            if (backsector.r_ceilingheight <= frontsector.r_floorheight
+                    || backsector.r_floorheight >= frontsector.r_ceilingheight)
             {
                 if (DEBUG)
                 {
@@ -2045,8 +2106,8 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             }
 
             // Window. This includes same-level floors with different textures
-            if (backsector.ceilingheight != frontsector.ceilingheight
-                    || backsector.floorheight != frontsector.floorheight)
+            if (backsector.r_ceilingheight != frontsector.r_ceilingheight
+                    || backsector.r_floorheight != frontsector.r_floorheight)
             {
                 if (DEBUG)
                 {
@@ -2061,9 +2122,9 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             // Identical floor and ceiling on both sides,
             // identical light levels on both sides,
             // and no middle texture.
-            if (backsector.ceilingpic == frontsector.ceilingpic
-                    && backsector.floorpic == frontsector.floorpic
-                    && backsector.lightlevel == frontsector.lightlevel
+            if (backsector.r_ceilingpic == frontsector.r_ceilingpic
+                    && backsector.r_floorpic == frontsector.r_floorpic
+                    && backsector.r_lightlevel == frontsector.r_lightlevel
                     && curline.sidedef.midtexture == 0)
             {
                 return;
@@ -2259,11 +2320,11 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             {
                 System.out.println("Trying to find an existing FLOOR visplane...");
             }
-            if (frontsector.floorheight < view.z)
+            if (frontsector.r_floorheight < view.z)
             {
                 vp_vars.floorplane
-                        = vp_vars.FindPlane(frontsector.floorheight,
-                        frontsector.floorpic, frontsector.lightlevel);
+                        = vp_vars.FindPlane(frontsector.r_floorheight,
+                        frontsector.r_floorpic, frontsector.r_lightlevel);
             } else
             {
                 // FIXME: unclear what would happen with a null visplane used
@@ -2273,12 +2334,12 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             }
 
             // System.out.println("Trying to find an existing CEILING visplane...");
-            if (frontsector.ceilingheight > view.z
-                    || frontsector.ceilingpic == TexMan.getSkyFlatNum())
+            if (frontsector.r_ceilingheight > view.z
+                    || frontsector.r_ceilingpic == TexMan.getSkyFlatNum())
             {
                 vp_vars.ceilingplane
-                        = vp_vars.FindPlane(frontsector.ceilingheight,
-                        frontsector.ceilingpic, frontsector.lightlevel);
+                        = vp_vars.FindPlane(frontsector.r_ceilingheight,
+                        frontsector.r_ceilingpic, frontsector.r_lightlevel);
             } else
             {
                 vp_vars.ceilingplane = -1; // In lieu of NULL. Will bomb if
@@ -2605,8 +2666,8 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
 
             // calculate texture boundaries
             // and decide if floor / ceiling marks are needed
-            worldtop = MyBSP.frontsector.ceilingheight - view.z;
-            worldbottom = MyBSP.frontsector.floorheight - view.z;
+            worldtop = MyBSP.frontsector.r_ceilingheight - view.z;
+            worldbottom = MyBSP.frontsector.r_floorheight - view.z;
 
             midtexture = toptexture = bottomtexture = 0;
             maskedtexture = false;
@@ -2623,7 +2684,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                 if ((MyBSP.linedef.flags & ML_DONTPEGBOTTOM) != 0)
                 {
                     vtop
-                            = MyBSP.frontsector.floorheight
+                            = MyBSP.frontsector.r_floorheight
                             + TexMan.getTextureheight(MyBSP.sidedef.midtexture);
                     // bottom of texture at bottom
                     rw_midtexturemid = vtop - view.z;
@@ -2632,7 +2693,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                     // top of texture at top
                     rw_midtexturemid = worldtop;
                 }
-                rw_midtexturemid += MyBSP.sidedef.rowoffset;
+                rw_midtexturemid += MyBSP.sidedef.r_rowoffset;
 
                 seg.silhouette = SIL_BOTH;
                 seg.setSprTopClip(view.screenheightarray, 0);
@@ -2646,62 +2707,62 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                 seg.setSprBottomClip(null, 0);
                 seg.silhouette = 0;
 
-                if (MyBSP.frontsector.floorheight > MyBSP.backsector.floorheight)
+                if (MyBSP.frontsector.r_floorheight > MyBSP.backsector.r_floorheight)
                 {
                     seg.silhouette = SIL_BOTTOM;
-                    seg.bsilheight = MyBSP.frontsector.floorheight;
-                } else if (MyBSP.backsector.floorheight > view.z)
+                    seg.bsilheight = MyBSP.frontsector.r_floorheight;
+                } else if (MyBSP.backsector.r_floorheight > view.z)
                 {
                     seg.silhouette = SIL_BOTTOM;
                     seg.bsilheight = int.MAX_VALUE;
                     // seg.sprbottomclip = negonearray;
                 }
 
-                if (MyBSP.frontsector.ceilingheight < MyBSP.backsector.ceilingheight)
+                if (MyBSP.frontsector.r_ceilingheight < MyBSP.backsector.r_ceilingheight)
                 {
                     seg.silhouette |= SIL_TOP;
-                    seg.tsilheight = MyBSP.frontsector.ceilingheight;
-                } else if (MyBSP.backsector.ceilingheight < view.z)
+                    seg.tsilheight = MyBSP.frontsector.r_ceilingheight;
+                } else if (MyBSP.backsector.r_ceilingheight < view.z)
                 {
                     seg.silhouette |= SIL_TOP;
                     seg.tsilheight = int.MIN_VALUE;
                     // seg.sprtopclip = screenheightarray;
                 }
 
-                if (MyBSP.backsector.ceilingheight <= MyBSP.frontsector.floorheight)
+                if (MyBSP.backsector.r_ceilingheight <= MyBSP.frontsector.r_floorheight)
                 {
                     seg.setSprBottomClip(view.negonearray, 0);
                     seg.bsilheight = int.MAX_VALUE;
                     seg.silhouette |= SIL_BOTTOM;
                 }
 
-                if (MyBSP.backsector.floorheight >= MyBSP.frontsector.ceilingheight)
+                if (MyBSP.backsector.r_floorheight >= MyBSP.frontsector.r_ceilingheight)
                 {
                     seg.setSprTopClip(view.screenheightarray, 0);
                     seg.tsilheight = int.MIN_VALUE;
                     seg.silhouette |= SIL_TOP;
                 }
 
-                worldhigh = MyBSP.backsector.ceilingheight - view.z;
-                worldlow = MyBSP.backsector.floorheight - view.z;
+                worldhigh = MyBSP.backsector.r_ceilingheight - view.z;
+                worldlow = MyBSP.backsector.r_floorheight - view.z;
 
                 // hack to allow height changes in outdoor areas
-                if (MyBSP.frontsector.ceilingpic == TexMan.getSkyFlatNum()
-                        && MyBSP.backsector.ceilingpic == TexMan
+                if (MyBSP.frontsector.r_ceilingpic == TexMan.getSkyFlatNum()
+                        && MyBSP.backsector.r_ceilingpic == TexMan
                         .getSkyFlatNum())
                 {
                     worldtop = worldhigh;
                 }
 
                 markfloor = worldlow != worldbottom
-                        || MyBSP.backsector.floorpic != MyBSP.frontsector.floorpic
-                        || MyBSP.backsector.lightlevel != MyBSP.frontsector.lightlevel; // same plane on both sides
+                        || MyBSP.backsector.r_floorpic != MyBSP.frontsector.r_floorpic
+                        || MyBSP.backsector.r_lightlevel != MyBSP.frontsector.r_lightlevel; // same plane on both sides
                 markceiling = worldhigh != worldtop
-                        || MyBSP.backsector.ceilingpic != MyBSP.frontsector.ceilingpic
-                        || MyBSP.backsector.lightlevel != MyBSP.frontsector.lightlevel; // same plane on both sides
+                        || MyBSP.backsector.r_ceilingpic != MyBSP.frontsector.r_ceilingpic
+                        || MyBSP.backsector.r_lightlevel != MyBSP.frontsector.r_lightlevel; // same plane on both sides
 
-                if (MyBSP.backsector.ceilingheight <= MyBSP.frontsector.floorheight
-                        || MyBSP.backsector.floorheight >= MyBSP.frontsector.ceilingheight)
+                if (MyBSP.backsector.r_ceilingheight <= MyBSP.frontsector.r_floorheight
+                        || MyBSP.backsector.r_floorheight >= MyBSP.frontsector.r_ceilingheight)
                 {
                     // closed door
                     markceiling = markfloor = true;
@@ -2719,7 +2780,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                     } else
                     {
                         vtop
-                                = MyBSP.backsector.ceilingheight
+                                = MyBSP.backsector.r_ceilingheight
                                 + TexMan.getTextureheight(MyBSP.sidedef.toptexture);
 
                         // bottom of texture
@@ -2743,8 +2804,8 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                         rw_bottomtexturemid = worldlow;
                     }
                 }
-                rw_toptexturemid += MyBSP.sidedef.rowoffset;
-                rw_bottomtexturemid += MyBSP.sidedef.rowoffset;
+                rw_toptexturemid += MyBSP.sidedef.r_rowoffset;
+                rw_bottomtexturemid += MyBSP.sidedef.r_rowoffset;
 
                 // allocate space for masked texture tables
                 if (MyBSP.sidedef.midtexture != 0)
@@ -2790,7 +2851,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                     rw_offset = -rw_offset;
                 }
 
-                rw_offset += MyBSP.sidedef.textureoffset + MyBSP.curline.offset;
+                rw_offset += MyBSP.sidedef.r_textureoffset + MyBSP.curline.offset;
                 // This is OK, however: we can add as much shit as we want,
                 // as long as we trim it to the 32 LSB. Proof as to why
                 // this is always true is left as an exercise to the reader.
@@ -2803,7 +2864,7 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
                 if (colormaps.fixedcolormap == null)
                 {
                     lightnum
-                            = (MyBSP.frontsector.lightlevel >> colormaps.lightSegShift())
+                            = (MyBSP.frontsector.r_lightlevel >> colormaps.lightSegShift())
                             + colormaps.extralight;
 
                     if (MyBSP.curline.v1y == MyBSP.curline.v2y)
@@ -2831,14 +2892,14 @@ public abstract class RendererState<T, V> : SceneRenderer<T, V>, ILimitResettabl
             // if a floor / ceiling plane is on the wrong side
             // of the view plane, it is definitely invisible
             // and doesn't need to be marked.
-            if (MyBSP.frontsector.floorheight >= view.z)
+            if (MyBSP.frontsector.r_floorheight >= view.z)
             {
                 // above view plane
                 markfloor = false;
             }
 
-            if (MyBSP.frontsector.ceilingheight <= view.z
-                    && MyBSP.frontsector.ceilingpic != TexMan.getSkyFlatNum())
+            if (MyBSP.frontsector.r_ceilingheight <= view.z
+                    && MyBSP.frontsector.r_ceilingpic != TexMan.getSkyFlatNum())
             {
                 // below view plane
                 markceiling = false;
@@ -96,5 +96,10 @@ public interface SceneRenderer<T, V>
 
     ColVars<T, V> getMaskedDCVars();
 
+    /**
+     * Stage timings and buffer usage, when enabled
+     */
+    RenderStats getRenderStats();
+
     //public subsector_t PointInSubsector(int x, int y);
 }
@@ -49,6 +49,11 @@ public class ViewVars
 
     public player_t player;
 
+    /**
+     * What the view is drawn from, see RenderSnapshot
+     */
+    public readonly RenderSnapshot snapshot = new RenderSnapshot();
+
     /**
      * Heretic/freeview stuff?
      */
@@ -65,13 +65,13 @@ public  class VisSprites<V>
         // A sector might have been split into several
         // subsectors during BSP building.
         // Thus we check whether its already added.
-        if (sec.validcount == rendererState.getValidCount())
+        if (sec.r_validcount == rendererState.framecount)
             return;
 
         // Well, now it will be done.
-        sec.validcount = rendererState.getValidCount();
+        sec.r_validcount = rendererState.framecount;
 
-        lightnum = (sec.lightlevel >> rendererState.colormaps.lightSegShift()) + rendererState.colormaps.extralight;
+        lightnum = (sec.r_lightlevel >> rendererState.colormaps.lightSegShift()) + rendererState.colormaps.extralight;
 
         if (lightnum < 0)
             rendererState.colormaps.spritelights = rendererState.colormaps.scalelight[0];
@@ -81,7 +81,7 @@ public  class VisSprites<V>
             rendererState.colormaps.spritelights = rendererState.colormaps.scalelight[lightnum];
 
         // Handle all things in sector.
-        for (thing = sec.thinglist; thing != null; thing = (mobj_t) thing.snext)
+        for (thing = sec.r_thinglist; thing != null; thing = thing.r_snext)
         {
             ProjectSprite(thing);
         }
@@ -115,8 +115,8 @@ public  class VisSprites<V>
         int iscale;
 
         // transform the origin point
-        tr_x = thing.x - rendererState.view.x;
-        tr_y = thing.y - rendererState.view.y;
+        tr_x = thing.r_x - rendererState.view.x;
+        tr_y = thing.r_y - rendererState.view.y;
 
         gxt = FixedMul(tr_x, rendererState.view.cos);
         gyt = -FixedMul(tr_y, rendererState.view.sin);
@@ -140,24 +140,24 @@ public  class VisSprites<V>
         // decide which patch to use for sprite relative to player
         if (RANGECHECK)
         {
-            if (thing.mobj_sprite.ordinal() >= rendererState.DOOM.spriteManager.getNumSprites())
+            if (thing.r_sprite.ordinal() >= rendererState.DOOM.spriteManager.getNumSprites())
                 rendererState.DOOM.doomSystem.Error("R_ProjectSprite: invalid sprite number %d ",
-                        thing.mobj_sprite);
+                        thing.r_sprite);
         }
-        sprdef = rendererState.DOOM.spriteManager.getSprite(thing.mobj_sprite.ordinal());
+        sprdef = rendererState.DOOM.spriteManager.getSprite(thing.r_sprite.ordinal());
         if (RANGECHECK)
         {
-            if ((thing.mobj_frame & FF_FRAMEMASK) >= sprdef.numframes)
+            if ((thing.r_frame & FF_FRAMEMASK) >= sprdef.numframes)
                 rendererState.DOOM.doomSystem.Error("R_ProjectSprite: invalid sprite frame %d : %d ",
-                        thing.mobj_sprite, thing.mobj_frame);
+                        thing.r_sprite, thing.r_frame);
         }
-        sprframe = sprdef.spriteframes[thing.mobj_frame & FF_FRAMEMASK];
+        sprframe = sprdef.spriteframes[thing.r_frame & FF_FRAMEMASK];
 
         if (sprframe.rotate != 0)
         {
             // choose a different rotation based on player view
-            ang = rendererState.view.PointToAngle(thing.x, thing.y);
-            rot = (int) (ang - thing.angle + ANG45 * 9 / 2 & BITS32) >>> 29;
+            ang = rendererState.view.PointToAngle(thing.r_x, thing.r_y);
+            rot = (int) (ang - thing.r_angle + ANG45 * 9 / 2 & BITS32) >>> 29;
             lump = sprframe.lump[rot];
             flip = sprframe.flip[rot] != 0;
         } else
@@ -184,12 +184,12 @@ public  class VisSprites<V>
 
         // store information in a vissprite
         vis = NewVisSprite();
-        vis.mobjflags = thing.flags;
+        vis.mobjflags = thing.r_flags;
         vis.scale = xscale << rendererState.view.detailshift;
-        vis.gx = thing.x;
-        vis.gy = thing.y;
-        vis.gz = thing.z;
-        vis.gzt = thing.z + spritetopoffset[lump];
+        vis.gx = thing.r_x;
+        vis.gy = thing.r_y;
+        vis.gz = thing.r_z;
+        vis.gzt = thing.r_z + spritetopoffset[lump];
         vis.texturemid = vis.gzt - rendererState.view.z;
         vis.x1 = x1 < 0 ? 0 : x1;
         vis.x2 = x2 >= rendererState.view.width ? rendererState.view.width - 1 : x2;
@@ -214,7 +214,7 @@ public  class VisSprites<V>
         vis.patch = lump;
 
         // get light level
-        if ((thing.flags & MF_SHADOW) != 0)
+        if ((thing.r_flags & MF_SHADOW) != 0)
         {
             // shadow draw
             vis.colormap = null;
@@ -223,7 +223,7 @@ public  class VisSprites<V>
             // fixed map
             vis.colormap = rendererState.colormaps.fixedcolormap;
             // vis.pcolormap=0;
-        } else if ((thing.mobj_frame & FF_FULLBRIGHT) != 0)
+        } else if ((thing.r_frame & FF_FULLBRIGHT) != 0)
         {
             // full bright
             vis.colormap = rendererState.colormaps.colormaps[Palettes.COLORMAP_FIXED];
@@ -0,0 +1,157 @@
+namespace rr {  
+
+using doom.DoomMain;
+using doom.player_t;
+using p.mobj_t;
+
+using java.util.ArrayList;
+using java.util.List;
+
+using static data.Defines.VIEWHEIGHT;
+
+/**
+ * Replays a set of viewpoints on the currently loaded level, rendering each
+ * of them a number of times with the hashed FindPlane and then with the
+ * vanilla linear search, and prints what it took. While at it, it checks
+ * that both end up with the very same visplanes, in the very same order,
+ * or vanilla-compatible rendering (and overflows) would be off.
+ * <p>
+ * Viewpoints are taken from the level's things (every "stride"th mobj),
+ * so a heavy map with lots of stuff gives lots of different views.
+ * <p>
+ * Run with -benchmark and -visplanebench frames: after each demo, on the
+ * level it ended on.
+ */
+
+public class VisplaneBenchmark
+{
+    private readonly DoomMain<?, ?> DOOM;
+    private readonly List<int[]> viewpoints = new ArrayList<>();
+
+    public VisplaneBenchmark(DoomMain<?, ?> DOOM)
+    {
+        this.DOOM = DOOM;
+    }
+
+    /**
+     * Add an explicit viewpoint.
+     *
+     * @param x     (fixed_t)
+     * @param y     (fixed_t)
+     * @param z     (fixed_t) eye height
+     * @param angle (angle_t)
+     */
+
+    public VisplaneBenchmark addViewpoint(int x, int y, int z, long angle)
+    {
+        viewpoints.add(new int[]{x, y, z, (int) angle});
+        return this;
+    }
+
+    /**
+     * Add a viewpoint at the eyes of every "stride"th mobj of the level.
+     */
+
+    public VisplaneBenchmark addThingViewpoints(int stride)
+    {
+        var cap = DOOM.actions.getMobjCap();
+        var count = 0;
+
+        for (var th = cap.mnext; th != cap; th = th.mnext)
+        {
+            if (th instanceof mobj_t && count++ % stride == 0)
+            {
+                var mo = (mobj_t) th;
+                addViewpoint(mo.x, mo.y, mo.z + VIEWHEIGHT, mo.angle);
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * @param frames how many times each viewpoint is rendered, per mode
+     * @return false if the two modes disagreed on any visplane
+     */
+
+    public bool run(int frames)
+    {
+        var vp = DOOM.sceneRenderer.getVPVars();
+        var snapshot = DOOM.sceneRenderer.getView().snapshot;
+        var player = DOOM.players[DOOM.consoleplayer];
+        var mo = player.mo;
+        int oldx = mo.x, oldy = mo.y, oldz = player.viewz;
+        var oldangle = mo.angle;
+        var oldmode = vp.linearFindPlane;
+        var same = true;
+
+        long hashed = 0, linear = 0, planes = 0;
+
+        try
+        {
+            for (var v : viewpoints)
+            {
+                mo.x = v[0];
+                mo.y = v[1];
+                player.viewz = v[2];
+                mo.angle = v[3] & 0xFFFFFFFFL;
+                // The renderer draws what was captured, not the live player
+                snapshot.capture(player, DOOM.levelLoader);
+
+                vp.linearFindPlane = false;
+                hashed += render(player, frames);
+                var signature = signature(vp);
+                planes += vp.lastvisplane;
+
+                vp.linearFindPlane = true;
+                linear += render(player, frames);
+
+                if (!signature.equals(signature(vp)))
+                {
+                    System.err.printf("VisplaneBenchmark: mismatch at %d %d angle %x\n", v[0], v[1], v[3]);
+                    same = false;
+                }
+            }
+        }
+        finally
+        {
+            mo.x = oldx;
+            mo.y = oldy;
+            mo.angle = oldangle;
+            player.viewz = oldz;
+            vp.linearFindPlane = oldmode;
+            snapshot.capture(player, DOOM.levelLoader);
+        }
+
+        var n = Math.Max(1, viewpoints.size() * frames);
+        System.out.printf("VisplaneBenchmark: %d viewpoints x %d frames, %.1f visplanes/view\n",
+                viewpoints.size(), frames, planes / (double) Math.Max(1, viewpoints.size()));
+        System.out.printf("\thashed FindPlane: %.3f ms/frame\n", hashed / 1e6 / n);
+        System.out.printf("\tlinear FindPlane: %.3f ms/frame\n", linear / 1e6 / n);
+        System.out.printf("\tvisplanes identical: %s\n", same);
+
+        return same;
+    }
+
+    private long render(player_t player, int frames)
+    {
+        var start = System.nanoTime();
+        for (var i = 0; i < frames; i++)
+        {
+            DOOM.sceneRenderer.RenderPlayerView(player);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String signature(Visplanes vp)
+    {
+        var sb = new StringBuilder();
+        for (var i = 0; i < vp.lastvisplane; i++)
+        {
+            var pl = vp.visplanes[i];
+            sb.append(pl.height).append(',').append(pl.picnum).append(',').append(pl.lightlevel)
+                    .append(',').append(pl.minx).append(',').append(pl.maxx).append(';');
+        }
+        return sb.toString();
+    }
+}
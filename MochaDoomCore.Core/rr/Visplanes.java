@@ -52,6 +52,19 @@ public class Visplanes
      */
     protected int[] yslope;
     protected int skyscale;
+    /**
+     * Open addressing index on (height, picnum, lightlevel), pointing to the
+     * FIRST visplane created with those attributes during this frame, which
+     * is what the linear search in FindPlane would also find. Slots are only
+     * valid if stamped with the current frame's epoch, so ClearPlanes
+     * doesn't need to wipe anything.
+     */
+    protected int[] planehash, planehashepoch;
+    protected int planehashmask, epoch;
+    /**
+     * Set to go back to the vanilla linear search, e.g. for benchmarking.
+     */
+    public bool linearFindPlane = false;
 
     public Visplanes(VideoScale vs, ViewVars view, TextureManager<?> TexMan)
     {
@@ -74,6 +87,65 @@ public class Visplanes
     {
         cachedheight = new int[vs.getScreenHeight()];
         Arrays.setAll(visplanes, j -> new visplane_t());
+        initPlaneHash();
+    }
+
+    /**
+     * (Re)size the index for the current number of visplanes, and put back
+     * in whatever was there this frame, in creation order, so that the
+     * first plane with given attributes still wins.
+     */
+
+    private void initPlaneHash()
+    {
+        var size = int.highestOneBit(Math.Max(visplanes.Length, 64)) << 2;
+        planehash = new int[size];
+        planehashepoch = new int[size];
+        planehashmask = size - 1;
+        epoch = 1;
+
+        for (var i = 0; i < lastvisplane; i++)
+        {
+            var pl = visplanes[i];
+            if (findHashed(pl.height, pl.picnum, pl.lightlevel) < 0)
+                insertHashed(i);
+        }
+    }
+
+    private static int planeHashSlot(int height, int picnum, int lightlevel)
+    {
+        // Heights are fixed_t and often whole, so they need some mixing
+        var h = height * 0x9E3779B9 ^ picnum * 0x85EBCA6B ^ lightlevel * 0xC2B2AE35;
+        return h ^ h >>> 16;
+    }
+
+    /**
+     * @return index of the first visplane with these attributes this frame, or -1
+     */
+
+    private int findHashed(int height, int picnum, int lightlevel)
+    {
+        for (var slot = planeHashSlot(height, picnum, lightlevel) & planehashmask; ; slot = slot + 1 & planehashmask)
+        {
+            if (planehashepoch[slot] != epoch)
+                return -1;
+
+            var chk = visplanes[planehash[slot]];
+            if (height == chk.height && picnum == chk.picnum
+                    && lightlevel == chk.lightlevel)
+                return planehash[slot];
+        }
+    }
+
+    private void insertHashed(int index)
+    {
+        var pl = visplanes[index];
+        var slot = planeHashSlot(pl.height, pl.picnum, pl.lightlevel) & planehashmask;
+        while (planehashepoch[slot] == epoch)
+            slot = slot + 1 & planehashmask;
+
+        planehashepoch[slot] = epoch;
+        planehash[slot] = index;
     }
 
     public int getBaseXScale()
@@ -120,6 +192,8 @@ public class Visplanes
     {
         // Bye bye, old visplanes.
         visplanes = C2JUtils.resize(visplanes[0], visplanes, visplanes.Length * 2);
+        // Keep the index at most 1/4 full.
+        initPlaneHash();
     }
 
     /**
@@ -150,24 +224,38 @@ public class Visplanes
             lightlevel = 0;
         }
 
-        chk = visplanes[0];
-
-        // Find visplane with the desired attributes
-        for (check = 0; check < lastvisplane; check++)
+        if (linearFindPlane)
         {
+            chk = visplanes[0];
 
-            chk = visplanes[check];
-            if (height == chk.height && picnum == chk.picnum
-                    && lightlevel == chk.lightlevel)
+            // Find visplane with the desired attributes
+            for (check = 0; check < lastvisplane; check++)
             {
-                // Found a visplane with the desired specs.
-                break;
+
+                chk = visplanes[check];
+                if (height == chk.height && picnum == chk.picnum
+                        && lightlevel == chk.lightlevel)
+                {
+                    // Found a visplane with the desired specs.
+                    break;
+                }
             }
-        }
 
-        if (check < lastvisplane)
+            if (check < lastvisplane)
+            {
+                return check;
+            }
+        } else
         {
-            return check;
+            // Same answer, without scanning all of them.
+            check = findHashed(height, picnum, lightlevel);
+
+            if (check >= 0)
+            {
+                return check;
+            }
+
+            check = lastvisplane;
         }
 
         // This should return the next available visplane and resize if needed,
@@ -181,6 +269,7 @@ public class Visplanes
         chk.maxx = -1;
         // memset (chk.top,0xff,sizeof(chk.top));
         chk.clearTop();
+        insertHashed(check);
 
         return check;
     }
@@ -202,6 +291,13 @@ public class Visplanes
         // Point to #1 in visplane list? OK... ?!
         lastvisplane = 0;
 
+        // Invalidate the whole plane index at once.
+        if (++epoch == 0)
+        {
+            Arrays.fill(planehashepoch, 0);
+            epoch = 1;
+        }
+
         // We point back to the first opening of the list openings[0],
         // again.
         lastopening = 0;
@@ -29,8 +29,16 @@ public class flat_t
              
     {
 
-        //buf.get(this.data);
-        data = buf.array();
+        // Mapped lump slices aren't backed by an array, so copy those.
+        if (buf.hasArray() && buf.arrayOffset() == 0 && buf.array().Length == buf.remaining())
+        {
+            data = buf.array();
+        }
+        else
+        {
+            data = new byte[buf.remaining()];
+            buf.get(data);
+        }
 
     }
 
@@ -2,24 +2,31 @@ package rr.parallel;
 
 using data.Tables;
 using doom.DoomMain;
+using m.Settings;
 using rr.PlaneDrawer;
 using rr.RendererState;
 using rr.SceneRenderer;
 using rr.drawfuns.ColVars;
+using rr.visplane_t;
 using utils.C2JUtils;
+using v.graphics.Palettes;
 
-using java.io.IOException;
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
-using java.util.concurrent.Executor;
-using java.util.concurrent.Executors;
+using java.util.Arrays;
 
+using static data.Defines.ANGLETOSKYSHIFT;
+using static data.Tables.addAngles;
 using static data.Tables.finetangent;
 using static m.fixed_t.FRACBITS;
 using static m.fixed_t.FixedMul;
 
 /**
- * Features and functionality which is common among parallel renderers
+ * Features and functionality which is common among parallel renderers.
+ * <p>
+ * All parallel work goes through one RenderScheduler, whose threads are
+ * shared by every stage: walls are drawn in runs of RWIs or in column
+ * strips, flats in batches of visplanes, masked stuff in screen bands.
+ * The thread counts given on the command line only size the pool now,
+ * to walls + floors threads (or masked, if more).
  *
  * @author velktron
  */
@@ -28,16 +35,18 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
 {
 
     protected static readonly bool DEBUG = false;
+    /**
+     * Fewest RWIs, wall columns and masked columns per chunk of work: below
+     * that, handing them out costs about as much as drawing them.
+     */
+    protected static readonly int MIN_RWI_RUN = 32, MIN_STRIP = 8, MIN_BAND = 16;
     // //////// PARALLEL OBJECTS /////////////
     protected readonly int NUMWALLTHREADS;
     protected readonly int NUMMASKEDTHREADS;
     protected readonly int NUMFLOORTHREADS;
-    protected Executor tp;
-    protected Runnable[] vpw;
+    protected readonly RenderScheduler scheduler;
+    protected VisplaneWorker<T, V>[] vpw;
     protected MaskedWorker<T, V>[] maskedworkers;
-    protected CyclicBarrier drawsegsbarrier;
-    protected CyclicBarrier visplanebarrier;
-    protected CyclicBarrier maskedbarrier;
     RWI.Get<T, V> RWIs;
 
     public AbstractParallelRenderer(DoomMain<T, V> DM, int wallthread, int floorthreads, int nummaskedthreads)
@@ -46,11 +55,7 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
         NUMWALLTHREADS = wallthread;
         NUMFLOORTHREADS = floorthreads;
         NUMMASKEDTHREADS = nummaskedthreads;
-        // Prepare the barriers for MAXTHREADS + main thread.
-        drawsegsbarrier = new CyclicBarrier(NUMWALLTHREADS + 1);
-        visplanebarrier = new CyclicBarrier(NUMFLOORTHREADS + 1);
-        maskedbarrier = new CyclicBarrier(NUMMASKEDTHREADS + 1);
-        tp = Executors.newCachedThreadPool();
+        scheduler = new RenderScheduler("RenderWorker", Math.Max(NUMWALLTHREADS + NUMFLOORTHREADS, NUMMASKEDTHREADS));
     }
 
     public AbstractParallelRenderer(DoomMain<T, V> DM, int wallthread,
@@ -60,11 +65,21 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
         NUMWALLTHREADS = wallthread;
         NUMFLOORTHREADS = floorthreads;
         NUMMASKEDTHREADS = 1;
-        // Prepare the barriers for MAXTHREADS + main thread.
-        drawsegsbarrier = new CyclicBarrier(NUMWALLTHREADS + 1);
-        visplanebarrier = new CyclicBarrier(NUMFLOORTHREADS + 1);
-        maskedbarrier = new CyclicBarrier(NUMMASKEDTHREADS + 1);
-        tp = Executors.newCachedThreadPool();
+        scheduler = new RenderScheduler("RenderWorker", Math.Max(NUMWALLTHREADS + NUMFLOORTHREADS, NUMMASKEDTHREADS));
+    }
+
+    public RenderScheduler getScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * Wraps up the frame's scheduling figures, once everything is drawn.
+     */
+    protected void endParallelFrame()
+    {
+        scheduler.endFrame();
+        stats.balance(scheduler.getImbalance(), scheduler.getSteals());
     }
 
     /**
@@ -165,6 +180,11 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
 
         int RWIcount = 0;
 
+        /**
+         * Draws runs of RWIs. Any run will do: RWIs never overlap on screen.
+         */
+        readonly RenderScheduler.Job walls;
+
         /*
          * Just what are "RWIs"? Stored wall rendering instructions. They can be
          * at most 3*SCREENWIDTH (if there are low, mid and high textures on
@@ -185,6 +205,7 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
             super(R);
             ColVars<T, V> fake = new ColVars<>();
             RWI = C2JUtils.createArrayOfObjects(fake, 3 * DOOM.vs.getScreenWidth());
+            walls = scheduler.newJob("walls", (w, start, end) -> RWIExec[w].draw(start, end));
         }
 
         /**
@@ -214,21 +235,13 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
         }
 
         /**
-         * Starts the RenderWallExecutors. Sync is EXTERNAL, however.
+         * Hands out the RWIs to the scheduler. Sync is EXTERNAL, however.
          */
 
         
         public void CompleteRendering()
         {
-
-            for (int i = 0; i < NUMWALLTHREADS; i++)
-            {
-
-                RWIExec[i].setRange(i * RWIcount / NUMWALLTHREADS,
-                        (i + 1) * RWIcount / NUMWALLTHREADS);
-                // RWIExec[i].setRange(i%NUMWALLTHREADS,RWIcount,NUMWALLTHREADS);
-                tp.execute(RWIExec[i]);
-            }
+            walls.submit(RWIcount, MIN_RWI_RUN);
 
             // System.out.println("RWI count"+RWIcount);
             RWIcount = 0;
@@ -247,7 +260,7 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
             // Bye bye, old RWI.
             RWI = C2JUtils.resize(fake, RWI, RWI.Length * 2);
 
-            for (int i = 0; i < NUMWALLTHREADS; i++)
+            for (int i = 0; i < RWIExec.Length; i++)
             {
                 RWIExec[i].updateRWI(RWI);
             }
@@ -271,49 +284,107 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
         
         public void sync()
         {
-            try
-            {
-                drawsegsbarrier.await();
-            }
-            catch (InterruptedException | BrokenBarrierException e)
-            {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
-            // TODO Auto-generated catch block
+            walls.await();
         }
     }
 
-    protected readonly class ParallelPlanes<T, V> : PlaneDrawer<T, V>
+    protected readonly class ParallelPlanes : PlaneDrawer<T, V>
     {
 
+        /**
+         * Draws batches of whole visplanes
+         */
+        readonly RenderScheduler.Job planes;
+        /**
+         * The WAD cache isn't thread-safe, so the main thread gets every
+         * flat, and the sky texture's column for every screen column, before
+         * anything is handed out.
+         */
+        Object[] flats = new Object[0];
+        readonly Object[] skycolumns;
+
         protected ParallelPlanes(DoomMain<T, V> DOOM, SceneRenderer<T, V> R)
         {
             super(DOOM, R);
+            skycolumns = new Object[DOOM.vs.getScreenWidth()];
+            planes = scheduler.newJob("planes", (w, start, end) -> vpw[w].DrawPlanes(start, end));
         }
 
         /**
          * R_DrawPlanes At the end of each frame. This also means that visplanes
          * must have been set BEFORE we called this function. Therefore, look
          * for errors behind.
-         *
-         * @ 
+         * <p>
+         * Returns as soon as the visplanes are handed out: sync() waits.
          */
         public void DrawPlanes()
         {
+            visplane_t pln;
+            bool sky = false;
 
             if (RANGECHECK)
             {
                 rangeCheckErrors();
             }
 
-            // vpw[0].setRange(0,lastvisplane/2);
-            // vpw[1].setRange(lastvisplane/2,lastvisplane);
+            if (flats.Length < vpvars.lastvisplane)
+            {
+                flats = Arrays.copyOf(flats, vpvars.visplanes.Length);
+            }
 
-            for (int i = 0; i < NUMFLOORTHREADS; i++)
+            for (int pl = 0; pl < vpvars.lastvisplane; pl++)
             {
-                tp.execute(vpw[i]);
+                pln = vpvars.visplanes[pl];
+
+                if (pln.minx > pln.maxx)
+                {
+                    continue;
+                }
+
+                if (pln.picnum == TexMan.getSkyFlatNum())
+                {
+                    sky = true;
+                } else
+                {
+                    flats[pl] = TexMan.getSafeFlat(pln.picnum);
+                }
             }
+
+            V skycolormap = null;
+            int skytexheight = 0;
+
+            if (sky)
+            {
+                int skytexture = TexMan.getSkyTexture();
+                skytexheight = TexMan.getTextureheight(skytexture) >> FRACBITS;
+
+                for (int x = 0; x < view.width; x++)
+                {
+                    int angle = (int) (addAngles(view.angle, view.xtoviewangle[x]) >>> ANGLETOSKYSHIFT);
+                    skycolumns[x] = TexMan.GetCachedColumn(skytexture, angle);
+                }
+
+                // Same as the serial Planes
+                if (DOOM.CM.equals(Settings.fix_sky_palette, bool.TRUE) && colormap.fixedcolormap != null)
+                {
+                    skycolormap = colormap.fixedcolormap;
+                } else
+                {
+                    skycolormap = colormap.colormaps[Palettes.COLORMAP_FIXED];
+                }
+            }
+
+            for (VisplaneWorker<T, V> w : vpw)
+            {
+                w.startFrame(flats, skycolumns, skycolormap, skytexheight);
+            }
+
+            planes.submit(vpvars.lastvisplane, 1);
+        }
+
+        public void sync()
+        {
+            planes.await();
         }
 
     } // End Plane class
@@ -336,11 +407,17 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
          */
         int RSIcount = 0;
         RenderSegExecutor<byte[], V>[] RSIExec;
+        /**
+         * Each strip of screen columns goes through all the RSIs, in order,
+         * so the clipping within a column stays that of the serial renderer.
+         */
+        readonly RenderScheduler.Job strips;
 
         ParallelSegs2(AbstractParallelRenderer<T, V> APR)
         {
             super(APR);
             this.APR = APR;
+            strips = APR.scheduler.newJob("wall strips", (w, start, end) -> RSIExec[w].render(start, end));
         }
 
         
@@ -544,17 +621,23 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
 
         void RenderRSIPipeline()
         {
-            for (int i = 0; i < APR.NUMWALLTHREADS; i++)
+            for (int i = 0; i < RSIExec.Length; i++)
             {
                 RSIExec[i].setRSIEnd(RSIcount);
-                // RWIExec[i].setRange(i%NUMWALLTHREADS,RWIcount,NUMWALLTHREADS);
-                APR.tp.execute(RSIExec[i]);
             }
 
+            strips.submit(APR.view.width, MIN_STRIP);
+
             // System.out.println("RWI count"+RWIcount);
             RSIcount = 0;
         }
 
+        
+        public void sync()
+        {
+            strips.await();
+        }
+
         /**
          * Resizes RWI buffer, updates executors. Sorry for the hackish
          * implementation but ArrayList and pretty much everything in
@@ -567,7 +650,7 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
             // Bye bye, old RSI.
             RSI = C2JUtils.resize(fake, RSI, RSI.Length * 2);
 
-            for (int i = 0; i < APR.NUMWALLTHREADS; i++)
+            for (int i = 0; i < RSIExec.Length; i++)
             {
                 RSIExec[i].updateRSI(RSI);
             }
@@ -575,37 +658,4 @@ public abstract class AbstractParallelRenderer<T, V> : RendererState<T, V> : RWI
             System.out.println("RWI Buffer resized. Actual capacity " + RSI.Length);
         }
     }
-
-    protected readonly class ParallelPlanes2<T, V> : PlaneDrawer<T, V>
-    {
-
-        protected ParallelPlanes2(DoomMain<T, V> DOOM, SceneRenderer<T, V> R)
-        {
-            super(DOOM, R);
-        }
-
-        /**
-         * R_DrawPlanes At the end of each frame. This also means that visplanes
-         * must have been set BEFORE we called this function. Therefore, look
-         * for errors behind.
-         *
-         * @ 
-         */
-        
-        public void DrawPlanes()
-        {
-
-            if (RANGECHECK)
-            {
-                rangeCheckErrors();
-            }
-
-            // vpw[0].setRange(0,lastvisplane/2);
-            // vpw[1].setRange(lastvisplane/2,lastvisplane);
-            for (int i = 0; i < NUMFLOORTHREADS; i++)
-            {
-                tp.execute(vpw[i]);
-            }
-        }
-    } // End Plane class
-}
+}
\ No newline at end of file
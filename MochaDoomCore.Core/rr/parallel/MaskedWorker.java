@@ -7,9 +7,6 @@ using v.graphics.Palettes;
 using v.scale.VideoScale;
 using v.tables.BlurryTable;
 
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
-
 using static data.Defines.*;
 using static m.fixed_t.*;
 using static p.mobj_t.MF_TRANSLATION;
@@ -19,26 +16,30 @@ using static rr.line_t.ML_DONTPEGBOTTOM;
  * A "Masked Worker" draws sprites in a split-screen strategy. Used by
  * ParallelRenderer2. Each Masked Worker is essentially a complete Things
  * drawer, and reuses much of the serial methods.
+ * <p>
+ * There's one per scheduler worker, drawing whichever bands of screen
+ * columns it's handed, [startx, endx) each. Within a band everything is
+ * drawn in the serial order, so sprites and masked mid textures still
+ * overlap correctly. The id is that of the worker, and picks its own SMP
+ * column cache in the texture manager.
  *
  * @param <T>
  * @param <V>
  * @author velktron
  */
 
-public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDetailAware
+public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : IDetailAware
 {
 
     private readonly static bool DEBUG = false;
     private readonly static bool RANGECHECK = false;
 
-    protected readonly CyclicBarrier barrier;
     protected readonly int id;
-    protected readonly int numthreads;
 
     //protected ColVars<T,V> maskedcvars;
     protected int startx, endx;
 
-    public MaskedWorker(VideoScale vs, SceneRenderer<T, V> R, int id, int numthreads, CyclicBarrier barrier)
+    public MaskedWorker(VideoScale vs, SceneRenderer<T, V> R, int id)
     {
         super(vs, R);
         // Workers have their own set, not a "pegged" one.
@@ -46,8 +47,6 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
         colfuncslow = new ColFuncs<>();
         maskedcvars = new ColVars<>();
         this.id = id;
-        this.numthreads = numthreads;
-        this.barrier = barrier;
     }
 
     
@@ -76,7 +75,7 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
 
         // Trim bounds to zone NOW
         int x1 = Math.Max(startx, vis.x1);
-        int x2 = Math.Min(endx, vis.x2);
+        int x2 = Math.Min(endx - 1, vis.x2);
 
         // At this point, the view angle (and patch) has already been
         // chosen. Go back.
@@ -143,11 +142,11 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
     {
 
         // Trivial rejection
-        if (ds.x1 > endx || ds.x2 < startx) return;
+        if (ds.x1 >= endx || ds.x2 < startx) return;
 
         // Trim bounds to zone NOW
         x1 = Math.Max(startx, x1);
-        x2 = Math.Min(endx, x2);
+        x2 = Math.Min(endx - 1, x2);
 
         int index;
 
@@ -164,20 +163,22 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
         // Use different light tables
         // for horizontal / vertical / diagonal. Diagonal?
         // OPTIMIZE: get rid of LIGHTSEGSHIFT globally
-        MyBSP.curline = ds.curline;
-        frontsector = MyBSP.curline.frontsector;
-        backsector = MyBSP.curline.backsector;
-        texnum = TexMan.getTextureTranslation(MyBSP.curline.sidedef.midtexture);
+        // Locals, not the shared curline and walllights: other bands are at it too.
+        seg_t curline = ds.curline;
+        V[] walllights;
+        frontsector = curline.frontsector;
+        backsector = curline.backsector;
+        texnum = TexMan.getTextureTranslation(curline.sidedef.midtexture);
         // System.out.print(" for texture "+textures[texnum].name+"\n:");
-        lightnum = (frontsector.lightlevel >> colormaps.lightSegShift()) + colormaps.extralight;
+        lightnum = (frontsector.r_lightlevel >> colormaps.lightSegShift()) + colormaps.extralight;
 
-        if (MyBSP.curline.v1y == MyBSP.curline.v2y)
+        if (curline.v1y == curline.v2y)
             lightnum--;
-        else if (MyBSP.curline.v1x == MyBSP.curline.v2x)
+        else if (curline.v1x == curline.v2x)
             lightnum++;
 
         // Killough code.
-        colormaps.walllights = lightnum >= colormaps.lightLevels() ? colormaps.scalelight[colormaps.lightLevels() - 1]
+        walllights = lightnum >= colormaps.lightLevels() ? colormaps.scalelight[colormaps.lightLevels() - 1]
                 : lightnum < 0 ? colormaps.scalelight[0] : colormaps.scalelight[lightnum];
 
         // Get the list
@@ -194,21 +195,21 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
         mceilingclip = ds.getSprTopClipList();
         p_mceilingclip = ds.getSprTopClipPointer();
         // find positioning
-        if ((MyBSP.curline.linedef.flags & ML_DONTPEGBOTTOM) != 0)
+        if ((curline.linedef.flags & ML_DONTPEGBOTTOM) != 0)
         {
-            maskedcvars.dc_texturemid = frontsector.floorheight > backsector.floorheight ? frontsector.floorheight
-                    : backsector.floorheight;
+            maskedcvars.dc_texturemid = frontsector.r_floorheight > backsector.r_floorheight ? frontsector.r_floorheight
+                    : backsector.r_floorheight;
             maskedcvars.dc_texturemid = maskedcvars.dc_texturemid + TexMan.getTextureheight(texnum)
                     - view.z;
         } else
         {
-            maskedcvars.dc_texturemid = frontsector.ceilingheight < backsector.ceilingheight
-                    ? frontsector.ceilingheight
-                    : backsector.ceilingheight;
+            maskedcvars.dc_texturemid = frontsector.r_ceilingheight < backsector.r_ceilingheight
+                    ? frontsector.r_ceilingheight
+                    : backsector.r_ceilingheight;
 
             maskedcvars.dc_texturemid -= view.z;
         }
-        maskedcvars.dc_texturemid += MyBSP.curline.sidedef.rowoffset;
+        maskedcvars.dc_texturemid += curline.sidedef.r_rowoffset;
 
         if (colormaps.fixedcolormap != null)
             maskedcvars.dc_colormap = colormaps.fixedcolormap;
@@ -230,7 +231,7 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
                     if (index >= colormaps.maxLightScale())
                         index = colormaps.maxLightScale() - 1;
 
-                    maskedcvars.dc_colormap = colormaps.walllights[index];
+                    maskedcvars.dc_colormap = walllights[index];
                 }
 
                 sprtopscreen = view.centeryfrac
@@ -343,8 +344,8 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
 
         vis.patch = lump;
 
-        if (view.player.powers[pw_invisibility] > 4 * 32
-                || (view.player.powers[pw_invisibility] & 8) != 0)
+        if (view.snapshot.invisibility > 4 * 32
+                || (view.snapshot.invisibility & 8) != 0)
         {
             // shadow draw
             vis.colormap = null;
@@ -370,17 +371,13 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
     }
 
     /**
-     * R_DrawMasked
-     * <p>
-     * Sorts and draws vissprites (room for optimization in sorting func.)
-     * Draws masked textures. Draws player weapons and overlays (psprites).
+     * R_DrawMasked, for screen columns [startx, endx) only
      * <p>
-     * Sorting function can be swapped for almost anything, and it will work
-     * better, in-place and be simpler to draw, too.
+     * Draws vissprites, which must already be sorted. Draws masked textures.
+     * Draws player weapons and overlays (psprites).
      */
 
-    
-    public void run()
+    public void drawBand(int startx, int endx)
     {
         // vissprite_t spr;
         int ds;
@@ -395,8 +392,8 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
 
         maskedcvars.viewheight = view.height;
         maskedcvars.centery = view.centery;
-        startx = id * view.width / numthreads;
-        endx = (id + 1) * view.width / numthreads;
+        this.startx = startx;
+        this.endx = endx;
 
         // Update thread's own vissprites
 
@@ -418,7 +415,7 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
         for (ds = seg_vars.ds_p - 1; ds >= 0; ds--)
         {
             dss = seg_vars.drawsegs[ds];
-            if (!(dss.x1 > endx || dss.x2 < startx) && !dss.nullMaskedTextureCol())
+            if (!(dss.x1 >= endx || dss.x2 < startx) && !dss.nullMaskedTextureCol())
                 RenderMaskedSegRange(dss, dss.x1, dss.x2);
         }
         // draw the psprites on top of everything
@@ -428,27 +425,16 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
         colfunc = colfuncs.player;
         DrawPlayerSprites();
         colfunc = colfuncs.masked;
-
-        try
-        {
-            barrier.await();
-        }
-        catch (InterruptedException | BrokenBarrierException e)
-        {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        // TODO Auto-generated catch block
     }
 
     public static readonly class HiColor : MaskedWorker<byte[], short[]>
     {
 
         public HiColor(VideoScale vs, SceneRenderer<byte[], short[]> R, int id,
-                       int[] ylookup, int[] columnofs, int numthreads, short[] screen,
-                       CyclicBarrier barrier, BlurryTable BLURRY_MAP)
+                       int[] ylookup, int[] columnofs, short[] screen,
+                       BlurryTable BLURRY_MAP)
         {
-            super(vs, R, id, numthreads, barrier);
+            super(vs, R, id);
 
             // Non-optimized stuff for masked.
             colfuncshi.base = colfuncshi.main = colfuncshi.masked = new R_DrawColumnBoom.HiColor(vs.getScreenWidth(), vs.getScreenHeight(), ylookup, columnofs, maskedcvars, screen, I);
@@ -472,10 +458,10 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
     {
 
         public Indexed(VideoScale vs, SceneRenderer<byte[], byte[]> R, int id,
-                       int[] ylookup, int[] columnofs, int numthreads, byte[] screen,
-                       CyclicBarrier barrier, BlurryTable BLURRY_MAP)
+                       int[] ylookup, int[] columnofs, byte[] screen,
+                       BlurryTable BLURRY_MAP)
         {
-            super(vs, R, id, numthreads, barrier);
+            super(vs, R, id);
             colfuncshi.base = colfuncshi.main = colfuncshi.masked = new R_DrawColumnBoom.Indexed(vs.getScreenWidth(), vs.getScreenHeight(), ylookup, columnofs, maskedcvars, screen, I);
             colfuncslow.masked = new R_DrawColumnBoomLow.Indexed(vs.getScreenWidth(), vs.getScreenHeight(), ylookup, columnofs, maskedcvars, screen, I);
 
@@ -496,10 +482,10 @@ public abstract class MaskedWorker<T, V> : AbstractThings<T, V> : Runnable, IDet
     {
 
         public TrueColor(VideoScale vs, SceneRenderer<byte[], int[]> R, int id,
-                         int[] ylookup, int[] columnofs, int numthreads, int[] screen,
-                         CyclicBarrier barrier, BlurryTable BLURRY_MAP)
+                         int[] ylookup, int[] columnofs, int[] screen,
+                         BlurryTable BLURRY_MAP)
         {
-            super(vs, R, id, numthreads, barrier);
+            super(vs, R, id);
 
             // Non-optimized stuff for masked.
             colfuncshi.base = colfuncshi.main = colfuncshi.masked = new R_DrawColumnBoom.TrueColor(vs.getScreenWidth(), vs.getScreenHeight(), ylookup, columnofs, maskedcvars, screen, I);
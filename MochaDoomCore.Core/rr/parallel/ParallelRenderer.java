@@ -2,6 +2,7 @@ package rr.parallel;
 
 using doom.DoomMain;
 using doom.player_t;
+using rr.RenderStats;
 using rr.SimpleThings;
 using rr.drawfuns.*;
 
@@ -15,8 +16,9 @@ using java.io.IOException;
  * However, visplane limits and openings need to be pre-computed before any
  * actual drawing starts, that's why rendering of walls is stored in "RWI"s or
  * "Render Wall Instructions", and then rendered once they are all in place and
- * the can be parallelized between rendering threads. Rendering of sprites is
- * NOT parallelized yet (and probably not worth it, at this point).
+ * the can be parallelized between rendering threads. Floors are drawn in
+ * batches of whole visplanes, at the same time as the walls. Rendering of
+ * sprites is NOT parallelized yet (and probably not worth it, at this point).
  *
  * @author admin
  */
@@ -35,7 +37,7 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         RWIs = tmp;
 
         MyThings = new SimpleThings<>(DM.vs, this);
-        //this.MyPlanes = new Planes(this);// new ParallelPlanes<T, V>(DM.R);
+        MyPlanes = new ParallelPlanes(DM, this);
 
     }
 
@@ -81,32 +83,44 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         MySegs.ClearClips();
         VIS.ClearSprites();
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
         // The head node is the last node output.
+        long t = stats.mark();
         MyBSP.RenderBSPNode(DOOM.levelLoader.numnodes - 1);
+        t = stats.lap(RenderStats.Stage.BSP, t);
 
         // System.out.printf("Submitted %d RWIs\n",RWIcount);
 
         MySegs.CompleteRendering();
+        stats.lap(RenderStats.Stage.WALLS, t);
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
         // "Warped floor" fixed, same-height visplane merging fixed.
+        t = stats.mark();
         MyPlanes.DrawPlanes();
+        stats.lap(RenderStats.Stage.PLANES, t);
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
+        t = stats.mark();
         MySegs.sync();
+        t = stats.lap(RenderStats.Stage.WALLS_WAIT, t);
         MyPlanes.sync();
+        stats.lap(RenderStats.Stage.PLANES_WAIT, t);
 
 //            drawsegsbarrier.await();
 //            visplanebarrier.await();
 
 
+        t = stats.mark();
         MyThings.DrawMasked();
+        stats.lap(RenderStats.Stage.MASKED, t);
+        stats.count(vp_vars.lastvisplane, seg_vars.ds_p, VIS.getNumVisSprites());
+        endParallelFrame();
 
         // RenderRMIPipeline();
         /*
@@ -115,7 +129,7 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
          */
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
     }
 
     
@@ -126,16 +140,18 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         if (!(RWIs == null))
         {
             ColVars<T, V>[] RWI = RWIs.getRWI();
-            RenderWallExecutor<T, V>[] RWIExec = InitRWIExecutors(NUMWALLTHREADS, RWI);
+            RenderWallExecutor<T, V>[] RWIExec = InitRWIExecutors(scheduler.getThreads(), RWI);
             RWIs.setExecutors(RWIExec);
 
-            for (int i = 0; i < NUMWALLTHREADS; i++)
+            for (int i = 0; i < RWIExec.Length; i++)
             {
 
                 detailaware.add(RWIExec[i]);
             }
         }
 
+        InitPlaneWorkers();
+
         // CATCH: this must be executed AFTER screen is set, and
         // AFTER we initialize the RWI themselves,
         // before V is set (right?)
@@ -153,19 +169,16 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         // InitPlaneWorkers();
         // InitMaskedWorkers();
         // If using masked threads, set these too.
-        TexMan.setSMPVars(NUMMASKEDTHREADS);
+        TexMan.setSMPVars(scheduler.getThreads());
 
     }
 
     protected abstract void InitMaskedWorkers();
 
-    /*
-     * private void InitPlaneWorkers(){ for (int i = 0; i < NUMFLOORTHREADS;
-     * i++) { vpw[i] = new VisplaneWorker2(i,SCREENWIDTH, SCREENHEIGHT,
-     * columnofs, ylookup, screen, visplanebarrier, NUMFLOORTHREADS);
-     * //vpw[i].id = i; detailaware.add((IDetailAware) vpw[i]); } }
+    /**
+     * One VisplaneWorker per scheduler thread, for ParallelPlanes
      */
-
+    protected abstract void InitPlaneWorkers();
 
     /*
      * TODO: relay to dependent objects. super.initScaling();
@@ -254,12 +267,12 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         @SuppressWarnings("unchecked")
         protected void InitMaskedWorkers()
         {
-            maskedworkers = new MaskedWorker[NUMMASKEDTHREADS];
-            for (int i = 0; i < NUMMASKEDTHREADS; i++)
+            maskedworkers = new MaskedWorker[scheduler.getThreads()];
+            for (int i = 0; i < maskedworkers.Length; i++)
             {
                 maskedworkers[i] = new MaskedWorker.Indexed(
-                        DOOM.vs, this, i, ylookup, columnofs, NUMMASKEDTHREADS,
-                        screen, maskedbarrier, BLURRY_MAP
+                        DOOM.vs, this, i, ylookup, columnofs,
+                        screen, BLURRY_MAP
                 );
 
                 detailaware.add(maskedworkers[i]);
@@ -269,6 +282,18 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         }
 
         
+        @SuppressWarnings("unchecked")
+        protected void InitPlaneWorkers()
+        {
+            vpw = new VisplaneWorker[scheduler.getThreads()];
+            for (int i = 0; i < vpw.Length; i++)
+            {
+                vpw[i] = new VisplaneWorker.Indexed(DOOM, this, columnofs, ylookup, screen);
+                detailaware.add(vpw[i]);
+            }
+        }
+
+        
         public RenderWallExecutor<byte[], byte[]>[] InitRWIExecutors(
                 int num, ColVars<byte[], byte[]>[] RWI)
         {
@@ -277,7 +302,7 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
 
             for (int i = 0; i < num; i++)
             {
-                tmp[i] = new RenderWallExecutor.Indexed(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), columnofs, ylookup, screen, RWI, drawsegsbarrier);
+                tmp[i] = new RenderWallExecutor.Indexed(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), columnofs, ylookup, screen, RWI);
             }
 
             return tmp;
@@ -305,12 +330,12 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         @SuppressWarnings("unchecked")
         protected void InitMaskedWorkers()
         {
-            maskedworkers = new MaskedWorker[NUMMASKEDTHREADS];
-            for (int i = 0; i < NUMMASKEDTHREADS; i++)
+            maskedworkers = new MaskedWorker[scheduler.getThreads()];
+            for (int i = 0; i < maskedworkers.Length; i++)
             {
                 maskedworkers[i] = new MaskedWorker.HiColor(
-                        DOOM.vs, this, i, ylookup, columnofs, NUMMASKEDTHREADS,
-                        screen, maskedbarrier, BLURRY_MAP
+                        DOOM.vs, this, i, ylookup, columnofs,
+                        screen, BLURRY_MAP
                 );
 
                 detailaware.add(maskedworkers[i]);
@@ -372,6 +397,18 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         }
 
         
+        @SuppressWarnings("unchecked")
+        protected void InitPlaneWorkers()
+        {
+            vpw = new VisplaneWorker[scheduler.getThreads()];
+            for (int i = 0; i < vpw.Length; i++)
+            {
+                vpw[i] = new VisplaneWorker.HiColor(DOOM, this, columnofs, ylookup, screen);
+                detailaware.add(vpw[i]);
+            }
+        }
+
+        
         public RenderWallExecutor<byte[], short[]>[] InitRWIExecutors(
                 int num, ColVars<byte[], short[]>[] RWI)
         {
@@ -380,7 +417,7 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
 
             for (int i = 0; i < num; i++)
             {
-                tmp[i] = new RenderWallExecutor.HiColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), columnofs, ylookup, screen, RWI, drawsegsbarrier);
+                tmp[i] = new RenderWallExecutor.HiColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), columnofs, ylookup, screen, RWI);
             }
 
             return tmp;
@@ -461,12 +498,12 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         @SuppressWarnings("unchecked")
         protected void InitMaskedWorkers()
         {
-            maskedworkers = new MaskedWorker[NUMMASKEDTHREADS];
-            for (int i = 0; i < NUMMASKEDTHREADS; i++)
+            maskedworkers = new MaskedWorker[scheduler.getThreads()];
+            for (int i = 0; i < maskedworkers.Length; i++)
             {
                 maskedworkers[i] = new MaskedWorker.TrueColor(
-                        DOOM.vs, this, i, ylookup, columnofs, NUMMASKEDTHREADS, screen,
-                        maskedbarrier, BLURRY_MAP
+                        DOOM.vs, this, i, ylookup, columnofs,
+                        screen, BLURRY_MAP
                 );
 
                 detailaware.add(maskedworkers[i]);
@@ -476,6 +513,18 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
         }
 
         
+        @SuppressWarnings("unchecked")
+        protected void InitPlaneWorkers()
+        {
+            vpw = new VisplaneWorker[scheduler.getThreads()];
+            for (int i = 0; i < vpw.Length; i++)
+            {
+                vpw[i] = new VisplaneWorker.TrueColor(DOOM, this, columnofs, ylookup, screen);
+                detailaware.add(vpw[i]);
+            }
+        }
+
+        
         public RenderWallExecutor<byte[], int[]>[] InitRWIExecutors(
                 int num, ColVars<byte[], int[]>[] RWI)
         {
@@ -484,7 +533,7 @@ public abstract class ParallelRenderer<T, V> : AbstractParallelRenderer<T, V>
 
             for (int i = 0; i < num; i++)
             {
-                tmp[i] = new RenderWallExecutor.TrueColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), columnofs, ylookup, screen, RWI, drawsegsbarrier);
+                tmp[i] = new RenderWallExecutor.TrueColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), columnofs, ylookup, screen, RWI);
             }
 
             return tmp;
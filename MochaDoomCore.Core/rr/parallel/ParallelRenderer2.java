@@ -2,12 +2,10 @@ package rr.parallel;
 
 using doom.DoomMain;
 using doom.player_t;
+using rr.RenderStats;
 using rr.drawfuns.*;
 
 using java.io.IOException;
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
-using java.util.concurrent.Executors;
 
 using static data.Limits.MAXSEGS;
 using static utils.GenericCopy.malloc;
@@ -31,12 +29,12 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         System.out.println("Parallel Renderer 2 (Seg-based)");
 
         MySegs = new ParallelSegs2<>(this);
-        MyPlanes = new ParallelPlanes<>(DOOM, this);
-        MyThings = new ParallelThings2<>(DOOM.vs, this);
+        MyPlanes = new ParallelPlanes(DOOM, this);
+        MyThings = new ParallelThings2<>(DOOM.vs, this, scheduler);
 
         // TO BE LATE INIT? AFTER CONS?
-        // Masked workers.
-        ((ParallelThings2<T, V>) MyThings).maskedworkers = maskedworkers = new MaskedWorker[NUMMASKEDTHREADS];
+        // Masked workers, one per scheduler thread.
+        ((ParallelThings2<T, V>) MyThings).maskedworkers = maskedworkers = new MaskedWorker[scheduler.getThreads()];
         InitMaskedWorkers();
 
         ((ParallelSegs2<T, V>) MySegs).RSI = malloc(RenderSegInstruction::new, RenderSegInstruction[]::new, MAXSEGS * 3);
@@ -46,22 +44,15 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
     @SuppressWarnings("unchecked")
     protected void InitParallelStuff()
     {
-        // Prepare parallel stuff
-        ((ParallelSegs2<T, V>) MySegs).RSIExec = new RenderSegExecutor[NUMWALLTHREADS];
-        tp = Executors.newFixedThreadPool(NUMWALLTHREADS + NUMFLOORTHREADS);
-        // Prepare the barrier for MAXTHREADS + main thread.
-        //wallbarrier=new CyclicBarrier(NUMWALLTHREADS+1);
-        visplanebarrier = new CyclicBarrier(NUMFLOORTHREADS + NUMWALLTHREADS + 1);
-
-        vpw = new VisplaneWorker2[NUMFLOORTHREADS];
+        // Prepare parallel stuff: one of each executor per scheduler thread.
+        ((ParallelSegs2<T, V>) MySegs).RSIExec = new RenderSegExecutor[scheduler.getThreads()];
+        vpw = new VisplaneWorker[scheduler.getThreads()];
 
         // Uses "seg" parallel drawer, so RSI.
         InitRSISubsystem();
 
-        maskedbarrier = new CyclicBarrier(NUMMASKEDTHREADS + 1);
-
         // If using masked threads, set these too.
-        TexMan.setSMPVars(NUMMASKEDTHREADS);
+        TexMan.setSMPVars(scheduler.getThreads());
     }
 
     ///////////////////////// The actual rendering calls ///////////////////////
@@ -101,10 +92,12 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         VIS.ClearSprites();
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
         // The head node is the last node output.
+        long t = stats.mark();
         MyBSP.RenderBSPNode(DOOM.levelLoader.numnodes - 1);
+        t = stats.lap(RenderStats.Stage.BSP, t);
 
         // RenderRMIPipeline();
         /*
@@ -116,33 +109,33 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         // System.out.printf("Submitted %d RSIs\n",RSIcount);
 
         MySegs.CompleteRendering();
+        stats.lap(RenderStats.Stage.WALLS, t);
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
         // "Warped floor" fixed, same-height visplane merging fixed.
+        t = stats.mark();
         MyPlanes.DrawPlanes();
-
-        try
-        {
-            visplanebarrier.await();
-        }
-        catch (InterruptedException | BrokenBarrierException e)
-        {
-            e.printStackTrace();
-        }
+        stats.lap(RenderStats.Stage.PLANES, t);
 
         // Check for new console commands.
-        DOOM.gameNetworking.NetUpdate();
+        NetUpdate();
 
+        t = stats.mark();
         MySegs.sync();
+        t = stats.lap(RenderStats.Stage.WALLS_WAIT, t);
         MyPlanes.sync();
+        stats.lap(RenderStats.Stage.PLANES_WAIT, t);
 
 //            drawsegsbarrier.await();
 //            visplanebarrier.await();
 
 
+        // Masked stages are timed by ParallelThings2 itself
         MyThings.DrawMasked();
+        stats.count(vp_vars.lastvisplane, seg_vars.ds_p, VIS.getNumVisSprites());
+        endParallelFrame();
     }
 
     abstract protected void InitRSISubsystem();
@@ -194,23 +187,21 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         {
             // int[] offsets = new int[NUMWALLTHREADS];
             ParallelSegs2<byte[], byte[]> parallelSegs = (ParallelSegs2<byte[], byte[]>) MySegs;
-            for (int i = 0; i < NUMWALLTHREADS; i++)
+            for (int i = 0; i < parallelSegs.RSIExec.Length; i++)
             {
                 parallelSegs.RSIExec[i] = new RenderSegExecutor.Indexed(
                         DOOM, i, screen, TexMan,
                         parallelSegs.RSI, MySegs.getBLANKCEILINGCLIP(), MySegs.getBLANKFLOORCLIP(),
                         MySegs.getCeilingClip(), MySegs.getFloorClip(), columnofs, view.xtoviewangle,
-                        ylookup, vp_vars.visplanes, visplanebarrier, colormaps
+                        ylookup, vp_vars.visplanes, colormaps
                 );
-                // SegExecutor sticks to its own half (or 1/nth) of the screen.
-                parallelSegs.RSIExec[i].setScreenRange(i * (DOOM.vs.getScreenWidth() / NUMWALLTHREADS), (i + 1) * (DOOM.vs.getScreenWidth() / NUMWALLTHREADS));
                 detailaware.add(parallelSegs.RSIExec[i]);
             }
 
-            for (int i = 0; i < NUMFLOORTHREADS; i++)
+            for (int i = 0; i < vpw.Length; i++)
             {
-                VisplaneWorker2<?, ?> w = new VisplaneWorker2.Indexed(
-                        DOOM, this, i, columnofs, ylookup, screen, visplanebarrier, NUMFLOORTHREADS
+                VisplaneWorker<byte[], byte[]> w = new VisplaneWorker.Indexed(
+                        DOOM, this, columnofs, ylookup, screen
                 );
                 vpw[i] = w;
                 detailaware.add(w);
@@ -221,11 +212,11 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         @SuppressWarnings("unchecked")
         protected void InitMaskedWorkers()
         {
-            for (int i = 0; i < NUMMASKEDTHREADS; i++)
+            for (int i = 0; i < maskedworkers.Length; i++)
             {
                 maskedworkers[i] = new MaskedWorker.Indexed(
-                        DOOM.vs, this, i, ylookup, columnofs, NUMMASKEDTHREADS,
-                        screen, maskedbarrier, BLURRY_MAP
+                        DOOM.vs, this, i, ylookup, columnofs,
+                        screen, BLURRY_MAP
                 );
 
                 detailaware.add(maskedworkers[i]);
@@ -303,23 +294,21 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         {
             // int[] offsets = new int[NUMWALLTHREADS];
             ParallelSegs2<byte[], short[]> parallelSegs = (ParallelSegs2<byte[], short[]>) MySegs;
-            for (int i = 0; i < NUMWALLTHREADS; i++)
+            for (int i = 0; i < parallelSegs.RSIExec.Length; i++)
             {
                 parallelSegs.RSIExec[i] = new RenderSegExecutor.HiColor(
                         DOOM, i, screen, TexMan,
                         parallelSegs.RSI, MySegs.getBLANKCEILINGCLIP(), MySegs.getBLANKFLOORCLIP(),
                         MySegs.getCeilingClip(), MySegs.getFloorClip(), columnofs, view.xtoviewangle,
-                        ylookup, vp_vars.visplanes, visplanebarrier, colormaps
+                        ylookup, vp_vars.visplanes, colormaps
                 );
-                // SegExecutor sticks to its own half (or 1/nth) of the screen.
-                parallelSegs.RSIExec[i].setScreenRange(i * (DOOM.vs.getScreenWidth() / NUMWALLTHREADS), (i + 1) * (DOOM.vs.getScreenWidth() / NUMWALLTHREADS));
                 detailaware.add(parallelSegs.RSIExec[i]);
             }
 
-            for (int i = 0; i < NUMFLOORTHREADS; i++)
+            for (int i = 0; i < vpw.Length; i++)
             {
-                VisplaneWorker2<?, ?> w = new VisplaneWorker2.HiColor(
-                        DOOM, this, i, columnofs, ylookup, screen, visplanebarrier, NUMFLOORTHREADS
+                VisplaneWorker<byte[], short[]> w = new VisplaneWorker.HiColor(
+                        DOOM, this, columnofs, ylookup, screen
                 );
                 vpw[i] = w;
                 detailaware.add(w);
@@ -330,11 +319,11 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         @SuppressWarnings("unchecked")
         protected void InitMaskedWorkers()
         {
-            for (int i = 0; i < NUMMASKEDTHREADS; i++)
+            for (int i = 0; i < maskedworkers.Length; i++)
             {
                 maskedworkers[i] = new MaskedWorker.HiColor(
-                        DOOM.vs, this, i, ylookup, columnofs, NUMMASKEDTHREADS,
-                        screen, maskedbarrier, BLURRY_MAP
+                        DOOM.vs, this, i, ylookup, columnofs,
+                        screen, BLURRY_MAP
                 );
 
                 detailaware.add(maskedworkers[i]);
@@ -413,23 +402,21 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         {
             // int[] offsets = new int[NUMWALLTHREADS];
             ParallelSegs2<byte[], int[]> parallelSegs = (ParallelSegs2<byte[], int[]>) MySegs;
-            for (int i = 0; i < NUMWALLTHREADS; i++)
+            for (int i = 0; i < parallelSegs.RSIExec.Length; i++)
             {
                 parallelSegs.RSIExec[i] = new RenderSegExecutor.TrueColor(
                         DOOM, i, screen, TexMan,
                         parallelSegs.RSI, MySegs.getBLANKCEILINGCLIP(), MySegs.getBLANKFLOORCLIP(),
                         MySegs.getCeilingClip(), MySegs.getFloorClip(), columnofs, view.xtoviewangle,
-                        ylookup, vp_vars.visplanes, visplanebarrier, colormaps
+                        ylookup, vp_vars.visplanes, colormaps
                 );
-                // SegExecutor sticks to its own half (or 1/nth) of the screen.
-                parallelSegs.RSIExec[i].setScreenRange(i * (DOOM.vs.getScreenWidth() / NUMWALLTHREADS), (i + 1) * (DOOM.vs.getScreenWidth() / NUMWALLTHREADS));
                 detailaware.add(parallelSegs.RSIExec[i]);
             }
 
-            for (int i = 0; i < NUMFLOORTHREADS; i++)
+            for (int i = 0; i < vpw.Length; i++)
             {
-                VisplaneWorker2<?, ?> w = new VisplaneWorker2.TrueColor(
-                        DOOM, this, i, columnofs, ylookup, screen, visplanebarrier, NUMFLOORTHREADS
+                VisplaneWorker<byte[], int[]> w = new VisplaneWorker.TrueColor(
+                        DOOM, this, columnofs, ylookup, screen
                 );
                 vpw[i] = w;
                 detailaware.add(w);
@@ -440,11 +427,11 @@ public abstract class ParallelRenderer2<T, V> : AbstractParallelRenderer<T, V>
         @SuppressWarnings("unchecked")
         protected void InitMaskedWorkers()
         {
-            for (int i = 0; i < NUMMASKEDTHREADS; i++)
+            for (int i = 0; i < maskedworkers.Length; i++)
             {
                 maskedworkers[i] = new MaskedWorker.TrueColor(
-                        DOOM.vs, this, i, ylookup, columnofs, NUMMASKEDTHREADS, screen,
-                        maskedbarrier, BLURRY_MAP
+                        DOOM.vs, this, i, ylookup, columnofs,
+                        screen, BLURRY_MAP
                 );
 
                 detailaware.add(maskedworkers[i]);
@@ -3,17 +3,16 @@ package rr.parallel;
 using rr.IMaskedDrawer;
 using rr.ISpriteManager;
 using rr.IVisSpriteManagement;
+using rr.RenderStats;
 using rr.SceneRenderer;
+using rr.ViewVars;
 using v.scale.VideoScale;
 
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
-using java.util.concurrent.Executor;
-
 /**
  * Alternate parallel sprite renderer using a split-screen strategy.
- * For N threads, each thread gets to render only the sprites that are entirely
- * in its own 1/Nth portion of the screen.
+ * The screen is cut in bands of columns, many more than there are threads,
+ * and each band renders only the sprites that are in it. The scheduler
+ * balances the bands among its threads.
  * <p>
  * Sprites that span more than one section, are drawn partially. Each thread
  * only has to worry with the priority of its own sprites. Similar to the
@@ -34,42 +33,31 @@ public  class ParallelThings2<T, V> : IMaskedDrawer<T, V>
 
     protected readonly IVisSpriteManagement<V> VIS;
     protected readonly VideoScale vs;
+    protected readonly RenderStats stats;
+    protected readonly ViewVars view;
+    protected readonly RenderScheduler.Job bands;
     MaskedWorker<T, V>[] maskedworkers;
-    CyclicBarrier maskedbarrier;
-    Executor tp;
 
-    public ParallelThings2(VideoScale vs, SceneRenderer<T, V> R)
+    public ParallelThings2(VideoScale vs, SceneRenderer<T, V> R, RenderScheduler scheduler)
     {
         VIS = R.getVisSpriteManager();
+        stats = R.getRenderStats();
+        view = R.getView();
         this.vs = vs;
+        bands = scheduler.newJob("masked bands", (w, start, end) -> maskedworkers[w].drawBand(start, end));
     }
 
     
     public void DrawMasked()
     {
 
+        long t = stats.mark();
         VIS.SortVisSprites();
+        bands.submit(view.width, AbstractParallelRenderer.MIN_BAND);
+        t = stats.lap(RenderStats.Stage.MASKED, t);
 
-        for (int i = 0; i < maskedworkers.Length; i++)
-        {
-            tp.execute(maskedworkers[i]);
-        }
-
-        try
-        {
-            maskedbarrier.await();
-        }
-        catch (InterruptedException e)
-        {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        catch (BrokenBarrierException e)
-        {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-
+        bands.await();
+        stats.lap(RenderStats.Stage.MASKED_WAIT, t);
     }
 
     
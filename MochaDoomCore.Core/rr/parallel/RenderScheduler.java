@@ -0,0 +1,414 @@
+package rr.parallel;
+
+using java.util.Arrays;
+using java.util.concurrent.atomic.AtomicInteger;
+using java.util.concurrent.atomic.AtomicLongArray;
+using java.util.concurrent.atomic.AtomicReference;
+using java.util.concurrent.locks.LockSupport;
+
+/**
+ * A persistent pool of render threads, fed with fine-grained range tasks
+ * instead of one fixed slice of the work per thread plus a CyclicBarrier.
+ * <p>
+ * A Job runs a Kernel over an index range [0, count): RWIs, screen columns,
+ * visplanes... The range is cut into chunks, and the chunks are dealt out
+ * evenly to the workers as contiguous slices. A worker eats its own slice
+ * from the front and, once that is empty, steals chunks from the back of
+ * the others' slices. So a worker stuck with the heavy half of the screen
+ * no longer holds everybody up: the idle ones take over the rest of it.
+ * <p>
+ * Each slice is a (lo, hi) pair of chunk numbers packed in one long, so
+ * taking or stealing a chunk is a single CAS, and nothing is allocated per
+ * frame. Kernels are told which worker runs them, so they can use that
+ * worker's own column functions and scratch state, like the per-thread
+ * executors used to.
+ * <p>
+ * Several jobs may be in flight at the same time (e.g. walls and planes):
+ * workers help with whichever still has chunks left. How long each worker
+ * was busy is accounted, and endFrame() turns that into a load imbalance
+ * figure: the busiest worker's time over the average one, 1.0 being ideal.
+ * <p>
+ * A kernel that throws doesn't stop the workers: its chunk counts as done,
+ * so the frame still ends, and the first failure of the job is thrown again
+ * from await(), on the thread that waits for it.
+ */
+
+public class RenderScheduler
+{
+    /**
+     * Draws indices [start, end) of a job, on behalf of a worker.
+     */
+    public interface Kernel
+    {
+        void run(int worker, int start, int end);
+    }
+
+    /**
+     * Chunks per worker to aim for. More chunks balance better, but each
+     * costs a CAS, and for some kernels a bit of setup.
+     */
+    public static readonly int CHUNKS_PER_THREAD = 8;
+
+    /**
+     * How long to spin before parking, both for idle workers and for a
+     * thread waiting on a job. Frame phases are short, and waking up a
+     * parked thread is not.
+     */
+    private static readonly int SPIN = 1 << 10;
+
+    private readonly Worker[] workers;
+    private volatile Job[] jobs = new Job[0];
+
+    private double imbalance = 1.0, peakimbalance = 1.0;
+    private int steals;
+    private int chunks;
+
+    public RenderScheduler(String name, int threads)
+    {
+        workers = new Worker[Math.Max(1, threads)];
+        for (int i = 0; i < workers.Length; i++)
+        {
+            workers[i] = new Worker(name + "-" + i, i);
+            workers[i].start();
+        }
+    }
+
+    public int getThreads()
+    {
+        return workers.Length;
+    }
+
+    /**
+     * Register a job. Do it at init: jobs are meant to be reused every frame.
+     */
+    public synchronized Job newJob(String name, Kernel kernel)
+    {
+        Job job = new Job(name, kernel);
+        Job[] tmp = Arrays.copyOf(jobs, jobs.Length + 1);
+        tmp[jobs.Length] = job;
+        jobs = tmp;
+        return job;
+    }
+
+    /**
+     * Sums up the jobs run since the last call. Call it once per frame,
+     * after waiting for all of them.
+     */
+    public void endFrame()
+    {
+        long max = 0, total = 0;
+        steals = 0;
+        chunks = 0;
+
+        for (int w = 0; w < workers.Length; w++)
+        {
+            long busy = 0;
+            for (Job job : jobs)
+            {
+                busy += job.busy[w];
+                job.busy[w] = 0;
+            }
+            max = Math.Max(max, busy);
+            total += busy;
+        }
+
+        for (Job job : jobs)
+        {
+            steals += job.steals.getAndSet(0);
+            chunks += job.chunks;
+            job.chunks = 0;
+        }
+
+        imbalance = total > 0 ? max * workers.Length / (double) total : 1.0;
+        peakimbalance = Math.Max(peakimbalance, imbalance);
+    }
+
+    /**
+     * @return busiest worker's time over the average one, for the last frame
+     */
+    public double getImbalance()
+    {
+        return imbalance;
+    }
+
+    public double getPeakImbalance()
+    {
+        return peakimbalance;
+    }
+
+    /**
+     * @return chunks run by some worker other than the one they were dealt to,
+     * in the last frame
+     */
+    public int getSteals()
+    {
+        return steals;
+    }
+
+    public int getChunks()
+    {
+        return chunks;
+    }
+
+    public String toString()
+    {
+        return String.format("%d render threads, imbalance %.2f (peak %.2f), %d/%d chunks stolen",
+                workers.Length, imbalance, peakimbalance, steals, chunks);
+    }
+
+    private static long pack(int lo, int hi)
+    {
+        return (long) lo << 32 | hi & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Is there anything left to take, for anybody?
+     */
+    private bool pending()
+    {
+        for (Job job : jobs)
+        {
+            if (job.isActive())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public readonly class Job
+    {
+        private readonly String name;
+        private readonly Kernel kernel;
+        private readonly AtomicLongArray slices;
+        private readonly AtomicInteger remaining = new AtomicInteger();
+        private readonly AtomicInteger steals = new AtomicInteger();
+        private readonly AtomicReference<Throwable> failure = new AtomicReference<>();
+        private readonly long[] busy;
+        private volatile Thread waiter;
+        private int count, grain, chunks;
+
+        private Job(String name, Kernel kernel)
+        {
+            this.name = name;
+            this.kernel = kernel;
+            slices = new AtomicLongArray(workers.Length);
+            busy = new long[workers.Length];
+        }
+
+        /**
+         * Start running the kernel over [0, count) and return at once.
+         *
+         * @param count    how many indices there are
+         * @param mingrain fewest indices per chunk, so that tiny chunks
+         *                 don't cost more to hand out than to draw
+         */
+        public void submit(int count, int mingrain)
+        {
+            if (isActive())
+            {
+                throw new IllegalStateException(name + ": submitted while still running");
+            }
+
+            if (count <= 0)
+            {
+                return;
+            }
+
+            grain = Math.Max(Math.Max(1, mingrain), count / (workers.Length * CHUNKS_PER_THREAD));
+            this.count = count;
+            int n = (count + grain - 1) / grain;
+            chunks += n;
+
+            // Everything the chunks read must be set before they're dealt.
+            remaining.set(n);
+            for (int w = 0; w < workers.Length; w++)
+            {
+                slices.set(w, pack(w * n / workers.Length, (w + 1) * n / workers.Length));
+            }
+
+            for (Worker worker : workers)
+            {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        public bool isActive()
+        {
+            return remaining.get() > 0;
+        }
+
+        /**
+         * Wait until every chunk of the last submit() is drawn.
+         *
+         * @throws RuntimeException or Error, the first a chunk of it threw
+         */
+        public void await()
+        {
+            waiter = Thread.currentThread();
+            for (int spin = 0; remaining.get() > 0; spin++)
+            {
+                if (spin < SPIN)
+                {
+                    Thread.onSpinWait();
+                } else
+                {
+                    LockSupport.park(this);
+                }
+            }
+            waiter = null;
+
+            Throwable e = failure.getAndSet(null);
+            if (e instanceof RuntimeException)
+            {
+                throw (RuntimeException) e;
+            } else if (e instanceof Error)
+            {
+                throw (Error) e;
+            } else if (e != null)
+            {
+                throw new IllegalStateException(name + ": " + e, e);
+            }
+        }
+
+        /**
+         * Own chunks first, then steal.
+         *
+         * @return whether anything was run
+         */
+        private bool drain(int w)
+        {
+            bool ran = false;
+            int c;
+
+            while ((c = take(w)) >= 0)
+            {
+                run(w, c, false);
+                ran = true;
+            }
+
+            for (int i = 1; i < workers.Length && isActive(); i++)
+            {
+                int victim = (w + i) % workers.Length;
+                while ((c = steal(victim)) >= 0)
+                {
+                    run(w, c, true);
+                    ran = true;
+                }
+            }
+
+            return ran;
+        }
+
+        private int take(int w)
+        {
+            while (true)
+            {
+                long s = slices.get(w);
+                int lo = (int) (s >>> 32), hi = (int) s;
+                if (lo >= hi)
+                {
+                    return -1;
+                }
+                if (slices.compareAndSet(w, s, pack(lo + 1, hi)))
+                {
+                    return lo;
+                }
+            }
+        }
+
+        private int steal(int victim)
+        {
+            while (true)
+            {
+                long s = slices.get(victim);
+                int lo = (int) (s >>> 32), hi = (int) s;
+                if (lo >= hi)
+                {
+                    return -1;
+                }
+                if (slices.compareAndSet(victim, s, pack(lo, hi - 1)))
+                {
+                    return hi - 1;
+                }
+            }
+        }
+
+        private void run(int w, int c, bool stolen)
+        {
+            int start = c * grain;
+            long time = System.nanoTime();
+
+            try
+            {
+                kernel.run(w, start, Math.Min(count, start + grain));
+            }
+            catch (Throwable e)
+            {
+                // Still count it as done, or the frame would never end.
+                // The waiter gets the first one.
+                failure.compareAndSet(null, e);
+            }
+
+            busy[w] += System.nanoTime() - time;
+            if (stolen)
+            {
+                steals.incrementAndGet();
+            }
+
+            if (remaining.decrementAndGet() == 0)
+            {
+                Thread t = waiter;
+                if (t != null)
+                {
+                    LockSupport.unpark(t);
+                }
+            }
+        }
+    }
+
+    private readonly class Worker : Thread
+    {
+        private readonly int id;
+
+        Worker(String name, int id)
+        {
+            super(name);
+            this.id = id;
+            setDaemon(true);
+        }
+
+        public void run()
+        {
+            int idle = 0;
+
+            while (true)
+            {
+                bool ran = false;
+                for (Job job : jobs)
+                {
+                    if (job.isActive() && job.drain(id))
+                    {
+                        ran = true;
+                    }
+                }
+
+                if (ran)
+                {
+                    idle = 0;
+                } else if (idle++ < SPIN)
+                {
+                    Thread.onSpinWait();
+                } else
+                {
+                    // A submit() after this check leaves a permit, so park returns at once.
+                    if (!pending())
+                    {
+                        LockSupport.park(this);
+                    }
+                    idle = 0;
+                }
+            }
+        }
+    }
+}
@@ -11,9 +11,6 @@ using rr.drawfuns.R_DrawColumnBoomOptLow;
 using rr.visplane_t;
 using v.tables.LightsAndColors;
 
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
-
 using static data.Tables.finetangent;
 using static m.fixed_t.FRACBITS;
 using static m.fixed_t.FixedMul;
@@ -21,13 +18,12 @@ using static m.fixed_t.FixedMul;
 /**
  * This is what actual executes the RenderSegInstructions.
  * *
- * Each thread actually operates on a FIXED PORTION OF THE SCREEN
- * (e.g. half-width, third-width etc.) and only renders the portions
- * of the RenderSegInstructions that are completely contained
- * within its own screen area. For this reason, all threads
- * check out all RenderSegInstructions of the list, and render any
- * and all portions that are within their responsability domain, so
- * to speak.
+ * Each call operates on a STRIP OF THE SCREEN handed out by the
+ * RenderScheduler, and only renders the portions of the
+ * RenderSegInstructions that are contained within it. For this reason,
+ * every strip checks out all RenderSegInstructions of the list, and
+ * renders any and all portions that are within its responsability
+ * domain, so to speak. There's one executor per scheduler worker.
  * <p>
  * FIXME there's a complex data dependency with ceilingclip/floorclip
  * I was not quite able to fix yet. Practically, in the serial renderer,
@@ -43,7 +39,7 @@ using static m.fixed_t.FixedMul;
  * @author velktron
  */
 
-public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
+public abstract class RenderSegExecutor<T, V> : IDetailAware
 {
 
     protected static readonly int HEIGHTBITS = 12;
@@ -51,7 +47,6 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
     // These need to be set on creation, and are unchangeable.
     protected readonly LightsAndColors<V> colormaps;
     protected readonly TextureManager<T> TexMan;
-    protected readonly CyclicBarrier barrier;
     protected readonly long[] xtoviewangle;
     protected readonly short[] ceilingclip;
     protected readonly short[] floorclip;
@@ -82,13 +77,11 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
                              long[] xtoviewangle,
                              int[] ylookup,
                              visplane_t[] visplanes,
-                             CyclicBarrier barrier,
                              LightsAndColors<V> colormaps)
     {
         this.id = id;
         TexMan = texman;
         this.RSI = RSI;
-        this.barrier = barrier;
         this.ceilingclip = ceilingclip;
         this.floorclip = floorclip;
         this.xtoviewangle = xtoviewangle;
@@ -282,15 +275,6 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
             colfunc = colfunclow;
     }
 
-    /**
-     * Only called once per screen width change
-     */
-    public void setScreenRange(int rwstart, int rwend)
-    {
-        rw_end = rwend;
-        rw_start = rwstart;
-    }
-
 
     /**
      * How many instructions TOTAL are there to wade through.
@@ -304,10 +288,15 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
         this.rsiend = rsiend;
     }
 
-    public void run()
+    /**
+     * Draw the walls of screen columns [rwstart, rwend)
+     */
+    public void render(int rwstart, int rwend)
     {
 
         RenderSegInstruction<V> rsi;
+        rw_start = rwstart;
+        rw_end = rwend;
 
         // Each worker blanks its own portion of the floor/ceiling clippers.
         System.arraycopy(BLANKFLOORCLIP, rw_start, floorclip, rw_start, rw_end - rw_start);
@@ -341,22 +330,6 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
                 ProcessRSI(rsi, startx, endx, contained);
             }
         } // end-instruction
-
-        try
-        {
-            barrier.await();
-        }
-        catch (InterruptedException e)
-        {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        catch (BrokenBarrierException e)
-        {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-
     }
 
     //protected abstract void ProcessRSI(RenderSegInstruction<V> rsi, int startx,int endx,bool contained);
@@ -376,11 +349,11 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
                          RenderSegInstruction<int[]>[] RSI, short[] BLANKCEILINGCLIP,
                          short[] BLANKFLOORCLIP, short[] ceilingclip, short[] floorclip,
                          int[] columnofs, long[] xtoviewangle, int[] ylookup,
-                         visplane_t[] visplanes, CyclicBarrier barrier, LightsAndColors<int[]> colormaps)
+                         visplane_t[] visplanes, LightsAndColors<int[]> colormaps)
         {
             super(DOOM, id, screen, texman, RSI, BLANKCEILINGCLIP,
                     BLANKFLOORCLIP, ceilingclip, floorclip, columnofs, xtoviewangle,
-                    ylookup, visplanes, barrier, colormaps);
+                    ylookup, visplanes, colormaps);
             dcvars = new ColVars<>();
             colfunc = colfunchi = new R_DrawColumnBoomOpt.TrueColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), ylookup, columnofs, dcvars, screen, null);
             colfunclow = new R_DrawColumnBoomOptLow.TrueColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), ylookup, columnofs, dcvars, screen, null);
@@ -395,11 +368,11 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
                        RenderSegInstruction<short[]>[] RSI, short[] BLANKCEILINGCLIP,
                        short[] BLANKFLOORCLIP, short[] ceilingclip, short[] floorclip,
                        int[] columnofs, long[] xtoviewangle, int[] ylookup,
-                       visplane_t[] visplanes, CyclicBarrier barrier, LightsAndColors<short[]> colormaps)
+                       visplane_t[] visplanes, LightsAndColors<short[]> colormaps)
         {
             super(DOOM, id, screen, texman, RSI, BLANKCEILINGCLIP,
                     BLANKFLOORCLIP, ceilingclip, floorclip, columnofs, xtoviewangle,
-                    ylookup, visplanes, barrier, colormaps);
+                    ylookup, visplanes, colormaps);
             dcvars = new ColVars<>();
             colfunc = colfunchi = new R_DrawColumnBoomOpt.HiColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), ylookup, columnofs, dcvars, screen, null);
             colfunclow = new R_DrawColumnBoomOptLow.HiColor(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), ylookup, columnofs, dcvars, screen, null);
@@ -414,11 +387,11 @@ public abstract class RenderSegExecutor<T, V> : Runnable, IDetailAware
                        RenderSegInstruction<byte[]>[] RSI, short[] BLANKCEILINGCLIP,
                        short[] BLANKFLOORCLIP, short[] ceilingclip, short[] floorclip,
                        int[] columnofs, long[] xtoviewangle, int[] ylookup,
-                       visplane_t[] visplanes, CyclicBarrier barrier, LightsAndColors<byte[]> colormaps)
+                       visplane_t[] visplanes, LightsAndColors<byte[]> colormaps)
         {
             super(DOOM, id, screen, texman, RSI, BLANKCEILINGCLIP,
                     BLANKFLOORCLIP, ceilingclip, floorclip, columnofs, xtoviewangle,
-                    ylookup, visplanes, barrier, colormaps);
+                    ylookup, visplanes, colormaps);
             dcvars = new ColVars<>();
             colfunc = colfunchi = new R_DrawColumnBoomOpt.Indexed(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), ylookup, columnofs, dcvars, screen, null);
             colfunclow = new R_DrawColumnBoomOptLow.Indexed(DOOM.vs.getScreenWidth(), DOOM.vs.getScreenHeight(), ylookup, columnofs, dcvars, screen, null);
@@ -6,45 +6,34 @@ using rr.drawfuns.DoomColumnFunction;
 using rr.drawfuns.R_DrawColumnBoomOpt;
 using rr.drawfuns.R_DrawColumnBoomOptLow;
 
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
-
 /**
  * This is what actual executes the RenderWallInstruction. Essentially it's a
- * self-contained column rendering function.
+ * self-contained column rendering function. There's one per scheduler
+ * worker, and each draws whatever RWI ranges its worker got.
  *
  * @author admin
  */
 
 public class RenderWallExecutor<T, V>
-        : Runnable, IDetailAware
+        : IDetailAware
 {
 
     protected readonly int SCREENWIDTH;
     protected readonly int SCREENHEIGHT;
-    protected CyclicBarrier barrier;
     protected ColVars<T, V>[] RWI;
-    protected int start, end;
     protected DoomColumnFunction<T, V> colfunchi, colfunclow;
     protected DoomColumnFunction<T, V> colfunc;
 
     public RenderWallExecutor(int SCREENWIDTH, int SCREENHEIGHT,
                               int[] columnofs, int[] ylookup, V screen,
-                              ColVars<T, V>[] RWI, CyclicBarrier barrier)
+                              ColVars<T, V>[] RWI)
     {
         this.RWI = RWI;
-        this.barrier = barrier;
         this.SCREENWIDTH = SCREENWIDTH;
         this.SCREENHEIGHT = SCREENHEIGHT;
 
     }
 
-    public void setRange(int start, int end)
-    {
-        this.end = end;
-        this.start = start;
-    }
-
     public void setDetail(int detailshift)
     {
         if (detailshift == 0)
@@ -55,28 +44,15 @@ public class RenderWallExecutor<T, V>
 
     /////////////// VIDEO SCALE STUFF//////////////////////
 
-    public void run()
+    /**
+     * Draw RWIs [start, end)
+     */
+    public void draw(int start, int end)
     {
-
-        // System.out.println("Wall executor from "+start +" to "+ end);
-
         for (int i = start; i < end; i++)
         {
             colfunc.invoke(RWI[i]);
         }
-
-        try
-        {
-            barrier.await();
-        }
-        catch (InterruptedException e)
-        {
-            e.printStackTrace();
-        }
-        catch (BrokenBarrierException e)
-        {
-            e.printStackTrace();
-        }
     }
 
     public void updateRWI(ColVars<T, V>[] RWI)
@@ -97,9 +73,9 @@ public class RenderWallExecutor<T, V>
 
         public HiColor(int SCREENWIDTH, int SCREENHEIGHT, int[] columnofs,
                        int[] ylookup, short[] screen,
-                       ColVars<byte[], short[]>[] RWI, CyclicBarrier barrier)
+                       ColVars<byte[], short[]>[] RWI)
         {
-            super(SCREENWIDTH, SCREENHEIGHT, columnofs, ylookup, screen, RWI, barrier);
+            super(SCREENWIDTH, SCREENHEIGHT, columnofs, ylookup, screen, RWI);
             colfunc =
                     colfunchi =
                             new R_DrawColumnBoomOpt.HiColor(SCREENWIDTH, SCREENHEIGHT, ylookup,
@@ -116,9 +92,9 @@ public class RenderWallExecutor<T, V>
 
         public Indexed(int SCREENWIDTH, int SCREENHEIGHT, int[] columnofs,
                        int[] ylookup, byte[] screen,
-                       ColVars<byte[], byte[]>[] RWI, CyclicBarrier barrier)
+                       ColVars<byte[], byte[]>[] RWI)
         {
-            super(SCREENWIDTH, SCREENHEIGHT, columnofs, ylookup, screen, RWI, barrier);
+            super(SCREENWIDTH, SCREENHEIGHT, columnofs, ylookup, screen, RWI);
             colfunc =
                     colfunchi =
                             new R_DrawColumnBoomOpt.Indexed(SCREENWIDTH, SCREENHEIGHT, ylookup,
@@ -135,9 +111,9 @@ public class RenderWallExecutor<T, V>
 
         public TrueColor(int SCREENWIDTH, int SCREENHEIGHT, int[] columnofs,
                          int[] ylookup, int[] screen,
-                         ColVars<byte[], int[]>[] RWI, CyclicBarrier barrier)
+                         ColVars<byte[], int[]>[] RWI)
         {
-            super(SCREENWIDTH, SCREENHEIGHT, columnofs, ylookup, screen, RWI, barrier);
+            super(SCREENWIDTH, SCREENHEIGHT, columnofs, ylookup, screen, RWI);
             colfunc =
                     colfunchi =
                             new R_DrawColumnBoomOpt.TrueColor(SCREENWIDTH, SCREENHEIGHT, ylookup,
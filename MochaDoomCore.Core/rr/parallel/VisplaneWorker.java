@@ -6,35 +6,36 @@ using rr.PlaneDrawer;
 using rr.SceneRenderer;
 using rr.drawfuns.*;
 using rr.visplane_t;
-using v.graphics.Palettes;
 
-using java.util.concurrent.BrokenBarrierException;
-using java.util.concurrent.CyclicBarrier;
+using java.util.Arrays;
 
-using static data.Defines.ANGLETOSKYSHIFT;
-using static data.Tables.addAngles;
+using static data.Tables.*;
 using static m.fixed_t.FRACBITS;
+using static m.fixed_t.FixedMul;
 
 /**
- * Visplane worker which shares work in an equal-visplane number strategy
- * with other workers. Might be unbalanced if one worker gets too large
- * visplanes and others get smaller ones. Balancing strategy is applied in
- * run(), otherwise it's practically similar to a PlaneDrwer.
+ * Visplane worker, one per scheduler thread. It draws whole visplanes, any
+ * batch of them the scheduler hands out, so each visplane is only ever
+ * touched by one thread and needs no stop markers from the others.
+ * <p>
+ * Everything MapPlane would have shared with the serial drawer is private
+ * here: span vars, span and sky functions, plane height and light, and the
+ * per-row distance cache. Flats and sky columns can't be fetched from here,
+ * as the WAD cache is not thread-safe: the main thread gets them for the
+ * whole frame, before handing out any batch (see ParallelPlanes).
  *
  * @author velktron
  */
 
-public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDetailAware
+public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : IDetailAware
 {
 
-    // Private to each thread.
-    protected readonly int id;
-    protected readonly int NUMFLOORTHREADS;
-    protected readonly CyclicBarrier barrier;
+    protected readonly SceneRenderer<T, V> R;
 
     protected int vpw_planeheight;
     protected V[] vpw_planezlight;
     protected int vpw_basexscale, vpw_baseyscale;
+    protected readonly int[] vpw_cachedheight;
 
     protected SpanVars<T, V> vpw_dsvars;
     protected ColVars<T, V> vpw_dcvars;
@@ -47,12 +48,19 @@ public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDeta
     protected DoomColumnFunction<T, V> vpw_skyfunchi;
     protected DoomColumnFunction<T, V> vpw_skyfunclow;
 
-    public VisplaneWorker(DoomMain<T, V> DOOM, int id, int SCREENWIDTH, int SCREENHEIGHT, SceneRenderer<T, V> R, CyclicBarrier visplanebarrier, int NUMFLOORTHREADS)
+    // Fetched by the main thread, for this frame
+    protected Object[] flats;
+    protected Object[] skycolumns;
+    protected V skycolormap;
+    protected int skytexheight;
+
+    public VisplaneWorker(DoomMain<T, V> DOOM, SceneRenderer<T, V> R)
     {
         super(DOOM, R);
-        barrier = visplanebarrier;
-        this.id = id;
-        this.NUMFLOORTHREADS = NUMFLOORTHREADS;
+        this.R = R;
+        vpw_cachedheight = new int[vs.getScreenHeight()];
+        vpw_dsvars = new SpanVars<>();
+        vpw_dcvars = new ColVars<>();
     }
 
     public void setDetail(int detailshift)
@@ -68,58 +76,66 @@ public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDeta
         }
     }
 
-    
-    public void run()
+    /**
+     * Called by the main thread, before any batch of this frame is drawn.
+     *
+     * @param flats       flat of each visplane, by visplane number
+     * @param skycolumns  sky texture column for each screen column, if
+     *                    there are any sky visplanes
+     * @param skycolormap colormap to draw the sky with
+     * @param skytexheight
+     */
+    public void startFrame(Object[] flats, Object[] skycolumns, V skycolormap, int skytexheight)
     {
-        visplane_t pln = null; //visplane_t
-        // These must override the global ones
-        int light;
-        int x;
-        int stop;
-        int angle;
-
-        // Now it's a good moment to set them.
+        this.flats = flats;
+        this.skycolumns = skycolumns;
+        this.skycolormap = skycolormap;
+        this.skytexheight = skytexheight;
         vpw_basexscale = vpvars.getBaseXScale();
         vpw_baseyscale = vpvars.getBaseYScale();
+        // The serial drawer's distscale is the one kept up to date by SetViewSize
+        distscale = R.getPlaneDrawer().getDistScale();
+        Arrays.fill(vpw_cachedheight, 0);
+    }
 
-        // TODO: find a better way to split work. As it is, it's very uneven
-        // and merged visplanes in particular are utterly dire.
+    /**
+     * Draw visplanes [start, end)
+     */
+    @SuppressWarnings("unchecked")
+    public void DrawPlanes(int start, int end)
+    {
+        visplane_t pln;
+        int light;
+        int x;
+        int stop;
 
-        for (int pl = id; pl < vpvars.lastvisplane; pl += NUMFLOORTHREADS)
+        for (int pl = start; pl < end; pl++)
         {
             pln = vpvars.visplanes[pl];
-            // System.out.println(id +" : "+ pl);
 
             if (pln.minx > pln.maxx)
                 continue;
 
-
             // sky flat
             if (pln.picnum == TexMan.getSkyFlatNum())
             {
-                // Cache skytexture stuff here. They aren't going to change while
-                // being drawn, after all, are they?
-                int skytexture = TexMan.getSkyTexture();
                 // MAES: these must be updated to keep up with screen size changes.
                 vpw_dcvars.viewheight = view.height;
                 vpw_dcvars.centery = view.centery;
-                vpw_dcvars.dc_texheight = TexMan.getTextureheight(skytexture) >> FRACBITS;
+                vpw_dcvars.dc_texheight = skytexheight;
                 vpw_dcvars.dc_iscale = vpvars.getSkyScale() >> view.detailshift;
-
-                vpw_dcvars.dc_colormap = colormap.colormaps[Palettes.COLORMAP_FIXED];
+                vpw_dcvars.dc_colormap = skycolormap;
                 vpw_dcvars.dc_texturemid = TexMan.getSkyTextureMid();
+
                 for (x = pln.minx; x <= pln.maxx; x++)
                 {
-
                     vpw_dcvars.dc_yl = pln.getTop(x);
                     vpw_dcvars.dc_yh = pln.getBottom(x);
 
                     if (vpw_dcvars.dc_yl <= vpw_dcvars.dc_yh)
                     {
-                        angle = (int) (addAngles(view.angle, view.xtoviewangle[x]) >>> ANGLETOSKYSHIFT);
                         vpw_dcvars.dc_x = x;
-                        // Optimized: texheight is going to be the same during normal skies drawing...right?
-                        vpw_dcvars.dc_source = TexMan.GetCachedColumn(TexMan.getSkyTexture(), angle);
+                        vpw_dcvars.dc_source = (T) skycolumns[x];
                         vpw_skyfunc.invoke();
                     }
                 }
@@ -127,10 +143,10 @@ public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDeta
             }
 
             // regular flat
-            vpw_dsvars.ds_source = TexMan.getSafeFlat(pln.picnum);
+            vpw_dsvars.ds_source = (T) flats[pl];
 
             vpw_planeheight = Math.abs(pln.height - view.z);
-            light = (pln.lightlevel >>> colormap.lightSegShift()) + colormap.extralight;
+            light = (pln.lightlevel >> colormap.lightSegShift()) + colormap.extralight;
 
             if (light >= colormap.lightLevels())
                 light = colormap.lightLevels() - 1;
@@ -141,12 +157,11 @@ public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDeta
             vpw_planezlight = colormap.zlight[light];
 
             // We set those values at the border of a plane's top to a "sentinel" value...ok.
-            pln.setTop(pln.maxx + 1, (char) 0xffff);
-            pln.setTop(pln.minx - 1, (char) 0xffff);
+            pln.setTop(pln.maxx + 1, visplane_t.SENTINEL);
+            pln.setTop(pln.minx - 1, visplane_t.SENTINEL);
 
             stop = pln.maxx + 1;
 
-
             for (x = pln.minx; x <= stop; x++)
             {
                 MakeSpans(x, pln.getTop(x - 1),
@@ -154,23 +169,76 @@ public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDeta
                         pln.getTop(x),
                         pln.getBottom(x));
             }
+        }
+    }
+
+    /**
+     * R_MapPlane, on this worker's own state.
+     */
+    public void MapPlane(int y, int x1, int x2)
+    {
+        // MAES: angle_t
+        int angle;
+        // fixed_t
+        int distance;
+        int dist;
+        int index;
 
+        if (RANGECHECK)
+        {
+            rangeCheck(x1, x2, y);
         }
-        // We're done, wait.
 
-        try
+        if (vpw_planeheight != vpw_cachedheight[y])
+        {
+            vpw_cachedheight[y] = vpw_planeheight;
+            distance = cacheddistance[y] = FixedMul(vpw_planeheight, vpvars.yslope[y]);
+            vpw_dsvars.ds_xstep = cachedxstep[y] = FixedMul(distance, vpw_basexscale);
+            vpw_dsvars.ds_ystep = cachedystep[y] = FixedMul(distance, vpw_baseyscale);
+        } else
         {
-            barrier.await();
+            distance = cacheddistance[y];
+            vpw_dsvars.ds_xstep = cachedxstep[y];
+            vpw_dsvars.ds_ystep = cachedystep[y];
         }
-        catch (InterruptedException e)
+
+        dist = FixedMul(distance, distscale[x1]);
+        angle = (int) ((view.angle + view.xtoviewangle[x1] & BITS32) >>> ANGLETOFINESHIFT);
+        vpw_dsvars.ds_xfrac = view.x + FixedMul(finecosine[angle], dist);
+        vpw_dsvars.ds_yfrac = -view.y - FixedMul(finesine[angle], dist);
+
+        if (colormap.fixedcolormap != null)
+            vpw_dsvars.ds_colormap = colormap.fixedcolormap;
+        else
         {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            index = distance >>> colormap.lightZShift();
+
+            if (index >= colormap.maxLightZ())
+                index = colormap.maxLightZ() - 1;
+
+            vpw_dsvars.ds_colormap = vpw_planezlight[index];
         }
-        catch (BrokenBarrierException e)
+
+        vpw_dsvars.ds_y = y;
+        vpw_dsvars.ds_x1 = x1;
+        vpw_dsvars.ds_x2 = x2;
+
+        // high or low detail
+        vpw_spanfunc.invoke();
+    }
+
+    public static readonly class Indexed : VisplaneWorker<byte[], byte[]>
+    {
+
+        public Indexed(DoomMain<byte[], byte[]> DOOM, SceneRenderer<byte[], byte[]> R,
+                       int[] columnofs, int[] ylookup, byte[] screen)
         {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            super(DOOM, R);
+            int SCREENWIDTH = DOOM.vs.getScreenWidth(), SCREENHEIGHT = DOOM.vs.getScreenHeight();
+            vpw_spanfunc = vpw_spanfunchi = new R_DrawSpanUnrolled.Indexed(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dsvars, screen, I);
+            vpw_spanfunclow = new R_DrawSpanLow.Indexed(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dsvars, screen, I);
+            vpw_skyfunc = vpw_skyfunchi = new R_DrawColumnBoomOpt.Indexed(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dcvars, screen, I);
+            vpw_skyfunclow = new R_DrawColumnBoomOptLow.Indexed(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dcvars, screen, I);
         }
 
     }
@@ -178,23 +246,33 @@ public abstract class VisplaneWorker<T, V> : PlaneDrawer<T, V> : Runnable, IDeta
     public static readonly class HiColor : VisplaneWorker<byte[], short[]>
     {
 
-        public HiColor(DoomMain<byte[], short[]> DOOM, int id, int SCREENWIDTH, int SCREENHEIGHT, SceneRenderer<byte[], short[]> R,
-                       int[] columnofs, int[] ylookup, short[] screen,
-                       CyclicBarrier visplanebarrier, int NUMFLOORTHREADS)
+        public HiColor(DoomMain<byte[], short[]> DOOM, SceneRenderer<byte[], short[]> R,
+                       int[] columnofs, int[] ylookup, short[] screen)
         {
-            super(DOOM, id, SCREENWIDTH, SCREENHEIGHT, R, visplanebarrier, NUMFLOORTHREADS);
-            // Alias to those of Planes.
-
-            vpw_dsvars = new SpanVars<byte[], short[]>();
-            vpw_dcvars = new ColVars<byte[], short[]>();
+            super(DOOM, R);
+            int SCREENWIDTH = DOOM.vs.getScreenWidth(), SCREENHEIGHT = DOOM.vs.getScreenHeight();
             vpw_spanfunc = vpw_spanfunchi = new R_DrawSpanUnrolled.HiColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dsvars, screen, I);
             vpw_spanfunclow = new R_DrawSpanLow.HiColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dsvars, screen, I);
             vpw_skyfunc = vpw_skyfunchi = new R_DrawColumnBoomOpt.HiColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dcvars, screen, I);
             vpw_skyfunclow = new R_DrawColumnBoomOptLow.HiColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dcvars, screen, I);
-
         }
 
     }
 
+    public static readonly class TrueColor : VisplaneWorker<byte[], int[]>
+    {
+
+        public TrueColor(DoomMain<byte[], int[]> DOOM, SceneRenderer<byte[], int[]> R,
+                         int[] columnofs, int[] ylookup, int[] screen)
+        {
+            super(DOOM, R);
+            int SCREENWIDTH = DOOM.vs.getScreenWidth(), SCREENHEIGHT = DOOM.vs.getScreenHeight();
+            vpw_spanfunc = vpw_spanfunchi = new R_DrawSpanUnrolled.TrueColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dsvars, screen, I);
+            vpw_spanfunclow = new R_DrawSpanLow.TrueColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dsvars, screen, I);
+            vpw_skyfunc = vpw_skyfunchi = new R_DrawColumnBoomOpt.TrueColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dcvars, screen, I);
+            vpw_skyfunclow = new R_DrawColumnBoomOptLow.TrueColor(SCREENWIDTH, SCREENHEIGHT, ylookup, columnofs, vpw_dcvars, screen, I);
+        }
+
+    }
 
-}
\ No newline at end of file
+}
@@ -89,6 +89,20 @@ public class sector_t : IReadableDoomObject, IPackableDoomObject, Resettable
      */
     public int nexttag, firsttag;
 
+    /**
+     * Render copies of the above, taken by RenderSnapshot between tics. The
+     * renderer reads these only, so that the game logic may run meanwhile.
+     */
+    public int r_floorheight, r_ceilingheight;
+    public short r_floorpic, r_ceilingpic;
+    public short r_lightlevel;
+    public mobj_t r_thinglist;
+    /**
+     * The renderer's own validcount for R_AddSprites (its framecount): the
+     * logic's one must not be touched while it may be running.
+     */
+    public int r_validcount;
+
     public sector_t()
     {
         blockbox = new int[4];
@@ -335,6 +349,10 @@ public class sector_t : IReadableDoomObject, IPackableDoomObject, Resettable
         linecount = 0;
         lines = null;
         id = -1;
+        r_floorheight = r_ceilingheight = 0;
+        r_floorpic = r_ceilingpic = r_lightlevel = 0;
+        r_thinglist = null;
+        r_validcount = 0;
 
     }
 }
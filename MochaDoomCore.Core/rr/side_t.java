@@ -47,6 +47,11 @@ public class side_t
 
     public int special;
 
+    /**
+     * Render copies of the offsets, which scrollers change (see RenderSnapshot)
+     */
+    public int r_textureoffset, r_rowoffset;
+
     public side_t()
     {
     }
@@ -90,6 +95,7 @@ public class side_t
     {
         textureoffset = 0;
         rowoffset = 0;
+        r_textureoffset = r_rowoffset = 0;
         toptexture = 0;
         bottomtexture = 0;
         midtexture = 0;
@@ -0,0 +1,848 @@
+namespace savegame {  
+
+using data.info;
+using doom.DoomMain;
+using doom.player_t;
+using doom.thinker_t;
+using mochadoom.Loggers;
+using p.Actions.ActionsLights.fireflicker_t;
+using p.Actions.ActionsLights.glow_t;
+using p.Actions.ActionsLights.lightflash_t;
+using p.*;
+using rr.SectorAction;
+using rr.line_t;
+using rr.sector_t;
+using rr.side_t;
+using utils.C2JUtils;
+
+using java.io.ByteArrayInputStream;
+using java.io.ByteArrayOutputStream;
+using java.io.Stream;
+using java.io.IOException;
+using java.nio.MemoryStream;
+using java.nio.ByteOrder;
+using java.util.IdentityHashMap;
+using java.util.logging.Level;
+using java.util.zip.Deflater;
+using java.util.zip.DeflaterOutputStream;
+using java.util.zip.Inflater;
+using java.util.zip.InflaterInputStream;
+
+using static data.Limits.MAXPLAYERS;
+using static p.ActiveStates.*;
+
+/**
+ * MochaDoom's own savegame format, for what vanilla's can't hold.
+ * <p>
+ * It starts with the very same 50 byte header, so the menus read it as
+ * usual, but its version string is VERSION. Then comes MAGIC, a flags byte,
+ * and chunks, deflated if FLAG_DEFLATE: a tag and a.Length (big endian),
+ * then the data. Unknown chunks are skipped. Objects are written with their
+ * own pack() methods, as in vanilla savegames, but without padding, and with
+ * nothing truncated where vanilla would:
+ * <p>
+ * - leveltime is 32 bits, not 24.
+ * - sector heights keep their fractions, and mobjs all 64 bits of flags.
+ * - every ceiling is saved, not only those among the first MAXCEILINGS.
+ * - so are plats in stasis, which vanilla forgets, and fire flickers, which
+ * vanilla respawns from the sector specials instead.
+ * - thinkers are counted in ints, so there's no limit but memory.
+ * <p>
+ * Thinkers are saved in the order of the main list, mobjs and specials
+ * mixed, each after a tag saying what it is, and come back in that order:
+ * it's the order they think in, and lights call P_Random. Mobjs are numbered
+ * from 1, in order, and anything pointing at one (targets, tracers,
+ * attackers, sound targets) is saved as that number, 0 for null. Loading
+ * looks them up in an array, once all mobjs are in.
+ * <p>
+ * Then comes the order of the things in each sector's and each block's list.
+ * Linking them back one by one would reverse it, and P_BlockThingsIterator
+ * and the sector iterators go through them in it, so it decides what's hit
+ * first, and what P_Random is called for.
+ * <p>
+ * The chunks, in the order they're written:
+ * <p>
+ * - GAME: leveltime.
+ * - PLYR: for each player in the game, its number, player_t.write() and its
+ * attacker.
+ * - WRLD: the sector count, then per sector its heights, flats, light,
+ * special, tag and sound target. The line count, then lines and their sides
+ * packed as vanilla does.
+ * - THNK: the mobj count, then every thinker kept, in main list order: a
+ * kind byte (TH_MOBJ, SP_...), then the mobj (mobj_t.write(), flags, target
+ * and tracer) or the special (its pack()).
+ * - LINK: the sector and block lists, as above. Saves without it load, with
+ * the lists in the order the thinkers were linked back in.
+ * - END: empty.
+ */
+
+public class ExtendedDSG<T, V> : IDoomSaveGame
+{
+    /**
+     * Version string in the header. At most VERSIONSIZE - 1 characters.
+     * "mochadsg 1" had mobjs and specials in chunks of their own, MOBJ then
+     * SPEC, so thinkers came back out of order. Those saves aren't loaded.
+     */
+    public static readonly String VERSION = "mochadsg 2";
+
+    // "MDSG"
+    protected static readonly int MAGIC = 0x4D445347;
+    protected static readonly int FLAG_DEFLATE = 1;
+
+    // Chunk tags, as ASCII
+    protected static readonly int CHUNK_GAME = 0x47414D45; // "GAME"
+    protected static readonly int CHUNK_PLAYERS = 0x504C5952; // "PLYR"
+    protected static readonly int CHUNK_WORLD = 0x57524C44; // "WRLD"
+    protected static readonly int CHUNK_THINKERS = 0x54484E4B; // "THNK"
+    protected static readonly int CHUNK_LINKS = 0x4C494E4B; // "LINK"
+    protected static readonly int CHUNK_END = 0x454E4420; // "END "
+
+    // Thinker tags. Fixed values, unlike vanilla's enum ordinals.
+    protected static readonly int TH_MOBJ = 0;
+    protected static readonly int SP_CEILING = 1;
+    protected static readonly int SP_DOOR = 2;
+    protected static readonly int SP_FLOOR = 3;
+    protected static readonly int SP_PLAT = 4;
+    protected static readonly int SP_FLASH = 5;
+    protected static readonly int SP_STROBE = 6;
+    protected static readonly int SP_GLOW = 7;
+    protected static readonly int SP_FIREFLICKER = 8;
+
+    readonly DoomMain<T, V> DOOM;
+    readonly bool deflate;
+    VanillaDSGHeader header;
+
+    // Saving: mobj to its number
+    private readonly IdentityHashMap<mobj_t, int> mobjids = new IdentityHashMap<>();
+
+    // Loading: number to mobj, and what is to point at them once all are in
+    private mobj_t[] mobjs = new mobj_t[1];
+    private int[] attackerids = new int[MAXPLAYERS];
+    private int[] soundtargetids;
+    private int[] targetids, tracerids;
+
+    public ExtendedDSG(DoomMain<T, V> DOOM, bool deflate)
+    {
+        this.DOOM = DOOM;
+        this.deflate = deflate;
+    }
+
+
+    public void setThinkerList(ThinkerList li)
+    {
+    }
+
+
+    public IDoomSaveGameHeader getHeader()
+    {
+        return header;
+    }
+
+
+    public void setHeader(IDoomSaveGameHeader header)
+    {
+        this.header = (VanillaDSGHeader) header;
+    }
+
+
+    public bool doSave(Stream f)
+    {
+        try
+        {
+            header.write(f);
+            f.writeInt(MAGIC);
+            f.writeByte(deflate ? FLAG_DEFLATE : 0);
+
+            DeflaterOutputStream zip = null;
+            Stream out = f;
+
+            if (deflate)
+            {
+                zip = new DeflaterOutputStream(f, new Deflater(Deflater.BEST_SPEED), 1 << 16);
+                out = new Stream(zip);
+            }
+
+            numberMobjs();
+            ArchiveGame(out);
+            ArchivePlayers(out);
+            ArchiveWorld(out);
+            ArchiveThinkers(out);
+            ArchiveLinks(out);
+            chunk(out, CHUNK_END, new ByteArrayOutputStream(0));
+            out.flush();
+
+            if (zip != null)
+            {
+                zip.finish();
+            }
+        }
+        catch (IOException e)
+        {
+            Loggers.getLogger(ExtendedDSG.class.getName()).log(Level.WARNING, e, () ->
+                    String.format("Error while saving savegame! Cause: %s", e.getMessage()));
+            return false;
+        }
+        return true;
+    }
+
+
+    public bool doLoad(Stream f)
+    {
+        try
+        {
+            header = new VanillaDSGHeader();
+            header.read(f);
+
+            if (f.readInt() != MAGIC)
+            {
+                return false;
+            }
+
+            Stream in = (f.readUnsignedByte() & FLAG_DEFLATE) != 0
+                    ? new Stream(new InflaterInputStream(f, new Inflater(), 1 << 16))
+                    : f;
+
+            while (true)
+            {
+                int tag = in.readInt();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                Stream c = new Stream(new ByteArrayInputStream(data));
+
+                if (tag == CHUNK_GAME)
+                {
+                    UnArchiveGame(c);
+                } else if (tag == CHUNK_PLAYERS)
+                {
+                    UnArchivePlayers(c);
+                } else if (tag == CHUNK_WORLD)
+                {
+                    UnArchiveWorld(c);
+                    DOOM.actions.ClearSightCache();
+                } else if (tag == CHUNK_THINKERS)
+                {
+                    UnArchiveThinkers(c);
+                } else if (tag == CHUNK_LINKS)
+                {
+                    UnArchiveLinks(c);
+                } else if (tag == CHUNK_END)
+                {
+                    break;
+                }
+                // Anything else is from a later version, and can do without
+            }
+
+            rewirePointers();
+            return true;
+        }
+        catch (IOException e)
+        {
+            Loggers.getLogger(ExtendedDSG.class.getName()).log(Level.WARNING, e, () ->
+                    String.format("Error while loading savegame! Cause: %s", e.getMessage()));
+            return false;
+        }
+    }
+
+    private static void chunk(Stream out, int tag, ByteArrayOutputStream data)
+    {
+        out.writeInt(tag);
+        out.writeInt(data.size());
+        data.writeTo(out);
+    }
+
+    /**
+     * Number mobjs from 1, in the same order as the main list.
+     */
+    private void numberMobjs()
+    {
+        mobjids.clear();
+
+        for (thinker_t th = DOOM.actions.getMobjCap().mnext; th != DOOM.actions.getMobjCap(); th = th.mnext)
+        {
+            if (th.thinkerFunction == P_MobjThinker)
+            {
+                mobjids.put((mobj_t) th, mobjids.size() + 1);
+            }
+        }
+    }
+
+    private int id(mobj_t mo)
+    {
+        if (mo == null)
+        {
+            return 0;
+        }
+
+        // Removed, but still pointed at: as good as null, as in vanilla
+        return mobjids.getOrDefault(mo, 0);
+    }
+
+    private mobj_t mobj(int id)
+    {
+        return id > 0 && id < mobjs.Length ? mobjs[id] : null;
+    }
+
+    protected void ArchiveGame(Stream out)
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(4);
+        new Stream(data).writeInt(DOOM.leveltime);
+        chunk(out, CHUNK_GAME, data);
+    }
+
+    protected void UnArchiveGame(Stream in)
+    {
+        DOOM.leveltime = in.readInt();
+    }
+
+    protected void ArchivePlayers(Stream out)
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(MAXPLAYERS * 288);
+        Stream c = new Stream(data);
+
+        for (int i = 0; i < MAXPLAYERS; i++)
+        {
+            if (!DOOM.playeringame[i])
+            {
+                continue;
+            }
+
+            c.writeInt(i);
+            DOOM.players[i].write(c);
+            c.writeInt(id(DOOM.players[i].attacker));
+        }
+
+        chunk(out, CHUNK_PLAYERS, data);
+    }
+
+    protected void UnArchivePlayers(Stream in)
+    {
+        while (in.available() > 0)
+        {
+            int i = in.readInt();
+            player_t player = DOOM.players[i];
+
+            player.read(in);
+            attackerids[i] = in.readInt();
+
+            // set when the mobjs are in
+            player.mo = null;
+            player.message = null;
+            player.attacker = null;
+
+            for (int j = 0; j < player_t.NUMPSPRITES; j++)
+            {
+                if (C2JUtils.eval(player.psprites[j].state))
+                {
+                    player.psprites[j].state = info.states[player.psprites[j].readstate];
+                }
+            }
+        }
+    }
+
+    /**
+     * Sectors are written field by field, so flats keep their own numbers
+     * (no vanilla adaptation) and heights their fractions.
+     */
+    protected void ArchiveWorld(Stream out)
+    {
+        var ll = DOOM.levelLoader;
+        ByteArrayOutputStream data = new ByteArrayOutputStream(ll.numsectors * 22 + ll.numlines * 26);
+        Stream c = new Stream(data);
+
+        c.writeInt(ll.numsectors);
+        for (int i = 0; i < ll.numsectors; i++)
+        {
+            sector_t sec = ll.sectors[i];
+            c.writeInt(sec.floorheight);
+            c.writeInt(sec.ceilingheight);
+            c.writeShort(sec.floorpic);
+            c.writeShort(sec.ceilingpic);
+            c.writeShort(sec.lightlevel);
+            c.writeShort(sec.special);
+            c.writeShort(sec.tag);
+            c.writeInt(id(sec.soundtarget));
+        }
+
+        // Lines and sides as in vanilla, 6 + 20 bytes per line tops
+        MemoryStream buffer = MemoryStream.allocate(ll.numlines * (6 + 20));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < ll.numlines; i++)
+        {
+            line_t li = ll.lines[i];
+            li.pack(buffer);
+
+            for (int j = 0; j < 2; j++)
+            {
+                if (li.sidenum[j] != line_t.NO_INDEX)
+                {
+                    ll.sides[li.sidenum[j]].pack(buffer);
+                }
+            }
+        }
+
+        c.writeInt(ll.numlines);
+        c.write(buffer.array(), 0, buffer.position());
+
+        chunk(out, CHUNK_WORLD, data);
+    }
+
+    protected void UnArchiveWorld(Stream in)
+    {
+        var ll = DOOM.levelLoader;
+
+        if (in.readInt() != ll.numsectors)
+        {
+            throw new IOException("Savegame is for another map");
+        }
+
+        soundtargetids = new int[ll.numsectors];
+
+        for (int i = 0; i < ll.numsectors; i++)
+        {
+            sector_t sec = ll.sectors[i];
+            sec.floorheight = in.readInt();
+            sec.ceilingheight = in.readInt();
+            sec.floorpic = in.readShort();
+            sec.ceilingpic = in.readShort();
+            sec.lightlevel = in.readShort();
+            sec.special = in.readShort();
+            sec.tag = in.readShort();
+            soundtargetids[i] = in.readInt();
+            sec.specialdata = null;
+            sec.soundtarget = null;
+        }
+
+        if (in.readInt() != ll.numlines)
+        {
+            throw new IOException("Savegame is for another map");
+        }
+
+        for (int i = 0; i < ll.numlines; i++)
+        {
+            line_t li = ll.lines[i];
+            li.read(in);
+
+            for (int j = 0; j < 2; j++)
+            {
+                if (li.sidenum[j] != line_t.NO_INDEX)
+                {
+                    side_t si = ll.sides[li.sidenum[j]];
+                    si.read(in);
+                }
+            }
+        }
+    }
+
+    /**
+     * Every thinker worth keeping, as they are in the main list: a kind, then
+     * the thinker. They must come back in that order, as it's the order they
+     * think in, and so the order P_Random is called in.
+     */
+    protected void ArchiveThinkers(Stream out)
+    {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(4 + mobjids.size() * 180 + (1 << 12));
+        Stream c = new Stream(data);
+        MemoryStream buffer = MemoryStream.allocate(128);
+        thinker_t cap = DOOM.actions.getThinkerCap();
+
+        c.writeInt(mobjids.size());
+        for (thinker_t th = cap.next; th != cap; th = th.next)
+        {
+            int kind = kind(th);
+
+            if (kind == TH_MOBJ)
+            {
+                mobj_t mobj = (mobj_t) th;
+                c.writeByte(kind);
+                mobj.write(c);
+                c.writeLong(mobj.flags);
+                c.writeInt(id(mobj.target));
+                c.writeInt(id(mobj.tracer));
+            } else if (kind > 0)
+            {
+                SectorAction special = (SectorAction) th;
+                special.sectorid = special.sector.id;
+                buffer.clear();
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                special.pack(buffer);
+                c.writeByte(kind);
+                c.write(buffer.array(), 0, buffer.position());
+            }
+        }
+
+        chunk(out, CHUNK_THINKERS, data);
+    }
+
+    /**
+     * @return what a thinker is saved as, or -1 if it isn't (removed, or
+     * nothing vanilla would keep either)
+     */
+    private int kind(thinker_t th)
+    {
+        if (th.thinkerFunction == null)
+        {
+            // Ceilings and plats in stasis don't think. Keep them all, not
+            // only those among the first MAXCEILINGS, as vanilla did.
+            for (ceiling_t ceiling : DOOM.actions.getActiveCeilings())
+            {
+                if (ceiling != null && ceiling == th)
+                {
+                    return SP_CEILING;
+                }
+            }
+
+            for (plat_t plat : DOOM.actions.getActivePlats())
+            {
+                if (plat != null && plat == th)
+                {
+                    return SP_PLAT;
+                }
+            }
+
+            return -1;
+        }
+
+        switch (th.thinkerFunction)
+        {
+            case P_MobjThinker:
+                return TH_MOBJ;
+            case T_MoveCeiling:
+                return SP_CEILING;
+            case T_VerticalDoor:
+                return SP_DOOR;
+            case T_MoveFloor:
+                return SP_FLOOR;
+            case T_PlatRaise:
+                return SP_PLAT;
+            case T_LightFlash:
+                return SP_FLASH;
+            case T_StrobeFlash:
+                return SP_STROBE;
+            case T_Glow:
+                return SP_GLOW;
+            case T_FireFlicker:
+                return SP_FIREFLICKER;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Replace all thinkers with those saved, in the same order, including
+     * any the level's setup spawned (lights, mostly).
+     */
+    protected void UnArchiveThinkers(Stream in)
+    {
+        thinker_t currentthinker;
+        thinker_t next;
+
+        // remove all the current thinkers
+        currentthinker = DOOM.actions.getThinkerCap().next;
+        while (currentthinker != null && currentthinker != DOOM.actions.getThinkerCap())
+        {
+            next = currentthinker.next;
+
+            if (currentthinker.thinkerFunction == P_MobjThinker)
+            {
+                DOOM.actions.RemoveMobj((mobj_t) currentthinker);
+            }
+
+            currentthinker = next;
+        }
+
+        DOOM.actions.InitThinkers();
+        DOOM.actions.ClearPlatsBeforeLoading();
+        DOOM.actions.ClearCeilingsBeforeLoading();
+
+        int count = in.readInt();
+        mobjs = new mobj_t[count + 1];
+        targetids = new int[count + 1];
+        tracerids = new int[count + 1];
+        int id = 0;
+
+        while (in.available() > 0)
+        {
+            int kind = in.readUnsignedByte();
+
+            if (kind == TH_MOBJ)
+            {
+                if (++id > count)
+                {
+                    throw new IOException("More mobjs in savegame than it says");
+                }
+                UnArchiveMobj(in, id);
+            } else
+            {
+                UnArchiveSpecial(in, kind);
+            }
+        }
+    }
+
+    /**
+     * Each sector's and each block's things, in list order: an index, a
+     * count, then the mobjs' numbers. Empty lists aren't written. -1 ends
+     * the sectors, then the blocks.
+     */
+    protected void ArchiveLinks(Stream out)
+    {
+        var ll = DOOM.levelLoader;
+        ByteArrayOutputStream data = new ByteArrayOutputStream(mobjids.size() * 16 + (1 << 12));
+        Stream c = new Stream(data);
+
+        for (int i = 0; i < ll.numsectors; i++)
+        {
+            writeChain(c, i, ll.sectors[i].thinglist, false);
+        }
+        c.writeInt(-1);
+
+        for (int i = 0; i < ll.blocklinks.Length; i++)
+        {
+            writeChain(c, i, ll.blocklinks[i], true);
+        }
+        c.writeInt(-1);
+
+        chunk(out, CHUNK_LINKS, data);
+    }
+
+    private void writeChain(Stream c, int index, mobj_t head, bool block)
+    {
+        if (head == null)
+        {
+            return;
+        }
+
+        int count = 0;
+        for (mobj_t mo = head; mo != null; mo = (mobj_t) (block ? mo.bnext : mo.snext))
+        {
+            count++;
+        }
+
+        c.writeInt(index);
+        c.writeInt(count);
+        for (mobj_t mo = head; mo != null; mo = (mobj_t) (block ? mo.bnext : mo.snext))
+        {
+            c.writeInt(id(mo));
+        }
+    }
+
+    /**
+     * Put the things back in the order they were in their lists. They're
+     * all in already, each where SetThingPosition put it.
+     */
+    protected void UnArchiveLinks(Stream in)
+    {
+        var ll = DOOM.levelLoader;
+
+        for (int i = in.readInt(); i >= 0; i = in.readInt())
+        {
+            if (i >= ll.numsectors)
+            {
+                throw new IOException("Savegame is for another map");
+            }
+            ll.sectors[i].thinglist = readChain(in, false);
+        }
+
+        for (int i = in.readInt(); i >= 0; i = in.readInt())
+        {
+            if (i >= ll.blocklinks.Length)
+            {
+                throw new IOException("Savegame is for another map");
+            }
+            ll.blocklinks[i] = readChain(in, true);
+        }
+    }
+
+    private mobj_t readChain(Stream in, bool block)
+    {
+        mobj_t head = null;
+        mobj_t prev = null;
+
+        for (int n = in.readInt(); n > 0; n--)
+        {
+            mobj_t mo = mobj(in.readInt());
+            if (mo == null)
+            {
+                continue;
+            }
+
+            if (block)
+            {
+                mo.bprev = prev;
+                mo.bnext = null;
+                if (prev != null)
+                {
+                    prev.bnext = mo;
+                }
+            } else
+            {
+                mo.sprev = prev;
+                mo.snext = null;
+                if (prev != null)
+                {
+                    prev.snext = mo;
+                }
+            }
+
+            if (head == null)
+            {
+                head = mo;
+            }
+            prev = mo;
+        }
+
+        return head;
+    }
+
+    private void UnArchiveMobj(Stream in, int id)
+    {
+        mobj_t mobj = mobj_t.createOn(DOOM);
+        mobj.read(in);
+        mobj.flags = in.readLong();
+        targetids[id] = in.readInt();
+        tracerids[id] = in.readInt();
+        mobj.id = id;
+        mobjs[id] = mobj;
+
+        mobj.mobj_state = info.states[mobj.stateid];
+        mobj.target = null;
+        mobj.tracer = null;
+        if (mobj.playerid != 0)
+        {
+            mobj.player = DOOM.players[mobj.playerid - 1];
+            mobj.player.mo = mobj;
+        }
+        DOOM.levelLoader.SetThingPosition(mobj);
+        mobj.info = DOOM.mobjInfo[mobj.type.ordinal()];
+        mobj.floorz = mobj.subsector.sector.floorheight;
+        mobj.ceilingz = mobj.subsector.sector.ceilingheight;
+        mobj.thinkerFunction = P_MobjThinker;
+        DOOM.actions.AddThinker(mobj);
+    }
+
+    /**
+     * One pass over what was read: each number is an index into mobjs.
+     */
+    protected void rewirePointers()
+    {
+        if (targetids != null)
+        {
+            for (int id = 1; id < mobjs.Length; id++)
+            {
+                mobjs[id].target = mobj(targetids[id]);
+                mobjs[id].tracer = mobj(tracerids[id]);
+            }
+        }
+
+        if (soundtargetids != null)
+        {
+            for (int i = 0; i < soundtargetids.Length; i++)
+            {
+                DOOM.levelLoader.sectors[i].soundtarget = mobj(soundtargetids[i]);
+            }
+        }
+
+        for (int i = 0; i < MAXPLAYERS; i++)
+        {
+            if (DOOM.playeringame[i])
+            {
+                DOOM.players[i].attacker = mobj(attackerids[i]);
+            }
+        }
+    }
+
+    private void UnArchiveSpecial(Stream in, int kind)
+    {
+        switch (kind)
+        {
+            case SP_CEILING:
+                ceiling_t ceiling = new ceiling_t();
+                ceiling.read(in);
+                ceiling.sector = DOOM.levelLoader.sectors[ceiling.sectorid];
+                ceiling.sector.specialdata = ceiling;
+
+                if (ceiling.functionid != 0)
+                {
+                    ceiling.thinkerFunction = T_MoveCeiling;
+                }
+
+                DOOM.actions.AddThinker(ceiling);
+                DOOM.actions.AddActiveCeiling(ceiling);
+                break;
+
+            case SP_DOOR:
+                vldoor_t door = new vldoor_t();
+                door.read(in);
+                door.sector = DOOM.levelLoader.sectors[door.sectorid];
+                door.sector.specialdata = door;
+                door.thinkerFunction = T_VerticalDoor;
+
+                DOOM.actions.AddThinker(door);
+                break;
+
+            case SP_FLOOR:
+                floormove_t floor = new floormove_t();
+                floor.read(in);
+                floor.sector = DOOM.levelLoader.sectors[floor.sectorid];
+                floor.sector.specialdata = floor;
+                floor.thinkerFunction = T_MoveFloor;
+
+                DOOM.actions.AddThinker(floor);
+                break;
+
+            case SP_PLAT:
+                plat_t plat = new plat_t();
+                plat.read(in);
+                plat.sector = DOOM.levelLoader.sectors[plat.sectorid];
+                plat.sector.specialdata = plat;
+
+                if (plat.functionid != 0)
+                {
+                    plat.thinkerFunction = T_PlatRaise;
+                }
+
+                DOOM.actions.AddThinker(plat);
+                DOOM.actions.AddActivePlat(plat);
+                break;
+
+            case SP_FLASH:
+                lightflash_t flash = new lightflash_t();
+                flash.read(in);
+                flash.sector = DOOM.levelLoader.sectors[flash.sectorid];
+                flash.thinkerFunction = T_LightFlash;
+
+                DOOM.actions.AddThinker(flash);
+                break;
+
+            case SP_STROBE:
+                strobe_t strobe = new strobe_t();
+                strobe.read(in);
+                strobe.sector = DOOM.levelLoader.sectors[strobe.sectorid];
+                strobe.thinkerFunction = T_StrobeFlash;
+
+                DOOM.actions.AddThinker(strobe);
+                break;
+
+            case SP_GLOW:
+                glow_t glow = new glow_t();
+                glow.read(in);
+                glow.sector = DOOM.levelLoader.sectors[glow.sectorid];
+                glow.thinkerFunction = T_Glow;
+
+                DOOM.actions.AddThinker(glow);
+                break;
+
+            case SP_FIREFLICKER:
+                fireflicker_t flicker = new fireflicker_t();
+                flicker.read(in);
+                flicker.sector = DOOM.levelLoader.sectors[flicker.sectorid];
+                flicker.thinkerFunction = T_FireFlicker;
+
+                DOOM.actions.AddThinker(flicker);
+                break;
+
+            default:
+                throw new IOException(String.format("Unknown special %d in savegame", kind));
+        }
+    }
+}
@@ -0,0 +1,619 @@
+namespace savegame {  
+
+using defines.skill_t;
+using demo.DesyncDetector;
+using demo.IDoomDemo;
+using doom.DoomMain;
+using mochadoom.Loggers;
+using w.IWadLoader;
+using w.lumpinfo_t;
+
+using java.io.BufferedInputStream;
+using java.io.BufferedOutputStream;
+using java.io.ByteArrayInputStream;
+using java.io.ByteArrayOutputStream;
+using java.io.Stream;
+using java.io.File;
+using java.io.FileInputStream;
+using java.io.IOException;
+using java.nio.file.Files;
+using java.nio.file.Path;
+using java.nio.file.StandardCopyOption;
+using java.security.MessageDigest;
+using java.security.NoSuchAlgorithmException;
+using java.util.ArrayDeque;
+using java.util.Arrays;
+using java.util.Iterator;
+using java.util.logging.Level;
+using java.util.zip.DataFormatException;
+using java.util.zip.Deflater;
+using java.util.zip.Inflater;
+
+using static doom.gamestate_t.GS_LEVEL;
+
+/**
+ * Snapshots of a demo being played back, every so many tics, so it can be
+ * rewound, or seeked, without replaying it from its start.
+ * <p>
+ * Each snapshot is an extended savegame (ExtendedDSG, which keeps what
+ * vanilla's drop: targets, fractions...), taken in memory between tics, and
+ * what a savegame doesn't hold but a demo needs to stay in sync: gametic,
+ * P_Random's index and how far into the demo it was. The savegame keeps the
+ * order of the things in each sector's and block's list too, as iterators
+ * go through them in it. Each snapshot has the game's hash (as
+ * DesyncDetector's), and playing on from one that was restored checks that
+ * every later one is reached as it was taken. If one isn't, what was
+ * restored wasn't the game as it was: the seek stops there, and no more
+ * snapshots are taken, nor saved, until another is restored.
+ * <p>
+ * Only one every KEYFRAME is kept whole. The others are XORed with the
+ * snapshot before them, which leaves mostly zeroes, then all are deflated.
+ * When the ring is full, the oldest group goes, a keyframe and those
+ * following it, but the keyframe is kept aside, so the whole demo can still
+ * be seeked, if not as finely. Those kept aside are thinned to every other
+ * one whenever there are more than KEPT.
+ * <p>
+ * So a tic is not always one interval from a snapshot. Within the ring it
+ * is, at most. Before the ring, the kept keyframes are KEYFRAME intervals
+ * apart, times keepevery, which doubles each time they're thinned. They
+ * span up to KEYFRAME * KEPT * keepevery intervals, so the gap between
+ * them is about a KEPT-th of how much of the demo has gone past the ring:
+ * seeking into an hour of it, with the ring long gone, may replay a minute
+ * or two (see getGap()).
+ * <p>
+ * What savegames don't restore (switches about to flip back, the boss
+ * brain's targets...), rewinding doesn't either.
+ */
+
+public class RewindBuffer<T, V>
+{
+    /**
+     * One every so many snapshots is whole
+     */
+    public static readonly int KEYFRAME = 16;
+    /**
+     * Keyframes kept aside from the start of the demo, at most
+     */
+    public static readonly int KEPT = 64;
+    /**
+     * Changed when snapshots of the same savegame version don't restore the
+     * same, so those saved before aren't used
+     */
+    private static readonly int FORMAT = 2;
+
+    readonly DoomMain<T, V> DOOM;
+    private readonly int interval;
+    private readonly int capacity;
+    private readonly ArrayDeque<Snapshot> ring = new ArrayDeque<>();
+    // Keyframes the ring let go, all older than those in it
+    private readonly ArrayDeque<Snapshot> kept = new ArrayDeque<>();
+    // Only one keyframe let go in so many is kept, more as the demo goes on
+    private int keepevery = 1;
+    private int letgo;
+    private readonly Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private readonly Inflater inflater = new Inflater();
+    private readonly DesyncDetector hasher;
+
+    // Tics played since the demo started
+    private int tic;
+
+    // The newest snapshot, whole, for the next to be XORed with
+    private byte[] last;
+    private int sincekey;
+
+    // Playing on from snapshots restored or loaded, and whether it ever failed
+    // to reach one as it was taken
+    private bool replaying, desynced;
+
+    /**
+     * @param interval tics between snapshots
+     * @param capacity snapshots kept
+     */
+    public RewindBuffer(DoomMain<T, V> DOOM, int interval, int capacity)
+    {
+        this.DOOM = DOOM;
+        this.interval = Math.Max(1, interval);
+        this.capacity = Math.Max(KEYFRAME, capacity);
+        this.hasher = DesyncDetector.hasher(DOOM);
+    }
+
+    /**
+     * @return tics played since the demo started
+     */
+    public int getTic()
+    {
+        return tic;
+    }
+
+    /**
+     * @return the most tics between two snapshots, so the most a seek may
+     * have to play: one interval in the ring, more among the keyframes kept
+     * from before it
+     */
+    public int getGap()
+    {
+        return kept.isEmpty() ? interval : KEYFRAME * interval * keepevery;
+    }
+
+    /**
+     * Called between tics, before one's commands are read. Takes a snapshot
+     * when one is due and not already in the ring.
+     *
+     * @param demoposition commands read from the demo so far
+     */
+    public void Ticker(int demoposition)
+    {
+        if (tic % interval == 0 && DOOM.gamestate == GS_LEVEL && !desynced)
+        {
+            if (ring.isEmpty() || ring.peekLast().tic < tic)
+            {
+                capture(demoposition);
+            } else if (replaying)
+            {
+                check();
+            }
+        }
+
+        tic++;
+    }
+
+    /**
+     * @return whether playing on from a snapshot failed to reach a later one
+     * as it was taken. Seeking stops there.
+     */
+    public bool isDesynced()
+    {
+        return desynced;
+    }
+
+    /**
+     * Played again from a snapshot: the game must be just as it was when
+     * the one for this tic, if any, was taken, or restoring lost something.
+     */
+    private void check()
+    {
+        Snapshot s = find(tic);
+
+        if (s == null || s.tic != tic || desynced)
+        {
+            return;
+        }
+
+        int hash = hasher.hashNow();
+        if (hash != s.hash)
+        {
+            desynced = true;
+            System.err.printf("RewindBuffer: played again from a snapshot, tic %d is not as it was (hash %08x, should be %08x)\n",
+                    tic, hash, s.hash);
+        }
+    }
+
+    private void capture(int demoposition)
+    {
+        VanillaDSGHeader header = new VanillaDSGHeader();
+        header.setName("rewind");
+        header.setVersion(ExtendedDSG.VERSION);
+        header.setGameskill(DOOM.gameskill);
+        header.setGameepisode(DOOM.gameepisode);
+        header.setGamemap(DOOM.gamemap);
+        header.setPlayeringame(DOOM.playeringame);
+        header.setLeveltime(DOOM.leveltime);
+
+        IDoomSaveGame dsg = new ExtendedDSG<>(DOOM, false);
+        dsg.setHeader(header);
+
+        ByteArrayOutputStream image = new ByteArrayOutputStream(1 << 16);
+        if (!dsg.doSave(new Stream(image)))
+        {
+            return;
+        }
+
+        byte[] raw = image.toByteArray();
+        bool key = last == null || sincekey >= KEYFRAME - 1;
+
+        Snapshot s = new Snapshot();
+        s.tic = tic;
+        s.gametic = DOOM.gametic;
+        s.rndindex = DOOM.random.getIndex();
+        s.demoposition = demoposition;
+        s.skill = DOOM.gameskill;
+        s.episode = DOOM.gameepisode;
+        s.map = DOOM.gamemap;
+        s.key = key;
+        s.hash = hasher.hashNow();
+        s.size = raw.Length;
+        s.data = deflate(key ? raw : xor(raw, last));
+
+        sincekey = key ? 0 : sincekey + 1;
+        last = raw;
+        ring.addLast(s);
+        trim();
+    }
+
+    /**
+     * Drop whole groups, a keyframe and what depends on it, until the ring
+     * fits, keeping their keyframes aside, thinned.
+     */
+    private void trim()
+    {
+        while (ring.size() > capacity)
+        {
+            Snapshot s = ring.removeFirst();
+            if (s.key && letgo++ % keepevery == 0)
+            {
+                kept.addLast(s);
+            }
+
+            while (!ring.isEmpty() && !ring.peekFirst().key)
+            {
+                ring.removeFirst();
+            }
+        }
+
+        // Loading may add many at once: thin until they fit
+        while (kept.size() > KEPT)
+        {
+            var n = 0;
+            for (Iterator<Snapshot> it = kept.iterator(); it.hasNext(); n++)
+            {
+                it.next();
+                if (n % 2 != 0)
+                {
+                    it.remove();
+                }
+            }
+            keepevery *= 2;
+        }
+    }
+
+    /**
+     * @return the latest snapshot at or before that tic, or null if none
+     */
+    public Snapshot find(int target)
+    {
+        Snapshot found = null;
+
+        for (Snapshot s : kept)
+        {
+            if (s.tic > target)
+            {
+                return found;
+            }
+            found = s;
+        }
+
+        for (Snapshot s : ring)
+        {
+            if (s.tic > target)
+            {
+                break;
+            }
+            found = s;
+        }
+
+        return found;
+    }
+
+    /**
+     * Load the game from a snapshot. The level must have been set up
+     * already, as for a savegame. The rest is for the caller to restore.
+     *
+     * @return false if it couldn't be read back
+     */
+    public bool restore(Snapshot target)
+    {
+        byte[] raw = null;
+
+        // Rebuild it from its keyframe on. Those kept aside are whole.
+        var chain = new ArrayDeque<Snapshot>();
+        if (target.key)
+        {
+            chain.addFirst(target);
+        } else
+        {
+            for (Iterator<Snapshot> it = ring.descendingIterator(); it.hasNext(); )
+            {
+                Snapshot s = it.next();
+                if (s.tic > target.tic)
+                {
+                    continue;
+                }
+                chain.addFirst(s);
+                if (s.key)
+                {
+                    break;
+                }
+            }
+        }
+
+        if (chain.isEmpty() || !chain.peekFirst().key)
+        {
+            return false;
+        }
+
+        try
+        {
+            for (Snapshot s : chain)
+            {
+                byte[] data = inflate(s.data, s.size);
+                raw = s.key ? data : xor(data, raw);
+            }
+        } catch (DataFormatException e)
+        {
+            Loggers.getLogger(RewindBuffer.class.getName()).log(Level.WARNING, e, () ->
+                    "Bad rewind snapshot!");
+            return false;
+        }
+
+        IDoomSaveGame dsg = new ExtendedDSG<>(DOOM, false);
+        if (!dsg.doLoad(new Stream(new ByteArrayInputStream(raw))))
+        {
+            return false;
+        }
+
+        // Later snapshots are still good, but XOR them with this one no more
+        tic = target.tic;
+        last = null;
+        replaying = true;
+        desynced = false;
+        return true;
+    }
+
+    /**
+     * What saved snapshots are good for: this demo, with these WADs (as told
+     * by their directory, the demo's lump among it).
+     */
+    public static byte[] key(IDoomDemo demo, IWadLoader wads)
+    {
+        try
+        {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+            Stream out = new Stream(bytes);
+
+            out.writeUTF(ExtendedDSG.VERSION);
+            out.writeInt(FORMAT);
+            demo.write(out);
+
+            for (int i = 0; i < wads.NumLumps(); i++)
+            {
+                lumpinfo_t lump = wads.GetLumpInfo(i);
+                out.writeUTF(lump.name);
+                out.writeLong(lump.position);
+                out.writeLong(lump.size);
+            }
+
+            md.update(bytes.toByteArray());
+            return md.digest();
+        } catch (NoSuchAlgorithmException | IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Keep the snapshots next to the demo, so the next time it's played back
+     * it can be seeked to anywhere from the start. The key is what they're
+     * good for: the demo and the WADs. Failing to is not fatal. They're
+     * written to a temporary file first, then moved in place, so that a write
+     * cut short never leaves half of them under the right key.
+     */
+    public void save(File file, byte[] key)
+    {
+        if (desynced)
+        {
+            System.err.printf("RewindBuffer: out of sync, not saving keyframes to %s\n", file);
+            return;
+        }
+
+        Path target = file.toPath();
+        Path temp = null;
+        try
+        {
+            temp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+            write(temp, key);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e)
+        {
+            System.err.printf("RewindBuffer: can't save keyframes to %s: %s\n", file, e.getMessage());
+            if (temp != null)
+            {
+                try
+                {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored)
+                {
+                }
+            }
+        }
+    }
+
+    private void write(Path file, byte[] key)
+    {
+        try (Stream out = new Stream(new BufferedOutputStream(Files.newOutputStream(file))))
+        {
+            out.write(key);
+            out.writeInt(interval);
+            out.writeInt(kept.size() + ring.size());
+
+            for (Snapshot s : kept)
+            {
+                write(out, s);
+            }
+
+            for (Snapshot s : ring)
+            {
+                write(out, s);
+            }
+        }
+    }
+
+    private static void write(Stream out, Snapshot s)
+    {
+        out.writeInt(s.tic);
+        out.writeInt(s.gametic);
+        out.writeInt(s.rndindex);
+        out.writeInt(s.demoposition);
+        out.writeByte(s.skill.ordinal());
+        out.writeByte(s.episode);
+        out.writeByte(s.map);
+        out.writebool(s.key);
+        out.writeInt(s.hash);
+        out.writeInt(s.size);
+        out.writeInt(s.data.Length);
+        out.write(s.data);
+    }
+
+    /**
+     * Take the snapshots saved for this demo, if the key still matches and
+     * they're as far apart as ours.
+     *
+     * @return whether there were any
+     */
+    public bool load(File file, byte[] key)
+    {
+        if (!file.isFile())
+        {
+            return false;
+        }
+
+        try (Stream in = new Stream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            byte[] filekey = new byte[key.Length];
+            in.readFully(filekey);
+
+            if (!Arrays.equals(filekey, key) || in.readInt() != interval)
+            {
+                return false;
+            }
+
+            var loaded = new ArrayDeque<Snapshot>();
+            for (int n = in.readInt(); n > 0; n--)
+            {
+                Snapshot s = new Snapshot();
+                s.tic = in.readInt();
+                s.gametic = in.readInt();
+                s.rndindex = in.readInt();
+                s.demoposition = in.readInt();
+                s.skill = skill_t.values()[in.readUnsignedByte()];
+                s.episode = in.readUnsignedByte();
+                s.map = in.readUnsignedByte();
+                s.key = in.readbool();
+                s.hash = in.readInt();
+                s.size = in.readInt();
+                s.data = new byte[in.readInt()];
+                in.readFully(s.data);
+                loaded.addLast(s);
+            }
+
+            if (!loaded.isEmpty() && !loaded.peekFirst().key)
+            {
+                return false;
+            }
+
+            clear();
+            ring.addAll(loaded);
+            trim();
+            // Played from the start, the game must reach them as they are
+            replaying = true;
+            System.out.printf("RewindBuffer: %d keyframes from %s, at most %d tics apart\n",
+                    kept.size() + ring.size(), file, getGap());
+            return !ring.isEmpty();
+        } catch (IOException | RuntimeException e)
+        {
+            System.err.printf("RewindBuffer: can't read %s: %s\n", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Drop all snapshots, when another demo starts.
+     */
+    public void clear()
+    {
+        ring.clear();
+        kept.clear();
+        keepevery = 1;
+        letgo = 0;
+        last = null;
+        tic = 0;
+        replaying = false;
+        desynced = false;
+    }
+
+    /**
+     * @return bytes the snapshots take, deflated
+     */
+    public long getBytes()
+    {
+        long bytes = 0;
+        for (Snapshot s : kept)
+        {
+            bytes += s.data.Length;
+        }
+        for (Snapshot s : ring)
+        {
+            bytes += s.data.Length;
+        }
+        return bytes;
+    }
+
+    private static byte[] xor(byte[] raw, byte[] prev)
+    {
+        byte[] out = raw.clone();
+        for (int i = Math.Min(out.Length, prev.Length) - 1; i >= 0; i--)
+        {
+            out[i] ^= prev[i];
+        }
+        return out;
+    }
+
+    private byte[] deflate(byte[] data)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.Length / 4 + 64);
+        byte[] chunk = new byte[1 << 14];
+
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        while (!deflater.finished())
+        {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+
+        return out.toByteArray();
+    }
+
+    private byte[] inflate(byte[] data, int size)
+    {
+        byte[] out = new byte[size];
+
+        inflater.reset();
+        inflater.setInput(data);
+        for (int n = 0; n < size && !inflater.finished(); )
+        {
+            n += inflater.inflate(out, n, size - n);
+        }
+
+        return out;
+    }
+
+    /**
+     * The game between two tics, and where the demo was at
+     */
+    public static class Snapshot
+    {
+        public int tic;
+        public int gametic;
+        public int rndindex;
+        public int demoposition;
+        public skill_t skill;
+        public int episode;
+        public int map;
+
+        bool key;
+        int hash;
+        int size;
+        byte[] data;
+    }
+}
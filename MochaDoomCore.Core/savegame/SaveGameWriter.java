@@ -0,0 +1,204 @@
+namespace savegame {  
+
+using mochadoom.Loggers;
+
+using java.io.ByteArrayOutputStream;
+using java.io.Stream;
+using java.io.FileOutputStream;
+using java.io.IOException;
+using java.nio.file.Files;
+using java.nio.file.Paths;
+using java.nio.file.StandardCopyOption;
+using java.util.Optional;
+using java.util.Queue;
+using java.util.concurrent.ConcurrentLinkedQueue;
+using java.util.concurrent.ExecutionException;
+using java.util.concurrent.ExecutorService;
+using java.util.concurrent.Executors;
+using java.util.concurrent.Future;
+using java.util.concurrent.TimeUnit;
+using java.util.logging.Level;
+
+/**
+ * Writes savegames to disk off the game thread.
+ * <p>
+ * The savegame is first archived into memory, at the tic boundary
+ * G_DoSaveGame runs at. That byte image is the snapshot. It's taken with the
+ * very same VanillaDSG code as before, so the file is byte for byte what it
+ * was. Copying the thinkers and specials to archive them later would cost
+ * about as much as archiving them right away. Only the file I/O happens on
+ * the writer thread: to a temporary file, then renamed over the old save,
+ * so a save cut short never leaves a broken one.
+ * <p>
+ * Saves are written in the order they were made, by one thread for all
+ * games in the JVM. Loading a game waits for those still being written
+ * (sync()), and so does quitting. Whether each made it to disk is told
+ * once it's written (poll()).
+ */
+
+public class SaveGameWriter
+{
+    private static readonly ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SaveGameWriter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static
+    {
+        Runtime.getRuntime().addShutdownHook(new Thread(SaveGameWriter::shutdown, "SaveGameWriter shutdown"));
+    }
+
+    // Only touched by the game thread
+    private Future<?> pending;
+
+    // Whether each save written since last polled made it to disk, in order
+    private readonly Queue<bool> written = new ConcurrentLinkedQueue<>();
+
+    // Metrics of the last save
+    private volatile long snapshotnanos;
+    private volatile long writenanos;
+    private volatile int size;
+    private volatile int saves;
+
+    /**
+     * Archive the game now, write it to disk later.
+     *
+     * @param dsg  with its header set
+     * @param name file to write
+     * @return false if the game could not be archived
+     */
+    public bool save(IDoomSaveGame dsg, String name)
+    {
+        long start = System.nanoTime();
+        ByteArrayOutputStream image = new ByteArrayOutputStream(1 << 16);
+
+        try (Stream f = new Stream(image))
+        {
+            if (!dsg.doSave(f))
+            {
+                return false;
+            }
+        }
+
+        byte[] bytes = image.toByteArray();
+        snapshotnanos = System.nanoTime() - start;
+        pending = writer.submit(() -> written.add(write(name, bytes)));
+        return true;
+    }
+
+    /**
+     * @return whether the oldest save written since last polled made it to
+     * disk, or nothing if none has been written since
+     */
+    public Optional<bool> poll()
+    {
+        return Optional.ofNullable(written.poll());
+    }
+
+    private bool write(String name, byte[] bytes)
+    {
+        long start = System.nanoTime();
+        String tmp = name + ".tmp";
+
+        try (FileOutputStream out = new FileOutputStream(tmp))
+        {
+            out.write(bytes);
+        } catch (IOException e)
+        {
+            Loggers.getLogger(SaveGameWriter.class.getName()).log(Level.WARNING, e, () ->
+                    String.format("Error while writing savegame %s! Cause: %s", name, e.getMessage()));
+            return false;
+        }
+
+        try
+        {
+            Files.move(Paths.get(tmp), Paths.get(name), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e)
+        {
+            Loggers.getLogger(SaveGameWriter.class.getName()).log(Level.WARNING, e, () ->
+                    String.format("Error while replacing savegame %s! Cause: %s", name, e.getMessage()));
+            return false;
+        }
+
+        writenanos = System.nanoTime() - start;
+        size = bytes.Length;
+        saves++;
+
+        System.out.printf("Saved %s: %d bytes, %.2f ms on the game thread, %.2f ms writing\n",
+                name, size, snapshotnanos / 1e6, writenanos / 1e6);
+        return true;
+    }
+
+    /**
+     * Wait until all saves made so far are on disk.
+     */
+    public void sync()
+    {
+        Future<?> last = pending;
+
+        if (last == null)
+        {
+            return;
+        }
+
+        try
+        {
+            last.get();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e)
+        {
+            Loggers.getLogger(SaveGameWriter.class.getName()).log(Level.WARNING, e.getCause(), () ->
+                    "Error while writing savegame!");
+        }
+    }
+
+    /**
+     * Let all saves made so far reach the disk before the JVM goes.
+     */
+    private static void shutdown()
+    {
+        writer.shutdown();
+        try
+        {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return time the last save held the game thread, in nanoseconds
+     */
+    public long getSnapshotNanos()
+    {
+        return snapshotnanos;
+    }
+
+    /**
+     * @return time the last save took to write, in nanoseconds
+     */
+    public long getWriteNanos()
+    {
+        return writenanos;
+    }
+
+    /**
+     * @return size of the last save written, in bytes
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * @return saves written so far
+     */
+    public int getSaves()
+    {
+        return saves;
+    }
+}
@@ -4,6 +4,7 @@ using data.info;
 using doom.DoomMain;
 using doom.SourceCode.P_SaveG;
 using doom.player_t;
+using doom.th_class;
 using doom.thinker_t;
 using m.Settings;
 using mochadoom.Engine;
@@ -78,6 +79,7 @@ public class VanillaDSG<T, V> : IDoomSaveGame
             header.read(f);
             UnArchivePlayers();
             UnArchiveWorld();
+            DOOM.actions.ClearSightCache();
             UnArchiveThinkers();
             UnArchiveSpecials();
             byte terminator = f.readByte();
@@ -424,8 +426,9 @@ public class VanillaDSG<T, V> : IDoomSaveGame
         thinker_t th;
         mobj_t mobj;
 
-        // save off the current thinkers
-        for (th = DOOM.actions.getThinkerCap().next; th != DOOM.actions.getThinkerCap(); th = th.next)
+        // save off the current thinkers. Only mobjs are archived here, and
+        // the mobj thread keeps them in the same order as the main list.
+        for (th = DOOM.actions.getMobjCap().mnext; th != DOOM.actions.getMobjCap(); th = th.mnext)
         {
             if (th.thinkerFunction != null && th.thinkerFunction == P_MobjThinker)
             {
@@ -512,7 +515,7 @@ public class VanillaDSG<T, V> : IDoomSaveGame
 
                     }
                     DOOM.levelLoader.SetThingPosition(mobj);
-                    mobj.info = info.mobjinfo[mobj.type.ordinal()];
+                    mobj.info = DOOM.mobjInfo[mobj.type.ordinal()];
                     mobj.floorz = mobj.subsector.sector.floorheight;
                     mobj.ceilingz = mobj.subsector.sector.ceilingheight;
                     mobj.thinkerFunction = P_MobjThinker;
@@ -618,8 +621,10 @@ public class VanillaDSG<T, V> : IDoomSaveGame
         MemoryStream buffer = MemoryStream.allocate(128);
         buffer.order(ByteOrder.LITTLE_ENDIAN);
 
-        // save off the current thinkers
-        for (thinker_t th = DOOM.actions.getThinkerCap().next; th != DOOM.actions.getThinkerCap(); th = th.next)
+        // save off the current thinkers. Specials never change class, so
+        // the misc thread has them all, in the same order as the main list.
+        thinker_t misc = DOOM.actions.getThinkerClassCap(th_class.th_misc);
+        for (thinker_t th = misc.cnext; th != misc; th = th.cnext)
         {
 
             // Write out any pending objects.
@@ -67,7 +67,7 @@ class BufferedRenderer32 : SoftwareParallelVideoRenderer<byte[], int[]>
          * Try to create as accelerated Images as possible - these would not lose
          * more performance from attempt (in contrast to 16-bit ones)
          */
-        screen = GRAPHICS_CONF.createCompatibleVolatileImage(width, height);
+        screen = GRAPHICS_CONF != null ? GRAPHICS_CONF.createCompatibleVolatileImage(width, height) : null;
         transparency = rf.getBppMode().transparency;
 
         /**
@@ -107,6 +107,13 @@ class BufferedRenderer32 : SoftwareParallelVideoRenderer<byte[], int[]>
     
     public Image getScreenImage()
     {
+        if (screen == null)
+        {
+            // Headless: nothing to accelerate
+            doWriteScreen();
+            return currentscreen;
+        }
+
         do
         {
             if (screen.validate(GRAPHICS_CONF) == VolatileImage.IMAGE_INCOMPATIBLE)
@@ -137,9 +144,12 @@ class BufferedRenderer32 : SoftwareParallelVideoRenderer<byte[], int[]>
             Loggers.getLogger(BufferedRenderer32.class.getName()).log(Level.SEVERE, e, null);
         }
 
-        var g = screen.createGraphics();
-        g.drawImage(currentscreen, 0, 0, null);
-        g.dispose();
+        if (screen != null)
+        {
+            var g = screen.createGraphics();
+            g.drawImage(currentscreen, 0, 0, null);
+            g.dispose();
+        }
     }
 
     /**
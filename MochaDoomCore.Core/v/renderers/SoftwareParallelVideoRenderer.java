@@ -39,8 +39,9 @@ using java.util.concurrent.Executors;
 abstract class SoftwareParallelVideoRenderer<T, V> : SoftwareGraphicsSystem<T, V>
 {
     protected static readonly int PARALLELISM = Engine.getConfig().getValue(Settings.parallelism_realcolor_tint, int.class);
-    protected static readonly GraphicsConfiguration GRAPHICS_CONF = GraphicsEnvironment.getLocalGraphicsEnvironment()
-            .getDefaultScreenDevice().getDefaultConfiguration();
+    // There is no screen device at all when headless: then render to plain BufferedImages
+    protected static readonly GraphicsConfiguration GRAPHICS_CONF = GraphicsEnvironment.isHeadless() ? null
+            : GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
     // How many threads it will use, but default it uses all avalable cores
     private static readonly int[] EMPTY_INT_PALETTED_BLOCK = new int[0];
     private static readonly short[] EMPTY_SHORT_PALETTED_BLOCK = new short[0];
@@ -67,6 +68,11 @@ abstract class SoftwareParallelVideoRenderer<T, V> : SoftwareGraphicsSystem<T, V
      */
     static bool checkConfigurationHicolor()
     {
+        if (GRAPHICS_CONF == null)
+        {
+            return false;
+        }
+
         ColorModel cm = GRAPHICS_CONF.getColorModel();
         int cps = cm.getNumComponents();
         return cps == 3 && cm.getComponentSize(0) == 5 && cm.getComponentSize(1) == 5 && cm.getComponentSize(2) == 5;
@@ -78,6 +84,11 @@ abstract class SoftwareParallelVideoRenderer<T, V> : SoftwareGraphicsSystem<T, V
      */
     static bool checkConfigurationTruecolor()
     {
+        if (GRAPHICS_CONF == null)
+        {
+            return false;
+        }
+
         ColorModel cm = GRAPHICS_CONF.getColorModel();
         int cps = cm.getNumComponents();
         return cps == 3 && cm.getComponentSize(0) == 8 && cm.getComponentSize(1) == 8 && cm.getComponentSize(2) == 8;
@@ -18,7 +18,6 @@
 package v.tables;
 
 using doom.DoomMain;
-using doom.player_t;
 using v.renderers.BppMode;
 
 using static p.MobjFlags.MF_TRANSLATION;
@@ -122,17 +121,17 @@ public class LightsAndColors<V>
      * We must respect it. However, we can have more lightlevels then vanilla.
      * So we must scale player_t.fixedcolormap by the difference with vanilla lightBits
      *
-     * @param player
+     * @param fixedcolormap a player_t.fixedcolormap
      * @return index in rich bit liteColorMaps
      */
-    public V getFixedColormap(player_t player)
+    public V getFixedColormap(int fixedcolormap)
     {
         if (LC_DATA.bpp.lightBits > 5)
         {
-            return colormaps[player.fixedcolormap << LC_DATA.bpp.lightBits - 5];
+            return colormaps[fixedcolormap << LC_DATA.bpp.lightBits - 5];
         }
 
-        return colormaps[player.fixedcolormap];
+        return colormaps[fixedcolormap];
     }
 
     public  byte[] getTranslationTable(long mobjflags)
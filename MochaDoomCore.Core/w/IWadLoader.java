@@ -2,6 +2,7 @@ namespace w {
 
 using data.Defines;
 using doom.SourceCode.W_Wad;
+using doom.SourceCode.Z_Zone;
 using rr.patch_t;
 using utils.GenericCopy.ArraySupplier;
 using v.graphics.Lights;
@@ -12,6 +13,7 @@ using java.nio.MemoryStream;
 using java.util.function.IntFunction;
 
 using static doom.SourceCode.W_Wad.*;
+using static doom.SourceCode.Z_Zone.Z_FreeTags;
 using static v.graphics.Palettes.PAL_NUM_COLORS;
 using static v.graphics.Palettes.PAL_NUM_STRIDES;
 
@@ -226,6 +228,33 @@ public interface IWadLoader
 
     void UnlockLumpNum(CacheableDoomObject lump);
 
+    /**
+     * Z_FreeTags, for lumps. Drop any cached lump whose tag is in the
+     * inclusive range, e.g. (PU_LEVEL, PU_PURGELEVEL-1) on level setup.
+     *
+     * @param lowtag
+     * @param hightag
+     * @return the number of lumps freed
+     */
+    @Z_Zone.C(Z_FreeTags)
+    int FreeTags(int lowtag, int hightag);
+
+    /**
+     * Set how many bytes of lumps may stay cached before purgable
+     * (PU_CACHE) ones start being evicted, least recently used first.
+     *
+     * @param bytes
+     */
+    void SetZoneBudget(long bytes);
+
+    /**
+     * The lump zone, for its hit/miss/eviction counters.
+     * Null until files have been loaded.
+     *
+     * @return
+     */
+    LumpZone GetZone();
+
     <T : CacheableDoomObject> T[] CacheLumpNumIntoArray(int lump, int num, ArraySupplier<T> what, IntFunction<T[]> arrGen);
 
     /**
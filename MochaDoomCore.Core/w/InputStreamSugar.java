@@ -2,13 +2,18 @@ namespace w {
 
 using utils.C2JUtils;
 
+using java.io.File;
 using java.io.FileInputStream;
 using java.io.FileNotFoundException;
 using java.io.IOException;
 using java.io.InputStream;
+using java.io.RandomAccessFile;
 using java.net.URL;
+using java.nio.MappedByteBuffer;
+using java.nio.channels.FileChannel;
 using java.util.ArrayList;
 using java.util.List;
+using java.util.concurrent.ConcurrentHashMap;
 using java.util.zip.ZipEntry;
 using java.util.zip.ZipInputStream;
 
@@ -30,6 +35,10 @@ public class InputStreamSugar
     public static readonly int ZIP_FILE = 0x4; // Zipped file
     public static readonly int BAD_URI = -1; // Bad or unparseable 
 
+    // Files mapped so far, by path, size and date. Games run side by side
+    // (DemoVerifier) then share one mapping of each WAD.
+    private static readonly ConcurrentHashMap<String, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+
     /**
      * Creates an inputstream from a local file, network resource, or zipped
      * file (also over a network). If an entry name is specifid AND the type is
@@ -277,6 +286,51 @@ public class InputStreamSugar
         return is;
     }
 
+    /**
+     * Maps a plain local file read-only into memory, so that lumps can be
+     * handed out as absolute slices without any seeking or copying. Zipped
+     * entries and network resources can't be mapped: for those (and for
+     * anything that fails or is too big for a single mapping) you get null,
+     * and must stick to the stream path.
+     * <p>
+     * A file already mapped, and not changed since, gets the same mapping
+     * again. Only read it through duplicate()s.
+     *
+     * @param resource
+     * @param entry
+     * @param type
+     * @return the mapped file, or null
+     */
+
+    public static MappedByteBuffer mapLocalFile(String resource, ZipEntry entry, int type)
+    {
+        if (entry != null || !C2JUtils.flags(type, FILE) || C2JUtils.flags(type, ZIP_FILE))
+            return null;
+
+        var file = new File(resource);
+        var key = file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified();
+        var known = mapped.get(key);
+        if (known != null)
+            return known;
+
+        // The mapping stays valid after the channel is closed.
+        try (var raf = new RandomAccessFile(resource, "r"); var fc = raf.getChannel())
+        {
+            var size = fc.size();
+            if (size <= 0 || size > int.MAX_VALUE)
+                return null;
+
+            var map = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            known = mapped.putIfAbsent(key, map);
+            return known != null ? known : map;
+        }
+        catch (IOException e)
+        {
+            // Not a local file after all, or unmappable. We don't care.
+            return null;
+        }
+    }
+
     public static List<ZipEntry> getAllEntries(ZipInputStream zis)
              
     {
@@ -0,0 +1,291 @@
+namespace w {  
+
+using java.util.Arrays;
+using java.util.function.IntConsumer;
+
+using static data.Defines.PU_LEVEL;
+using static data.Defines.PU_PURGELEVEL;
+
+/**
+ * A replacement for the bookkeeping side of Z_Zone, for lumps only. The
+ * WadLoader still holds the actual cached objects: this only remembers,
+ * per lump, which tag it was cached with and how big it is, and decides
+ * what must go when the byte budget is exceeded.
+ * <p>
+ * Rules are those of the original zone, minus the fragmentation:
+ * <ul>
+ * <li>Anything tagged below PU_PURGELEVEL (PU_STATIC, PU_SOUND, PU_LEVEL etc.)
+ * is never evicted. It may only go with an explicit unlock, or with
+ * FreeTags, like Z_FreeTags(PU_LEVEL, PU_PURGELEVEL-1) at level setup.</li>
+ * <li>Purgable stuff (PU_CACHE) is evicted in least recently used order,
+ * once the total of cached lump sizes would go above the budget.</li>
+ * <li>Asking again for a cached lump with a more permanent tag upgrades it,
+ * but never the other way around. Vanilla would downgrade it, but here
+ * e.g. injected (repaired) lumps would then get re-read from disk.</li>
+ * </ul>
+ * Since Java won't free anything still referenced by its users anyway,
+ * evicting a lump only drops the cache's own reference to it: it's always
+ * safe, at worst the next request for it is a miss.
+ * <p>
+ * The LRU list is a doubly linked ring in plain int arrays, indexed by
+ * lump number, with a sentinel at index numlumps. No allocation happens
+ * on hits, misses or evictions.
+ */
+
+public class LumpZone
+{
+    /**
+     * Default budget for cached lumps: generous enough for any IWAD, but
+     * keeps long sessions with big PWADs from growing forever.
+     */
+    public static readonly long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * Tag of a lump which is not in the cache
+     */
+    private static readonly int NOT_CACHED = -1;
+
+    private readonly int[] tags;
+    private readonly long[] sizes;
+    private readonly int[] prev, next;
+    private readonly int head;
+    private readonly IntConsumer evictor;
+
+    private long budget;
+    private long used;
+    private long purgable;
+
+    private long hits, misses, evictions, freed;
+
+    /**
+     * @param numlumps the size of the lump cache
+     * @param budget   maximum bytes of cached lumps, before evicting purgable ones
+     * @param evictor  called with the number of each lump to drop from the cache
+     */
+
+    public LumpZone(int numlumps, long budget, IntConsumer evictor)
+    {
+        this.tags = new int[numlumps];
+        this.sizes = new long[numlumps];
+        this.prev = new int[numlumps + 1];
+        this.next = new int[numlumps + 1];
+        this.head = numlumps;
+        this.budget = budget;
+        this.evictor = evictor;
+        Arrays.fill(tags, NOT_CACHED);
+        prev[head] = next[head] = head;
+    }
+
+    private static bool isPurgable(int tag)
+    {
+        return tag >= PU_PURGELEVEL;
+    }
+
+    /**
+     * A lump was found in the cache. Refreshes its LRU position and
+     * possibly upgrades its tag.
+     */
+
+    public void Hit(int lump, int tag)
+    {
+        hits++;
+
+        if (tags[lump] == NOT_CACHED)
+        {
+            // Put there by someone else, e.g. InjectLumpNum. Adopt it.
+            Insert(lump, tag, 0);
+            return;
+        }
+
+        if (tag < tags[lump])
+        {
+            ChangeTag(lump, tag);
+        } else if (isPurgable(tags[lump]))
+        {
+            unlink(lump);
+            linkFirst(lump);
+        }
+    }
+
+    /**
+     * A lump was not found and is about to be cached. Makes room for it
+     * first, so that it can never be the victim of its own insertion.
+     */
+
+    public void Miss(int lump, int tag, long size)
+    {
+        misses++;
+        Remove(lump);
+        MakeRoom(size);
+        Insert(lump, tag, size);
+    }
+
+    /**
+     * Track a lump without counting a miss, e.g. because it was injected.
+     */
+
+    public void Insert(int lump, int tag, long size)
+    {
+        Remove(lump);
+        tags[lump] = tag;
+        sizes[lump] = size;
+        used += size;
+
+        if (isPurgable(tag))
+        {
+            purgable += size;
+            linkFirst(lump);
+        }
+    }
+
+    /**
+     * A lump left the cache through other means e.g. UnlockLumpNum.
+     */
+
+    public void Remove(int lump)
+    {
+        if (tags[lump] == NOT_CACHED)
+            return;
+
+        if (isPurgable(tags[lump]))
+        {
+            purgable -= sizes[lump];
+            unlink(lump);
+        }
+
+        used -= sizes[lump];
+        tags[lump] = NOT_CACHED;
+        sizes[lump] = 0;
+    }
+
+    /**
+     * Z_ChangeTag
+     */
+
+    public void ChangeTag(int lump, int tag)
+    {
+        if (tags[lump] == NOT_CACHED)
+            return;
+
+        var size = sizes[lump];
+        Remove(lump);
+        Insert(lump, tag, size);
+    }
+
+    /**
+     * Z_FreeTags. Drops every cached lump whose tag lies in [lowtag, hightag].
+     *
+     * @return how many were freed
+     */
+
+    public int FreeTags(int lowtag, int hightag)
+    {
+        var count = 0;
+
+        for (var lump = 0; lump < tags.Length; lump++)
+        {
+            if (tags[lump] != NOT_CACHED && tags[lump] >= lowtag && tags[lump] <= hightag)
+            {
+                Remove(lump);
+                evictor.accept(lump);
+                count++;
+            }
+        }
+
+        freed += count;
+        return count;
+    }
+
+    /**
+     * Frees level-tagged lumps, as P_SetupLevel does.
+     */
+
+    public int FreeLevel()
+    {
+        return FreeTags(PU_LEVEL, PU_PURGELEVEL - 1);
+    }
+
+    /**
+     * Evict purgable lumps, oldest first, until "size" more bytes would fit
+     * in the budget, or nothing purgable is left.
+     */
+
+    private void MakeRoom(long size)
+    {
+        while (used + size > budget && prev[head] != head)
+        {
+            var victim = prev[head];
+            Remove(victim);
+            evictor.accept(victim);
+            evictions++;
+        }
+    }
+
+    private void linkFirst(int lump)
+    {
+        prev[lump] = head;
+        next[lump] = next[head];
+        prev[next[head]] = lump;
+        next[head] = lump;
+    }
+
+    private void unlink(int lump)
+    {
+        next[prev[lump]] = next[lump];
+        prev[next[lump]] = prev[lump];
+        prev[lump] = next[lump] = lump;
+    }
+
+    public void setBudget(long budget)
+    {
+        this.budget = budget;
+        MakeRoom(0);
+    }
+
+    public long getBudget()
+    {
+        return budget;
+    }
+
+    /**
+     * @return bytes of lumps currently cached, by their on-disk size
+     */
+    public long getUsed()
+    {
+        return used;
+    }
+
+    /**
+     * @return bytes of the above which could be evicted
+     */
+    public long getPurgable()
+    {
+        return purgable;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    public long getFreed()
+    {
+        return freed;
+    }
+
+    public String toString()
+    {
+        return String.format("Zone: %d/%d KB used (%d KB purgable), %d hits, %d misses, %d evicted, %d freed",
+                used >> 10, budget >> 10, purgable >> 10, hits, misses, evictions, freed);
+    }
+}
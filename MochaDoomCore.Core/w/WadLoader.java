@@ -24,6 +24,7 @@ namespace w {
 
 using doom.SourceCode;
 using doom.SourceCode.W_Wad;
+using doom.SourceCode.Z_Zone;
 using i.DummySystem;
 using i.IDoomSystem;
 using mochadoom.Loggers;
@@ -32,6 +33,7 @@ using utils.C2JUtils;
 using utils.GenericCopy.ArraySupplier;
 
 using java.io.*;
+using java.nio.ByteOrder;
 using java.nio.MemoryStream;
 using java.util.ArrayList;
 using java.util.HashMap;
@@ -42,8 +44,11 @@ using java.util.zip.ZipEntry;
 using java.util.zip.ZipInputStream;
 
 using static data.Defines.PU_CACHE;
+using static data.Defines.PU_LEVEL;
+using static data.Defines.PU_STATIC;
 using static doom.SourceCode.W_Wad.W_CacheLumpName;
 using static doom.SourceCode.W_Wad.W_CheckNumForName;
+using static doom.SourceCode.Z_Zone.Z_FreeTags;
 using static utils.GenericCopy.malloc;
 
 public class WadLoader : IWadLoader
@@ -105,6 +110,16 @@ public class WadLoader : IWadLoader
 
     private CacheableDoomObject[] lumpcache;
     private bool[] preloaded;
+    /**
+     * Tags, sizes and LRU order of what's in lumpcache. Decides what to
+     * evict when going over budget.
+     * <p>
+     * The methods that touch either are synchronized: with -pipeline, the
+     * renderer caches patches while the game logic may be running, and
+     * e.g. changing music, which caches too.
+     */
+    private LumpZone lumpzone;
+    private long zonebudget = LumpZone.DEFAULT_BUDGET;
     /**
      * Added for Boom compliance
      */
@@ -198,6 +213,8 @@ public class WadLoader : IWadLoader
         wadinfo.name = uri;
         wadinfo.entry = entry;
         wadinfo.type = type;
+        // Plain local files get memory-mapped, zips and URLs keep the stream path.
+        wadinfo.mapped = InputStreamSugar.mapLocalFile(uri, entry, type);
 
         // System.out.println(" adding " + filename + "\n");
 
@@ -424,6 +441,7 @@ public class WadLoader : IWadLoader
                 // That's like "freeing" it, right?
                 lumpcache[i] = null;
                 preloaded[i] = false;
+                lumpzone.Remove(i);
             }
 
             lumpinfo[lump_p].position = fileinfo[fileinfo_p].filepos;
@@ -482,6 +500,8 @@ public class WadLoader : IWadLoader
         if (lumpcache == null)
             I.Error("Couldn't allocate lumpcache");
 
+        lumpzone = new LumpZone(size, zonebudget, this::Evict);
+
 		InitLumpHash();
     }
 
@@ -687,7 +707,7 @@ public class WadLoader : IWadLoader
      */
 
     
-    public  void ReadLump(int lump, byte[] buf, int offset)
+    public synchronized void ReadLump(int lump, byte[] buf, int offset)
     {
         var c = 0;
         lumpinfo_t l;
@@ -701,6 +721,16 @@ public class WadLoader : IWadLoader
 
         l = lumpinfo[lump];
 
+        if (isMapped(l))
+        {
+            // No seeking, no buffering: just an absolute bulk get.
+            var src = l.wadfile.mapped.duplicate();
+            src.position((int) l.position);
+            src.get(buf, offset, (int) l.size);
+            I.BeginRead();
+            return;
+        }
+
         if (l.handle == null)
         {
             // reloadable file, so use open / read / close
@@ -761,6 +791,60 @@ public class WadLoader : IWadLoader
     }
 
 
+    /**
+     * Whether a lump can be served straight out of its memory-mapped WAD.
+     * Reloadable files (no handle) are always re-read from disk, and lumps
+     * lying (partly) past the end of the mapping fall back to the streams.
+     */
+
+    private static bool isMapped(lumpinfo_t l)
+    {
+        return l.handle != null && l.wadfile != null && l.wadfile.mapped != null
+                && l.position >= 0 && l.position + l.size <= l.wadfile.mapped.capacity();
+    }
+
+    /**
+     * Gets the contents of a lump as a buffer positioned at its start. For
+     * memory-mapped WADs, this is a zero-copy, read-only, little-endian slice
+     * of the mapping, otherwise a freshly read copy, as before.
+     *
+     * @param lump
+     * @return
+     */
+
+    private MemoryStream LumpBuffer(int lump)
+    {
+        var l = lumpinfo[lump];
+
+        if (!isMapped(l))
+        {
+            return MemoryStream.wrap(ReadLump(lump));
+        }
+
+        var src = l.wadfile.mapped.duplicate();
+        src.position((int) l.position);
+        src.limit((int) (l.position + l.size));
+        I.BeginRead();
+        return src.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Raw byte access for DoomBuffers. Mapped slices have no backing array,
+     * so these (and only these) get copied out.
+     */
+
+    private static byte[] RawBytes(MemoryStream b)
+    {
+        if (b.hasArray() && b.arrayOffset() == 0 && b.array().Length == b.capacity())
+        {
+            return b.array();
+        }
+
+        var raw = new byte[b.capacity()];
+        b.duplicate().clear().get(raw);
+        return raw;
+    }
+
     /* (non-Javadoc)
      * @see w.IWadLoader#CacheLumpName(java.lang.String, int)
      */
@@ -774,7 +858,7 @@ public class WadLoader : IWadLoader
 
     
     @SuppressWarnings("unchecked")
-    public <T> T CacheLumpNum(int lump, int tag, Class<T> what)
+    public synchronized <T> T CacheLumpNum(int lump, int tag, Class<T> what)
     {
 
         if (lump >= numlumps)
@@ -795,7 +879,7 @@ public class WadLoader : IWadLoader
             // Fake Zone system: mark this particular lump with the tag specified
             // ptr = Z_Malloc (W_Lum.Length (lump), tag, &lumpcache[lump]);
             // Read as a byte buffer anyway.
-            var thebuffer = MemoryStream.wrap(ReadLump(lump));
+            var thebuffer = LumpBuffer(lump);
 
             // Class type specified
 
@@ -816,7 +900,7 @@ public class WadLoader : IWadLoader
                         lumpcache[lump].unpack(thebuffer);
 
                         // Track it for freeing
-                        Track(lumpcache[lump], lump);
+                        Track(lumpcache[lump], lump, tag);
 
                         if (what == patch_t.class)
                         {
@@ -828,7 +912,7 @@ public class WadLoader : IWadLoader
                         lumpcache[lump] = (CacheableDoomObject) thebuffer;
 
                         // Track it for freeing
-                        Track((CacheableDoomObject) thebuffer, lump);
+                        Track((CacheableDoomObject) thebuffer, lump, tag);
                     }
                 }
                 catch (Exception e)
@@ -843,11 +927,13 @@ public class WadLoader : IWadLoader
                 // Class not specified? Then gimme a containing DoomBuffer!
                 var db = new DoomBuffer(thebuffer);
                 lumpcache[lump] = db;
+                Track(db, lump, tag);
             }
         } else
         {
             // System.out.println("cache hit on lump " + lump);
             // Z.ChangeTag (lumpcache[lump],tag);
+            lumpzone.Hit(lump, tag);
         }
 
         return (T) lumpcache[lump];
@@ -874,7 +960,7 @@ public class WadLoader : IWadLoader
 
     
     @Deprecated
-    public void CacheLumpNumIntoArray(int lump, int tag, Object[] array,
+    public synchronized void CacheLumpNumIntoArray(int lump, int tag, Object[] array,
                                       Class<?> what)  
     {
 
@@ -891,18 +977,19 @@ public class WadLoader : IWadLoader
 
             //System.out.println("cache miss on lump " + lump);
             // Read as a byte buffer anyway.
-            var thebuffer = MemoryStream.wrap(ReadLump(lump));
+            var thebuffer = LumpBuffer(lump);
             // Store the buffer anyway (as a DoomBuffer)
             lumpcache[lump] = new DoomBuffer(thebuffer);
 
             // Track it (as ONE lump)
-            Track(lumpcache[lump], lump);
+            Track(lumpcache[lump], lump, tag);
 
 
         } else
         {
             //System.out.println("cache hit on lump " + lump);
             // Z.ChangeTag (lumpcache[lump],tag);
+            lumpzone.Hit(lump, tag);
         }
 
         // Class type specified. If the previously cached stuff is a
@@ -961,7 +1048,7 @@ public class WadLoader : IWadLoader
      */
 
     
-    public <T : CacheableDoomObject> T[] CacheLumpNumIntoArray(int lump, int num, ArraySupplier<T> what, IntFunction<T[]> arrGen)
+    public synchronized <T : CacheableDoomObject> T[] CacheLumpNumIntoArray(int lump, int num, ArraySupplier<T> what, IntFunction<T[]> arrGen)
     {
         if (lump >= numlumps)
         {
@@ -981,7 +1068,7 @@ public class WadLoader : IWadLoader
         {
             //System.out.println("cache miss on lump " + lump);
             // Read as a byte buffer anyway.
-            var thebuffer = MemoryStream.wrap(ReadLump(lump));
+            var thebuffer = LumpBuffer(lump);
             var stuff = malloc(what, arrGen, num);
 
             // Store the buffer anyway (as a CacheableDoomObjectContainer)
@@ -1001,12 +1088,14 @@ public class WadLoader : IWadLoader
                 ), e);
             }
 
-            // Track it (as ONE lump)
-            Track(lumpcache[lump], lump);
-        } else
+            // Track it (as ONE lump). Only level data comes in arrays, so
+            // it goes away with the level, as in vanilla.
+            Track(lumpcache[lump], lump, PU_LEVEL);
+        } else if (lumpcache[lump] != null)
         {
             //System.out.println("cache hit on lump " + lump);
             // Z.ChangeTag (lumpcache[lump],tag);
+            lumpzone.Hit(lump, PU_LEVEL);
         }
 
         if (lumpcache[lump] == null)
@@ -1022,7 +1111,7 @@ public class WadLoader : IWadLoader
      * @see w.IWadLoader#CachePatchName(java.lang.String, int)
      */
 
-    public CacheableDoomObject CacheLumpNum(int lump)
+    public synchronized CacheableDoomObject CacheLumpNum(int lump)
     {
         return lumpcache[lump];
     }
@@ -1055,8 +1144,8 @@ public class WadLoader : IWadLoader
     
     public byte[] CacheLumpNameAsRawBytes(String name, int tag)
     {
-        return ((DoomBuffer) CacheLumpNum(GetNumForName(name), tag,
-                null)).getBuffer().array();
+        return RawBytes(((DoomBuffer) CacheLumpNum(GetNumForName(name), tag,
+                null)).getBuffer());
     }
 
     //
@@ -1111,8 +1200,8 @@ public class WadLoader : IWadLoader
     
     public byte[] CacheLumpNumAsRawBytes(int num, int tag)
     {
-        return ((DoomBuffer) CacheLumpNum(num, tag,
-                null)).getBuffer().array();
+        return RawBytes(((DoomBuffer) CacheLumpNum(num, tag,
+                null)).getBuffer());
     }
 
     
@@ -1398,30 +1487,68 @@ public class WadLoader : IWadLoader
     }
 
     
-    public void UnlockLumpNum(int lump)
+    public synchronized void UnlockLumpNum(int lump)
     {
         lumpcache[lump] = null;
+        lumpzone.Remove(lump);
     }
 
     //// Merged remnants from LumpZone here.
 
     
-    public void InjectLumpNum(int lump, CacheableDoomObject obj)
+    public synchronized void InjectLumpNum(int lump, CacheableDoomObject obj)
     {
         lumpcache[lump] = obj;
+        // There's no getting it back from disk, so it stays.
+        lumpzone.Insert(lump, PU_STATIC, lumpinfo[lump].size);
     }
 
     /**
-     * Add a lump to the tracking
+     * Add a lump to the tracking, and let the zone make room for it
      */
 
-    private void Track(CacheableDoomObject lump, int index)
+    private void Track(CacheableDoomObject lump, int index, int tag)
     {
         zone.put(lump, index);
+        lumpzone.Miss(index, tag, lumpinfo[index].size);
+    }
+
+    /**
+     * Called back by the zone, when a purgable lump must go or its tag is freed
+     */
+
+    private void Evict(int lump)
+    {
+        if (lumpcache[lump] != null)
+        {
+            zone.remove(lumpcache[lump]);
+            lumpcache[lump] = null;
+        }
+    }
+
+    
+    @Z_Zone.C(Z_FreeTags)
+    public synchronized int FreeTags(int lowtag, int hightag)
+    {
+        return lumpzone.FreeTags(lowtag, hightag);
+    }
+
+    
+    public synchronized void SetZoneBudget(long bytes)
+    {
+        zonebudget = bytes;
+        if (lumpzone != null)
+            lumpzone.setBudget(bytes);
+    }
+
+    
+    public LumpZone GetZone()
+    {
+        return lumpzone;
     }
 
     
-    public void UnlockLumpNum(CacheableDoomObject lump)
+    public synchronized void UnlockLumpNum(CacheableDoomObject lump)
     {
         // Remove it from the reference
         var lumpno = zone.remove(lump);
@@ -1436,6 +1563,7 @@ public class WadLoader : IWadLoader
         if (lumpno != null)
         {
             lumpcache[lumpno] = null;
+            lumpzone.Remove(lumpno);
             //System.out.printf("Lump %d %d freed\n",lump.hashCode(),lumpno);
         }
     }
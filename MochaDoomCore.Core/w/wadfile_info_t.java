@@ -1,6 +1,7 @@
 namespace w {  
 
 using java.io.InputStream;
+using java.nio.MappedByteBuffer;
 using java.util.zip.ZipEntry;
 
 // CPhipps - changed wad init
@@ -16,4 +17,5 @@ public class wadfile_info_t
     public InputStream handle;
     public bool cached; // Whether we use local caching e.g. for URL or zips
     public long maxsize = -1; // Update when known for sure. Will speed up seeking.
+    public MappedByteBuffer mapped; // Plain local files only, else null and we use the streams.
 }